@@ -44,9 +44,15 @@ public class PASTAServletConfig extends WebMvcConfigurerAdapter {
 	
 	@Override
 	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(createTemplateCacheInterceptor());
 		registry.addInterceptor(createInterceptor());
 	}
 	
+	@Bean
+	public TemplateCacheInterceptor createTemplateCacheInterceptor() {
+		return new TemplateCacheInterceptor();
+	}
+	
 	@Bean
 	public GlobalModelAtributesInterceptor createInterceptor() {
 		return new GlobalModelAtributesInterceptor();
@@ -22,40 +22,29 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
 */
 
-package pasta.util.io;
+package pasta.config;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
-public class DualByteArrayOutputStream extends ByteArrayOutputStream {
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
 
-	private ChildByteArrayOutputStream output;
-	private ChildByteArrayOutputStream error;
-	
-	public DualByteArrayOutputStream() {
-		super();
-		this.output = new ChildByteArrayOutputStream(this);
-		this.error = new ChildByteArrayOutputStream(this);
-	}
-	
-	@Override
-	public void close() throws IOException {
-		this.output.close();
-		this.error.close();
-		super.close();
-	}
+import pasta.repository.TemplateCacheDAO;
+
+/**
+ * Makes sure each request sees templates changed on other nodes, by
+ * checking the template version before the request is handled.
+ */
+public class TemplateCacheInterceptor extends HandlerInterceptorAdapter {
+
+	@Autowired
+	private TemplateCacheDAO templateCacheDAO;
 	
 	@Override
-	public void flush() throws IOException {
-		this.output.flush();
-		this.error.flush();
-		super.flush();
-	}
-	
-	public ByteArrayOutputStream getOutputStream() {
-		return output;
-	}
-	public ByteArrayOutputStream getErrorStream() {
-		return error;
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+			throws Exception {
+		templateCacheDAO.checkTemplateVersion();
+		return true;
 	}
 }
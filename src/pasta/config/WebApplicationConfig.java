@@ -79,6 +79,8 @@ public class WebApplicationConfig {
 		props.put("proxydomain", env.getProperty("project.proxydomain",""));
 		props.put("proxyport", env.getProperty("project.proxyport",""));
 		props.put("initialInstructor", env.getProperty("project.initialInstructor",""));
+		props.put("executionNodeId", env.getProperty("project.executionNodeId",""));
+		props.put("executionEnabled", env.getProperty("project.executionEnabled","true"));
 		return props;
 	}
 	
@@ -94,6 +96,8 @@ public class WebApplicationConfig {
 		ds.setUrl(jdbcUrl);
 		ds.setUsername(jdbcUsername);
 		ds.setPassword(jdbcPassword);
+		// lets JDBC batches (e.g. bulk summary upserts) go to MySQL as multi-row statements
+		ds.addConnectionProperty("rewriteBatchedStatements", "true");
 		return ds;
 	}
 	
@@ -123,11 +127,19 @@ public class WebApplicationConfig {
 		hibernateProperties.setProperty("hibernate.dialect", "org.hibernate.dialect.MySQLDialect");
 		hibernateProperties.setProperty("hibernate.show_sql", "false");
 		hibernateProperties.setProperty("hibernate.hbm2ddl.auto", "update");
+		
+		// Template entities are cached locally in the regions named in CacheRegions
+		hibernateProperties.setProperty("hibernate.cache.use_second_level_cache", "true");
+		hibernateProperties.setProperty("hibernate.cache.use_query_cache", "true");
+		hibernateProperties.setProperty("hibernate.cache.region.factory_class", "org.hibernate.cache.ehcache.SingletonEhCacheRegionFactory");
+		hibernateProperties.setProperty("net.sf.ehcache.configurationResourceName", "/ehcache.xml");
+		hibernateProperties.setProperty("hibernate.generate_statistics", "true");
 		sf.setHibernateProperties(hibernateProperties);
 		
 		sf.setAnnotatedClasses(
 				pasta.domain.BaseEntity.class,
 				pasta.domain.PASTALoginUser.class,
+				pasta.domain.TemplateVersion.class,
 				pasta.domain.options.Option.class,
 				pasta.domain.ratings.AssessmentRating.class,
 				pasta.domain.release.ClassRule.class,
@@ -147,6 +159,7 @@ public class WebApplicationConfig {
 				pasta.domain.result.AssessmentResult.class,
 				pasta.domain.result.AssessmentResultSummary.class,
 				pasta.domain.result.AssessmentResultSummary.AssessmentResultSummaryId.class,
+				pasta.domain.result.AssessmentResultSummaryVersion.class,
 				pasta.domain.result.HandMarkingResult.class,
 				pasta.domain.result.UnitTestCaseResult.class,
 				pasta.domain.result.UnitTestResult.class,
@@ -27,7 +27,10 @@ package pasta.docker;
 public class CombinedCommandResult extends CommandResult {
 	private String combined;
 	public CombinedCommandResult(String combined, String output, String error) {
-		super(output, error);
+		this(combined, output, error, null);
+	}
+	public CombinedCommandResult(String combined, String output, String error, Integer exitCode) {
+		super(output, error, exitCode);
 		this.combined = combined;
 	}
 	public String getCombined() {
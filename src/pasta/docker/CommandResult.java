@@ -27,9 +27,14 @@ package pasta.docker;
 public class CommandResult {
 	private String output;
 	private String error;
+	private Integer exitCode;
 	public CommandResult(String output, String error) {
+		this(output, error, null);
+	}
+	public CommandResult(String output, String error, Integer exitCode) {
 		this.output = output;
 		this.error = error;
+		this.exitCode = exitCode;
 	}
 	public String getOutput() {
 		return output;
@@ -37,4 +42,10 @@ public class CommandResult {
 	public String getError() {
 		return error;
 	}
+	/**
+	 * @return the exit code of the command, or null if it is not known
+	 */
+	public Integer getExitCode() {
+		return exitCode;
+	}
 }
@@ -0,0 +1,396 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.docker;
+
+import java.io.File;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import pasta.util.ProjectProperties;
+import pasta.util.TimingStatistics;
+
+/**
+ * A pool of idle, already started containers for one {@link Language}.
+ * <p>
+ * Each pooled container bind-mounts its own "slot" directory, with
+ * {@link DockerManager#PASTA_SRC} symlinked to <code>src</code> under the
+ * read only {@link DockerManager#PASTA_SLOT_RO} and
+ * {@link DockerManager#PASTA_OUT} symlinked to <code>out</code> under
+ * {@link DockerManager#PASTA_SLOT}. Checking out a container moves the job's
+ * source and output directories into the slot, and releasing it moves them
+ * back, so no files are copied and the job's directories are left exactly
+ * where the caller expects them.
+ * <p>
+ * Between uses the container is reset: any sandbox user processes are
+ * killed and the working directory is wiped, except that its
+ * <code>bin</code> directory is emptied rather than removed, so that a
+ * process running in it (see <code>pastajunit</code>) can carry on.
+ * Containers that fail a health check or a reset are removed rather than
+ * reused.
+ */
+public class ContainerPool {
+	
+	protected static Logger logger = Logger.getLogger(ContainerPool.class);
+
+	private static final String KEPT_DIR = "bin";
+	
+	private static final String RESET_COMMAND = 
+			"pkill -9 -u " + DockerManager.SANDBOX_USER + "; " +
+			DockerManager.STOP_MEMORY_SAMPLER_COMMAND + "; " +
+			"find " + DockerManager.WORK_DIR + " -mindepth 1 ! -path " + DockerManager.WORK_DIR + "/" + KEPT_DIR + " -delete; " +
+			"rm -rf /tmp/..?* /tmp/.[!.]* /tmp/* /var/tmp/* /dev/shm/*; " +
+			"cd " + DockerManager.WORK_DIR + " && [ -z \"$(find . -mindepth 1 ! -path ./" + KEPT_DIR + ")\" ]";
+	
+	private DockerManager manager;
+	private Language language;
+	private int size;
+	private File slotsRoot;
+	
+	private LinkedList<PooledContainer> idle;
+	private int liveCount;
+	private long nextSlot;
+	
+	private AtomicLong hits;
+	private AtomicLong misses;
+	private AtomicLong discarded;
+	private TimingStatistics checkoutLatency;
+	
+	ContainerPool(DockerManager manager, Language language, int size, File slotsRoot) {
+		this.manager = manager;
+		this.language = language;
+		this.size = size;
+		this.slotsRoot = slotsRoot;
+		this.idle = new LinkedList<>();
+		this.liveCount = 0;
+		this.nextSlot = 0;
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+		this.discarded = new AtomicLong();
+		this.checkoutLatency = new TimingStatistics(language.getName() + " checkout");
+	}
+	
+	/**
+	 * Start containers until the pool has {@link #getSize()} live containers.
+	 */
+	public void fill() {
+		while(true) {
+			synchronized (this) {
+				if(liveCount >= size) {
+					return;
+				}
+				liveCount++;
+			}
+			PooledContainer container = create();
+			synchronized (this) {
+				if(container == null) {
+					liveCount--;
+					return;
+				}
+				idle.add(container);
+			}
+		}
+	}
+	
+	/**
+	 * Attach the given execution container to an idle pooled container.
+	 * 
+	 * @param container the execution container; its source and output
+	 *            directories must already exist
+	 * @return true if a pooled container was attached, false if the caller
+	 *         should create its own container instead
+	 */
+	public boolean checkout(ExecutionContainer container) {
+		PooledContainer pooled = acquire();
+		if(pooled == null) {
+			return false;
+		}
+		if(!attach(pooled, container)) {
+			synchronized (this) {
+				idle.add(pooled);
+			}
+			return false;
+		}
+		container.setId(pooled.id);
+		container.setPooledContainer(pooled);
+		logger.debug("Checked out pooled container " + pooled.name + " for " + container.getLabel());
+		return true;
+	}
+	
+	/**
+	 * Reset the container attached to the given execution container and
+	 * return it to the pool, moving the job's directories back to where they
+	 * came from.
+	 * 
+	 * @param container the execution container that was checked out
+	 */
+	public void release(ExecutionContainer container) {
+		PooledContainer pooled = container.getPooledContainer();
+		if(pooled == null) {
+			return;
+		}
+		container.setPooledContainer(null);
+		giveBack(pooled, detach(pooled, container));
+	}
+	
+	/**
+	 * Take a running container out of the pool, starting a new one if none
+	 * are idle and the pool is not yet full.
+	 * 
+	 * @return the container, or null if none is available
+	 */
+	PooledContainer acquire() {
+		long start = System.currentTimeMillis();
+		PooledContainer pooled = null;
+		boolean fresh = false;
+		while(pooled == null) {
+			synchronized (this) {
+				pooled = idle.poll();
+				if(pooled == null) {
+					if(liveCount >= size) {
+						break;
+					}
+					liveCount++;
+					fresh = true;
+				}
+			}
+			if(fresh) {
+				pooled = create();
+				if(pooled == null) {
+					synchronized (this) {
+						liveCount--;
+					}
+				}
+				break;
+			}
+			if(!manager.isContainerRunning(pooled.id)) {
+				logger.warn("Pooled container " + pooled.name + " failed health check.");
+				discard(pooled);
+				pooled = null;
+			}
+		}
+		
+		if(pooled == null || fresh) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		if(pooled != null) {
+			checkoutLatency.record(System.currentTimeMillis() - start);
+		}
+		return pooled;
+	}
+	
+	/**
+	 * Reset a container taken with {@link #acquire()} and return it to the
+	 * pool, or replace it if it cannot be reused.
+	 * 
+	 * @param pooled the container
+	 * @param reusable false if the container is already known to be unusable
+	 */
+	void giveBack(PooledContainer pooled, boolean reusable) {
+		if(reusable && reset(manager, pooled)) {
+			boolean keep;
+			synchronized (this) {
+				keep = liveCount <= size;
+				if(keep) {
+					idle.add(pooled);
+				}
+			}
+			if(keep) {
+				logger.debug("Released pooled container " + pooled.name);
+			} else {
+				discard(pooled);
+			}
+		} else {
+			logger.warn("Pooled container " + pooled.name + " could not be reset; replacing it.");
+			discard(pooled);
+			manager.maintainPool(this);
+		}
+	}
+	
+	/**
+	 * Remove all idle containers. Containers that are checked out will be
+	 * removed when they are released.
+	 */
+	public void drain() {
+		LinkedList<PooledContainer> toRemove;
+		synchronized (this) {
+			size = 0;
+			toRemove = idle;
+			idle = new LinkedList<>();
+		}
+		for(PooledContainer pooled : toRemove) {
+			discard(pooled);
+		}
+	}
+	
+	private PooledContainer create() {
+		String name;
+		synchronized (this) {
+			name = "pasta-pool-" + ProjectProperties.getInstance().getExecutionNodeId() + "-" + language.getId() + "-" + System.currentTimeMillis() + "-" + (nextSlot++);
+		}
+		File slot = new File(slotsRoot, name);
+		slot.mkdirs();
+		String id = manager.createPooledContainer(language, name, slot);
+		if(id == null) {
+			FileUtils.deleteQuietly(slot);
+			return null;
+		}
+		logger.debug("Started pooled container " + name);
+		return new PooledContainer(id, name, slot);
+	}
+	
+	private void discard(PooledContainer pooled) {
+		synchronized (this) {
+			liveCount--;
+		}
+		discarded.incrementAndGet();
+		manager.removeContainer(pooled.id);
+		FileUtils.deleteQuietly(pooled.slot);
+	}
+	
+	/**
+	 * Kill any sandbox user processes in the container and wipe its working
+	 * and temporary directories, leaving it as a new container would be
+	 * apart from an empty <code>bin</code> directory.
+	 * 
+	 * @param manager the Docker manager
+	 * @param pooled the container
+	 * @return true if the container was reset and is still running
+	 */
+	static boolean reset(DockerManager manager, PooledContainer pooled) {
+		CombinedCommandResult reset = manager.runCommand(pooled.id, pooled.name, "sh", "-c", RESET_COMMAND);
+		return reset != null && reset.getExitCode() != null && reset.getExitCode() == 0
+				&& manager.isContainerRunning(pooled.id);
+	}
+	
+	/**
+	 * Move the execution container's source and output directories into
+	 * the pooled container's slot.
+	 */
+	static boolean attach(PooledContainer pooled, ExecutionContainer container) {
+		File slotSrc = pooled.getSrc();
+		File slotOut = pooled.getOut();
+		FileUtils.deleteQuietly(slotSrc);
+		FileUtils.deleteQuietly(slotOut);
+		if(!container.getSrcLoc().renameTo(slotSrc)) {
+			logger.warn("Could not move " + container.getSrcLoc() + " into pooled container.");
+			return false;
+		}
+		if(!container.getOutLoc().renameTo(slotOut)) {
+			logger.warn("Could not move " + container.getOutLoc() + " into pooled container.");
+			slotSrc.renameTo(container.getSrcLoc());
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Move the execution container's source and output directories back out
+	 * of the pooled container's slot.
+	 */
+	static boolean detach(PooledContainer pooled, ExecutionContainer container) {
+		boolean success = true;
+		File slotSrc = pooled.getSrc();
+		File slotOut = pooled.getOut();
+		if(!slotSrc.renameTo(container.getSrcLoc())) {
+			logger.error("Could not move " + slotSrc + " back to " + container.getSrcLoc());
+			success = false;
+		}
+		if(!slotOut.renameTo(container.getOutLoc())) {
+			logger.error("Could not move " + slotOut + " back to " + container.getOutLoc());
+			success = false;
+		}
+		return success;
+	}
+	
+	public Language getLanguage() {
+		return language;
+	}
+	public synchronized int getSize() {
+		return size;
+	}
+	public synchronized int getIdleCount() {
+		return idle.size();
+	}
+	public synchronized int getLiveCount() {
+		return liveCount;
+	}
+	public long getHits() {
+		return hits.get();
+	}
+	public long getMisses() {
+		return misses.get();
+	}
+	public long getDiscarded() {
+		return discarded.get();
+	}
+	public TimingStatistics getCheckoutLatency() {
+		return checkoutLatency;
+	}
+	
+	static class PooledContainer {
+		static final String READ_ONLY_DIR = "ro";
+		static final String READ_WRITE_DIR = "rw";
+		
+		private String id;
+		private String name;
+		private File slot;
+		
+		PooledContainer(String id, String name, File slot) {
+			this.id = id;
+			this.name = name;
+			this.slot = slot;
+		}
+		
+		String getId() {
+			return id;
+		}
+		String getName() {
+			return name;
+		}
+		File getSlot() {
+			return slot;
+		}
+		/**
+		 * @return where the job's source directory goes in the slot; this is
+		 *         only bound read only, as the files in it are hard linked to
+		 *         the original submission and test files (see
+		 *         DirectoryLinkTask)
+		 */
+		File getSrc() {
+			return new File(new File(slot, READ_ONLY_DIR), "src");
+		}
+		/**
+		 * @return where the job's output directory goes in the slot
+		 */
+		File getOut() {
+			return new File(new File(slot, READ_WRITE_DIR), "out");
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.docker;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import pasta.docker.ContainerPool.PooledContainer;
+
+/**
+ * A set of containers, one per {@link Language}, that are kept running for
+ * a sequence of related jobs (e.g. all unit tests of one submission) instead
+ * of starting a new container for each job.
+ * <p>
+ * Each job still gets its own source and output directories: these are
+ * moved into the container's slot when the job starts and moved back when
+ * it finishes, in the same way as for a {@link ContainerPool}. The container
+ * is reset between jobs, so each job starts with an empty working directory,
+ * no leftover processes and nothing left in <code>/tmp</code>.
+ * <p>
+ * Containers are taken from the language's pool where there is one, and
+ * returned to it when the session is closed.
+ */
+public class ContainerSession implements AutoCloseable {
+	
+	protected static Logger logger = Logger.getLogger(ContainerSession.class);
+	
+	private DockerManager manager;
+	private String label;
+	private File slotsRoot;
+	private Map<String, SessionContainer> containers;
+	private int jobCount;
+	
+	ContainerSession(DockerManager manager, String label, File slotsRoot) {
+		this.manager = manager;
+		this.label = label;
+		this.slotsRoot = slotsRoot;
+		this.containers = new HashMap<>();
+		this.jobCount = 0;
+	}
+	
+	/**
+	 * Attach the given execution container to this session's container for
+	 * its language, starting one if needed.
+	 * 
+	 * @param container the execution container; its language must be set
+	 *            and its source and output directories must already exist
+	 * @return true if the execution container was attached, false if the
+	 *         caller should find a container some other way
+	 */
+	boolean attach(ExecutionContainer container) {
+		String languageId = container.getLanguage().getId();
+		SessionContainer current = containers.get(languageId);
+		if(current == null) {
+			current = start(container.getLanguage());
+			if(current == null) {
+				return false;
+			}
+			containers.put(languageId, current);
+		}
+		if(!ContainerPool.attach(current.container, container)) {
+			return false;
+		}
+		container.setId(current.container.getId());
+		container.setPooledContainer(current.container);
+		jobCount++;
+		logger.debug("Running " + container.getLabel() + " in session container " + current.container.getName());
+		return true;
+	}
+	
+	/**
+	 * Detach the given execution container from this session, moving its
+	 * directories back and resetting the container for the next job.
+	 * 
+	 * @param container the execution container
+	 * @return true if the execution container was attached to this session,
+	 *         false if it is running somewhere else
+	 */
+	boolean detach(ExecutionContainer container) {
+		PooledContainer pooled = container.getPooledContainer();
+		String languageId = container.getLanguage().getId();
+		SessionContainer current = containers.get(languageId);
+		if(pooled == null || current == null || current.container != pooled) {
+			return false;
+		}
+		container.setPooledContainer(null);
+		
+		boolean detached = ContainerPool.detach(pooled, container);
+		if(!detached || !ContainerPool.reset(manager, pooled)) {
+			logger.warn("Session container " + pooled.getName() + " could not be reset; replacing it.");
+			containers.remove(languageId);
+			finish(current, false);
+		}
+		return true;
+	}
+	
+	/**
+	 * Finish with all of this session's containers.
+	 */
+	@Override
+	public void close() {
+		for(SessionContainer current : containers.values()) {
+			finish(current, true);
+		}
+		logger.debug("Session " + label + " ran " + jobCount + " jobs in " + containers.size() + " containers");
+		containers.clear();
+	}
+	
+	private SessionContainer start(Language language) {
+		ContainerPool pool = manager.getContainerPool(language);
+		if(pool != null) {
+			PooledContainer pooled = pool.acquire();
+			if(pooled != null) {
+				return new SessionContainer(pooled, pool);
+			}
+		}
+		
+		String name = label + "_" + language.getId();
+		File slot = new File(slotsRoot, name);
+		slot.mkdirs();
+		String id = manager.createPooledContainer(language, name, slot);
+		if(id == null) {
+			FileUtils.deleteQuietly(slot);
+			return null;
+		}
+		return new SessionContainer(new PooledContainer(id, name, slot), null);
+	}
+	
+	private void finish(SessionContainer current, boolean reusable) {
+		if(current.pool != null) {
+			current.pool.giveBack(current.container, reusable);
+		} else {
+			manager.removeContainer(current.container.getId());
+			FileUtils.deleteQuietly(current.container.getSlot());
+		}
+	}
+	
+	private static class SessionContainer {
+		private PooledContainer container;
+		private ContainerPool pool;
+		
+		private SessionContainer(PooledContainer container, ContainerPool pool) {
+			this.container = container;
+			this.pool = pool;
+		}
+	}
+}
@@ -27,8 +27,10 @@ package pasta.docker;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -36,7 +38,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -46,10 +51,12 @@ import com.github.dockerjava.api.command.BuildImageCmd;
 import com.github.dockerjava.api.command.CreateContainerCmd;
 import com.github.dockerjava.api.command.CreateContainerResponse;
 import com.github.dockerjava.api.command.ExecCreateCmdResponse;
+import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.exception.ConflictException;
 import com.github.dockerjava.api.exception.DockerClientException;
 import com.github.dockerjava.api.exception.DockerException;
 import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.AccessMode;
 import com.github.dockerjava.api.model.Bind;
 import com.github.dockerjava.api.model.BuildResponseItem;
 import com.github.dockerjava.api.model.Container;
@@ -62,11 +69,12 @@ import com.github.dockerjava.core.DockerClientBuilder;
 import com.github.dockerjava.core.command.BuildImageResultCallback;
 import com.github.dockerjava.core.command.ExecStartResultCallback;
 
+import pasta.service.PASTAOptions;
 import pasta.util.Copy;
 import pasta.util.PASTAUtil;
 import pasta.util.ProjectProperties;
 import pasta.util.WhichProgram;
-import pasta.util.io.DualByteArrayOutputStream;
+import pasta.util.io.BoundedOutputStream;
 
 public class DockerManager {
 	
@@ -76,11 +84,47 @@ public class DockerManager {
 	public static final String PASTA_OUT = "/pasta/out";
 	public static final String PASTA_BIN = "/pasta/bin";
 	public static final String PASTA_LIB = "/pasta/lib";
+	public static final String PASTA_SLOT = "/pasta/slot";
+	public static final String PASTA_SLOT_RO = "/pasta/slot-ro";
 	public static final String WORK_DIR = "/sandbox";
+	public static final String SANDBOX_USER = "pastasandbox";
+	
+	// Prints the container's CPU time and peak memory from its cgroup, for
+	// both cgroup v2 (unified) and v1 hierarchies
+	private static final String CGROUP_USAGE_COMMAND = 
+			"C=/sys/fs/cgroup; " + 
+			"if [ -f $C/cpu.stat ]; then " + 
+				"grep '^usage_usec ' $C/cpu.stat; " + 
+				"[ -f $C/memory.peak ] && echo \"peak_bytes $(cat $C/memory.peak)\"; " + 
+			"else " + 
+				"echo \"usage_nsec $(cat $C/cpuacct/cpuacct.usage)\"; " + 
+				"echo \"peak_bytes $(cat $C/memory/memory.max_usage_in_bytes)\"; " + 
+			"fi; " + 
+			"[ -f /run/pasta-memory-peak ] && echo \"sampled_bytes $(cat /run/pasta-memory-peak)\"; true";
+	
+	// The cgroup's peak memory covers the container's whole life, so for a
+	// reused container the peak of a single job is sampled in the background
+	// instead (see getResourceUsage). Files go in /run, which the sandbox
+	// user cannot write to.
+	static final String STOP_MEMORY_SAMPLER_COMMAND = 
+			"[ -f /run/pasta-memory-sampler.pid ] && kill $(cat /run/pasta-memory-sampler.pid); " + 
+			"rm -f /run/pasta-memory-sampler.pid /run/pasta-memory-peak";
+	private static final String START_MEMORY_SAMPLER_COMMAND = 
+			STOP_MEMORY_SAMPLER_COMMAND + "; " + 
+			"F=/sys/fs/cgroup/memory.current; [ -f $F ] || F=/sys/fs/cgroup/memory/memory.usage_in_bytes; " + 
+			"echo 0 > /run/pasta-memory-peak; " + 
+			"nohup sh -c \"p=0; while :; do read c < $F; " + 
+				"if [ \\$c -gt \\$p ]; then p=\\$c; echo \\$p > /run/pasta-memory-peak; fi; " + 
+				"sleep 0.25; done\" > /dev/null 2>&1 & " + 
+			"echo $! > /run/pasta-memory-sampler.pid";
 	
 	private Object removeLock = new Object();
 	private Set<String> deleteLater;
 	
+	private Map<String, ContainerPool> pools;
+	private File poolSlotsRoot;
+	private ExecutorService poolMaintenance;
+	
 	private static DockerManager instance;
 	public static DockerManager instance() {
 		if(instance == null) {
@@ -100,9 +144,10 @@ public class DockerManager {
 				.getInstance(config)
 				.build();
 		
-		initialiseImages();
 		deleteLater = new LinkedHashSet<>();
+		initialiseImages();
 		instance = this;
+		initialiseContainerPools();
 	}
 	
 	private void initialiseImages() {
@@ -117,6 +162,93 @@ public class DockerManager {
 		}
 	}
 	
+	private void initialiseContainerPools() {
+		pools = new HashMap<>();
+		poolMaintenance = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "docker-container-pool");
+			t.setDaemon(true);
+			return t;
+		});
+		
+		// Pooled containers left over from a previous run cannot be reused
+		// as their slot directories are not known. Only this node's containers
+		// are removed, as other nodes may share the same Docker daemon.
+		String nodeId = ProjectProperties.getInstance().getExecutionNodeId();
+		Map<String, String> labels = new HashMap<>();
+		labels.put("pool", "true");
+		labels.put("node", nodeId);
+		List<Container> stale = dockerClient
+				.listContainersCmd()
+				.withShowAll(true)
+				.withLabelFilter(labels)
+				.exec();
+		for(Container container : stale) {
+			logger.info("Removing stale pooled container " + container.getId());
+			removeContainer(container.getId());
+		}
+		poolSlotsRoot = new File(ProjectProperties.getInstance().getSandboxLocation(), ".pool/" + nodeId);
+		FileUtils.deleteQuietly(poolSlotsRoot);
+		
+		for(Language language : LanguageManager.getInstance().getLanguages()) {
+			int size = language.getContainerPoolSize();
+			if(size <= 0 || language.getDockerBuildFile().getStatus() != DockerBuildFile.Status.BUILD_SUCCESS) {
+				continue;
+			}
+			logger.info(String.format("Pooling %d containers for %s", size, language.getId()));
+			ContainerPool pool = new ContainerPool(this, language, size, new File(poolSlotsRoot, language.getId()));
+			pools.put(language.getId(), pool);
+			maintainPool(pool);
+		}
+	}
+	
+	/**
+	 * Start containers in the background until the pool is full again.
+	 * 
+	 * @param pool the pool to fill
+	 */
+	void maintainPool(ContainerPool pool) {
+		poolMaintenance.execute(pool::fill);
+	}
+	
+	public Collection<ContainerPool> getContainerPools() {
+		return pools.values();
+	}
+	
+	ContainerPool getContainerPool(Language language) {
+		return pools.get(language.getId());
+	}
+	
+	/**
+	 * Open a session in which a sequence of execution containers can share
+	 * one running container per language. Execution containers join the
+	 * session with {@link ExecutionContainer#setSession(ContainerSession)}.
+	 * 
+	 * @param label a label for the session, used to name its containers
+	 * @return the new session, which must be closed when finished with
+	 */
+	public ContainerSession openSession(String label) {
+		return new ContainerSession(this, label, new File(poolSlotsRoot, "sessions"));
+	}
+	
+	/**
+	 * Remove all idle pooled containers, and stop refilling the pools.
+	 */
+	public void shutdownContainerPools() {
+		poolMaintenance.shutdownNow();
+		for(ContainerPool pool : pools.values()) {
+			pool.drain();
+		}
+	}
+	
+	public boolean isContainerRunning(String id) {
+		try {
+			InspectContainerResponse resp = dockerClient.inspectContainerCmd(id).exec();
+			return resp.getState() != null && Boolean.TRUE.equals(resp.getState().getRunning());
+		} catch(DockerException e) {
+			return false;
+		}
+	}
+	
 	public boolean isImageInstalled(String tag) {
 		return getImage(tag) != null;
 	}
@@ -246,51 +378,44 @@ public class DockerManager {
 	
 	//docker run -td --name java -v $(pwd)/src:/pasta/src/ -v $(pwd)/out:/pasta/out/ -v /home/pasta/content/lib/:/pasta/lib java
 	public void runContainer(ExecutionContainer container) {
-		String libDir = "";
-		try {
-			libDir = PASTAUtil.getTemplateResource("lib/").getAbsolutePath();
-		} catch (FileNotFoundException e) {
-			logger.error("Could not load lib directory for Docker container.", e);
+		// Session and pooled containers are started with the language's
+		// limits, so tests with limits of their own need a new container
+		ResourceLimits languageLimits = ResourceLimits.forLanguage(container.getLanguage());
+		ResourceLimits limits = container.getResourceLimits();
+		if(limits == null || limits.equals(languageLimits)) {
+			limits = languageLimits;
+			ContainerSession session = container.getSession();
+			ContainerPool pool = pools.get(container.getLanguage().getId());
+			if((session != null && session.attach(container)) || 
+					(pool != null && pool.checkout(container))) {
+				runCommand(container, "sh", "-c", "cp -rp " + PASTA_SRC + "/* .");
+				// Reused containers have already used some CPU time and memory
+				Map<String, Long> before = readCgroupUsage(container.getId(), container.getLabel());
+				container.setCpuTimeBaseline(before == null ? 0 : before.get("cpu_nsec") / 1000000);
+				Long peakBefore = before == null ? null : before.get("peak_bytes");
+				// If the earlier peak is not known, rely on sampling alone
+				container.setPeakMemoryBaseline(peakBefore == null ? Long.MAX_VALUE : peakBefore);
+				runCommand(container, "sh", "-c", START_MEMORY_SAMPLER_COMMAND);
+				return;
+			}
+		} else {
+			logger.debug("Starting container for " + container.getLabel() + " with " + limits);
 		}
-		
-		Map<String, String> labels = new HashMap<>();
-		labels.put("image", container.getImageName());
+		container.setCpuTimeBaseline(0);
+		container.setPeakMemoryBaseline(null);
 		
 		List<Bind> binds = new LinkedList<>();
 		
 		String hostSrc = toHostPath(container.getSrcLoc().getAbsolutePath());
 		String hostOut = toHostPath(container.getOutLoc().getAbsolutePath());
-		String hostLib = toHostPath(libDir);
 		
-		binds.add(new Bind(hostSrc, new Volume(PASTA_SRC + "/")));
+		// Read only, as the source directory is hard linked to the original
+		// submission and test files (see DirectoryLinkTask)
+		binds.add(new Bind(hostSrc, new Volume(PASTA_SRC + "/"), AccessMode.ro));
 		binds.add(new Bind(hostOut, new Volume(PASTA_OUT + "/")));
-		binds.add(new Bind(hostLib, new Volume(PASTA_LIB + "/")));
-		
-		if(container.getLanguage().getId().equals("matlab")) {
-			binds.add(new Bind(WhichProgram.getInstance().path("matlab.install"), new Volume(PASTA_BIN + "/MATLAB/")));
-		}
 		
 		try {
-			CreateContainerCmd cmd = dockerClient
-					.createContainerCmd(container.getImageName())
-					.withName(container.getLabel())
-					.withLabels(labels)
-					.withTty(true)
-					.withBinds(binds);
-			
-			String macKey = container.getLanguage().getId() + ".hardware-address";
-			String mac = LanguageManager.getInstance().getProperty(macKey);
-			if(mac != null && !mac.isEmpty()) {
-				cmd = cmd.withMacAddress(mac);
-			}
-			
-			String portsKey = container.getLanguage().getId() + ".exposed-ports";
-			String ports = LanguageManager.getInstance().getProperty(portsKey);
-			if(ports != null && !ports.isEmpty()) {
-				cmd = cmd.withExposedPorts(parsePorts(ports));
-			}
-			
-			CreateContainerResponse resp = cmd.exec();
+			CreateContainerResponse resp = createContainerCmd(container.getLanguage(), container.getLabel(), binds, limits, false).exec();
 			container.setId(resp.getId());
 			
 			dockerClient
@@ -303,11 +428,138 @@ public class DockerManager {
 		}
 	}
 	
+	/**
+	 * Create and start a container for a {@link ContainerPool}. Instead of
+	 * binding the source and output directories directly, the container's
+	 * slot directory is bound and the source and output locations are
+	 * symlinked into it. The part of the slot holding the source directory
+	 * is bound read only, as for any other container (see
+	 * {@link ContainerPool.PooledContainer#getSrc()}).
+	 * 
+	 * @param language the language of the container
+	 * @param name the name to give the container
+	 * @param slot the host directory to bind as the container's slot
+	 * @return the ID of the started container, or null if it could not be started
+	 */
+	String createPooledContainer(Language language, String name, File slot) {
+		File readOnly = new File(slot, ContainerPool.PooledContainer.READ_ONLY_DIR);
+		File readWrite = new File(slot, ContainerPool.PooledContainer.READ_WRITE_DIR);
+		readOnly.mkdirs();
+		readWrite.mkdirs();
+		List<Bind> binds = new LinkedList<>();
+		binds.add(new Bind(toHostPath(readOnly.getAbsolutePath()), new Volume(PASTA_SLOT_RO + "/"), AccessMode.ro));
+		binds.add(new Bind(toHostPath(readWrite.getAbsolutePath()), new Volume(PASTA_SLOT + "/")));
+		
+		String id = null;
+		try {
+			id = createContainerCmd(language, name, binds, ResourceLimits.forLanguage(language), true).exec().getId();
+			dockerClient.startContainerCmd(id).exec();
+			CombinedCommandResult link = runCommand(id, name, "sh", "-c", 
+					"ln -sfn " + PASTA_SLOT_RO + "/src " + PASTA_SRC + 
+					" && ln -sfn " + PASTA_SLOT + "/out " + PASTA_OUT);
+			if(link == null || link.getExitCode() == null || link.getExitCode() != 0) {
+				throw new DockerException("Could not link source and output directories", 500);
+			}
+			return id;
+		} catch (DockerException e) {
+			logger.error("Could not start pooled container " + name, e);
+			if(id != null) {
+				removeContainer(id);
+			}
+			return null;
+		}
+	}
+	
+	private CreateContainerCmd createContainerCmd(Language language, String name, List<Bind> binds, ResourceLimits limits, boolean pooled) {
+		String libDir = "";
+		try {
+			libDir = PASTAUtil.getTemplateResource("lib/").getAbsolutePath();
+		} catch (FileNotFoundException e) {
+			logger.error("Could not load lib directory for Docker container.", e);
+		}
+		
+		Map<String, String> labels = new HashMap<>();
+		labels.put("image", language.getImageName());
+		if(pooled) {
+			labels.put("pool", "true");
+			labels.put("node", ProjectProperties.getInstance().getExecutionNodeId());
+		}
+		
+		List<Bind> allBinds = new LinkedList<>(binds);
+		allBinds.add(new Bind(toHostPath(libDir), new Volume(PASTA_LIB + "/")));
+		
+		if(language.getId().equals("matlab")) {
+			allBinds.add(new Bind(WhichProgram.getInstance().path("matlab.install"), new Volume(PASTA_BIN + "/MATLAB/")));
+		}
+		
+		CreateContainerCmd cmd = dockerClient
+				.createContainerCmd(language.getImageName())
+				.withName(name)
+				.withLabels(labels)
+				.withTty(true)
+				.withBinds(allBinds);
+		limits.applyTo(cmd.getHostConfig());
+		
+		String macKey = language.getId() + ".hardware-address";
+		String mac = LanguageManager.getInstance().getProperty(macKey);
+		if(mac != null && !mac.isEmpty()) {
+			cmd = cmd.withMacAddress(mac);
+		}
+		
+		String portsKey = language.getId() + ".exposed-ports";
+		String ports = LanguageManager.getInstance().getProperty(portsKey);
+		if(ports != null && !ports.isEmpty()) {
+			cmd = cmd.withExposedPorts(parsePorts(ports));
+		}
+		return cmd;
+	}
+	
+	/**
+	 * Finish with the container used by the given execution container: 
+	 * session and pooled containers are reset and kept for reuse, and all
+	 * others are removed.
+	 * 
+	 * @param container the execution container
+	 */
+	public void releaseContainer(ExecutionContainer container) {
+		ContainerSession session = container.getSession();
+		if(session != null && session.detach(container)) {
+			return;
+		}
+		if(container.isPooled()) {
+			pools.get(container.getLanguage().getId()).release(container);
+		} else {
+			removeContainer(container.getId());
+		}
+	}
+	
 	public CombinedCommandResult runCommand(ExecutionContainer container, String... command) {
 		return runCommand(container.getId(), container.getLabel(), command);
 	}
 	
 	public CombinedCommandResult runCommand(String containerId, String containerLabel, String... command) {
+		return runCommand(containerId, containerLabel, null, command);
+	}
+	
+	/**
+	 * Run a command in a container and collect its output.
+	 * <p>
+	 * Only the start and end of the output are kept in memory (see
+	 * {@link #getOutputHeadLimit()} and {@link #getOutputTailLimit()}), with a
+	 * marker in place of anything in between, so a program that prints
+	 * without end cannot use up the heap. This makes it unsuitable for
+	 * commands whose output is data that must arrive whole, such as a
+	 * database dump; those should stream their output instead, as
+	 * {@link #executeDatabaseDump(List, OutputStream)} does.
+	 * 
+	 * @param containerId the container to run in
+	 * @param containerLabel a label for the container, for logging
+	 * @param logFile if not null, the combined output is written here, up to
+	 *            {@link #getOutputLogLimit()} bytes
+	 * @param command the command to run
+	 * @return the result, or null if the command could not be run
+	 */
+	public CombinedCommandResult runCommand(String containerId, String containerLabel, File logFile, String... command) {
 		ExecCreateCmdResponse cmd = dockerClient.execCreateCmd(containerId)
 				.withCmd(command)
 				.withAttachStdout(true)
@@ -316,21 +568,33 @@ public class DockerManager {
 				.exec();
 		String execId = cmd.getId();
 		
+		int headLimit = getOutputHeadLimit();
+		int tailLimit = getOutputTailLimit();
 		try (
-				DualByteArrayOutputStream streams = new DualByteArrayOutputStream();
+				BoundedOutputStream combined = new BoundedOutputStream(headLimit, tailLimit);
 			) {
-			ExecStartResultCallback callback = new ExecStartResultCallback(streams.getOutputStream(), streams.getErrorStream());
+			BoundedOutputStream out = new BoundedOutputStream(headLimit, tailLimit, combined);
+			BoundedOutputStream err = new BoundedOutputStream(headLimit, tailLimit, combined);
+			if(logFile != null) {
+				combined.spillTo(logFile, getOutputLogLimit());
+			}
+			ExecStartResultCallback callback = new ExecStartResultCallback(out, err);
 			logger.trace("Start running command " + Arrays.toString(command) + " on " + containerLabel);
 			dockerClient
 					.execStartCmd(execId)
 					.exec(callback)
 					.awaitCompletion();
 			logger.trace("Finished running command " + Arrays.toString(command) + " on " + containerLabel);
-			streams.flush();
-			String combinedStr = streams.toString(StandardCharsets.UTF_8.name());
-			String outStr = streams.getOutputStream().toString(StandardCharsets.UTF_8.name());
-			String errStr = streams.getErrorStream().toString(StandardCharsets.UTF_8.name());
-			return new CombinedCommandResult(combinedStr, outStr, errStr);
+			combined.flush();
+			if(combined.isTruncated()) {
+				logger.debug(String.format("Kept %d of %d bytes of output from %s", 
+						combined.getTotalCount() - combined.getDroppedCount(), combined.getTotalCount(), containerLabel));
+			}
+			String combinedStr = combined.toString(StandardCharsets.UTF_8);
+			String outStr = out.toString(StandardCharsets.UTF_8);
+			String errStr = err.toString(StandardCharsets.UTF_8);
+			Integer exitCode = dockerClient.inspectExecCmd(execId).exec().getExitCode();
+			return new CombinedCommandResult(combinedStr, outStr, errStr, exitCode);
 		} catch (InterruptedException e) {
 			logger.error("Error waiting for command to run.", e);
 		} catch (IOException e) {
@@ -340,8 +604,124 @@ public class DockerManager {
 		return null;
 	}
 	
+	/**
+	 * Read how much CPU time and memory the given container has used since
+	 * {@link #runContainer(ExecutionContainer)}.
+	 * <p>
+	 * A fresh container's peak memory is read from its cgroup. A reused
+	 * container's cgroup peak may have been set by an earlier job, so unless
+	 * this job went above it, the peak sampled in the background since
+	 * {@link #runContainer(ExecutionContainer)} is used instead.
+	 * 
+	 * @param container the execution container, which must still be running
+	 * @return the usage, or null if it could not be read
+	 */
+	public ResourceUsage getResourceUsage(ExecutionContainer container) {
+		Map<String, Long> total = readCgroupUsage(container.getId(), container.getLabel());
+		Long peakMemoryBaseline = container.getPeakMemoryBaseline();
+		if(peakMemoryBaseline != null) {
+			runCommand(container, "sh", "-c", STOP_MEMORY_SAMPLER_COMMAND);
+		}
+		if(total == null) {
+			return null;
+		}
+		long cpuTime = total.get("cpu_nsec") / 1000000;
+		Long peakMemory = total.get("peak_bytes");
+		if(peakMemoryBaseline != null && (peakMemory == null || peakMemory <= peakMemoryBaseline)) {
+			peakMemory = total.get("sampled_bytes");
+		}
+		return new ResourceUsage(Math.max(0, cpuTime - container.getCpuTimeBaseline()), peakMemory);
+	}
+	
+	/**
+	 * @return the values printed by {@link #CGROUP_USAGE_COMMAND}, with the
+	 *         CPU time as <code>cpu_nsec</code>, or null if they could not be
+	 *         read
+	 */
+	private Map<String, Long> readCgroupUsage(String containerId, String containerLabel) {
+		CombinedCommandResult result = runCommand(containerId, containerLabel, "sh", "-c", CGROUP_USAGE_COMMAND);
+		if(result == null || result.getOutput() == null) {
+			return null;
+		}
+		Map<String, Long> values = new HashMap<>();
+		for(String line : result.getOutput().split("\\r?\\n")) {
+			String[] parts = line.trim().split("\\s+");
+			if(parts.length != 2) {
+				continue;
+			}
+			try {
+				long value = Long.parseLong(parts[1]);
+				switch(parts[0]) {
+				case "usage_usec": values.put("cpu_nsec", value * 1000); break;
+				case "usage_nsec": values.put("cpu_nsec", value); break;
+				default: values.put(parts[0], value); break;
+				}
+			} catch(NumberFormatException e) {
+				continue;
+			}
+		}
+		if(!values.containsKey("cpu_nsec")) {
+			logger.debug("Could not read resource usage of " + containerLabel + ": " + result.getCombined());
+			return null;
+		}
+		return values;
+	}
+	
+	/**
+	 * Run an Ant target in the given container. The output of the target, up
+	 * to {@link #getOutputLogLimit()} bytes, is written to
+	 * <code>ant-&lt;target&gt;.log</code> in the container's output directory,
+	 * as only part of it is kept in the result.
+	 */
 	public CombinedCommandResult runAntTarget(ExecutionContainer container, String target) {
-		return runCommand(container, "ant", "-v", "-f", "build.xml", target);
+		File logFile = new File(getHostOutputDirectory(container), "ant-" + target + ".log");
+		return runCommand(container.getId(), container.getLabel(), logFile, "ant", "-v", "-f", "build.xml", target);
+	}
+	
+	/**
+	 * Run a command in the given container in place of an Ant target (see
+	 * {@link pasta.testing.Runner#getTargetCommand(String, ExecutionContainer)}), logging
+	 * its output to the same file as {@link #runAntTarget(ExecutionContainer, String)}.
+	 */
+	public CombinedCommandResult runTargetCommand(ExecutionContainer container, String target, String... command) {
+		File logFile = new File(getHostOutputDirectory(container), "ant-" + target + ".log");
+		return runCommand(container.getId(), container.getLabel(), logFile, command);
+	}
+	
+	/**
+	 * @return where the container's output directory currently is on the host;
+	 *         while a pooled container is in use it is moved into the
+	 *         container's slot
+	 */
+	public File getHostOutputDirectory(ExecutionContainer container) {
+		if(container.isPooled()) {
+			return container.getPooledContainer().getOut();
+		}
+		return container.getOutLoc();
+	}
+	
+	/**
+	 * @return how many bytes from the start of a command's output to keep in
+	 *         memory (option <code>execution.output.head-limit</code>)
+	 */
+	public int getOutputHeadLimit() {
+		return PASTAOptions.instance().getInt("execution.output.head-limit", 64 * 1024);
+	}
+	
+	/**
+	 * @return how many bytes from the end of a command's output to keep in
+	 *         memory (option <code>execution.output.tail-limit</code>)
+	 */
+	public int getOutputTailLimit() {
+		return PASTAOptions.instance().getInt("execution.output.tail-limit", 64 * 1024);
+	}
+	
+	/**
+	 * @return how many bytes of a command's output to write to its log file
+	 *         (option <code>execution.output.log-limit</code>)
+	 */
+	public long getOutputLogLimit() {
+		return PASTAOptions.instance().getLong("execution.output.log-limit", 16 * 1024 * 1024);
 	}
 	
 	/**
@@ -383,7 +763,19 @@ public class DockerManager {
 		return eps;
 	}
 	
-	public CommandResult executeDatabaseDump(List<String> command) {
+	/**
+	 * Run <code>mysqldump</code> in the container running PASTA's MySQL
+	 * database. The dump is written to <code>out</code> as it is produced
+	 * rather than being collected in memory; it must not go through
+	 * {@link #runCommand(String, String, File, String...)}, which keeps only
+	 * the head and tail of the output.
+	 * 
+	 * @param command the dump command to run
+	 * @param out where to write the standard output of the command
+	 * @return the result, with no output as it has already been written to
+	 *         <code>out</code>, or null if the command could not be run
+	 */
+	public CommandResult executeDatabaseDump(List<String> command, OutputStream out) {
 		List<Container> containers = dockerClient.listContainersCmd().withLabelFilter("pasta", "mysql").exec();
 		if(containers.size() == 0) {
 			throw new IllegalStateException("No Docker container running PASTA's MySQL found.");
@@ -395,9 +787,30 @@ public class DockerManager {
 		}
 		
 		String[] commandArray = command.toArray(new String[command.size()]);
-		CombinedCommandResult runCommand = runCommand(container.getId(), container.getNames()[0], commandArray);
-		logger.info("OUTPUT:" + runCommand.getOutput());
-		logger.info("ERROR:" + runCommand.getError());
-		return runCommand;
+		ExecCreateCmdResponse cmd = dockerClient.execCreateCmd(container.getId())
+				.withCmd(commandArray)
+				.withAttachStdout(true)
+				.withAttachStderr(true)
+				.withAttachStdin(false)
+				.exec();
+		String execId = cmd.getId();
+		
+		try (
+				BoundedOutputStream err = new BoundedOutputStream(getOutputHeadLimit(), getOutputTailLimit());
+			) {
+			dockerClient
+					.execStartCmd(execId)
+					.exec(new ExecStartResultCallback(out, err))
+					.awaitCompletion();
+			String errStr = err.toString(StandardCharsets.UTF_8);
+			Integer exitCode = dockerClient.inspectExecCmd(execId).exec().getExitCode();
+			logger.info("Database dump finished with exit code " + exitCode + (errStr.isEmpty() ? "" : ": " + errStr));
+			return new CommandResult("", errStr, exitCode);
+		} catch (InterruptedException e) {
+			logger.error("Error waiting for database dump to run.", e);
+		} catch (IOException e) {
+			logger.error("Error getting database dump error stream.", e);
+		}
+		return null;
 	}
 }
@@ -33,6 +33,11 @@ public class ExecutionContainer {
 	private File srcLoc;
 	private File outLoc;
 	private Language language;
+	private ContainerPool.PooledContainer pooledContainer;
+	private ContainerSession session;
+	private ResourceLimits resourceLimits;
+	private long cpuTimeBaseline;
+	private Long peakMemoryBaseline;
 	
 	public ExecutionContainer(String label, File srcLoc, File outLoc) {
 		this.label = label;
@@ -63,6 +68,60 @@ public class ExecutionContainer {
 		return language;
 	}
 	
+	ContainerPool.PooledContainer getPooledContainer() {
+		return pooledContainer;
+	}
+	void setPooledContainer(ContainerPool.PooledContainer pooledContainer) {
+		this.pooledContainer = pooledContainer;
+	}
+	
+	public ContainerSession getSession() {
+		return session;
+	}
+	/**
+	 * @param session the session whose containers this should run in, or
+	 *            null to use a container of its own
+	 */
+	public void setSession(ContainerSession session) {
+		this.session = session;
+	}
+	
+	/**
+	 * @return true if this is running in a container borrowed from a
+	 *         {@link ContainerPool} rather than one created just for it
+	 */
+	public boolean isPooled() {
+		return pooledContainer != null;
+	}
+	
+	/**
+	 * @return the limits to run with, or null to use the language's limits
+	 */
+	public ResourceLimits getResourceLimits() {
+		return resourceLimits;
+	}
+	public void setResourceLimits(ResourceLimits resourceLimits) {
+		this.resourceLimits = resourceLimits;
+	}
+	
+	long getCpuTimeBaseline() {
+		return cpuTimeBaseline;
+	}
+	void setCpuTimeBaseline(long cpuTimeBaseline) {
+		this.cpuTimeBaseline = cpuTimeBaseline;
+	}
+	
+	/**
+	 * @return the container's peak memory use before this started, or null
+	 *         if this has a fresh container of its own
+	 */
+	Long getPeakMemoryBaseline() {
+		return peakMemoryBaseline;
+	}
+	void setPeakMemoryBaseline(Long peakMemoryBaseline) {
+		this.peakMemoryBaseline = peakMemoryBaseline;
+	}
+	
 	public String getImageName() {
 		return language.getImageName();
 	}
@@ -148,6 +148,130 @@ public class Language implements UserType, Comparable<Language> {
 		return 0;
 	}
 
+	/**
+	 * @return the number of idle containers to keep started for this language,
+	 *         from <code>[id].container-pool-size</code> in languages.properties;
+	 *         0 if containers should not be pooled
+	 */
+	public int getContainerPoolSize() {
+		String value = LanguageManager.getInstance().getProperty(this.getId() + ".container-pool-size");
+		if(value == null || value.isEmpty()) {
+			return 0;
+		}
+		try {
+			return Math.max(0, Integer.parseInt(value.trim()));
+		} catch(NumberFormatException e) {
+			logger.warn("\"" + value + "\" is not a valid value for container-pool-size. Must be a whole number");
+		}
+		return 0;
+	}
+	
+	/**
+	 * @return the memory limit in MiB for this language's containers, from
+	 *         <code>[id].memory-limit</code> in languages.properties; null for
+	 *         no limit
+	 */
+	public Integer getMemoryLimit() {
+		return getPositiveIntegerProperty("memory-limit");
+	}
+	
+	/**
+	 * @return the number of CPUs this language's containers may use, from
+	 *         <code>[id].cpu-limit</code> in languages.properties (e.g. 1.5);
+	 *         null for no limit
+	 */
+	public Double getCpuLimit() {
+		String value = LanguageManager.getInstance().getProperty(this.getId() + ".cpu-limit");
+		if(value == null || value.isEmpty()) {
+			return null;
+		}
+		try {
+			double cpus = Double.parseDouble(value.trim());
+			return cpus > 0 ? cpus : null;
+		} catch(NumberFormatException e) {
+			logger.warn("\"" + value + "\" is not a valid value for cpu-limit. Must be a number");
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the maximum number of processes and threads in this language's
+	 *         containers, from <code>[id].pids-limit</code> in
+	 *         languages.properties; null for no limit
+	 */
+	public Integer getPidsLimit() {
+		return getPositiveIntegerProperty("pids-limit");
+	}
+	
+	/**
+	 * @return the size in MiB of a tmpfs to mount on /tmp in this language's
+	 *         containers, from <code>[id].tmpfs-size</code> in
+	 *         languages.properties; null to leave /tmp on the container's disk
+	 */
+	public Integer getTmpfsSize() {
+		return getPositiveIntegerProperty("tmpfs-size");
+	}
+	
+	/**
+	 * @return the size in MiB of a tmpfs to mount on the working directory of
+	 *         this language's containers, from
+	 *         <code>[id].work-dir-tmpfs-size</code> in languages.properties;
+	 *         null to leave it on the container's disk. This counts towards the
+	 *         container's memory limit.
+	 */
+	public Integer getWorkDirTmpfsSize() {
+		return getPositiveIntegerProperty("work-dir-tmpfs-size");
+	}
+	
+	/**
+	 * @return true if JUnit tests in this language's pooled containers should
+	 *         be run by a JVM that stays running in the container, from
+	 *         <code>[id].junit-runner</code> in languages.properties being
+	 *         "resident"; otherwise each run forks a new JVM. Off by default:
+	 *         the resident JVM runs the tests of every job owner in turn, so a
+	 *         test that gets past its security manager can tamper with the
+	 *         results of later jobs, where a forked JVM would end with its run
+	 */
+	public boolean isResidentJUnitRunner() {
+		String value = LanguageManager.getInstance().getProperty(this.getId() + ".junit-runner");
+		return value != null && value.trim().equalsIgnoreCase("resident");
+	}
+	
+	/**
+	 * @return how often a JUnit run that could use the resident JVM should
+	 *         fork one anyway, so the two can be compared, from
+	 *         <code>[id].junit-fork-sample</code> in languages.properties: 
+	 *         every n-th run; null to never fork when the resident JVM can be used
+	 */
+	public Integer getJUnitForkSample() {
+		return getPositiveIntegerProperty("junit-fork-sample");
+	}
+	
+	/**
+	 * @return true if code in this language's pooled containers should be
+	 *         compiled by the JVM that stays running in the container, from
+	 *         <code>[id].compiler</code> in languages.properties being
+	 *         "resident"; otherwise each build forks the compiler
+	 */
+	public boolean isResidentCompiler() {
+		String value = LanguageManager.getInstance().getProperty(this.getId() + ".compiler");
+		return value != null && value.trim().equalsIgnoreCase("resident");
+	}
+	
+	private Integer getPositiveIntegerProperty(String name) {
+		String value = LanguageManager.getInstance().getProperty(this.getId() + "." + name);
+		if(value == null || value.isEmpty()) {
+			return null;
+		}
+		try {
+			int number = Integer.parseInt(value.trim());
+			return number > 0 ? number : null;
+		} catch(NumberFormatException e) {
+			logger.warn("\"" + value + "\" is not a valid value for " + name + ". Must be a whole number");
+		}
+		return null;
+	}
+	
 	public String getImageName() {
 		return dockerBuildFile.getTag();
 	}
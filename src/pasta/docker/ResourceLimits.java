@@ -0,0 +1,158 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.docker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.github.dockerjava.api.model.HostConfig;
+
+/**
+ * The limits on the resources a container may use while running a test, so
+ * that one submission cannot starve every other job running on the host.
+ * <p>
+ * Any limit left null is not applied.
+ */
+public class ResourceLimits {
+	
+	private static final int CPU_PERIOD = 100000;
+	
+	private Integer memoryLimit;
+	private Double cpuLimit;
+	private Integer pidsLimit;
+	private Integer tmpfsSize;
+	private Integer workDirTmpfsSize;
+	
+	public ResourceLimits(Integer memoryLimit, Double cpuLimit, Integer pidsLimit, Integer tmpfsSize, Integer workDirTmpfsSize) {
+		this.memoryLimit = memoryLimit;
+		this.cpuLimit = cpuLimit;
+		this.pidsLimit = pidsLimit;
+		this.tmpfsSize = tmpfsSize;
+		this.workDirTmpfsSize = workDirTmpfsSize;
+	}
+	
+	/**
+	 * @param language the language
+	 * @return the limits configured for the language in languages.properties
+	 */
+	public static ResourceLimits forLanguage(Language language) {
+		return new ResourceLimits(language.getMemoryLimit(), language.getCpuLimit(), 
+				language.getPidsLimit(), language.getTmpfsSize(), language.getWorkDirTmpfsSize());
+	}
+	
+	/**
+	 * @return a copy of these limits with any non-null values given replacing
+	 *         the existing ones
+	 */
+	public ResourceLimits withOverrides(Integer memoryLimit, Double cpuLimit, Integer pidsLimit) {
+		return new ResourceLimits(
+				memoryLimit == null ? this.memoryLimit : memoryLimit, 
+				cpuLimit == null ? this.cpuLimit : cpuLimit, 
+				pidsLimit == null ? this.pidsLimit : pidsLimit, 
+				tmpfsSize, workDirTmpfsSize);
+	}
+	
+	/**
+	 * @return the memory limit in MiB
+	 */
+	public Integer getMemoryLimit() {
+		return memoryLimit;
+	}
+	/**
+	 * @return the number of CPUs the container may use, e.g. 0.5 for half of one CPU
+	 */
+	public Double getCpuLimit() {
+		return cpuLimit;
+	}
+	/**
+	 * @return the maximum number of processes and threads in the container
+	 */
+	public Integer getPidsLimit() {
+		return pidsLimit;
+	}
+	/**
+	 * @return the size in MiB of the tmpfs mounted on /tmp, or null for no tmpfs
+	 */
+	public Integer getTmpfsSize() {
+		return tmpfsSize;
+	}
+	/**
+	 * @return the size in MiB of the tmpfs mounted on the working directory,
+	 *         or null to keep the working directory on the container's disk
+	 */
+	public Integer getWorkDirTmpfsSize() {
+		return workDirTmpfsSize;
+	}
+	
+	void applyTo(HostConfig hostConfig) {
+		if(memoryLimit != null) {
+			long bytes = memoryLimit * 1024L * 1024L;
+			// Same as the memory limit, so the container cannot use swap
+			hostConfig.withMemory(bytes).withMemorySwap(bytes);
+		}
+		if(cpuLimit != null) {
+			hostConfig.withCpuPeriod(CPU_PERIOD).withCpuQuota((long) (cpuLimit * CPU_PERIOD));
+		}
+		if(pidsLimit != null) {
+			hostConfig.withPidsLimit(pidsLimit.longValue());
+		}
+		Map<String, String> tmpfs = new HashMap<>();
+		if(tmpfsSize != null) {
+			tmpfs.put("/tmp", "rw,exec,nosuid,mode=1777,size=" + tmpfsSize + "m");
+		}
+		if(workDirTmpfsSize != null) {
+			// The code is copied here from the source directory and built
+			// and run here, so this keeps all of that off the disk
+			tmpfs.put(DockerManager.WORK_DIR, "rw,exec,nosuid,mode=755,size=" + workDirTmpfsSize + "m");
+		}
+		if(!tmpfs.isEmpty()) {
+			hostConfig.withTmpFs(tmpfs);
+		}
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(!(obj instanceof ResourceLimits)) {
+			return false;
+		}
+		ResourceLimits other = (ResourceLimits) obj;
+		return Objects.equals(memoryLimit, other.memoryLimit) && 
+				Objects.equals(cpuLimit, other.cpuLimit) && 
+				Objects.equals(pidsLimit, other.pidsLimit) && 
+				Objects.equals(tmpfsSize, other.tmpfsSize) && 
+				Objects.equals(workDirTmpfsSize, other.workDirTmpfsSize);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hash(memoryLimit, cpuLimit, pidsLimit, tmpfsSize, workDirTmpfsSize);
+	}
+	
+	@Override
+	public String toString() {
+		return "memory=" + memoryLimit + "MiB, cpus=" + cpuLimit + ", pids=" + pidsLimit + ", tmpfs=" + tmpfsSize + "MiB, work dir tmpfs=" + workDirTmpfsSize + "MiB";
+	}
+}
@@ -0,0 +1,58 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.docker;
+
+/**
+ * The CPU time and memory used by a container while running a test, as read
+ * from the container's cgroup.
+ */
+public class ResourceUsage {
+	
+	private long cpuTime;
+	private Long peakMemory;
+	
+	public ResourceUsage(long cpuTime, Long peakMemory) {
+		this.cpuTime = cpuTime;
+		this.peakMemory = peakMemory;
+	}
+	
+	/**
+	 * @return the CPU time used in milliseconds, over all processes in the container
+	 */
+	public long getCpuTime() {
+		return cpuTime;
+	}
+	
+	/**
+	 * The highest memory use of the container while running the test, in
+	 * bytes. For containers that are reused between tests this is usually
+	 * sampled a few times a second, so very short peaks may be missed.
+	 * 
+	 * @return the peak memory use, or null if the kernel does not report it
+	 */
+	public Long getPeakMemory() {
+		return peakMemory;
+	}
+}
@@ -0,0 +1,42 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.domain;
+
+/**
+ * Names of the Hibernate second-level cache regions, as configured in
+ * <code>ehcache.xml</code>.
+ * <p>
+ * Template entities (assessments, unit tests, hand marking templates,
+ * release rules and reports) and their collections share the
+ * {@link #TEMPLATES} region. Cached list queries over those entities use
+ * {@link #TEMPLATE_QUERIES}.
+ */
+public final class CacheRegions {
+	public static final String TEMPLATES = "pasta.templates";
+	public static final String TEMPLATE_QUERIES = "pasta.templateQueries";
+	
+	private CacheRegions() {
+	}
+}
@@ -0,0 +1,71 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.domain;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A single-row counter that is advanced every time a template entity (see
+ * {@link CacheRegions}) is changed and the change has committed.
+ * <p>
+ * The second-level cache is local to each PASTA instance, so changes made
+ * on one node are not seen by the caches of the others. Each node compares
+ * the counter with the value it last saw before handling a request or
+ * running a job, and clears its template caches when it has moved on.
+ * 
+ * @see pasta.repository.TemplateCacheDAO
+ */
+@Entity
+@Table(name = "template_version")
+public class TemplateVersion implements Serializable {
+	private static final long serialVersionUID = 4418406731865925190L;
+	
+	public static final long ID = 1;
+
+	@Id
+	private long id = ID;
+
+	@Column(name = "latest", nullable = false)
+	private long latest;
+
+	public TemplateVersion() {}
+
+	public TemplateVersion(long latest) {
+		this.latest = latest;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public long getLatest() {
+		return latest;
+	}
+}
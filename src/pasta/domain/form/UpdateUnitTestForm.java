@@ -27,6 +27,7 @@ package pasta.domain.form;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Min;
 
 import org.hibernate.validator.constraints.Length;
@@ -57,6 +58,13 @@ public class UpdateUnitTestForm {
 	private Long advancedTimeout;
 	private Long blackBoxTimeout;
 	
+	@Min(1)
+	private Integer memoryLimit;
+	@DecimalMin("0.01")
+	private Double cpuLimit;
+	@Min(1)
+	private Integer pidsLimit;
+	
 	private CommonsMultipartFile file;
 	
 	private boolean allowAccessoryWrite;
@@ -79,6 +87,9 @@ public class UpdateUnitTestForm {
 		this.allowAccessoryWrite = base.isAllowAccessoryFileWrite();
 		this.advancedTimeout = base.getAdvancedTimeout();
 		this.blackBoxTimeout = base.getBlackBoxTimeout();
+		this.memoryLimit = base.getMemoryLimit();
+		this.cpuLimit = base.getCpuLimit();
+		this.pidsLimit = base.getPidsLimit();
 		
 		this.file = null;
 		this.accessoryFile = null;
@@ -115,6 +126,24 @@ public class UpdateUnitTestForm {
 	public void setBlackBoxTimeout(Long blackBoxTimeout) {
 		this.blackBoxTimeout = blackBoxTimeout;
 	}
+	public Integer getMemoryLimit() {
+		return memoryLimit;
+	}
+	public void setMemoryLimit(Integer memoryLimit) {
+		this.memoryLimit = memoryLimit;
+	}
+	public Double getCpuLimit() {
+		return cpuLimit;
+	}
+	public void setCpuLimit(Double cpuLimit) {
+		this.cpuLimit = cpuLimit;
+	}
+	public Integer getPidsLimit() {
+		return pidsLimit;
+	}
+	public void setPidsLimit(Integer pidsLimit) {
+		this.pidsLimit = pidsLimit;
+	}
 	public CommonsMultipartFile getFile() {
 		return file;
 	}
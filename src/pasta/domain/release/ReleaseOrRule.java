@@ -36,9 +36,12 @@ import javax.persistence.JoinTable;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.LazyCollection;
 import org.hibernate.annotations.LazyCollectionOption;
 
+import pasta.domain.CacheRegions;
 import pasta.domain.user.PASTAUser;
 
 /**
@@ -58,6 +61,7 @@ public class ReleaseOrRule extends ReleaseRule implements Serializable {
 		joinColumns=@JoinColumn(name = "rule_id"),
 		inverseJoinColumns=@JoinColumn(name = "or_rule_id"))
 	@LazyCollection(LazyCollectionOption.FALSE)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 	private List<ReleaseRule> rules;
 	
 	public ReleaseOrRule() {
@@ -33,6 +33,10 @@ import javax.persistence.Id;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import pasta.domain.CacheRegions;
 import pasta.domain.template.Assessment;
 import pasta.domain.user.PASTAUser;
 import pasta.util.ProjectProperties;
@@ -42,6 +46,7 @@ import pasta.util.ProjectProperties;
  * @version 1.0
  * @since 20 Apr 2015
  */
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 @Entity
 @Inheritance(strategy = InheritanceType.TABLE_PER_CLASS)
 public abstract class ReleaseRule implements Comparable<ReleaseRule>, Serializable {
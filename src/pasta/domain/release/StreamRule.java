@@ -36,9 +36,12 @@ import javax.persistence.Entity;
 import javax.persistence.JoinColumn;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.LazyCollection;
 import org.hibernate.annotations.LazyCollectionOption;
 
+import pasta.domain.CacheRegions;
 import pasta.domain.user.PASTAUser;
 
 /**
@@ -57,6 +60,7 @@ public class StreamRule extends ReleaseRule implements Serializable {
 	@CollectionTable(name = "rules_stream_content", joinColumns = @JoinColumn(name = "rule_id"))
 	@Column(name = "stream")
 	@LazyCollection(LazyCollectionOption.FALSE)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 	private Set<String> streams;
 	
 	public StreamRule() {
@@ -41,13 +41,17 @@ import javax.persistence.JoinColumn;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.LazyCollection;
 import org.hibernate.annotations.LazyCollectionOption;
 
+import pasta.domain.CacheRegions;
 import pasta.domain.UserPermissionLevel;
 
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 @Entity
 @Table(name = "reports")
 public class Report {
@@ -66,6 +70,7 @@ public class Report {
 	@CollectionTable (name = "report_default_permissions", joinColumns=@JoinColumn(name = "report_id"))
 	@Column(name = "permission", nullable = false)
 	@Fetch (FetchMode.SELECT)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 	private Set<UserPermissionLevel> defaultPermissions;
 	
 	@OneToMany(
@@ -74,6 +79,7 @@ public class Report {
 			orphanRemoval = true
 	)
 	@LazyCollection(LazyCollectionOption.FALSE)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 	private Set<ReportPermission> permissions;
 	
 	public Report() {
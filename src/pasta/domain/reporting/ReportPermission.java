@@ -36,9 +36,14 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import pasta.domain.CacheRegions;
 import pasta.domain.UserPermissionLevel;
 import pasta.domain.template.Assessment;
 
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 @Entity
 @Table(name = "report_permissions")
 public class ReportPermission {
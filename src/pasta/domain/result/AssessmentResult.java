@@ -49,6 +49,8 @@ import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.Size;
 
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.LazyCollection;
 import org.hibernate.annotations.LazyCollectionOption;
 
@@ -99,10 +101,12 @@ public class AssessmentResult extends BaseEntity implements Serializable, Compar
 	
 	@OneToMany (cascade = CascadeType.ALL, orphanRemoval = true, mappedBy = "assessmentResult")
 	@LazyCollection(LazyCollectionOption.FALSE)
+	@Fetch (FetchMode.SUBSELECT)
 	private List<UnitTestResult> unitTests = new ArrayList<UnitTestResult>();
 	
 	@OneToMany (cascade = CascadeType.ALL, orphanRemoval = true, mappedBy = "assessmentResult")
 	@LazyCollection(LazyCollectionOption.FALSE)
+	@Fetch (FetchMode.SUBSELECT)
 	private List<HandMarkingResult> handMarkingResults = new ArrayList<HandMarkingResult>();
 	
 	@ManyToOne
@@ -25,6 +25,7 @@ SOFTWARE.
 package pasta.domain.result;
 
 import java.io.Serializable;
+import java.util.Date;
 
 import javax.persistence.Column;
 import javax.persistence.Embeddable;
@@ -34,6 +35,8 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
 
 import pasta.domain.template.Assessment;
 import pasta.domain.user.PASTAUser;
@@ -126,11 +129,25 @@ public class AssessmentResultSummary implements Serializable, Comparable<Assessm
 	@Column(name = "percent")
 	private double percent;
 
+	/**
+	 * When the percentage was last set.
+	 */
+	@Column(name = "last_updated")
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date lastUpdated;
+
+	/**
+	 * The {@link AssessmentResultSummaryVersion} counter value when this was
+	 * last saved; null for summaries saved before the counter existed.
+	 */
+	@Column(name = "change_version")
+	private Long changeVersion;
+
 	public AssessmentResultSummary() {}
 
 	public AssessmentResultSummary(PASTAUser user, Assessment assessment, double percentage) {
 		id = new AssessmentResultSummaryId(user, assessment);
-		this.percent = percentage;
+		setPercentage(percentage);
 	}
 
 	public PASTAUser getUser() {
@@ -143,12 +160,25 @@ public class AssessmentResultSummary implements Serializable, Comparable<Assessm
 
 	public void setPercentage(double percentage) {
 		this.percent = percentage;
+		this.lastUpdated = new Date();
 	}
 
 	public double getPercentage() {
 		return percent;
 	}
 
+	public Date getLastUpdated() {
+		return lastUpdated;
+	}
+
+	public Long getChangeVersion() {
+		return changeVersion;
+	}
+
+	public void setChangeVersion(Long changeVersion) {
+		this.changeVersion = changeVersion;
+	}
+
 	@Override
 	public int compareTo(AssessmentResultSummary other) {
 		return id.compareTo(other.id);
@@ -24,64 +24,334 @@ SOFTWARE.
 
 package pasta.domain.result;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
-import pasta.domain.user.PASTAUser;
+import pasta.domain.template.Assessment;
+import pasta.domain.template.HandMarking;
+import pasta.domain.template.WeightedField;
+import pasta.domain.template.WeightedHandMarking;
+import pasta.domain.template.WeightedUnitTest;
 import pasta.repository.ResultDAO;
+import pasta.service.AssessmentManager;
+import pasta.service.PASTAOptions;
 import pasta.service.ResultManager;
 import pasta.service.UserManager;
 import pasta.util.ProjectProperties;
 
+/**
+ * Recalculates every {@link AssessmentResultSummary} from the stored results.
+ * <p>
+ * Assessments are recalculated in parallel (option
+ * <code>grades.recalculation.threads</code>), each in chunks of users. For
+ * each chunk the percentages are worked out from projection queries (latest
+ * result ids, unit test pass counts and hand marking cells) rather than by
+ * loading whole results, and the summaries are written with a single batch
+ * upsert, so memory use does not grow with the size of the cohort.
+ * <p>
+ * Assessments that have been finished are recorded in a progress file. A new
+ * run clears the file and recalculates everything; if a run is interrupted,
+ * it can be resumed explicitly, which skips the assessments it finished.
+ */
 public class AssessmentResultSummaryCalculator {
 	private static Logger logger = Logger.getLogger(AssessmentResultSummaryCalculator.class);
 	
+	private static final int CHUNK_SIZE = 500;
+	
 	private List<String> output;
 	Boolean done = null;
 	
 	private UserManager userManager;
+	private AssessmentManager assessmentManager;
 	private ResultManager resultManager;
 	
-	public void recacheResultSummaries(UserManager userManager, ResultManager resultManager) {
+	/**
+	 * Recalculate the result summaries.
+	 * 
+	 * @param resume if true, skip the assessments finished by an interrupted
+	 *        run (see {@link #hasUnfinishedRun()}); otherwise start again from
+	 *        scratch
+	 */
+	public void recacheResultSummaries(UserManager userManager, AssessmentManager assessmentManager, ResultManager resultManager, boolean resume) {
 		if(done != null) {
 			return;
 		}
 		output = Collections.synchronizedList(new LinkedList<String>());
 		this.userManager = userManager;
+		this.assessmentManager = assessmentManager;
 		this.resultManager = resultManager;
 		done = false;
 		
-		doRecache();
+		try {
+			doRecache(resume);
+		} catch(Exception e) {
+			logger.error("Error recalculating result summaries", e);
+			output.add("Error recalculating results: " + e);
+		}
 		
 		done = true;
 	}
 	
-	private void doRecache() {
-		Collection<PASTAUser> allUsers = userManager.getUserList();
+	private void doRecache(boolean resume) {
+		List<Long> userIds = userManager.getActiveUserIds();
+		List<Assessment> assessments = new ArrayList<>(assessmentManager.getAssessmentList());
+		
+		File progressFile = getProgressFile();
+		Set<Long> completed;
+		if(resume) {
+			completed = readProgress(progressFile);
+		} else {
+			FileUtils.deleteQuietly(progressFile);
+			completed = Collections.emptySet();
+		}
+		List<Assessment> remaining = new ArrayList<>();
+		for(Assessment assessment : assessments) {
+			if(!completed.contains(assessment.getId())) {
+				remaining.add(assessment);
+			}
+		}
+		if(remaining.size() < assessments.size()) {
+			output.add("Resuming previous run; " + (assessments.size() - remaining.size()) 
+					+ " assessments are already done.");
+		}
+		output.add("Calculating results for " + userIds.size() + " users across " 
+				+ remaining.size() + " assessments...");
+		
+		final AtomicInteger finished = new AtomicInteger(assessments.size() - remaining.size());
+		final int total = assessments.size();
+		int threads = Math.max(1, PASTAOptions.instance().getInt("grades.recalculation.threads", 4));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> futures = new LinkedList<>();
+		for(final Assessment assessment : remaining) {
+			futures.add(executor.submit(() -> {
+				int count = recalculate(assessment, userIds);
+				markCompleted(progressFile, assessment.getId());
+				output.add("Saved " + count + " results for " + assessment.getName() 
+						+ " (" + finished.incrementAndGet() + " of " + total + ")");
+				return null;
+			}));
+		}
+		executor.shutdown();
 		
-		output.add("Calculating all results...");
-		Map<PASTAUser, Map<Long, AssessmentResult>> calculatedResults = resultManager.getLatestResultsIncludingGroupQuick(allUsers);
+		int failed = 0;
+		for(Future<?> future : futures) {
+			try {
+				future.get();
+			} catch(ExecutionException e) {
+				failed++;
+				logger.error("Error recalculating result summaries", e.getCause());
+				output.add("Error: " + e.getCause());
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				executor.shutdownNow();
+				output.add("Interrupted; resume the run to continue.");
+				return;
+			}
+		}
+		if(failed == 0) {
+			FileUtils.deleteQuietly(progressFile);
+		} else {
+			output.add(failed + " assessments failed; resume the run to retry them.");
+		}
 		
+		output.add("Reloading grade matrix...");
+		int differences = resultManager.rebuildGradeMatrix();
+		output.add("Grade matrix reloaded; " + differences + " results were out of date.");
+	}
+	
+	/**
+	 * Recalculate and save the summaries for one assessment.
+	 * 
+	 * @return the number of summaries saved
+	 */
+	private int recalculate(Assessment assessment, List<Long> userIds) {
 		ResultDAO dao = ProjectProperties.getInstance().getResultDAO();
+		AssessmentWeights weights = new AssessmentWeights(assessment);
+		long assessmentId = assessment.getId();
+		int count = 0;
 		
-		for(PASTAUser user : allUsers) {
-			output.add("Saving results for " + user.getUsername());
-			Map<Long, AssessmentResult> results = calculatedResults.get(user);
-			for(AssessmentResult result : results.values()) {
-				AssessmentResultSummary summary = new AssessmentResultSummary(user, result.getAssessment(), result.getPercentage());
-				dao.saveOrUpdate(summary);
+		for(int from = 0; from < userIds.size(); from += CHUNK_SIZE) {
+			List<Long> chunk = userIds.subList(from, Math.min(userIds.size(), from + CHUNK_SIZE));
+			
+			Map<Long, Long> groups = new HashMap<>();
+			for(Object[] row : userManager.getGroupMemberships(assessmentId, chunk)) {
+				groups.put((Long) row[0], (Long) row[1]);
+			}
+			Set<Long> owners = new HashSet<>(chunk);
+			owners.addAll(groups.values());
+			
+			Map<Long, Long> latestResults = new HashMap<>();
+			for(Object[] row : dao.getLatestResultIds(assessmentId, owners)) {
+				latestResults.put((Long) row[0], (Long) row[1]);
 			}
+			Map<Long, Double> marks = weights.getRawMarks(dao, latestResults.values());
+			
+			Map<Long, Double> percentages = new HashMap<>();
+			for(Long userId : chunk) {
+				Long individualResult = latestResults.get(userId);
+				Long groupId = groups.get(userId);
+				Long groupResult = groupId == null ? null : latestResults.get(groupId);
+				if(individualResult == null && groupResult == null) {
+					continue;
+				}
+				// Same as CombinedAssessmentResult: marks from both results count
+				double raw = 0;
+				if(individualResult != null) {
+					raw += marks.getOrDefault(individualResult, 0.0);
+				}
+				if(groupResult != null) {
+					raw += marks.getOrDefault(groupResult, 0.0);
+				}
+				percentages.put(userId, weights.getPercentage(raw));
+			}
+			dao.upsertResultSummaries(assessmentId, percentages);
+			count += percentages.size();
+		}
+		return count;
+	}
+	
+	/**
+	 * The weights of the unit tests and hand marking of an assessment, used to
+	 * work out percentages the same way as
+	 * {@link AssessmentResult#getPercentage()}.
+	 */
+	private static class AssessmentWeights {
+		private final Map<Long, Double> unitTestWeights = new HashMap<>();
+		private final Map<Long, Double> handMarkingWeights = new HashMap<>();
+		private final Map<Long, Map<Long, Double>> rowWeights = new HashMap<>();
+		private final Map<Long, Map<Long, Double>> columnWeights = new HashMap<>();
+		private double maxWeight;
+		
+		public AssessmentWeights(Assessment assessment) {
+			for(WeightedUnitTest test : assessment.getAllUnitTests()) {
+				maxWeight += test.getWeight();
+				if(test.getTest() != null) {
+					unitTestWeights.putIfAbsent(test.getTest().getId(), test.getWeight());
+				}
+			}
+			for(WeightedHandMarking marking : assessment.getHandMarking()) {
+				maxWeight += marking.getWeight();
+				HandMarking handMarking = marking.getHandMarking();
+				if(handMarking == null || handMarkingWeights.containsKey(handMarking.getId())) {
+					continue;
+				}
+				handMarkingWeights.put(handMarking.getId(), marking.getWeight());
+				rowWeights.put(handMarking.getId(), getWeights(handMarking.getRowHeader()));
+				columnWeights.put(handMarking.getId(), getWeights(handMarking.getColumnHeader()));
+			}
+		}
+		
+		private static Map<Long, Double> getWeights(List<WeightedField> fields) {
+			Map<Long, Double> weights = new HashMap<>();
+			for(WeightedField field : fields) {
+				weights.putIfAbsent(field.getId(), field.getWeight());
+			}
+			return weights;
+		}
+		
+		public double getPercentage(double rawMarks) {
+			return maxWeight == 0 ? 0 : rawMarks / maxWeight;
+		}
+		
+		/**
+		 * @return the weighted marks (before dividing by the total weight) for
+		 *         each of the given results
+		 */
+		public Map<Long, Double> getRawMarks(ResultDAO dao, Collection<Long> resultIds) {
+			Map<Long, Double> marks = new HashMap<>();
+			for(Object[] row : dao.getUnitTestResultScores(resultIds)) {
+				Double weight = row[1] == null ? null : unitTestWeights.get(row[1]);
+				long passed = row[2] == null ? 0 : ((Number) row[2]).longValue();
+				long total = ((Number) row[3]).longValue();
+				if(weight != null && total > 0) {
+					marks.merge((Long) row[0], (double) passed / total * weight, Double::sum);
+				}
+			}
+			
+			// hand marking result id -> {assessment result id, hand marking id, percentage}
+			Map<Long, Object[]> handMarkingResults = new HashMap<>();
+			for(Object[] row : dao.getHandMarkingResultCells(resultIds)) {
+				Long handMarkingId = (Long) row[2];
+				Double rowWeight = rowWeights.containsKey(handMarkingId) ? rowWeights.get(handMarkingId).get(row[3]) : null;
+				Double columnWeight = columnWeights.containsKey(handMarkingId) ? columnWeights.get(handMarkingId).get(row[4]) : null;
+				if(rowWeight == null || columnWeight == null) {
+					continue;
+				}
+				Object[] result = handMarkingResults.get(row[1]);
+				if(result == null) {
+					result = new Object[] {row[0], handMarkingId, 0.0};
+					handMarkingResults.put((Long) row[1], result);
+				}
+				result[2] = (Double) result[2] + rowWeight * columnWeight;
+			}
+			for(Object[] result : handMarkingResults.values()) {
+				double percentage = Math.max(0, Math.min((Double) result[2], 1.0));
+				marks.merge((Long) result[0], percentage * handMarkingWeights.get(result[1]), Double::sum);
+			}
+			return marks;
+		}
+	}
+	
+	/**
+	 * @return true if an earlier run was interrupted or had failures, so there
+	 *         is something to resume
+	 */
+	public static boolean hasUnfinishedRun() {
+		return getProgressFile().exists();
+	}
+	
+	private static File getProgressFile() {
+		return new File(ProjectProperties.getInstance().getProjectLocation(), 
+				"cache" + File.separator + "grade-recalculation.progress");
+	}
+	
+	private static Set<Long> readProgress(File progressFile) {
+		Set<Long> completed = new HashSet<>();
+		if(!progressFile.exists()) {
+			return completed;
+		}
+		try {
+			for(String line : FileUtils.readLines(progressFile, StandardCharsets.UTF_8)) {
+				try { completed.add(Long.parseLong(line.trim())); } catch (NumberFormatException e) {}
+			}
+		} catch(IOException e) {
+			logger.warn("Could not read grade recalculation progress from " + progressFile, e);
+		}
+		return completed;
+	}
+	
+	private static synchronized void markCompleted(File progressFile, long assessmentId) {
+		try {
+			FileUtils.writeStringToFile(progressFile, assessmentId + System.lineSeparator(), StandardCharsets.UTF_8, true);
+		} catch(IOException e) {
+			logger.warn("Could not record grade recalculation progress in " + progressFile, e);
 		}
 	}
 
 	public List<String> getOutputSinceLastCall() {
-		List<String> outSinceLastCall = new LinkedList<String>(output);
-		output.clear();
+		List<String> outSinceLastCall;
+		synchronized(output) {
+			outSinceLastCall = new LinkedList<String>(output);
+			output.clear();
+		}
 		return outSinceLastCall;
 	}
 	
@@ -54,6 +54,9 @@ public class CombinedAssessmentResult extends AssessmentResult {
 
 	private static final long serialVersionUID = -8539486531742799416L;
 	
+	private Integer submissionsMade;
+	private Integer submissionsMadeThatCount;
+	
 	public CombinedAssessmentResult(PASTAUser user, AssessmentResult... results) {
 		this.setWaitingToRun(false);
 		this.setUser(user);
@@ -78,6 +81,30 @@ public class CombinedAssessmentResult extends AssessmentResult {
 		}
 	}
 
+	/**
+	 * Use already known submission counts instead of counting them again
+	 * when asked.
+	 * 
+	 * @param submissionsMade the number of submissions made by the user and
+	 *            their group
+	 * @param submissionsMadeThatCount the number of those submissions that
+	 *            count towards the submission limit
+	 */
+	public void setSubmissionCounts(int submissionsMade, int submissionsMadeThatCount) {
+		this.submissionsMade = submissionsMade;
+		this.submissionsMadeThatCount = submissionsMadeThatCount;
+	}
+	
+	@Override
+	public int getSubmissionsMade() {
+		return submissionsMade == null ? super.getSubmissionsMade() : submissionsMade;
+	}
+	
+	@Override
+	public int getSubmissionsMadeThatCount() {
+		return submissionsMadeThatCount == null ? super.getSubmissionsMadeThatCount() : submissionsMadeThatCount;
+	}
+
 	@Override
 	public Long getId() {
 		throw new IllegalAccessError("Cannot access property 'ID' of a combined assessment result");
@@ -47,6 +47,8 @@ import javax.persistence.OrderBy;
 import javax.persistence.Table;
 import javax.validation.constraints.Size;
 
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.LazyCollection;
 import org.hibernate.annotations.LazyCollectionOption;
 
@@ -90,6 +92,7 @@ public class UnitTestResult extends BaseEntity implements Serializable, Comparab
 	@OneToMany (cascade = CascadeType.ALL, orphanRemoval = true, mappedBy = "unitTestResult")
 	@OrderBy ("testName")
 	@LazyCollection (LazyCollectionOption.FALSE)
+	@Fetch (FetchMode.SUBSELECT)
 	private List<UnitTestCaseResult> testCases = new ArrayList<>();
 	
 	@Column (name = "internal_error")
@@ -123,6 +126,12 @@ public class UnitTestResult extends BaseEntity implements Serializable, Comparab
 	@Column (name = "runtime_output", length = RUNTIME_OUTPUT_MAX_LENGTH)
 	@Size (max = RUNTIME_OUTPUT_MAX_LENGTH)
 	private String fullOutput;
+	
+	@Column (name = "cpu_time")
+	private Long cpuTime;
+	
+	@Column (name = "peak_memory")
+	private Long peakMemory;
 
 	public UnitTest getTest() {
 		return getTesterTest() == null ? (getWeightedUnitTest() == null ? null : getWeightedUnitTest().getTest()) : getTesterTest();
@@ -265,6 +274,28 @@ public class UnitTestResult extends BaseEntity implements Serializable, Comparab
 		this.fullOutput = PASTAUtil.truncate(fullOutput, RUNTIME_OUTPUT_MAX_LENGTH);
 	}
 
+	/**
+	 * @return the CPU time in milliseconds used by the container(s) running
+	 *         this test, or null if not known
+	 */
+	public Long getCpuTime() {
+		return cpuTime;
+	}
+	public void setCpuTime(Long cpuTime) {
+		this.cpuTime = cpuTime;
+	}
+
+	/**
+	 * @return the peak memory use in bytes of the container(s) running this
+	 *         test, or null if not known
+	 */
+	public Long getPeakMemory() {
+		return peakMemory;
+	}
+	public void setPeakMemory(Long peakMemory) {
+		this.peakMemory = peakMemory;
+	}
+
 	public double getPercentage(){
 		if(testCases == null || testCases.isEmpty()){
 			return 0;
@@ -344,6 +375,12 @@ public class UnitTestResult extends BaseEntity implements Serializable, Comparab
 		this.setInternalError(internalError || other.internalError);
 		this.setRuntimeErrors(combineStrings(runtimeErrors, other.runtimeErrors));
 		this.setFullOutput(combineStrings(fullOutput, other.fullOutput));
+		if(other.cpuTime != null) {
+			this.setCpuTime(cpuTime == null ? other.cpuTime : cpuTime + other.cpuTime);
+		}
+		if(other.peakMemory != null) {
+			this.setPeakMemory(peakMemory == null ? other.peakMemory : Math.max(peakMemory, other.peakMemory));
+		}
 		
 		if(this.getTestCases() == null && other.getTestCases() != null) {
 			this.testCases = new LinkedList<UnitTestCaseResult>();
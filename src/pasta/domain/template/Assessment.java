@@ -48,12 +48,15 @@ import javax.persistence.OneToOne;
 import javax.persistence.Table;
 import javax.validation.constraints.Size;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.LazyCollection;
 import org.hibernate.annotations.LazyCollectionOption;
 
 import pasta.docker.Language;
 import pasta.docker.LanguageManager;
 import pasta.domain.BaseEntity;
+import pasta.domain.CacheRegions;
 import pasta.domain.VerboseName;
 import pasta.domain.ratings.AssessmentRating;
 import pasta.domain.release.ReleaseAllResultsRule;
@@ -119,6 +122,7 @@ import pasta.util.ProjectProperties;
  * @since 2012-11-13
  *
  */
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 @Entity
 @Table (name = "assessments")
 @VerboseName("assessment")
@@ -158,6 +162,7 @@ public class Assessment extends BaseEntity implements Comparable<Assessment> {
 			mappedBy = "assessment"
 	)
 	@LazyCollection(LazyCollectionOption.FALSE)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 	private Set<WeightedUnitTest> unitTests = new TreeSet<WeightedUnitTest>();
 	
 	@OneToMany (
@@ -166,12 +171,14 @@ public class Assessment extends BaseEntity implements Comparable<Assessment> {
 			mappedBy = "assessment"
 	)
 	@LazyCollection(LazyCollectionOption.FALSE)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 	private Set<WeightedHandMarking> handMarking = new TreeSet<WeightedHandMarking>();
 	
 	@ElementCollection
 	@JoinTable(name = "assessment_languages", joinColumns = @JoinColumn(name = "assessment_id"))
 	@Column(name = "language")
 	@LazyCollection(LazyCollectionOption.FALSE)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 	private Set<Language> submissionLanguages = new TreeSet<Language>();
 	
 	@Column (name="group_lock_date")
@@ -48,6 +48,10 @@ public class BlackBoxOptions extends BaseEntity {
 	@Column(name = "gcc_command_line_args")
 	private String gccCommandLineArgs;
 	
+	// Nullable so the column can be added to existing tables
+	@Column(name = "parallel_test_cases")
+	private Boolean parallelTestCases;
+	
 	@OneToOne
 	@OnDelete(action = OnDeleteAction.CASCADE)
 	@JoinColumn (name="unit_test_id")
@@ -56,6 +60,7 @@ public class BlackBoxOptions extends BaseEntity {
 	public BlackBoxOptions() {
 		detailedErrors = true;
 		gccCommandLineArgs = "-w -std=c99";
+		parallelTestCases = false;
 	}
 	
 	public BlackBoxOptions(BlackBoxOptions copy) {
@@ -68,6 +73,7 @@ public class BlackBoxOptions extends BaseEntity {
 		}
 		this.detailedErrors = copy.detailedErrors;
 		this.gccCommandLineArgs = copy.gccCommandLineArgs;
+		this.parallelTestCases = copy.parallelTestCases;
 	}
 	
 	public UnitTest getTest() {
@@ -93,4 +99,16 @@ public class BlackBoxOptions extends BaseEntity {
 	public void setGccCommandLineArgs(String gccCommandLineArgs) {
 		this.gccCommandLineArgs = gccCommandLineArgs;
 	}
+
+	/**
+	 * @return whether input/output test cases are run concurrently rather than
+	 *         one after another
+	 */
+	public boolean isParallelTestCases() {
+		return parallelTestCases != null && parallelTestCases;
+	}
+
+	public void setParallelTestCases(boolean parallelTestCases) {
+		this.parallelTestCases = parallelTestCases;
+	}
 }
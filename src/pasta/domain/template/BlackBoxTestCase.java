@@ -28,7 +28,11 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import pasta.domain.BaseEntity;
+import pasta.domain.CacheRegions;
 import pasta.domain.VerboseName;
 
 /**
@@ -36,6 +40,7 @@ import pasta.domain.VerboseName;
  * @version 1.0
  * @since 19 Jun 2015
  */
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 @Entity
 @Table (name = "black_box_test_cases")
 @VerboseName("black box test case")
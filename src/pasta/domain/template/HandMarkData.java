@@ -31,9 +31,14 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import pasta.domain.BaseEntity;
+import pasta.domain.CacheRegions;
 import pasta.domain.VerboseName;
 
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 @Entity
 @Table (name = "hand_marking_data")
 @VerboseName(value = "hand-marking datum", plural = "hand-marking data")
@@ -39,10 +39,13 @@ import javax.persistence.OrderBy;
 import javax.persistence.OrderColumn;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.LazyCollection;
 import org.hibernate.annotations.LazyCollectionOption;
 
 import pasta.domain.BaseEntity;
+import pasta.domain.CacheRegions;
 import pasta.domain.VerboseName;
 
 /**
@@ -69,6 +72,7 @@ import pasta.domain.VerboseName;
  * @since 2012-11-13
  *
  */
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 @Entity
 @Table (name = "hand_markings")
 @VerboseName("hand marking module")
@@ -88,6 +92,7 @@ public class HandMarking extends BaseEntity implements Comparable<HandMarking> {
 		inverseJoinColumns=@JoinColumn(name="weighted_field_id")
 	)
 	@LazyCollection(LazyCollectionOption.FALSE)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 	private List<WeightedField> columnHeader = new ArrayList<WeightedField>();
 	
 	@OneToMany(
@@ -96,6 +101,7 @@ public class HandMarking extends BaseEntity implements Comparable<HandMarking> {
 			mappedBy = "handMarking"
 			)
 	@LazyCollection(LazyCollectionOption.FALSE)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 	private List<HandMarkData> data = new ArrayList<HandMarkData>();
 	
 	@OneToMany(
@@ -108,6 +114,7 @@ public class HandMarking extends BaseEntity implements Comparable<HandMarking> {
 	)
     @OrderColumn(name = "row_index")
 	@LazyCollection(LazyCollectionOption.FALSE)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 	private List<WeightedField> rowHeader = new ArrayList<WeightedField>();
 	
 	public String getName() {
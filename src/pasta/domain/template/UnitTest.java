@@ -39,10 +39,13 @@ import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.LazyCollection;
 import org.hibernate.annotations.LazyCollectionOption;
 
 import pasta.domain.BaseEntity;
+import pasta.domain.CacheRegions;
 import pasta.domain.VerboseName;
 import pasta.domain.result.UnitTestCaseResult;
 import pasta.domain.result.UnitTestResult;
@@ -67,6 +70,7 @@ import pasta.util.ProjectProperties;
  * @since 2012-11-13
  */
 
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 @Entity
 @Table (name = "unit_tests")
 @VerboseName("unit test module")
@@ -89,6 +93,15 @@ public class UnitTest extends BaseEntity implements Comparable<UnitTest> {
 	@Column (name = "advanced_timeout")
 	private Long advancedTimeout;
 	
+	@Column (name = "memory_limit")
+	private Integer memoryLimit;
+	
+	@Column (name = "cpu_limit")
+	private Double cpuLimit;
+	
+	@Column (name = "pids_limit")
+	private Integer pidsLimit;
+	
 	@Column (name = "main_class_name")
 	private String mainClassName;
 	
@@ -104,6 +117,7 @@ public class UnitTest extends BaseEntity implements Comparable<UnitTest> {
 	@OneToMany (cascade = CascadeType.ALL, orphanRemoval = true)
 	@JoinColumn (name="unit_test_id")
 	@LazyCollection(LazyCollectionOption.FALSE)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 	private List<BlackBoxTestCase> testCases;
 	
 	@OneToOne (cascade = CascadeType.ALL, orphanRemoval = true, mappedBy = "test")
@@ -126,6 +140,9 @@ public class UnitTest extends BaseEntity implements Comparable<UnitTest> {
 		this.name = name;
 		this.blackBoxTimeout = null;
 		this.advancedTimeout = null;
+		this.memoryLimit = null;
+		this.cpuLimit = null;
+		this.pidsLimit = null;
 		this.tested = tested;
 		this.submissionCodeRoot = "";
 		this.testCases = new ArrayList<BlackBoxTestCase>();
@@ -307,6 +324,40 @@ public class UnitTest extends BaseEntity implements Comparable<UnitTest> {
 		this.advancedTimeout = advancedTimeout;
 	}
 
+	/**
+	 * @return the memory limit in MiB for containers running this test, or
+	 *         null to use the limit for the submission's language
+	 */
+	public Integer getMemoryLimit() {
+		return memoryLimit;
+	}
+	public void setMemoryLimit(Integer memoryLimit) {
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * @return the number of CPUs containers running this test may use, or
+	 *         null to use the limit for the submission's language
+	 */
+	public Double getCpuLimit() {
+		return cpuLimit;
+	}
+	public void setCpuLimit(Double cpuLimit) {
+		this.cpuLimit = cpuLimit;
+	}
+
+	/**
+	 * @return the maximum number of processes and threads in containers
+	 *         running this test, or null to use the limit for the submission's
+	 *         language
+	 */
+	public Integer getPidsLimit() {
+		return pidsLimit;
+	}
+	public void setPidsLimit(Integer pidsLimit) {
+		this.pidsLimit = pidsLimit;
+	}
+
 	public boolean hasBlackBoxTests() {
 		return !getTestCases().isEmpty();
 	}
@@ -35,7 +35,11 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import pasta.domain.BaseEntity;
+import pasta.domain.CacheRegions;
 import pasta.domain.VerboseName;
 import pasta.domain.result.UnitTestResult;
 
@@ -54,6 +58,7 @@ import pasta.domain.result.UnitTestResult;
  *
  */
 
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEMPLATES)
 @Entity
 @Table (name = "weighted_unit_tests")
 @VerboseName("weighted unit test module")
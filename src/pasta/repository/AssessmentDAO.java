@@ -39,6 +39,7 @@ import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import pasta.domain.CacheRegions;
 import pasta.domain.form.NewHandMarkingForm;
 import pasta.domain.result.DueDateComparator;
 import pasta.domain.template.Assessment;
@@ -277,7 +278,11 @@ public class AssessmentDAO extends BaseDAO {
 	
 	@SuppressWarnings("unchecked")
 	public List<Assessment> getAllAssessments() {
-		return sessionFactory.getCurrentSession().createCriteria(Assessment.class).list();
+		return sessionFactory.getCurrentSession()
+				.createCriteria(Assessment.class)
+				.setCacheable(true)
+				.setCacheRegion(CacheRegions.TEMPLATE_QUERIES)
+				.list();
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -285,6 +290,8 @@ public class AssessmentDAO extends BaseDAO {
 		return sessionFactory.getCurrentSession()
 				.createCriteria(Assessment.class)
 				.setProjection(Projections.property("id"))
+				.setCacheable(true)
+				.setCacheRegion(CacheRegions.TEMPLATE_QUERIES)
 				.list();
 	}
 	
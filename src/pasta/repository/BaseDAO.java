@@ -30,12 +30,16 @@ import javax.persistence.EntityManager;
 
 import org.apache.log4j.Logger;
 import org.hibernate.Criteria;
+import org.hibernate.Hibernate;
 import org.hibernate.ReplicationMode;
 import org.hibernate.SessionFactory;
+import org.hibernate.annotations.Cache;
 import org.hibernate.criterion.Restrictions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import pasta.domain.BaseEntity;
 
@@ -67,8 +71,32 @@ public class BaseDAO {
 	
 	public void delete(BaseEntity entity) {
 		String desc = entity.toString();
+		boolean cached = Hibernate.getClass(entity).isAnnotationPresent(Cache.class);
 		sessionFactory.getCurrentSession().delete(entity);
 		logger.info("Deleted " + desc);
+		if(cached) {
+			evictCachesAfterCommit();
+		}
+	}
+	
+	/**
+	 * Deleting a cached template can cascade to rows held in the cached
+	 * collections of other templates (e.g. removing a unit test removes it
+	 * from every assessment using it), which Hibernate does not evict by
+	 * itself. Template deletes are rare, so the whole cache is cleared once
+	 * the delete has committed.
+	 */
+	private void evictCachesAfterCommit() {
+		if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+			sessionFactory.getCache().evictAllRegions();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				sessionFactory.getCache().evictAllRegions();
+			}
+		});
 	}
 	
 	public BaseEntity get(Class<? extends BaseEntity> clazz, Long id) {
@@ -31,6 +31,7 @@ import org.apache.commons.logging.LogFactory;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import pasta.domain.CacheRegions;
 import pasta.domain.template.HandMarking;
 import pasta.domain.template.WeightedField;
 import pasta.domain.template.WeightedHandMarking;
@@ -43,7 +44,11 @@ public class HandMarkingDAO extends BaseDAO {
 	
 	@SuppressWarnings("unchecked")
 	public List<HandMarking> getAllHandMarkings() {
-		return sessionFactory.getCurrentSession().createCriteria(HandMarking.class).list();
+		return sessionFactory.getCurrentSession()
+				.createCriteria(HandMarking.class)
+				.setCacheable(true)
+				.setCacheRegion(CacheRegions.TEMPLATE_QUERIES)
+				.list();
 	}
 
 	public HandMarking getHandMarking(long id) {
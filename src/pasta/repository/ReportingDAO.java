@@ -34,6 +34,7 @@ import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import pasta.domain.CacheRegions;
 import pasta.domain.UserPermissionLevel;
 import pasta.domain.reporting.Report;
 import pasta.domain.reporting.ReportPermission;
@@ -51,7 +52,11 @@ public class ReportingDAO {
 	
 	@SuppressWarnings("unchecked")
 	public List<Report> getAllReports() {
-		return sessionFactory.getCurrentSession().createCriteria(Report.class).list();
+		return sessionFactory.getCurrentSession()
+				.createCriteria(Report.class)
+				.setCacheable(true)
+				.setCacheRegion(CacheRegions.TEMPLATE_QUERIES)
+				.list();
 	}
 	
 	public Report getReportById(String id) {
@@ -25,24 +25,25 @@ SOFTWARE.
 package pasta.repository;
 
 import java.io.File;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
-import org.hibernate.SQLQuery;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
@@ -53,13 +54,11 @@ import org.hibernate.criterion.Subqueries;
 import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
+import pasta.domain.UserPermissionLevel;
 import pasta.domain.result.AssessmentResult;
 import pasta.domain.result.AssessmentResultSummary;
+import pasta.domain.result.AssessmentResultSummaryVersion;
 import pasta.domain.result.HandMarkingResult;
 import pasta.domain.result.UnitTestCaseResult;
 import pasta.domain.result.UnitTestResult;
@@ -67,6 +66,7 @@ import pasta.domain.template.Assessment;
 import pasta.domain.template.WeightedHandMarking;
 import pasta.domain.user.PASTAGroup;
 import pasta.domain.user.PASTAUser;
+import pasta.testing.JUnitResultParser;
 import pasta.util.ProjectProperties;
 
 /**
@@ -89,6 +89,7 @@ public class ResultDAO extends BaseDAO {
 	protected final Log logger = LogFactory.getLog(getClass());
 	
 	public void delete(AssessmentResultSummary result) {
+		nextResultsSummaryVersion();
 		sessionFactory.getCurrentSession().delete(result);
 	}
 
@@ -98,9 +99,185 @@ public class ResultDAO extends BaseDAO {
 	 * @param result the assessment summary being saved
 	 */
 	public void saveOrUpdate(AssessmentResultSummary result) {
+		result.setChangeVersion(nextResultsSummaryVersion());
 		sessionFactory.getCurrentSession().saveOrUpdate(result);
 	}
 
+	/**
+	 * Get a token that changes whenever any assessment summary is added,
+	 * updated or removed. It is made up of the number of summaries (which
+	 * catches summaries removed along with their user or assessment) and the
+	 * latest value of the {@link AssessmentResultSummaryVersion} counter.
+	 * 
+	 * @return the summary version token
+	 */
+	public String getResultsSummaryVersion() {
+		Session session = sessionFactory.getCurrentSession();
+		Long latest = (Long) session
+				.createQuery("select latest from AssessmentResultSummaryVersion")
+				.uniqueResult();
+		Long count = (Long) session
+				.createQuery("select count(*) from AssessmentResultSummary")
+				.uniqueResult();
+		return count + "-" + (latest == null ? 0 : latest);
+	}
+
+	/**
+	 * Advance the summary version counter. Its row stays locked until the
+	 * current transaction ends, so other transactions saving summaries wait
+	 * for this one to commit before taking the next value.
+	 * 
+	 * @return the new value of the counter
+	 */
+	private long nextResultsSummaryVersion() {
+		Session session = sessionFactory.getCurrentSession();
+		int updated = session
+				.createQuery("update AssessmentResultSummaryVersion set latest = latest + 1")
+				.executeUpdate();
+		if(updated == 0) {
+			// First summary saved since the counter was added
+			session.save(new AssessmentResultSummaryVersion(1));
+			session.flush();
+		}
+		return (Long) session
+				.createQuery("select latest from AssessmentResultSummaryVersion")
+				.uniqueResult();
+	}
+
+	/**
+	 * @return the number of assessment summaries
+	 */
+	public long getResultSummaryCount() {
+		return (Long) sessionFactory.getCurrentSession()
+				.createQuery("select count(*) from AssessmentResultSummary")
+				.uniqueResult();
+	}
+
+	/**
+	 * Get the raw values of the assessment summaries, without loading the
+	 * users or assessments they belong to.
+	 * 
+	 * @param sinceVersion if not null, only summaries saved with a later
+	 *        value of the {@link AssessmentResultSummaryVersion} counter
+	 * @return a list of (Long user id, Long assessment id, Double percentage,
+	 *         Long change version) rows; the change version may be null
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getResultSummaryValues(Long sinceVersion) {
+		String hql = "select s.id.user.id, s.id.assessment.id, s.percent, s.changeVersion from AssessmentResultSummary s";
+		if (sinceVersion == null) {
+			return sessionFactory.getCurrentSession().createQuery(hql).list();
+		}
+		return sessionFactory.getCurrentSession().createQuery(hql + " where s.changeVersion > :since")
+				.setLong("since", sinceVersion)
+				.list();
+	}
+
+	/**
+	 * Get the id of the latest result each user has for an assessment, without
+	 * loading the results.
+	 * 
+	 * @param assessmentId the id of the assessment
+	 * @param userIds the ids of the users (or groups) being queried
+	 * @return a list of (Long user id, Long result id) rows
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getLatestResultIds(long assessmentId, Collection<Long> userIds) {
+		if(userIds.isEmpty()) {
+			return new LinkedList<Object[]>();
+		}
+		return sessionFactory.getCurrentSession().createQuery(
+				"select r.user.id, r.id from AssessmentResult r "
+				+ "where r.assessment.id = :assessment and r.user.id in (:users) "
+				+ "and r.submissionDate = (select max(r2.submissionDate) from AssessmentResult r2 "
+				+ "where r2.assessment.id = :assessment and r2.user.id = r.user.id)")
+				.setLong("assessment", assessmentId)
+				.setParameterList("users", userIds)
+				.list();
+	}
+
+	/**
+	 * Count the passed and total test cases of each unit test result belonging
+	 * to the given assessment results.
+	 * 
+	 * @param resultIds the ids of the assessment results
+	 * @return a list of (Long result id, Long unit test id, Long passed, Long
+	 *         total) rows
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getUnitTestResultScores(Collection<Long> resultIds) {
+		if(resultIds.isEmpty()) {
+			return new LinkedList<Object[]>();
+		}
+		return sessionFactory.getCurrentSession().createQuery(
+				"select utr.assessmentResult.id, coalesce(tt.id, wt.id), "
+				+ "sum(case when tc.testResult = :pass then 1 else 0 end), count(tc.id) "
+				+ "from UnitTestResult utr "
+				+ "left join utr.testerTest tt left join utr.weightedUnitTest wut left join wut.test wt "
+				+ "left join utr.testCases tc "
+				+ "where utr.assessmentResult.id in (:results) "
+				+ "group by utr.id, utr.assessmentResult.id, tt.id, wt.id")
+				.setString("pass", UnitTestCaseResult.PASS)
+				.setParameterList("results", resultIds)
+				.list();
+	}
+
+	/**
+	 * Get the chosen cells of each hand marking result belonging to the given
+	 * assessment results.
+	 * 
+	 * @param resultIds the ids of the assessment results
+	 * @return a list of (Long result id, Long hand marking result id, Long hand
+	 *         marking id, Long row id, Long column id) rows
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getHandMarkingResultCells(Collection<Long> resultIds) {
+		if(resultIds.isEmpty()) {
+			return new LinkedList<Object[]>();
+		}
+		return sessionFactory.getCurrentSession().createQuery(
+				"select hmr.assessmentResult.id, hmr.id, hm.id, key(cell), value(cell) "
+				+ "from HandMarkingResult hmr join hmr.weightedHandMarking whm join whm.handMarking hm "
+				+ "join hmr.result cell "
+				+ "where hmr.assessmentResult.id in (:results)")
+				.setParameterList("results", resultIds)
+				.list();
+	}
+
+	/**
+	 * Insert or update the summaries for an assessment with one JDBC batch.
+	 * A summary's update time and change version are only changed if its
+	 * percentage changes.
+	 * 
+	 * @param assessmentId the id of the assessment
+	 * @param percentages the percentage for each user id
+	 */
+	public void upsertResultSummaries(final long assessmentId, final Map<Long, Double> percentages) {
+		if(percentages.isEmpty()) {
+			return;
+		}
+		final Timestamp now = new Timestamp(System.currentTimeMillis());
+		final long version = nextResultsSummaryVersion();
+		sessionFactory.getCurrentSession().doWork(connection -> {
+			try(PreparedStatement statement = connection.prepareStatement(
+					"INSERT INTO assessment_result_summaries (user_id, assessment_id, percent, last_updated, change_version) "
+					+ "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+					+ "last_updated = IF(percent <=> VALUES(percent), last_updated, VALUES(last_updated)), "
+					+ "change_version = IF(percent <=> VALUES(percent), change_version, VALUES(change_version)), "
+					+ "percent = VALUES(percent)")) {
+				for(Map.Entry<Long, Double> entry : percentages.entrySet()) {
+					statement.setLong(1, entry.getKey());
+					statement.setLong(2, assessmentId);
+					statement.setDouble(3, entry.getValue());
+					statement.setTimestamp(4, now);
+					statement.setLong(5, version);
+					statement.addBatch();
+				}
+				statement.executeBatch();
+			}
+		});
+	}
+
 	public AssessmentResult getAssessmentResult(long id) {
 		return (AssessmentResult) sessionFactory.getCurrentSession().get(AssessmentResult.class, id);
 	}
@@ -348,84 +525,12 @@ public class ResultDAO extends BaseDAO {
 	 * @return the result of the unit test
 	 */
 	public UnitTestResult getUnitTestResultFromDisk(String location, Collection<String> errorContext, Map<String, String> testDescriptions){
-		UnitTestResult result = new UnitTestResult();
-		
 		//TODO: replace with generic file
 		// check to see if there is a results.xml file
 		File testResults = new File(location+"/result.xml");
 		if(testResults.exists() && testResults.length() != 0){
-			try{	
-				DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-				DocumentBuilder dBuilder;
-				dBuilder = dbFactory.newDocumentBuilder();
-				Document doc = dBuilder.parse(testResults);
-				doc.getDocumentElement().normalize();
-				
-				ArrayList<UnitTestCaseResult> testCases = new ArrayList<UnitTestCaseResult>();
-				
-				NodeList unitTestList = doc.getElementsByTagName("testcase");
-				if (unitTestList != null && unitTestList.getLength() > 0) {
-					for (int i = 0; i < unitTestList.getLength(); i++) {
-						Node unitTestNode = unitTestList.item(i);
-						if (unitTestNode.getNodeType() == Node.ELEMENT_NODE) {
-							UnitTestCaseResult caseResult = new UnitTestCaseResult();
-							
-							Element unitTestElement = (Element) unitTestNode;
-							// name
-							caseResult.setTestName(unitTestElement.getAttribute("name"));
-							// time
-							caseResult.setTime(Double.parseDouble(unitTestElement.getAttribute("time")));
-							// test case - assume it is a pass.
-							caseResult.setTestResult(UnitTestCaseResult.PASS);
-							
-							if(testDescriptions != null) {
-								caseResult.setTestDescription(testDescriptions.get(caseResult.getTestName()));
-							}
-							
-							// if failed
-							if(unitTestElement.hasChildNodes()){
-								Element failedUnitTestElement = (Element) unitTestNode.getChildNodes().item(1);
-								
-								// new result
-								caseResult.setTestResult(failedUnitTestElement.getNodeName());
-								// message
-								if(failedUnitTestElement.hasAttribute("message")){
-									caseResult.setTestMessage(failedUnitTestElement.getAttribute("message"));
-								}
-								// type
-								if(failedUnitTestElement.hasAttribute("type")){
-									caseResult.setType((failedUnitTestElement.getAttribute("type")));
-								}
-								// extended message
-								if(getText(failedUnitTestElement) != null){
-									String message = getText(failedUnitTestElement);
-									caseResult.setExtendedMessage(message);
-									
-									// Include error line number for Java submissions
-									if(errorContext != null && caseResult.getType() != null && caseResult.isError()) {
-										String find = "(\\(.+?\\.java:[0-9]+\\))";
-										Pattern p = Pattern.compile(find);
-										Matcher m = p.matcher(message);
-										boolean found = false;
-										while(m.find() && !found) {
-											String line = m.group();
-											for(String file : errorContext) {
-												if(line.contains(file)) {
-													caseResult.setType(caseResult.getType() + " at " + line);
-													found = true;
-													break;
-												}
-											}
-										}
-									}
-								}
-							}
-							testCases.add(caseResult);
-						}
-					}
-				}
-				result.setTestCases(testCases);
-				return result;
+			try{
+				return JUnitResultParser.parse(testResults, errorContext, testDescriptions);
 			} 
 			catch (Exception e){
 				logger.error("Could not read result.xml", e);
@@ -498,37 +603,68 @@ public class ResultDAO extends BaseDAO {
 				.list();
 	}
 
-	private static String getText(Element element) {
-		StringBuffer stringBuffer = new StringBuffer();
-		NodeList elementChildren = element.getChildNodes();
-		boolean found = false;
-		for (int i = 0; i < elementChildren.getLength(); i++) {
-		  Node node = elementChildren.item(i);
-		  if (node.getNodeType() == Node.TEXT_NODE) {
-		    stringBuffer.append(node.getNodeValue());
-		    found = true;
-		  }
-		}
-		return found ? stringBuffer.toString() : null;
-	}
-
-	@SuppressWarnings("unchecked")
-	public List<Object[]> getAllTestCaseDetails() {
-		String sql = "SELECT ar.id AS 'submission_id', utcr.name AS 'test_case', utcr.result, (wut.weight / tcc.test_case_count) AS 'test_case_weight' " + 
+	/**
+	 * Stream the unit test case results of every completed submission for an
+	 * assessment, in submission order with the rows of each unit test result
+	 * together. Submissions without any unit test results, and unit test
+	 * results without any test cases, still appear once with nulls in the
+	 * columns that follow.
+	 * 
+	 * @param assessmentId the id of the assessment
+	 * @param handler called once for each row: submission id, user id,
+	 *            submission date, unit test result id, weighted unit test id,
+	 *            test case name and test case result
+	 * @throws IOException if the handler fails to handle a row
+	 * @see TestCaseHistoryStore
+	 */
+	public void scrollTestCaseHistory(long assessmentId, RowHandler handler) throws IOException {
+		String sql = "SELECT ar.id AS 'submission_id', ar.user_id, ar.submission_date, utr.id AS 'unit_test_result_id', " + 
+				"utr.weighted_unit_test_id, utcr.name AS 'test_case', utcr.result " + 
 				"FROM assessment_results ar " + 
-				"INNER JOIN unit_test_results utr ON ar.id = utr.assessment_result_id " + 
-				"INNER JOIN unit_test_case_results utcr ON utcr.unit_test_result_id = utr.id " + 
-				"INNER JOIN weighted_unit_tests wut ON wut.id = utr.weighted_unit_test_id " + 
-				"INNER JOIN ( " + 
-				"  SELECT unit_test_result_id AS 'utr_id', count(*) AS 'test_case_count' FROM unit_test_case_results GROUP BY unit_test_result_id " + 
-				") AS tcc ON tcc.utr_id = utr.id " + 
-				"ORDER BY ar.id, utcr.name";
-		SQLQuery query = sessionFactory.getCurrentSession().createSQLQuery(sql);
-		return query.list();
+				"LEFT OUTER JOIN unit_test_results utr ON ar.id = utr.assessment_result_id " + 
+				"LEFT OUTER JOIN unit_test_case_results utcr ON utcr.unit_test_result_id = utr.id " + 
+				"WHERE ar.assessment_id = :assessment AND ar.waiting_to_run = false " + 
+				"ORDER BY ar.id, utr.id";
+		scroll(sessionFactory.getCurrentSession().createSQLQuery(sql)
+				.setLong("assessment", assessmentId), handler);
 	}
 	
-	@SuppressWarnings("unchecked")
-	public List<Object[]> getAllSubmissionDetails() {
+	/**
+	 * Describe the completed submissions for an assessment well enough to
+	 * tell whether any have been added, removed or re-run. A re-run replaces
+	 * a submission's unit test results with new ones, so the sum of their ids
+	 * changes even when the number of submissions does not.
+	 * 
+	 * @param assessmentId the id of the assessment
+	 * @return the number of submissions for the assessment that are not
+	 *         waiting to run, and the sum of the ids of their unit test results
+	 */
+	public long[] getCompletedResultsState(long assessmentId) {
+		Long count = (Long) sessionFactory.getCurrentSession().createQuery(
+				"select count(r.id) from AssessmentResult r "
+				+ "where r.assessment.id = :assessment and r.waitingToRun = false")
+				.setLong("assessment", assessmentId)
+				.uniqueResult();
+		Long idSum = (Long) sessionFactory.getCurrentSession().createQuery(
+				"select sum(utr.id) from UnitTestResult utr "
+				+ "where utr.assessmentResult.assessment.id = :assessment "
+				+ "and utr.assessmentResult.waitingToRun = false")
+				.setLong("assessment", assessmentId)
+				.uniqueResult();
+		return new long[] {count, idSum == null ? 0 : idSum};
+	}
+	
+	/**
+	 * Stream the details of every submission ever made, in submission date
+	 * order.
+	 * 
+	 * @param handler called once for each row: submission id, assessment id,
+	 *            assessment name, release date, due date, weighted automatic
+	 *            mark, submission date, user, permission level, submitter and
+	 *            group members
+	 * @throws IOException if the handler fails to write a row
+	 */
+	public void scrollAllSubmissionDetails(RowHandler handler) throws IOException {
 		String sql = "SELECT ar.id AS 'submission_id', a.id AS 'assessment_id', a.name AS 'assessment_name', " + 
 				"rd.date AS 'assessment_release_date', a.dueDate AS 'assessment_due_date', " + 
 				"grades.auto_percent * 100.0 AS 'auto_mark_weighted_percentage', " + 
@@ -562,8 +698,38 @@ public class ResultDAO extends BaseDAO {
 				"  GROUP BY ar.id " + 
 				") AS grades ON grades.submission_id = ar.id " + 
 				"ORDER BY ar.submission_date";
-		SQLQuery query = sessionFactory.getCurrentSession().createSQLQuery(sql);
-		return query.list();
+		scroll(sql, handler);
+	}
+	
+	/**
+	 * Run a native query through a forward-only cursor, handing each row on
+	 * as it arrives so that the result set is never held in memory. A fetch
+	 * size of {@link Integer#MIN_VALUE} tells the MySQL driver to stream rows
+	 * rather than buffer the whole result.
+	 */
+	private void scroll(String sql, RowHandler handler) throws IOException {
+		scroll(sessionFactory.getCurrentSession().createSQLQuery(sql), handler);
+	}
+	
+	private void scroll(Query query, RowHandler handler) throws IOException {
+		ScrollableResults rows = query
+				.setReadOnly(true)
+				.setFetchSize(Integer.MIN_VALUE)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while(rows.next()) {
+				handler.handleRow(rows.get());
+			}
+		} finally {
+			rows.close();
+		}
+	}
+	
+	/**
+	 * Receives rows from a query one at a time.
+	 */
+	public static interface RowHandler {
+		public void handleRow(Object[] row) throws IOException;
 	}
 
 	public List<AssessmentResult> getAllResultsForAssessment(Assessment assessment) {
@@ -604,4 +770,188 @@ public class ResultDAO extends BaseDAO {
 		cr.add(Restrictions.eq("id.assessment", assessment));
 		return cr.list();
 	}
+	
+	/*
+	 * Aggregate queries for reporting. These only count the results of active
+	 * students (and, where noted, of their groups), and never load whole
+	 * results. Test case analytics are served from TestCaseHistoryStore.
+	 */
+	
+	private static final String ACTIVE_STUDENT_IDS = 
+			"(select u.id from PASTAUser u where u.active = true and u.permissionLevel = :student)";
+	
+	/**
+	 * Count the distinct submission times on each day for an assessment, for
+	 * students and their groups.
+	 * 
+	 * @param assessmentId the id of the assessment
+	 * @return a list of (Integer year, Integer month (1-12), Integer day, Long
+	 *         count) rows
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getSubmissionCountsByDay(long assessmentId) {
+		return sessionFactory.getCurrentSession().createQuery(
+				"select year(r.submissionDate), month(r.submissionDate), day(r.submissionDate), "
+				+ "count(distinct r.submissionDate) from AssessmentResult r "
+				+ "where r.assessment.id = :assessment and (r.user.id in " + ACTIVE_STUDENT_IDS 
+				+ " or r.user.id in (select g.id from PASTAGroup g join g.members m "
+				+ "where g.assessment.id = :assessment and m.id in " + ACTIVE_STUDENT_IDS + ")) "
+				+ "group by year(r.submissionDate), month(r.submissionDate), day(r.submissionDate)")
+				.setLong("assessment", assessmentId)
+				.setParameter("student", UserPermissionLevel.STUDENT)
+				.list();
+	}
+	
+	/**
+	 * Get the time each student first submitted an assessment, either
+	 * themselves or as part of a group.
+	 * 
+	 * @param assessmentId the id of the assessment
+	 * @return a map of student id to first submission time; students who have
+	 *         not submitted are left out
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<Long, Date> getFirstSubmissionDates(long assessmentId) {
+		Session session = sessionFactory.getCurrentSession();
+		List<Object[]> rows = new ArrayList<>(session.createQuery(
+				"select r.user.id, min(r.submissionDate) from AssessmentResult r "
+				+ "where r.assessment.id = :assessment and r.user.id in " + ACTIVE_STUDENT_IDS + " "
+				+ "group by r.user.id")
+				.setLong("assessment", assessmentId)
+				.setParameter("student", UserPermissionLevel.STUDENT)
+				.list());
+		rows.addAll(session.createQuery(
+				"select m.id, min(r.submissionDate) from AssessmentResult r, PASTAGroup g join g.members m "
+				+ "where r.user.id = g.id and g.assessment.id = :assessment and r.assessment.id = :assessment "
+				+ "and m.id in " + ACTIVE_STUDENT_IDS + " "
+				+ "group by m.id")
+				.setLong("assessment", assessmentId)
+				.setParameter("student", UserPermissionLevel.STUDENT)
+				.list());
+		
+		Map<Long, Date> firstDates = new HashMap<>();
+		for(Object[] row : rows) {
+			Date date = (Date) row[1];
+			Date current = firstDates.get(row[0]);
+			if(current == null || date.before(current)) {
+				firstDates.put((Long) row[0], date);
+			}
+		}
+		return firstDates;
+	}
+	
+	/**
+	 * Get the individual submission times of every student for an assessment.
+	 * 
+	 * @param assessmentId the id of the assessment
+	 * @return a map of student id to submission times, earliest first;
+	 *         students who have not submitted are left out
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<Long, List<Date>> getSubmissionDatesByStudent(long assessmentId) {
+		List<Object[]> rows = sessionFactory.getCurrentSession().createQuery(
+				"select r.user.id, r.submissionDate from AssessmentResult r "
+				+ "where r.assessment.id = :assessment and r.user.id in " + ACTIVE_STUDENT_IDS + " "
+				+ "order by r.user.id, r.submissionDate")
+				.setLong("assessment", assessmentId)
+				.setParameter("student", UserPermissionLevel.STUDENT)
+				.list();
+		Map<Long, List<Date>> dates = new HashMap<>();
+		for(Object[] row : rows) {
+			List<Date> userDates = dates.get(row[0]);
+			if(userDates == null) {
+				userDates = new ArrayList<>();
+				dates.put((Long) row[0], userDates);
+			}
+			userDates.add((Date) row[1]);
+		}
+		return dates;
+	}
+	
+	/**
+	 * Get the id of the latest result for every assessment for each of the
+	 * given users or groups, without loading the results.
+	 * 
+	 * @param userIds the ids of the users or groups
+	 * @return a list of (Long result id, Boolean waiting to run) rows, at most
+	 *         one per user per assessment
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getLatestResultIdsForAllAssessments(Collection<Long> userIds) {
+		if(userIds.isEmpty()) {
+			return new ArrayList<Object[]>();
+		}
+		return sessionFactory.getCurrentSession().createQuery(
+				"select r.id, r.waitingToRun from AssessmentResult r where r.user.id in (:users) "
+				+ "and r.submissionDate = (select max(r2.submissionDate) from AssessmentResult r2 "
+				+ "where r2.assessment.id = r.assessment.id and r2.user.id = r.user.id)")
+				.setParameterList("users", userIds)
+				.list();
+	}
+	
+	/**
+	 * Load the given results.
+	 * 
+	 * @param resultIds the ids of the results
+	 * @return the results that exist, in no particular order
+	 */
+	@SuppressWarnings("unchecked")
+	public List<AssessmentResult> getAssessmentResults(Collection<Long> resultIds) {
+		if(resultIds.isEmpty()) {
+			return new ArrayList<AssessmentResult>();
+		}
+		List<AssessmentResult> results = sessionFactory.getCurrentSession().createQuery(
+				"from AssessmentResult r where r.id in (:ids)")
+				.setParameterList("ids", resultIds)
+				.list();
+		for(AssessmentResult result : results) {
+			refreshHandMarking(result);
+		}
+		return results;
+	}
+	
+	/**
+	 * Count the submissions made by the given users or groups for every
+	 * assessment, in the same way as
+	 * {@link #getSubmissionCount(PASTAUser, long, boolean, boolean)}.
+	 * 
+	 * @param userIds the ids of the users or groups
+	 * @return a map of assessment id to a pair of counts: all submissions, and
+	 *         the submissions with an error (see
+	 *         {@link AssessmentResult#isError()})
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<Long, int[]> getSubmissionCounts(Collection<Long> userIds) {
+		Map<Long, int[]> counts = new HashMap<>();
+		if(userIds.isEmpty()) {
+			return counts;
+		}
+		List<Object[]> totals = sessionFactory.getCurrentSession().createQuery(
+				"select r.assessment.id, count(r.id) from AssessmentResult r "
+				+ "where r.user.id in (:users) group by r.assessment.id")
+				.setParameterList("users", userIds)
+				.list();
+		for(Object[] row : totals) {
+			counts.put((Long) row[0], new int[] {((Number) row[1]).intValue(), 0});
+		}
+		List<Object[]> errors = sessionFactory.getCurrentSession().createQuery(
+				"select r.assessment.id, count(distinct r.id) from AssessmentResult r join r.unitTests utr "
+				+ "where r.user.id in (:users) and ("
+				+ "utr.internalError = true or utr.buildError = true or utr.cleanError = true "
+				+ "or length(utr.runtimeErrors) > 0 or length(utr.compileErrors) > 0 "
+				+ "or utr.validationErrors is not empty "
+				+ "or (size(utr.testCases) = 1 and exists (select tc.id from UnitTestCaseResult tc "
+				+ "where tc.unitTestResult = utr and tc.testName = 'BeforeFirstTest' and tc.testResult = :error))) "
+				+ "group by r.assessment.id")
+				.setParameterList("users", userIds)
+				.setString("error", UnitTestCaseResult.ERROR)
+				.list();
+		for(Object[] row : errors) {
+			int[] count = counts.get(row[0]);
+			if(count != null) {
+				count[1] = ((Number) row[1]).intValue();
+			}
+		}
+		return counts;
+	}
 }
@@ -0,0 +1,239 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.repository;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.log4j.Logger;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.annotations.Cache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import pasta.domain.TemplateVersion;
+
+/**
+ * Keeps the template caches of every node in step with the database.
+ * <p>
+ * Whenever a cached entity (see {@link pasta.domain.CacheRegions}) or one of its collections is inserted, updated
+ * or deleted, the {@link TemplateVersion} counter is advanced once the
+ * change has committed. {@link #checkTemplateVersion()} is called before
+ * each request and each assessment job; if the counter has moved on since
+ * this node last looked, the template regions and the query cache are
+ * cleared, so no node goes on using a template after it has been edited
+ * elsewhere. Caches are only cleared when the version changes, so normally
+ * this costs one small query.
+ * <p>
+ * This deliberately uses its own sessions rather than the caller's
+ * transaction: the counter is advanced only after the change is visible,
+ * and is read without joining (or starting) a transaction.
+ */
+@Repository("templateCacheDAO")
+public class TemplateCacheDAO {
+
+	protected final Logger logger = Logger.getLogger(getClass());
+	
+	@Autowired
+	private SessionFactory sessionFactory;
+	
+	private Long lastSeenVersion;
+	
+	@PostConstruct
+	private void registerListeners() {
+		EventListenerRegistry registry = ((SessionFactoryImplementor) sessionFactory)
+				.getServiceRegistry().getService(EventListenerRegistry.class);
+		ChangeListener listener = new ChangeListener();
+		registry.appendListeners(EventType.POST_INSERT, listener);
+		registry.appendListeners(EventType.POST_UPDATE, listener);
+		registry.appendListeners(EventType.POST_DELETE, listener);
+		registry.appendListeners(EventType.POST_COLLECTION_RECREATE, listener);
+		registry.appendListeners(EventType.POST_COLLECTION_UPDATE, listener);
+		registry.appendListeners(EventType.POST_COLLECTION_REMOVE, listener);
+	}
+	
+	/**
+	 * Clear this node's template caches if a template has been changed
+	 * anywhere since the last check.
+	 */
+	public void checkTemplateVersion() {
+		Long latest;
+		Session session = sessionFactory.openSession();
+		try {
+			latest = (Long) session
+					.createQuery("select latest from TemplateVersion")
+					.uniqueResult();
+		} catch(RuntimeException e) {
+			logger.error("Could not read template version", e);
+			return;
+		} finally {
+			session.close();
+		}
+		if(latest == null) {
+			latest = 0L;
+		}
+		synchronized(this) {
+			if(lastSeenVersion != null && lastSeenVersion.equals(latest)) {
+				return;
+			}
+			if(lastSeenVersion != null) {
+				logger.debug("Template version changed from " + lastSeenVersion + " to " + latest + "; clearing template caches");
+			}
+			// Entries are spread across the template entity, collection and
+			// query regions, so clear the lot (as BaseDAO does after deletes)
+			sessionFactory.getCache().evictAllRegions();
+			lastSeenVersion = latest;
+		}
+	}
+	
+	/**
+	 * Advance the template version, in a transaction of its own.
+	 */
+	private void advanceVersion() {
+		Session session = sessionFactory.openSession();
+		Transaction tx = null;
+		try {
+			tx = session.beginTransaction();
+			int updated = session
+					.createQuery("update TemplateVersion set latest = latest + 1")
+					.executeUpdate();
+			if(updated == 0) {
+				// First template change since the counter was added
+				session.save(new TemplateVersion(1));
+			}
+			tx.commit();
+		} catch(RuntimeException e) {
+			logger.error("Could not advance template version", e);
+			if(tx != null) {
+				tx.rollback();
+			}
+		} finally {
+			session.close();
+		}
+	}
+	
+	/**
+	 * Advance the version once the current transaction commits, however many
+	 * templates it changes.
+	 */
+	private void templateChanged() {
+		if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+			advanceVersion();
+			return;
+		}
+		if(TransactionSynchronizationManager.hasResource(this)) {
+			return;
+		}
+		TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				TransactionSynchronizationManager.unbindResource(TemplateCacheDAO.this);
+				if(status == TransactionSynchronization.STATUS_COMMITTED) {
+					advanceVersion();
+				}
+			}
+		});
+	}
+	
+	private static boolean isTemplate(Object entity) {
+		return entity != null && Hibernate.getClass(entity).isAnnotationPresent(Cache.class);
+	}
+	
+	private class ChangeListener implements PostInsertEventListener, PostUpdateEventListener, 
+			PostDeleteEventListener, PostCollectionRecreateEventListener, 
+			PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+		private static final long serialVersionUID = -5795204853938036150L;
+
+		@Override
+		public void onPostInsert(PostInsertEvent event) {
+			if(isTemplate(event.getEntity())) {
+				templateChanged();
+			}
+		}
+		
+		@Override
+		public void onPostUpdate(PostUpdateEvent event) {
+			if(isTemplate(event.getEntity())) {
+				templateChanged();
+			}
+		}
+		
+		@Override
+		public void onPostDelete(PostDeleteEvent event) {
+			if(isTemplate(event.getEntity())) {
+				templateChanged();
+			}
+		}
+		
+		@Override
+		public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+			collectionChanged(event);
+		}
+		
+		@Override
+		public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+			collectionChanged(event);
+		}
+		
+		@Override
+		public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+			collectionChanged(event);
+		}
+		
+		private void collectionChanged(AbstractCollectionEvent event) {
+			if(isTemplate(event.getAffectedOwnerOrNull())) {
+				templateChanged();
+			}
+		}
+		
+		@Override
+		public boolean requiresPostCommitHanding(EntityPersister persister) {
+			return false;
+		}
+	}
+}
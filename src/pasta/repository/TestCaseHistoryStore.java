@@ -0,0 +1,741 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import pasta.domain.result.AssessmentResult;
+import pasta.domain.result.UnitTestCaseResult;
+import pasta.domain.result.UnitTestResult;
+import pasta.domain.template.Assessment;
+import pasta.domain.template.WeightedUnitTest;
+import pasta.repository.ResultDAO.RowHandler;
+import pasta.util.ProjectProperties;
+
+/**
+ * A compact, append-only copy of every unit test case result, kept on local
+ * disk so that test case analytics (difficulty, pass counts, first passes
+ * and the history download) can be worked out without joining the result
+ * tables.
+ * <p>
+ * Each assessment has two files in <code>history/test-cases/v2/</code> under
+ * the project location:
+ * <ul>
+ * <li><code>&lt;id&gt;.names</code>: a dictionary of the test case names and
+ * results seen so far, each written once and referred to by position</li>
+ * <li><code>&lt;id&gt;.data</code>: a block for each recorded submission,
+ * holding the submission id, user id and submission time, then for each unit
+ * test result its id, the weighted unit test id and the dictionary positions
+ * of the name and result of each test case</li>
+ * </ul>
+ * A submission is recorded once its results have been saved (see
+ * {@link pasta.scheduler.AssessmentJobExecutor}). Recording a submission again,
+ * when it is re-run, supersedes the earlier block. Reads load the files into
+ * primitive column arrays (see {@link History}).
+ * <p>
+ * The store is local to each node. Before an assessment is read, the number
+ * of completed submissions and the sum of their unit test result ids in the
+ * database are compared with those in the store. If either differs (because
+ * the store has never been built, submissions were run or re-run by another
+ * node, or results were deleted), the assessment is rebuilt from the
+ * database.
+ */
+@Repository("testCaseHistoryStore")
+public class TestCaseHistoryStore {
+	private static final Logger logger = Logger.getLogger(TestCaseHistoryStore.class);
+	
+	@Autowired
+	private ResultDAO resultDAO;
+	
+	private final ConcurrentMap<Long, Object> locks = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Long, Dictionary> dictionaries = new ConcurrentHashMap<>();
+	
+	/**
+	 * Append a submission's test case results to the store. Nothing is written
+	 * if the assessment's history has not been built yet, as it will include
+	 * the submission when it is.
+	 * 
+	 * @param result the submission, which must have been saved
+	 */
+	public void record(AssessmentResult result) {
+		long assessmentId = result.getAssessment().getId();
+		synchronized(getLock(assessmentId)) {
+			File data = getDataFile(assessmentId);
+			if(!data.exists()) {
+				return;
+			}
+			try {
+				Submission submission = new Submission(result.getId(), result.getUser().getId(), 
+						result.getSubmissionDate().getTime());
+				for(UnitTestResult utResult : result.getUnitTests()) {
+					WeightedUnitTest weightedTest = utResult.getWeightedUnitTest();
+					Run run = submission.addRun(utResult.getId() == null ? 0 : utResult.getId(), 
+							weightedTest == null ? 0 : weightedTest.getId());
+					for(UnitTestCaseResult testCase : utResult.getTestCases()) {
+						run.add(testCase.getTestName(), testCase.getTestResult());
+					}
+				}
+				byte[] block = submission.encode(getDictionary(assessmentId));
+				try(OutputStream out = new FileOutputStream(data, true)) {
+					out.write(block);
+				}
+			} catch(IOException e) {
+				logger.error("Could not record test case history for submission #" + result.getId() 
+						+ "; it will be rebuilt from the database", e);
+				delete(assessmentId);
+			}
+		}
+	}
+	
+	/**
+	 * Get the test case history of an assessment, building it from the
+	 * database first if it is missing or out of date.
+	 * 
+	 * @param assessment the assessment
+	 * @return the history
+	 * @throws UncheckedIOException if the history cannot be read or built
+	 */
+	public History getHistory(Assessment assessment) {
+		long assessmentId = assessment.getId();
+		Map<Long, Double> weights = new HashMap<>();
+		for(WeightedUnitTest weightedTest : assessment.getAllUnitTests()) {
+			weights.put(weightedTest.getId(), weightedTest.getWeight());
+		}
+		long[] completed = resultDAO.getCompletedResultsState(assessmentId);
+		
+		synchronized(getLock(assessmentId)) {
+			try {
+				if(getDataFile(assessmentId).exists()) {
+					try {
+						History history = load(assessmentId, weights);
+						// Re-runs leave superseded blocks behind; rebuilding drops them
+						if(history.size() == completed[0] && history.unitTestResultIdSum == completed[1]
+								&& history.superseded <= history.size()) {
+							return history;
+						}
+					} catch(IOException e) {
+						logger.warn("Could not read test case history for assessment #" + assessmentId 
+								+ "; rebuilding it", e);
+					}
+				}
+				rebuild(assessmentId);
+				return load(assessmentId, weights);
+			} catch(IOException e) {
+				throw new UncheckedIOException("Could not build test case history for assessment #" + assessmentId, e);
+			}
+		}
+	}
+	
+	/**
+	 * Remove the history of an assessment, e.g. when its results are deleted.
+	 * It is rebuilt from the database the next time it is read.
+	 * 
+	 * @param assessmentId the id of the assessment
+	 */
+	public void delete(long assessmentId) {
+		synchronized(getLock(assessmentId)) {
+			getDataFile(assessmentId).delete();
+			getNamesFile(assessmentId).delete();
+			dictionaries.remove(assessmentId);
+		}
+	}
+	
+	private void rebuild(long assessmentId) throws IOException {
+		long start = System.currentTimeMillis();
+		File root = getRoot();
+		root.mkdirs();
+		// Left from before unit test result ids were stored
+		new File(root.getParentFile(), assessmentId + ".data").delete();
+		new File(root.getParentFile(), assessmentId + ".names").delete();
+		File tempNames = new File(root, assessmentId + ".names.tmp");
+		File tempData = new File(root, assessmentId + ".data.tmp");
+		tempNames.delete();
+		
+		Dictionary dictionary = new Dictionary(tempNames);
+		int[] count = new int[1];
+		try(OutputStream out = new BufferedOutputStream(new FileOutputStream(tempData))) {
+			RowCollector collector = new RowCollector() {
+				@Override
+				protected void handleSubmission(Submission submission) throws IOException {
+					out.write(submission.encode(dictionary));
+					count[0]++;
+				}
+			};
+			resultDAO.scrollTestCaseHistory(assessmentId, collector);
+			collector.finish();
+		}
+		
+		// The data file marks the history as complete, so it goes in last
+		dictionaries.remove(assessmentId);
+		getDataFile(assessmentId).delete();
+		Files.move(tempNames.toPath(), getNamesFile(assessmentId).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		Files.move(tempData.toPath(), getDataFile(assessmentId).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		logger.info("Built test case history for assessment #" + assessmentId + " from " + count[0] 
+				+ " submissions in " + (System.currentTimeMillis() - start) + "ms");
+	}
+	
+	private History load(long assessmentId, Map<Long, Double> weights) throws IOException {
+		File data = getDataFile(assessmentId);
+		Dictionary dictionary = getDictionary(assessmentId);
+		History history = new History(dictionary.getValues(), weights);
+		long length = data.length();
+		long validLength = 0;
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(data)))) {
+			while(validLength < length) {
+				try {
+					validLength += history.read(in);
+				} catch(EOFException e) {
+					break;
+				}
+			}
+		}
+		if(validLength < length) {
+			// A block was only partly written; drop it so later blocks line up
+			logger.warn("Truncating incomplete test case history for assessment #" + assessmentId);
+			try(RandomAccessFile file = new RandomAccessFile(data, "rw")) {
+				file.setLength(validLength);
+			}
+		}
+		history.finish();
+		return history;
+	}
+	
+	private Dictionary getDictionary(long assessmentId) throws IOException {
+		Dictionary dictionary = dictionaries.get(assessmentId);
+		if(dictionary == null) {
+			dictionary = new Dictionary(getNamesFile(assessmentId));
+			dictionaries.put(assessmentId, dictionary);
+		}
+		return dictionary;
+	}
+	
+	private Object getLock(long assessmentId) {
+		return locks.computeIfAbsent(assessmentId, id -> new Object());
+	}
+	
+	private File getRoot() {
+		return new File(ProjectProperties.getInstance().getProjectLocation(), 
+				"history" + File.separator + "test-cases" + File.separator + "v2");
+	}
+	
+	private File getDataFile(long assessmentId) {
+		return new File(getRoot(), assessmentId + ".data");
+	}
+	
+	private File getNamesFile(long assessmentId) {
+		return new File(getRoot(), assessmentId + ".names");
+	}
+	
+	/**
+	 * The test case history of one assessment, held column by column. Only the
+	 * latest block recorded for each submission is used.
+	 */
+	public static final class History {
+		private final String[] dictionary;
+		private final Map<Long, Double> weights;
+		
+		// Submissions, in the order they were recorded
+		private int submissionCount;
+		private long[] submissionIds = new long[64];
+		private long[] userIds = new long[64];
+		private long[] times = new long[64];
+		private int[] firstRuns = new int[65];
+		private BitSet live = new BitSet();
+		private int superseded;
+		private long unitTestResultIdSum;
+		
+		// Unit test results, grouped by submission
+		private int runCount;
+		private long[] unitTestResultIds = new long[64];
+		private long[] weightedTestIds = new long[64];
+		private int[] firstCases = new int[65];
+		
+		// Test cases, grouped by unit test result
+		private int caseCount;
+		private int[] names = new int[256];
+		private int[] results = new int[256];
+		
+		private History(String[] dictionary, Map<Long, Double> weights) {
+			this.dictionary = dictionary;
+			this.weights = weights;
+		}
+		
+		/**
+		 * @return the number of submissions in the history
+		 */
+		public int size() {
+			return submissionCount - superseded;
+		}
+		
+		/**
+		 * Count the passed test cases in each user's latest submission.
+		 * 
+		 * @param users the ids of the users to include
+		 * @return a map of user id to pass count; users with no submission are
+		 *         left out
+		 */
+		public Map<Long, Long> getLatestPassCounts(Set<Long> users) {
+			Map<Long, Long> passCounts = new HashMap<>();
+			for(int s : getLatestSubmissions(users)) {
+				long passes = 0;
+				for(int c = firstCases[firstRuns[s]]; c < firstCases[firstRuns[s + 1]]; c++) {
+					if(UnitTestCaseResult.PASS.equals(dictionary[results[c]])) {
+						passes++;
+					}
+				}
+				passCounts.merge(userIds[s], passes, Long::sum);
+			}
+			return passCounts;
+		}
+		
+		/**
+		 * Count the test case outcomes in each user's latest submission.
+		 * 
+		 * @param users the ids of the users to include
+		 * @return a list of (Long user id, String test name, String test
+		 *         result, Long count) rows
+		 */
+		public List<Object[]> getLatestTestCaseResultCounts(Set<Long> users) {
+			Map<List<Object>, Long> counts = new LinkedHashMap<>();
+			for(int s : getLatestSubmissions(users)) {
+				for(int c = firstCases[firstRuns[s]]; c < firstCases[firstRuns[s + 1]]; c++) {
+					counts.merge(Arrays.asList(userIds[s], dictionary[names[c]], dictionary[results[c]]), 1L, Long::sum);
+				}
+			}
+			List<Object[]> rows = new ArrayList<>(counts.size());
+			for(Map.Entry<List<Object>, Long> count : counts.entrySet()) {
+				List<Object> key = count.getKey();
+				rows.add(new Object[] {key.get(0), key.get(1), key.get(2), count.getValue()});
+			}
+			return rows;
+		}
+		
+		/**
+		 * Get when each user first passed each test case.
+		 * 
+		 * @param users the ids of the users to include
+		 * @return a map of user id to a map of test name to the submission time
+		 *         the test was first passed, or null if it has been run but never
+		 *         passed. Tests that have never been run are left out.
+		 */
+		public Map<Long, Map<String, Date>> getFirstPassDates(Set<Long> users) {
+			Map<Long, Map<String, Date>> firstPasses = new HashMap<>();
+			for(int s = live.nextSetBit(0); s >= 0; s = live.nextSetBit(s + 1)) {
+				if(!users.contains(userIds[s])) {
+					continue;
+				}
+				Map<String, Date> userPasses = firstPasses.get(userIds[s]);
+				if(userPasses == null) {
+					userPasses = new HashMap<>();
+					firstPasses.put(userIds[s], userPasses);
+				}
+				for(int c = firstCases[firstRuns[s]]; c < firstCases[firstRuns[s + 1]]; c++) {
+					String name = dictionary[names[c]];
+					Date first = userPasses.get(name);
+					if(UnitTestCaseResult.PASS.equals(dictionary[results[c]])) {
+						if(first == null || first.getTime() > times[s]) {
+							userPasses.put(name, new Date(times[s]));
+						}
+					} else if(!userPasses.containsKey(name)) {
+						userPasses.put(name, null);
+					}
+				}
+			}
+			return firstPasses;
+		}
+		
+		/**
+		 * Hand on every test case result, ordered by submission id then test
+		 * name. Results of unit tests that are no longer part of the
+		 * assessment are left out.
+		 * 
+		 * @param handler called once for each row: submission id, test case
+		 *          name, result and the weight of the test case (the unit
+		 *          test's weight shared evenly between its test cases)
+		 * @throws IOException if the handler fails to handle a row
+		 */
+		public void scrollTestCaseDetails(RowHandler handler) throws IOException {
+			List<Integer> order = new ArrayList<>(size());
+			for(int s = live.nextSetBit(0); s >= 0; s = live.nextSetBit(s + 1)) {
+				order.add(s);
+			}
+			order.sort((a, b) -> Long.compare(submissionIds[a], submissionIds[b]));
+			
+			List<Object[]> rows = new ArrayList<>();
+			for(int s : order) {
+				rows.clear();
+				for(int r = firstRuns[s]; r < firstRuns[s + 1]; r++) {
+					Double weight = weights.get(weightedTestIds[r]);
+					if(weight == null) {
+						continue;
+					}
+					int cases = firstCases[r + 1] - firstCases[r];
+					for(int c = firstCases[r]; c < firstCases[r + 1]; c++) {
+						rows.add(new Object[] {submissionIds[s], dictionary[names[c]], dictionary[results[c]], weight / cases});
+					}
+				}
+				rows.sort((a, b) -> String.CASE_INSENSITIVE_ORDER.compare((String) a[1], (String) b[1]));
+				for(Object[] row : rows) {
+					handler.handleRow(row);
+				}
+			}
+		}
+		
+		/**
+		 * The indexes of each user's latest submissions (more than one if
+		 * several share the latest submission time).
+		 */
+		private List<Integer> getLatestSubmissions(Set<Long> users) {
+			Map<Long, Long> latest = new HashMap<>();
+			for(int s = live.nextSetBit(0); s >= 0; s = live.nextSetBit(s + 1)) {
+				if(users.contains(userIds[s])) {
+					latest.merge(userIds[s], times[s], Math::max);
+				}
+			}
+			List<Integer> submissions = new ArrayList<>();
+			for(int s = live.nextSetBit(0); s >= 0; s = live.nextSetBit(s + 1)) {
+				Long time = latest.get(userIds[s]);
+				if(time != null && time == times[s]) {
+					submissions.add(s);
+				}
+			}
+			return submissions;
+		}
+		
+		/**
+		 * Read one submission block, leaving the columns unchanged if the
+		 * block is incomplete.
+		 * 
+		 * @return the length of the block in bytes
+		 */
+		private int read(DataInputStream in) throws IOException {
+			long submissionId = in.readLong();
+			long userId = in.readLong();
+			long time = in.readLong();
+			int runs = in.readInt();
+			int length = 28;
+			
+			int run = runCount;
+			int testCase = caseCount;
+			try {
+				for(int i = 0; i < runs; i++) {
+					unitTestResultIds = ensureCapacity(unitTestResultIds, run + 1);
+					weightedTestIds = ensureCapacity(weightedTestIds, run + 1);
+					firstCases = ensureCapacity(firstCases, run + 2);
+					unitTestResultIds[run] = in.readLong();
+					weightedTestIds[run] = in.readLong();
+					firstCases[run] = testCase;
+					int cases = in.readInt();
+					length += 20;
+					names = ensureCapacity(names, testCase + cases);
+					results = ensureCapacity(results, testCase + cases);
+					for(int j = 0; j < cases; j++) {
+						names[testCase] = checkIndex(in.readInt());
+						results[testCase] = checkIndex(in.readInt());
+						testCase++;
+					}
+					length += cases * 8;
+					run++;
+				}
+			} catch(EOFException e) {
+				firstCases[runCount] = caseCount;
+				throw e;
+			}
+			
+			submissionIds = ensureCapacity(submissionIds, submissionCount + 1);
+			userIds = ensureCapacity(userIds, submissionCount + 1);
+			times = ensureCapacity(times, submissionCount + 1);
+			firstRuns = ensureCapacity(firstRuns, submissionCount + 2);
+			submissionIds[submissionCount] = submissionId;
+			userIds[submissionCount] = userId;
+			times[submissionCount] = time;
+			firstRuns[submissionCount] = runCount;
+			submissionCount++;
+			runCount = run;
+			caseCount = testCase;
+			firstRuns[submissionCount] = runCount;
+			firstCases[runCount] = caseCount;
+			return length;
+		}
+		
+		private int checkIndex(int index) throws IOException {
+			if(index < 0 || index >= dictionary.length) {
+				throw new IOException("Unknown dictionary entry " + index);
+			}
+			return index;
+		}
+		
+		/**
+		 * Work out which blocks are current: the last one recorded for each
+		 * submission.
+		 */
+		private void finish() {
+			Map<Long, Integer> latestBlocks = new HashMap<>();
+			for(int s = 0; s < submissionCount; s++) {
+				Integer previous = latestBlocks.put(submissionIds[s], s);
+				if(previous != null) {
+					live.clear(previous);
+					superseded++;
+				}
+				live.set(s);
+			}
+			for(int s = live.nextSetBit(0); s >= 0; s = live.nextSetBit(s + 1)) {
+				for(int r = firstRuns[s]; r < firstRuns[s + 1]; r++) {
+					unitTestResultIdSum += unitTestResultIds[r];
+				}
+			}
+		}
+		
+		private static long[] ensureCapacity(long[] array, int size) {
+			return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+		}
+		
+		private static int[] ensureCapacity(int[] array, int size) {
+			return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+		}
+	}
+	
+	/**
+	 * The test case names and results used in an assessment's history. New
+	 * entries are appended to the file as they are first used.
+	 */
+	private static class Dictionary {
+		private final File file;
+		private final List<String> values = new ArrayList<>();
+		private final Map<String, Integer> indexes = new HashMap<>();
+		
+		public Dictionary(File file) throws IOException {
+			this.file = file;
+			if(!file.exists()) {
+				return;
+			}
+			long length = file.length();
+			long validLength = 0;
+			try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				while(validLength < length) {
+					String value;
+					try {
+						value = in.readUTF();
+					} catch(EOFException e) {
+						break;
+					}
+					indexes.put(value, values.size());
+					values.add(value);
+					validLength += 2 + utfLength(value);
+				}
+			}
+			if(validLength < length) {
+				try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+					raf.setLength(validLength);
+				}
+			}
+		}
+		
+		public String[] getValues() {
+			return values.toArray(new String[values.size()]);
+		}
+		
+		/**
+		 * Get the positions of the given values, adding any that are new.
+		 */
+		public int[] indexesOf(List<String> newValues) throws IOException {
+			ByteArrayOutputStream added = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(added);
+			Map<String, Integer> pending = new HashMap<>();
+			int[] result = new int[newValues.size()];
+			for(int i = 0; i < result.length; i++) {
+				String value = newValues.get(i) == null ? "" : newValues.get(i);
+				Integer index = indexes.get(value);
+				if(index == null) {
+					index = pending.get(value);
+				}
+				if(index == null) {
+					index = values.size() + pending.size();
+					pending.put(value, index);
+					out.writeUTF(value);
+				}
+				result[i] = index;
+			}
+			if(!pending.isEmpty()) {
+				try(OutputStream fileOut = new FileOutputStream(file, true)) {
+					fileOut.write(added.toByteArray());
+				}
+				String[] ordered = new String[pending.size()];
+				for(Map.Entry<String, Integer> entry : pending.entrySet()) {
+					ordered[entry.getValue() - values.size()] = entry.getKey();
+				}
+				for(String value : ordered) {
+					indexes.put(value, values.size());
+					values.add(value);
+				}
+			}
+			return result;
+		}
+		
+		private static int utfLength(String value) {
+			int length = 0;
+			for(int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				length += (c >= 0x0001 && c <= 0x007F) ? 1 : (c > 0x07FF ? 3 : 2);
+			}
+			return length;
+		}
+	}
+	
+	/**
+	 * One submission's test case results, on their way into the store.
+	 */
+	private static class Submission {
+		private final long id;
+		private final long userId;
+		private final long time;
+		private final List<Run> runs = new ArrayList<>();
+		
+		public Submission(long id, long userId, long time) {
+			this.id = id;
+			this.userId = userId;
+			this.time = time;
+		}
+		
+		public Run addRun(long unitTestResultId, long weightedTestId) {
+			Run run = new Run(unitTestResultId, weightedTestId);
+			runs.add(run);
+			return run;
+		}
+		
+		public byte[] encode(Dictionary dictionary) throws IOException {
+			List<String> values = new ArrayList<>();
+			for(Run run : runs) {
+				values.addAll(run.values);
+			}
+			int[] indexes = dictionary.indexesOf(values);
+			
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(28 + runs.size() * 20 + indexes.length * 4);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeLong(id);
+			out.writeLong(userId);
+			out.writeLong(time);
+			out.writeInt(runs.size());
+			int next = 0;
+			for(Run run : runs) {
+				out.writeLong(run.unitTestResultId);
+				out.writeLong(run.weightedTestId);
+				out.writeInt(run.values.size() / 2);
+				for(int i = 0; i < run.values.size(); i++) {
+					out.writeInt(indexes[next++]);
+				}
+			}
+			out.flush();
+			return bytes.toByteArray();
+		}
+	}
+	
+	private static class Run {
+		private final long unitTestResultId;
+		private final long weightedTestId;
+		// Test case name, result, name, result, ...
+		private final List<String> values = new ArrayList<>();
+		
+		public Run(long unitTestResultId, long weightedTestId) {
+			this.unitTestResultId = unitTestResultId;
+			this.weightedTestId = weightedTestId;
+		}
+		
+		public void add(String name, String result) {
+			values.add(name);
+			values.add(result);
+		}
+	}
+	
+	/**
+	 * Groups the rows of {@link ResultDAO#scrollTestCaseHistory(long, RowHandler)}
+	 * back into submissions.
+	 */
+	private static abstract class RowCollector implements RowHandler {
+		private Submission submission;
+		private Run run;
+		private Object runId;
+		
+		@Override
+		public void handleRow(Object[] row) throws IOException {
+			long submissionId = ((Number) row[0]).longValue();
+			if(submission == null || submission.id != submissionId) {
+				finish();
+				submission = new Submission(submissionId, ((Number) row[1]).longValue(), ((Date) row[2]).getTime());
+				run = null;
+				runId = null;
+			}
+			if(row[3] == null) {
+				return;
+			}
+			if(run == null || !row[3].equals(runId)) {
+				run = submission.addRun(((Number) row[3]).longValue(), row[4] == null ? 0 : ((Number) row[4]).longValue());
+				runId = row[3];
+			}
+			if(row[5] != null || row[6] != null) {
+				run.add((String) row[5], (String) row[6]);
+			}
+		}
+		
+		public void finish() throws IOException {
+			if(submission != null) {
+				handleSubmission(submission);
+				submission = null;
+			}
+		}
+		
+		protected abstract void handleSubmission(Submission submission) throws IOException;
+	}
+}
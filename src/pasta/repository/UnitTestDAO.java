@@ -29,6 +29,7 @@ import java.util.List;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import pasta.domain.CacheRegions;
 import pasta.domain.result.UnitTestResult;
 import pasta.domain.template.UnitTest;
 import pasta.domain.template.WeightedUnitTest;
@@ -46,7 +47,11 @@ public class UnitTestDAO extends BaseDAO {
 	
 	@SuppressWarnings("unchecked")
 	public List<UnitTest> getAllUnitTests() {
-		return sessionFactory.getCurrentSession().createCriteria(UnitTest.class).list();
+		return sessionFactory.getCurrentSession()
+				.createCriteria(UnitTest.class)
+				.setCacheable(true)
+				.setCacheRegion(CacheRegions.TEMPLATE_QUERIES)
+				.list();
 	}
 
 	public UnitTest getUnitTest(long id) {
@@ -475,6 +475,80 @@ public class UserDAO extends BaseDAO {
 		return cr.list();
 	}
 	
+	/**
+	 * @return the ids of all active users (not including groups), in order
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Long> getActiveUserIds() {
+		Criteria cr = sessionFactory.getCurrentSession().createCriteria(PASTAUser.class);
+		cr.add(Restrictions.eq("active", true));
+		cr.add(Restrictions.ne("permissionLevel", UserPermissionLevel.GROUP));
+		cr.setProjection(Projections.id());
+		cr.addOrder(Order.asc("id"));
+		return cr.list();
+	}
+
+	/**
+	 * Get the group each of the given users is in for an assessment.
+	 * 
+	 * @param assessmentId the id of the assessment
+	 * @param userIds the ids of the users
+	 * @return a list of (Long user id, Long group id) rows
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getGroupMemberships(long assessmentId, Collection<Long> userIds) {
+		if(userIds.isEmpty()) {
+			return new ArrayList<Object[]>();
+		}
+		return sessionFactory.getCurrentSession().createQuery(
+				"select m.id, g.id from PASTAGroup g join g.members m "
+				+ "where g.assessment.id = :assessment and m.id in (:users)")
+				.setLong("assessment", assessmentId)
+				.setParameterList("users", userIds)
+				.list();
+	}
+
+	/**
+	 * Get the groups a user is in.
+	 * 
+	 * @param user the user
+	 * @return a map of assessment id to the id of the user's group for that
+	 *         assessment
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<Long, Long> getGroupIdsByAssessment(PASTAUser user) {
+		List<Object[]> rows = sessionFactory.getCurrentSession().createQuery(
+				"select g.assessment.id, g.id from PASTAGroup g join g.members m where m.id = :user")
+				.setLong("user", user.getId())
+				.list();
+		Map<Long, Long> groupIds = new HashMap<>();
+		for(Object[] row : rows) {
+			if(groupIds.put((Long) row[0], (Long) row[1]) != null) {
+				logger.warn("Ignoring multiple groups for user " + user.getId() + ", assessment " + row[0]);
+			}
+		}
+		return groupIds;
+	}
+	
+	/**
+	 * Get all of the extensions given to a user.
+	 * 
+	 * @param user the user
+	 * @return a map of assessment id to the extended due date
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<Long, Date> getExtensions(PASTAUser user) {
+		List<Object[]> rows = sessionFactory.getCurrentSession().createQuery(
+				"select e.assessment.id, e.newDueDate from AssessmentExtension e where e.user.id = :user")
+				.setLong("user", user.getId())
+				.list();
+		Map<Long, Date> extensions = new HashMap<>();
+		for(Object[] row : rows) {
+			extensions.put((Long) row[0], (Date) row[1]);
+		}
+		return extensions;
+	}
+
 	@SuppressWarnings("unchecked")
     public List<Long[]> getAllUserGroups(Collection<PASTAUser> users) {
         if(users == null || users.isEmpty()) {
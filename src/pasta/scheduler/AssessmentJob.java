@@ -30,6 +30,8 @@ import java.util.Date;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -57,7 +59,11 @@ import pasta.util.ProjectProperties;
  * 	Integer ID, 
  *  Text username (not null),
  *  Text assessmentName (not null),
- *  Data runDate (not null)
+ *  Data runDate (not null),
+ *  Date scheduledDate,
+ *  Text priority,
+ *  Text leaseOwner,
+ *  Date leaseExpires
  * </pre>
  * 
  * @author Alex Radu
@@ -87,17 +93,35 @@ public class AssessmentJob extends Job implements Serializable{
 	
 	private boolean running;
 	
+	@Column(name = "scheduled_date")
+	private Date scheduledDate;
+	
+	@Enumerated(EnumType.STRING)
+	private JobPriority priority;
+	
+	@Column(name = "lease_owner")
+	private String leaseOwner;
+	
+	@Column(name = "lease_expires")
+	private Date leaseExpires;
+	
 	@Transient
 	private Language language;
 	
 	public AssessmentJob(){}
 	
 	public AssessmentJob(PASTAUser user, long assessmentId, Date runDate, AssessmentResult result){
+		this(user, assessmentId, runDate, result, JobPriority.SUBMISSION);
+	}
+	
+	public AssessmentJob(PASTAUser user, long assessmentId, Date runDate, AssessmentResult result, JobPriority priority){
 		super(runDate);
 		this.user = user;
 		this.assessmentId = assessmentId;
 		this.results = result;
 		this.running = false;
+		this.scheduledDate = new Date();
+		this.priority = priority;
 	}
 
 	public PASTAUser getUser() {
@@ -128,6 +152,52 @@ public class AssessmentJob extends Job implements Serializable{
 		this.running = running;
 	}
 	
+	/**
+	 * @return the date this job was added to the queue; this is the submission
+	 *         date for new submissions, but later for re-runs. May be null for
+	 *         jobs created before this was recorded.
+	 */
+	public Date getScheduledDate() {
+		return scheduledDate;
+	}
+	public void setScheduledDate(Date scheduledDate) {
+		this.scheduledDate = scheduledDate;
+	}
+	
+	/**
+	 * @return the priority class of this job; jobs created before this was
+	 *         recorded are treated as submissions
+	 */
+	public JobPriority getPriority() {
+		return priority == null ? JobPriority.SUBMISSION : priority;
+	}
+	public void setPriority(JobPriority priority) {
+		this.priority = priority;
+	}
+	
+	/**
+	 * @return the execution node that has claimed this job, or null if no
+	 *         node has claimed it yet
+	 * @see ExecutionScheduler#claimJob(AssessmentJob, String, Date)
+	 */
+	public String getLeaseOwner() {
+		return leaseOwner;
+	}
+	public void setLeaseOwner(String leaseOwner) {
+		this.leaseOwner = leaseOwner;
+	}
+	
+	/**
+	 * @return when the claim on this job lapses unless renewed; after this
+	 *         another node may claim the job
+	 */
+	public Date getLeaseExpires() {
+		return leaseExpires;
+	}
+	public void setLeaseExpires(Date leaseExpires) {
+		this.leaseExpires = leaseExpires;
+	}
+	
 	public Language getLanguage() {
 		if(language != null) {
 			return language;
@@ -149,6 +219,7 @@ public class AssessmentJob extends Job implements Serializable{
 				" job for " + user.getUsername() + 
 				" submitted at " + results.getSubmissionDate() + 
 				" by " + results.getSubmittedBy().getUsername() +
-				(running ? " (running)" : ""); 
+				(getPriority() != JobPriority.SUBMISSION ? " [" + getPriority().getDescription() + "]" : "") +
+				(running ? " (running" + (leaseOwner == null ? "" : " on " + leaseOwner) + ")" : ""); 
 	}
 }
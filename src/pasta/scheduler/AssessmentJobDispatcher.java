@@ -0,0 +1,65 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.scheduler;
+
+import java.util.Date;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import pasta.scheduler.AssessmentJobExecutor.DispatchSource;
+
+/**
+ * Hands newly scheduled jobs straight to the {@link AssessmentJobExecutor}.
+ * <p>
+ * Jobs that are not taken here (e.g. if this node is busy, does not run jobs,
+ * or is restarted before they run) are picked up by the periodic sweep in
+ * {@link pasta.service.ExecutionManager#executeRemainingAssessmentJobs()} on
+ * whichever node has room.
+ */
+@Component
+public class AssessmentJobDispatcher implements ApplicationListener<AssessmentJobScheduledEvent> {
+	
+	private static Logger logger = Logger.getLogger(AssessmentJobDispatcher.class);
+	
+	@Autowired
+	private AssessmentJobExecutor executor;
+
+	@Override
+	public void onApplicationEvent(AssessmentJobScheduledEvent event) {
+		AssessmentJob job = event.getJob();
+		if(job.getRunDate() != null && job.getRunDate().after(new Date())) {
+			logger.trace("Leaving future job for sweep: " + job);
+			return;
+		}
+		if(executor.getClaimCapacity() <= 0) {
+			logger.trace("Leaving job for sweep, as this node is busy: " + job);
+			return;
+		}
+		executor.offer(job, DispatchSource.EVENT);
+	}
+}
@@ -24,11 +24,18 @@ SOFTWARE.
 
 package pasta.scheduler;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
@@ -38,40 +45,106 @@ import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import pasta.repository.ResultDAO;
+import pasta.repository.TestCaseHistoryStore;
 import pasta.service.ExecutionManager;
+import pasta.service.HomePageManager;
+import pasta.util.ProjectProperties;
+import pasta.util.TimingStatistics;
 
 public class AssessmentJobExecutor extends ThreadPoolExecutor {
 
 	protected Logger logger = Logger.getLogger(getClass());
 	
+	/**
+	 * How a job reached the executor: directly after being scheduled, or by
+	 * the periodic sweep of outstanding jobs in the database.
+	 */
+	public static enum DispatchSource {
+		EVENT("Dispatched on submission"), 
+		SWEEP("Recovered by database sweep");
+		
+		private String description;
+		private DispatchSource(String description) {
+			this.description = description;
+		}
+		public String getDescription() {
+			return description;
+		}
+	}
+	
 	@Autowired private ResultDAO resultDAO;
+	@Autowired private TestCaseHistoryStore testCaseHistoryStore;
+	@Autowired private HomePageManager homePageManager;
 	@Autowired private ExecutionScheduler scheduler;
 	@Autowired protected ExecutionManager executionManager;
 
+	/**
+	 * How long a claim on a job lasts before another node may take it over;
+	 * claims are renewed by {@link #renewLeases()} while the job is held.
+	 */
+	public static final long LEASE_DURATION = 2 * 60 * 1000;
+	
+	// The jobs this node holds leases on; the database is the authority,
+	// this just avoids trying to claim the same job twice
 	private ConcurrentSkipListSet<Long> processingIds;
-	private ConcurrentSkipListSet<Long> executingIds;
 	private ConcurrentMap<String, Lock> locks;
+	private boolean leasesRecovered = false;
+	
+	private Map<DispatchSource, TimingStatistics> startLatency;
+	
+	private FairShareJobQueue queue;
 	
 	public AssessmentJobExecutor(int corePoolSize, int maxPoolSize) {
-		super(corePoolSize, maxPoolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		this(corePoolSize, maxPoolSize, new FairShareJobQueue());
+	}
+	
+	private AssessmentJobExecutor(int corePoolSize, int maxPoolSize, FairShareJobQueue queue) {
+		super(corePoolSize, maxPoolSize, 60, TimeUnit.SECONDS, queue);
+		this.queue = queue;
 		locks = new ConcurrentHashMap<String, Lock>();
 		processingIds = new ConcurrentSkipListSet<Long>();
-		executingIds = new ConcurrentSkipListSet<Long>();
+		startLatency = new EnumMap<DispatchSource, TimingStatistics>(DispatchSource.class);
+		for(DispatchSource source : DispatchSource.values()) {
+			startLatency.put(source, new TimingStatistics(source.getDescription()));
+		}
 	}
 	
 	public boolean offer(AssessmentJob job) {
+		return offer(job, DispatchSource.SWEEP);
+	}
+	
+	public boolean offer(AssessmentJob job, DispatchSource source) {
 		logger.trace("Offering " + job.toString());
 		if(executionManager == null) {
 			logger.warn("Rejecting job: no execution manager.");
 			return false;
 		}
-		if(hasJob(job)) {
+		if(!ProjectProperties.getInstance().isExecutionEnabled() || isShutdown()) {
+			logger.trace("Rejecting job - not executing jobs on this node");
+			return false;
+		}
+		// Jobs can be offered from both the scheduling event and the sweep at
+		// the same time, so only the first to register the ID will try to 
+		// claim it
+		if(!processingIds.add(job.getId())) {
 			logger.trace("Rejecting job - already have it");
 			return false;
 		}
+		// Other nodes may be trying to claim the same job
+		boolean claimed = false;
+		try {
+			recoverLeases();
+			claimed = scheduler.claimJob(job, getNodeId(), new Date(System.currentTimeMillis() + LEASE_DURATION));
+		} catch(Exception e) {
+			logger.error("Could not claim assessment job #" + job.getId(), e);
+		}
+		if(!claimed) {
+			processingIds.remove(job.getId());
+			logger.trace("Rejecting job - claimed by another node");
+			return false;
+		}
 		logger.trace("Accepting job");
-		processingIds.add(job.getId());
-		execute(new AssessmentJobTask(job, executionManager, locks));
+		execute(new AssessmentJobTask(job, executionManager, locks, source));
 		return true;
 	}
 	
@@ -79,13 +152,78 @@ public class AssessmentJobExecutor extends ThreadPoolExecutor {
 		return processingIds.contains(job.getId());
 	}
 	
+	/**
+	 * @return how many more jobs this node should claim: enough to keep each
+	 *         thread busy with one more waiting, so that work is spread over
+	 *         all nodes rather than queued up on one
+	 */
+	public int getClaimCapacity() {
+		if(!ProjectProperties.getInstance().isExecutionEnabled() || isShutdown()) {
+			return 0;
+		}
+		return Math.max(0, 2 * getCorePoolSize() - processingIds.size());
+	}
+	
+	/**
+	 * Extend the leases on all jobs this node holds, so that other nodes do
+	 * not take them over.
+	 */
+	public void renewLeases() {
+		if(processingIds.isEmpty()) {
+			return;
+		}
+		int renewed = scheduler.renewLeases(getNodeId(), new Date(System.currentTimeMillis() + LEASE_DURATION));
+		logger.trace("Renewed " + renewed + " job leases");
+	}
+	
+	/**
+	 * Stop taking new jobs, and give up the leases on any that have not
+	 * started yet so that other nodes can run them. Jobs already running are
+	 * left to finish.
+	 */
+	public void shutdownAndReleaseLeases() {
+		shutdown();
+		List<Runnable> waiting = new LinkedList<Runnable>();
+		getQueue().drainTo(waiting);
+		for(Runnable r : waiting) {
+			processingIds.remove(((AssessmentJobTask) r).getJob().getId());
+		}
+		try {
+			int released = scheduler.releaseLeases(getNodeId(), false);
+			logger.info("Released " + released + " job leases");
+		} catch(Exception e) {
+			logger.error("Could not release job leases", e);
+		}
+	}
+	
+	/**
+	 * Before this node first claims a job, release any leases still held
+	 * under its name. Node IDs are unique to each PASTA instance (see
+	 * {@link ProjectProperties#getExecutionNodeId()}), and this instance has
+	 * not claimed anything yet, so these are left over from before a restart
+	 * and would otherwise be stuck until they expire.
+	 */
+	private synchronized void recoverLeases() {
+		if(!leasesRecovered) {
+			int released = scheduler.releaseLeases(getNodeId(), true);
+			if(released > 0) {
+				logger.info("Released " + released + " job leases left from a previous run");
+			}
+			leasesRecovered = true;
+		}
+	}
+	
+	private String getNodeId() {
+		return ProjectProperties.getInstance().getExecutionNodeId();
+	}
+	
 	@Override
 	protected void beforeExecute(Thread t, Runnable r) {
 		super.beforeExecute(t, r);
 		AssessmentJobTask task = (AssessmentJobTask) r;
-		executingIds.add(task.job.getId());
-		task.job.setRunning(true);
-		scheduler.update(task.job);
+		task.startTime = System.currentTimeMillis();
+		recordStartLatency(task);
+		scheduler.setRunning(task.job, getNodeId(), true);
 		logger.debug("Starting execution of " + r.toString());
 	}
 	
@@ -96,18 +234,26 @@ public class AssessmentJobExecutor extends ThreadPoolExecutor {
 		AssessmentJobTask task = (AssessmentJobTask) r;
 		if(t != null) {
 			logger.error("Error running job: ", t);
+		} else {
+			ExecutionEstimator.recordDuration(task.job, System.currentTimeMillis() - task.startTime);
 		}
 		task.job.getResults().setWaitingToRun(false);
 		try {
 			resultDAO.update(task.job.getResults());
+			testCaseHistoryStore.record(task.job.getResults());
+			homePageManager.invalidate(task.job.getResults().getUser());
 		} catch(Exception e) {
 			logger.error("Unable to update results from assessment job #" + task.job.getId(), e);
 		}
-		task.job.setRunning(false);
-		scheduler.update(task.job);
+		if(!scheduler.deleteClaimedJob(task.job, getNodeId())) {
+			logger.warn("Lease on assessment job #" + task.job.getId() + " was lost while it was running");
+		}
 		processingIds.remove(task.job.getId());
-		executingIds.remove(task.job.getId());
-		scheduler.delete(task.job);
+		
+		// Pick up more work now rather than waiting for the next sweep
+		if(!isShutdown()) {
+			executionManager.executeRemainingAssessmentJobs();
+		}
 	}
 	
 	public void clearAllTasks() {
@@ -117,12 +263,65 @@ public class AssessmentJobExecutor extends ThreadPoolExecutor {
 			it.remove();
 		}
 		processingIds.clear();
-		executingIds.clear();
 		locks.clear();
+		scheduler.releaseLeases(getNodeId(), false);
+	}
+	
+	/**
+	 * Sort the given jobs into the order they will run in: jobs that are
+	 * running (on any node) come first, then jobs queued on this node in the
+	 * order the queue will dispatch them, then any jobs not claimed yet in
+	 * the order they will be claimed (see
+	 * {@link ExecutionScheduler#getClaimableAssessmentJobs(int)}): share keys
+	 * take turns within each priority class, keeping the original order of
+	 * each key's jobs.
+	 * 
+	 * @param jobs the jobs to sort; not modified
+	 * @return a new sorted list
+	 */
+	public List<AssessmentJob> sortByDispatchOrder(List<AssessmentJob> jobs) {
+		Map<Long, Integer> rank = new HashMap<Long, Integer>();
+		int next = 0;
+		for(Runnable r : queue.getDispatchOrder()) {
+			rank.put(((AssessmentJobTask) r).getJob().getId(), next++);
+		}
+		Map<JobPriority, List<AssessmentJob>> notQueued = new EnumMap<>(JobPriority.class);
+		for(JobPriority priority : JobPriority.values()) {
+			notQueued.put(priority, new LinkedList<AssessmentJob>());
+		}
+		for(AssessmentJob job : jobs) {
+			if(!job.isRunning() && !rank.containsKey(job.getId())) {
+				notQueued.get(job.getPriority()).add(job);
+			}
+		}
+		for(JobPriority priority : JobPriority.values()) {
+			notQueued.put(priority, FairShareJobQueue.rotateByShareKey(notQueued.get(priority)));
+		}
+		for(AssessmentJob job : FairShareJobQueue.interleave(notQueued, jobs.size())) {
+			rank.put(job.getId(), next++);
+		}
+		List<AssessmentJob> sorted = new ArrayList<AssessmentJob>(jobs);
+		sorted.sort(Comparator.comparing((AssessmentJob job) -> !job.isRunning())
+				.thenComparing(job -> rank.getOrDefault(job.getId(), 0)));
+		return sorted;
+	}
+	
+	private void recordStartLatency(AssessmentJobTask task) {
+		Date scheduled = task.job.getScheduledDate();
+		if(scheduled == null) {
+			return;
+		}
+		long latency = System.currentTimeMillis() - scheduled.getTime();
+		startLatency.get(task.source).record(latency);
+		logger.debug("Job #" + task.job.getId() + " started " + latency + "ms after being scheduled (" + task.source + ")");
 	}
 	
-	public boolean isExecuting(AssessmentJob job) {
-		return executingIds.contains(job.getId());
+	/**
+	 * @return the time between a job being scheduled and starting execution,
+	 *         split by how the job reached the executor
+	 */
+	public Map<DispatchSource, TimingStatistics> getStartLatencyStatistics() {
+		return startLatency;
 	}
 	
 	static class AssessmentJobTask implements Runnable {
@@ -131,11 +330,14 @@ public class AssessmentJobExecutor extends ThreadPoolExecutor {
 		private String lockKey;
 		private ExecutionManager manager;
 		private Lock lock;
+		private DispatchSource source;
+		private long startTime;
 		
-		public AssessmentJobTask(AssessmentJob job, ExecutionManager manager, ConcurrentMap<String, Lock> locks) {
+		public AssessmentJobTask(AssessmentJob job, ExecutionManager manager, ConcurrentMap<String, Lock> locks, DispatchSource source) {
 			this.job = job;
 			this.lockKey = job.getUser().getUsername() + "|" + job.getAssessmentId();
 			this.manager = manager;
+			this.source = source;
 			this.lock = locks.get(this.lockKey);
 			if(this.lock == null) {
 				this.lock = new ReentrantLock();
@@ -22,34 +22,27 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
 */
 
-package pasta.util.io;
+package pasta.scheduler;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import org.springframework.context.ApplicationEvent;
 
-public class ChildByteArrayOutputStream extends ByteArrayOutputStream {
+/**
+ * Published once a new {@link AssessmentJob} has been committed to the
+ * database, so that it can be handed to the executor straight away rather
+ * than waiting for the next database sweep.
+ */
+public class AssessmentJobScheduledEvent extends ApplicationEvent {
 
-	private DualByteArrayOutputStream parent;
-	
-	public ChildByteArrayOutputStream(DualByteArrayOutputStream parent) {
-		super();
-		this.parent = parent;
-	}
-	
-	@Override
-	public synchronized void write(byte[] b, int off, int len) {
-		super.write(b, off, len);
-		this.parent.write(b, off, len);
-	}
+	private static final long serialVersionUID = -4380916279145722713L;
+
+	private AssessmentJob job;
 	
-	@Override
-	public synchronized void write(int b) {
-		super.write(b);
-		parent.write(b);
+	public AssessmentJobScheduledEvent(ExecutionScheduler source, AssessmentJob job) {
+		super(source);
+		this.job = job;
 	}
 	
-	@Override
-	public void write(byte[] b) throws IOException {
-		super.write(b);
+	public AssessmentJob getJob() {
+		return job;
 	}
 }
@@ -29,6 +29,8 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.stereotype.Component;
 
+import pasta.docker.DockerManager;
+
 @Component
 public class ContextClosedListener implements ApplicationListener<ContextClosedEvent> {
     @Autowired
@@ -36,6 +38,7 @@ public class ContextClosedListener implements ApplicationListener<ContextClosedE
 
     @Override
 	public void onApplicationEvent(ContextClosedEvent event) {
-        assessmentJobExecutor.shutdown();
+        assessmentJobExecutor.shutdownAndReleaseLeases();
+        DockerManager.instance().shutdownContainerPools();
     }  
 }
\ No newline at end of file
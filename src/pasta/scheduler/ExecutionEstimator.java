@@ -25,61 +25,90 @@ SOFTWARE.
 package pasta.scheduler;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import pasta.docker.Language;
 import pasta.docker.LanguageManager;
 import pasta.domain.template.Assessment;
 import pasta.domain.template.BlackBoxTestCase;
 import pasta.domain.template.UnitTest;
+import pasta.domain.template.WeightedUnitTest;
 import pasta.util.PASTAUtil;
 
+/**
+ * Estimates how long assessment jobs will take to run.
+ * <p>
+ * Estimates start from the configured timeouts of each unit test (reading
+ * the test code for JUnit timeouts where needed) plus the language's
+ * execution overheads. These are worked out once per unit test and per
+ * assessment and language, and cached until {@link #invalidate(UnitTest)} or
+ * {@link #invalidate(Assessment)} is called. Once jobs for an assessment and
+ * language have actually run, a moving average of their observed run times
+ * ({@link #recordDuration(AssessmentJob, long)}) is used instead.
+ */
 public class ExecutionEstimator {
+	
+	// Weight given to each new observation in the moving average
+	private static final double OBSERVATION_WEIGHT = 0.3;
+	private static final int MAX_CACHED_JOBS = 10000;
+	
+	private static final ConcurrentMap<Long, TestProfile> testProfiles = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, Long> assessmentEstimates = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, Long> observedTimes = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<Long, Set<Long>> assessmentsByTest = new ConcurrentHashMap<>();
+	
+	// Guessing a job's language scans the submission, so only do it once per job
+	@SuppressWarnings("serial")
+	private static final Map<Long, String> jobLanguages = Collections.synchronizedMap(
+			new LinkedHashMap<Long, String>() {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+					return size() > MAX_CACHED_JOBS;
+				}
+			});
 
 	public static long estimateTime(AssessmentJob job) {
-		return estimateTime(job.getResults().getAssessment(), job.getLanguage());
+		String languageId = getLanguageId(job);
+		Assessment assessment = job.getResults().getAssessment();
+		Long observed = observedTimes.get(key(assessment.getId(), languageId));
+		if(observed != null) {
+			return observed;
+		}
+		Language language = languageId.isEmpty() ? null : LanguageManager.getInstance().getLanguage(languageId);
+		return estimateTime(assessment, language);
 	}
 	
 	public static long estimateTime(Assessment assessment) {
 		return estimateTime(assessment, null);
 	}
 	public static long estimateTime(Assessment assessment, Language language) {
-		return assessment.getAllUnitTests().stream()
-				.reduce(0L, 
-						(t, wut) -> t + estimateTime(wut.getTest(), language), 
-						Long::sum);
+		String key = key(assessment.getId(), language == null ? "" : language.getId());
+		Long estimate = assessmentEstimates.get(key);
+		if(estimate == null) {
+			long total = 0;
+			for(WeightedUnitTest wut : assessment.getAllUnitTests()) {
+				total += estimateTime(wut.getTest(), language);
+				assessmentsByTest
+						.computeIfAbsent(wut.getTest().getId(), id -> ConcurrentHashMap.newKeySet())
+						.add(assessment.getId());
+			}
+			estimate = total;
+			assessmentEstimates.put(key, estimate);
+		}
+		return estimate;
 	}
 	
 	public static long estimateTime(UnitTest unitTest) {
 		return estimateTime(unitTest, null);
 	}
 	public static long estimateTime(UnitTest unitTest, Language language) {
-		long time = 0;
-		if(unitTest.getBlackBoxTimeout() == null) {
-			time += unitTest.getTestCases().stream()
-					.reduce(0L, 
-							(t, tc) -> t + estimateTime(tc), 
-							Long::sum);
-		} else {
-			time += unitTest.getBlackBoxTimeout();
-		}
-		
-		if(unitTest.getAdvancedTimeout() == null) {
-			File main = unitTest.getMainSourceFile();
-			if(main != null) {
-				Map<String, Long> timeouts = PASTAUtil.extractTestTimeouts(main);
-				time += timeouts.entrySet().stream()
-						.reduce(0L, 
-								(total, e) -> total + e.getValue(), 
-								Long::sum);
-			}
-		} else {
-			time += unitTest.getAdvancedTimeout();
-		}
-		
-		time += overhead(unitTest, language);
-		
-		return time;
+		TestProfile profile = getProfile(unitTest);
+		return profile.blackBoxTime + profile.advancedTime + overhead(profile, language);
 	}
 	
 	public static long estimateTime(BlackBoxTestCase testCase) {
@@ -87,26 +116,145 @@ public class ExecutionEstimator {
 	}
 	
 	public static long overhead(UnitTest unitTest, Language language) {
+		return overhead(getProfile(unitTest), language);
+	}
+	
+	private static long overhead(TestProfile profile, Language language) {
 		if(language == null) {
 			return 0;
 		}
 		
 		long overhead = 0;
-		if(!unitTest.getTestCases().isEmpty()) {
-			overhead += unitTest.getTestCases().size() * language.getTestCaseExecutionOverhead(); 
+		if(profile.testCaseCount > 0) {
+			overhead += profile.testCaseCount * language.getTestCaseExecutionOverhead(); 
 			overhead += language.getTestSuiteExecutionOverhead();
 		}
 		
-		if(unitTest.hasCode()) {
-			File main = unitTest.getMainSourceFile();
-			if(main != null) {
-				Language java = LanguageManager.getInstance().getLanguage("java");
-				Map<String, Long> timeouts = PASTAUtil.extractTestTimeouts(main);
-				overhead += java.getTestSuiteExecutionOverhead();
-				overhead += timeouts.size() * java.getTestCaseExecutionOverhead();
-			}
+		if(profile.hasMainSource) {
+			Language java = LanguageManager.getInstance().getLanguage("java");
+			overhead += java.getTestSuiteExecutionOverhead();
+			overhead += profile.junitTestCount * java.getTestCaseExecutionOverhead();
 		}
 		
 		return overhead;
 	}
+	
+	/**
+	 * Feed back how long a job actually took to run, so that estimates for
+	 * later jobs of the same assessment and language are based on real run
+	 * times rather than configured timeouts.
+	 * 
+	 * @param job the job that finished
+	 * @param millis how long the job took to run
+	 */
+	public static void recordDuration(AssessmentJob job, long millis) {
+		String languageId = getLanguageId(job);
+		jobLanguages.remove(job.getId());
+		observedTimes.merge(
+				key(job.getResults().getAssessment().getId(), languageId), 
+				millis,
+				(old, next) -> Math.round(old * (1 - OBSERVATION_WEIGHT) + next * OBSERVATION_WEIGHT));
+	}
+	
+	/**
+	 * Forget any estimates based on the given unit test, e.g. after its
+	 * timeouts, test cases or code have changed.
+	 * 
+	 * @param unitTest the unit test
+	 */
+	public static void invalidate(UnitTest unitTest) {
+		testProfiles.remove(unitTest.getId());
+		Set<Long> assessmentIds = assessmentsByTest.remove(unitTest.getId());
+		if(assessmentIds != null) {
+			for(Long assessmentId : assessmentIds) {
+				invalidate(assessmentId);
+			}
+		}
+	}
+	
+	/**
+	 * Forget any estimates for the given assessment, e.g. after its unit
+	 * tests have changed.
+	 * 
+	 * @param assessment the assessment
+	 */
+	public static void invalidate(Assessment assessment) {
+		invalidate(assessment.getId());
+	}
+	
+	private static void invalidate(long assessmentId) {
+		String prefix = assessmentId + "|";
+		assessmentEstimates.keySet().removeIf(key -> key.startsWith(prefix));
+		observedTimes.keySet().removeIf(key -> key.startsWith(prefix));
+	}
+	
+	private static String getLanguageId(AssessmentJob job) {
+		if(job.getId() == null) {
+			Language language = job.getLanguage();
+			return language == null ? "" : language.getId();
+		}
+		String languageId = jobLanguages.get(job.getId());
+		if(languageId == null) {
+			Language language = job.getLanguage();
+			languageId = language == null ? "" : language.getId();
+			jobLanguages.put(job.getId(), languageId);
+		}
+		return languageId;
+	}
+	
+	private static String key(long assessmentId, String languageId) {
+		return assessmentId + "|" + languageId;
+	}
+	
+	private static TestProfile getProfile(UnitTest unitTest) {
+		TestProfile profile = testProfiles.get(unitTest.getId());
+		if(profile == null) {
+			profile = new TestProfile(unitTest);
+			testProfiles.put(unitTest.getId(), profile);
+		}
+		return profile;
+	}
+	
+	/**
+	 * The parts of a unit test that its estimates are based on.
+	 */
+	private static class TestProfile {
+		private long blackBoxTime;
+		private long advancedTime;
+		private int testCaseCount;
+		private boolean hasMainSource;
+		private int junitTestCount;
+		
+		private TestProfile(UnitTest unitTest) {
+			testCaseCount = unitTest.getTestCases().size();
+			if(unitTest.getBlackBoxTimeout() == null) {
+				blackBoxTime = unitTest.getTestCases().stream()
+						.reduce(0L, 
+								(t, tc) -> t + estimateTime(tc), 
+								Long::sum);
+			} else {
+				blackBoxTime = unitTest.getBlackBoxTimeout();
+			}
+			
+			Map<String, Long> timeouts = null;
+			if(unitTest.hasCode()) {
+				File main = unitTest.getMainSourceFile();
+				if(main != null) {
+					timeouts = PASTAUtil.extractTestTimeouts(main);
+					hasMainSource = true;
+					junitTestCount = timeouts.size();
+				}
+			}
+			
+			if(unitTest.getAdvancedTimeout() == null) {
+				if(timeouts != null) {
+					advancedTime = timeouts.values().stream()
+							.filter(t -> t != null)
+							.reduce(0L, Long::sum);
+				}
+			} else {
+				advancedTime = unitTest.getAdvancedTimeout();
+			}
+		}
+	}
 }
@@ -24,18 +24,26 @@ SOFTWARE.
 
 package pasta.scheduler;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.hibernate.Criteria;
+import org.hibernate.LockMode;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import pasta.domain.result.AssessmentResult;
 import pasta.domain.user.PASTAUser;
@@ -67,13 +75,61 @@ public class ExecutionScheduler {
 	@Autowired
 	private SessionFactory sessionFactory;
 	
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+	
+	/**
+	 * Save a new job for the given result, and announce it with an
+	 * {@link AssessmentJobScheduledEvent} once the job has been committed
+	 * so that it can be executed without waiting for the next sweep of
+	 * outstanding jobs.
+	 * 
+	 * @param user the user (or group) the job is for
+	 * @param assessmentId the id of the assessment to run
+	 * @param result the result object to store results in
+	 * @param runDate the date of the submission
+	 */
 	public void scheduleJob(PASTAUser user, long assessmentId, AssessmentResult result, Date runDate) {
+		scheduleJob(user, assessmentId, result, runDate, JobPriority.SUBMISSION);
+	}
+	
+	/**
+	 * Save a new job for the given result with the given priority class,
+	 * and announce it once committed.
+	 * 
+	 * @param user the user (or group) the job is for
+	 * @param assessmentId the id of the assessment to run
+	 * @param result the result object to store results in
+	 * @param runDate the date of the submission
+	 * @param priority the priority class of the job
+	 * @see #scheduleJob(PASTAUser, long, AssessmentResult, Date)
+	 */
+	public void scheduleJob(PASTAUser user, long assessmentId, AssessmentResult result, Date runDate, JobPriority priority) {
 		if(result.isWaitingToRun()) {
 			return;
 		}
 		result.setWaitingToRun(true);
 		resultManager.update(result);
-		save(new AssessmentJob(user, assessmentId, runDate, result));
+		AssessmentJob job = new AssessmentJob(user, assessmentId, runDate, result, priority);
+		save(job);
+		publishAfterCommit(job);
+	}
+	
+	private void publishAfterCommit(final AssessmentJob job) {
+		if(job.getId() == null) {
+			return;
+		}
+		final AssessmentJobScheduledEvent event = new AssessmentJobScheduledEvent(this, job);
+		if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+			eventPublisher.publishEvent(event);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				eventPublisher.publishEvent(event);
+			}
+		});
 	}
 	
 	public void save(Job job) {
@@ -123,6 +179,200 @@ public class ExecutionScheduler {
 		return list;
 	}
 	
+	/**
+	 * Get outstanding assessment jobs that no execution node holds a lease
+	 * on, or whose lease has expired (e.g. because the node holding it
+	 * stopped). They are picked in the same order as the queue would run
+	 * them: within each priority class, share keys take turns (see
+	 * {@link FairShareJobQueue#rotateByShareKey(List)}), and the classes are
+	 * shared out by their weight (see {@link FairShareJobQueue#interleave(Map, int)}).
+	 * So neither one user's burst of submissions nor a large backlog of one
+	 * class can fill every batch on its own.
+	 * 
+	 * @param max the most jobs to return
+	 * @return the jobs that can be claimed
+	 */
+	public List<AssessmentJob> getClaimableAssessmentJobs(int max) {
+		Date now = new Date();
+		Map<JobPriority, List<AssessmentJob>> byPriority = new EnumMap<>(JobPriority.class);
+		for(JobPriority priority : JobPriority.values()) {
+			String key = priority == JobPriority.BULK_RERUN ? "assessmentId" : "user";
+			
+			// The oldest job of each share key, oldest first
+			@SuppressWarnings("unchecked")
+			List<AssessmentJob> heads = sessionFactory.getCurrentSession()
+					.createQuery("from AssessmentJob j where " + getClaimableCondition("j", priority) 
+							+ " and j.id = (select min(k.id) from AssessmentJob k where k." + key + " = j." + key 
+							+ " and " + getClaimableCondition("k", priority) + ") "
+							+ "order by j.runDate, j.id")
+					.setParameter("now", now)
+					.setParameter("priority", priority)
+					.setMaxResults(max)
+					.list();
+			
+			// With fewer keys than jobs wanted, the keys go round again
+			List<AssessmentJob> candidates = new ArrayList<>(heads);
+			int more = max - heads.size();
+			if(more > 0) {
+				for(AssessmentJob head : heads) {
+					@SuppressWarnings("unchecked")
+					List<AssessmentJob> rest = sessionFactory.getCurrentSession()
+							.createQuery("from AssessmentJob j where " + getClaimableCondition("j", priority) 
+									+ " and j." + key + " = :key and j.id <> :headId "
+									+ "order by j.runDate, j.id")
+							.setParameter("now", now)
+							.setParameter("priority", priority)
+							.setParameter("key", priority == JobPriority.BULK_RERUN ? head.getAssessmentId() : head.getUser())
+							.setParameter("headId", head.getId())
+							.setMaxResults(more)
+							.list();
+					candidates.addAll(rest);
+				}
+			}
+			byPriority.put(priority, FairShareJobQueue.rotateByShareKey(candidates));
+		}
+		return FairShareJobQueue.interleave(byPriority, max);
+	}
+	
+	/**
+	 * @return an HQL condition for the job with the given alias being ready
+	 *         to run, unleased and of the given priority class, using the
+	 *         parameters <code>now</code> and <code>priority</code>
+	 */
+	private static String getClaimableCondition(String alias, JobPriority priority) {
+		String condition = alias + ".runDate <= :now and (" + alias + ".leaseOwner is null or " 
+				+ alias + ".leaseExpires < :now) and ";
+		// Jobs from before priority classes count as submissions
+		if(priority == JobPriority.SUBMISSION) {
+			return condition + "(" + alias + ".priority is null or " + alias + ".priority = :priority)";
+		}
+		return condition + alias + ".priority = :priority";
+	}
+	
+	/**
+	 * Atomically claim a job for an execution node. This only succeeds if no
+	 * other node holds an unexpired lease on the job, so if several nodes
+	 * try to claim the same job, exactly one of them gets it. It also fails
+	 * while another node holds a lease on a job for the same user and
+	 * assessment, so that one user's runs of an assessment never overlap
+	 * across nodes (on one node they are run in turn by the executor).
+	 * 
+	 * @param job the job to claim
+	 * @param owner the ID of the claiming node
+	 * @param expires when the lease lapses unless renewed
+	 * @return true if the job was claimed
+	 */
+	// Jobs are offered (and so claimed) from afterCommit callbacks, where a
+	// plain REQUIRED transaction would join the one that has just committed
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	public boolean claimJob(AssessmentJob job, String owner, Date expires) {
+		Date now = new Date();
+		// Locking the user's jobs for the assessment makes nodes claiming
+		// any of them at the same time take turns, so each sees the other's
+		// lease once it is committed
+		@SuppressWarnings("unchecked")
+		List<Object[]> related = sessionFactory.getCurrentSession()
+				.createQuery("select j.id, j.leaseOwner, j.leaseExpires from AssessmentJob j "
+						+ "where j.user = :user and j.assessmentId = :assessmentId")
+				.setParameter("user", job.getUser())
+				.setParameter("assessmentId", job.getAssessmentId())
+				.setLockMode("j", LockMode.PESSIMISTIC_WRITE)
+				.list();
+		for(Object[] other : related) {
+			String otherOwner = (String) other[1];
+			Date otherExpires = (Date) other[2];
+			if(!other[0].equals(job.getId()) && otherOwner != null && !otherOwner.equals(owner)
+					&& otherExpires != null && !otherExpires.before(now)) {
+				logger.trace("Not claiming job #" + job.getId() + ": node " + otherOwner 
+						+ " holds another job for the same user and assessment");
+				return false;
+			}
+		}
+		int claimed = sessionFactory.getCurrentSession()
+				.createQuery("update AssessmentJob set leaseOwner = :owner, leaseExpires = :expires, running = false "
+						+ "where id = :id and (leaseOwner is null or leaseExpires < :now)")
+				.setParameter("owner", owner)
+				.setParameter("expires", expires)
+				.setParameter("id", job.getId())
+				.setParameter("now", now)
+				.executeUpdate();
+		if(claimed == 0) {
+			return false;
+		}
+		job.setLeaseOwner(owner);
+		job.setLeaseExpires(expires);
+		job.setRunning(false);
+		return true;
+	}
+	
+	/**
+	 * Mark a claimed job as running or not, as long as the given node still
+	 * holds its lease.
+	 * 
+	 * @param job the job
+	 * @param owner the ID of the node running the job
+	 * @param running whether the job is running
+	 */
+	public void setRunning(AssessmentJob job, String owner, boolean running) {
+		sessionFactory.getCurrentSession()
+				.createQuery("update AssessmentJob set running = :running where id = :id and leaseOwner = :owner")
+				.setParameter("running", running)
+				.setParameter("id", job.getId())
+				.setParameter("owner", owner)
+				.executeUpdate();
+		job.setRunning(running);
+	}
+	
+	/**
+	 * Delete a finished job, as long as the given node still holds its
+	 * lease. If the lease was lost, the node that took it over will finish
+	 * and delete the job instead.
+	 * 
+	 * @param job the job
+	 * @param owner the ID of the node that ran the job
+	 * @return true if the job was deleted
+	 */
+	public boolean deleteClaimedJob(AssessmentJob job, String owner) {
+		return sessionFactory.getCurrentSession()
+				.createQuery("delete AssessmentJob where id = :id and leaseOwner = :owner")
+				.setParameter("id", job.getId())
+				.setParameter("owner", owner)
+				.executeUpdate() > 0;
+	}
+	
+	/**
+	 * Extend all leases held by the given node.
+	 * 
+	 * @param owner the ID of the node
+	 * @param expires the new expiry of the leases
+	 * @return the number of leases renewed
+	 */
+	public int renewLeases(String owner, Date expires) {
+		return sessionFactory.getCurrentSession()
+				.createQuery("update AssessmentJob set leaseExpires = :expires where leaseOwner = :owner")
+				.setParameter("expires", expires)
+				.setParameter("owner", owner)
+				.executeUpdate();
+	}
+	
+	/**
+	 * Give up the given node's leases so that other nodes can claim the jobs
+	 * straight away.
+	 * 
+	 * @param owner the ID of the node
+	 * @param includeRunning whether to also release jobs marked as running,
+	 *            e.g. when the node has just started and so cannot really be
+	 *            running anything
+	 * @return the number of leases released
+	 */
+	public int releaseLeases(String owner, boolean includeRunning) {
+		return sessionFactory.getCurrentSession()
+				.createQuery("update AssessmentJob set leaseOwner = null, leaseExpires = null, running = false "
+						+ "where leaseOwner = :owner" + (includeRunning ? "" : " and running = false"))
+				.setParameter("owner", owner)
+				.executeUpdate();
+	}
+	
 	/**
 	 * Gets the outstanding list of assessment jobs, with a cache that dirties
 	 * every 3 seconds. Cache designed to cope with many async requests.
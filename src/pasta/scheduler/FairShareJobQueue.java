@@ -0,0 +1,446 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.scheduler;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import pasta.scheduler.AssessmentJobExecutor.AssessmentJobTask;
+
+/**
+ * The work queue for {@link AssessmentJobExecutor}.
+ * <p>
+ * Jobs are split by {@link JobPriority}. Between classes, dispatches are
+ * shared out by stride scheduling in proportion to
+ * {@link JobPriority#getWeight()}: each class has a "pass" value that
+ * advances by its stride (inversely proportional to its weight) every time
+ * one of its jobs is dispatched, and the waiting class with the lowest pass
+ * goes next. A class that has been idle rejoins at the current pass, so it
+ * cannot save up credit while it has nothing to run.
+ * <p>
+ * Within a class, jobs are grouped by share key and the keys take turns:
+ * live submissions and single re-runs are shared per user (or group), and
+ * bulk re-runs per assessment. One user submitting repeatedly, or one
+ * assessment being re-run for everybody, therefore only ever holds one
+ * place in the rotation.
+ * <p>
+ * Dispatch order depends only on the contents of the queue, so
+ * {@link #getDispatchOrder()} gives the actual order jobs will start in if
+ * nothing else is added.
+ */
+public class FairShareJobQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+	private static final long STRIDE_BASE = 1L << 20;
+	
+	private final ReentrantLock lock;
+	private final Condition notEmpty;
+	
+	private EnumMap<JobPriority, PriorityClass> classes;
+	private long currentPass;
+	private int count;
+	
+	public FairShareJobQueue() {
+		lock = new ReentrantLock();
+		notEmpty = lock.newCondition();
+		classes = new EnumMap<>(JobPriority.class);
+		for(JobPriority priority : JobPriority.values()) {
+			classes.put(priority, new PriorityClass(priority));
+		}
+		currentPass = 0;
+		count = 0;
+	}
+	
+	@Override
+	public boolean offer(Runnable task) {
+		if(task == null) {
+			throw new NullPointerException();
+		}
+		lock.lock();
+		try {
+			PriorityClass pc = classes.get(priorityOf(task));
+			if(pc.isEmpty()) {
+				pc.pass = Math.max(pc.pass, currentPass);
+			}
+			pc.add(shareKeyOf(task), task);
+			count++;
+			notEmpty.signal();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+		return offer(task);
+	}
+	
+	@Override
+	public void put(Runnable task) {
+		offer(task);
+	}
+	
+	@Override
+	public Runnable poll() {
+		lock.lock();
+		try {
+			return count == 0 ? null : dispatch();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while(count == 0) {
+				if(nanos <= 0) {
+					return null;
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return dispatch();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public Runnable take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while(count == 0) {
+				notEmpty.await();
+			}
+			return dispatch();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public Runnable peek() {
+		lock.lock();
+		try {
+			PriorityClass next = nextClass(classes);
+			return next == null ? null : next.peek();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public boolean remove(Object o) {
+		if(!(o instanceof Runnable)) {
+			return false;
+		}
+		lock.lock();
+		try {
+			Runnable task = (Runnable) o;
+			if(classes.get(priorityOf(task)).remove(shareKeyOf(task), task)) {
+				count--;
+				return true;
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public int remainingCapacity() {
+		return Integer.MAX_VALUE;
+	}
+	
+	@Override
+	public int drainTo(Collection<? super Runnable> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+	
+	@Override
+	public int drainTo(Collection<? super Runnable> c, int maxElements) {
+		if(c == this) {
+			throw new IllegalArgumentException();
+		}
+		lock.lock();
+		try {
+			int n = 0;
+			while(n < maxElements && count > 0) {
+				c.add(dispatch());
+				n++;
+			}
+			return n;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Iterates over a snapshot of the queue in dispatch order. Removing
+	 * through the iterator removes the task from the queue.
+	 */
+	@Override
+	public Iterator<Runnable> iterator() {
+		final Iterator<Runnable> snapshot = getDispatchOrder().iterator();
+		return new Iterator<Runnable>() {
+			private Runnable last;
+			@Override
+			public boolean hasNext() {
+				return snapshot.hasNext();
+			}
+			@Override
+			public Runnable next() {
+				last = snapshot.next();
+				return last;
+			}
+			@Override
+			public void remove() {
+				if(last == null) {
+					throw new IllegalStateException();
+				}
+				FairShareJobQueue.this.remove(last);
+				last = null;
+			}
+		};
+	}
+	
+	/**
+	 * @return the queued tasks in the order they will be dispatched if no
+	 *         more are added
+	 */
+	public List<Runnable> getDispatchOrder() {
+		lock.lock();
+		try {
+			EnumMap<JobPriority, PriorityClass> copy = new EnumMap<>(JobPriority.class);
+			for(Map.Entry<JobPriority, PriorityClass> entry : classes.entrySet()) {
+				copy.put(entry.getKey(), new PriorityClass(entry.getValue()));
+			}
+			List<Runnable> order = new LinkedList<>();
+			PriorityClass next;
+			while((next = nextClass(copy)) != null) {
+				order.add(next.poll());
+			}
+			return order;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Merge jobs that have not been queued yet in the proportions the queue
+	 * would share them out between priority classes, as if all of them were
+	 * added at once.
+	 * 
+	 * @param byPriority the jobs of each class, in the order they should be
+	 *        taken within that class
+	 * @param max the most jobs to return
+	 * @return up to <code>max</code> jobs
+	 */
+	public static List<AssessmentJob> interleave(Map<JobPriority, List<AssessmentJob>> byPriority, int max) {
+		EnumMap<JobPriority, Iterator<AssessmentJob>> remaining = new EnumMap<>(JobPriority.class);
+		EnumMap<JobPriority, Long> passes = new EnumMap<>(JobPriority.class);
+		for(Map.Entry<JobPriority, List<AssessmentJob>> entry : byPriority.entrySet()) {
+			remaining.put(entry.getKey(), entry.getValue().iterator());
+			passes.put(entry.getKey(), 0L);
+		}
+		List<AssessmentJob> merged = new LinkedList<>();
+		while(merged.size() < max) {
+			JobPriority next = null;
+			for(Map.Entry<JobPriority, Iterator<AssessmentJob>> entry : remaining.entrySet()) {
+				JobPriority priority = entry.getKey();
+				if(entry.getValue().hasNext() && (next == null || passes.get(priority) < passes.get(next))) {
+					next = priority;
+				}
+			}
+			if(next == null) {
+				break;
+			}
+			merged.add(remaining.get(next).next());
+			passes.put(next, passes.get(next) + STRIDE_BASE / next.getWeight());
+		}
+		return merged;
+	}
+	
+	/**
+	 * Order the jobs of one priority class the way the queue takes turns
+	 * between share keys: the first job of each key, with keys in the order
+	 * they first appear, then the second job of each key, and so on.
+	 * 
+	 * @param jobs the jobs of one class, in the order they were added
+	 * @return a new list in the order the queue would dispatch them
+	 */
+	public static List<AssessmentJob> rotateByShareKey(List<AssessmentJob> jobs) {
+		LinkedHashMap<String, ArrayDeque<AssessmentJob>> byShareKey = new LinkedHashMap<>();
+		for(AssessmentJob job : jobs) {
+			byShareKey.computeIfAbsent(shareKeyOf(job), key -> new ArrayDeque<>()).add(job);
+		}
+		List<AssessmentJob> rotated = new ArrayList<>(jobs.size());
+		while(!byShareKey.isEmpty()) {
+			Iterator<ArrayDeque<AssessmentJob>> it = byShareKey.values().iterator();
+			while(it.hasNext()) {
+				ArrayDeque<AssessmentJob> keyJobs = it.next();
+				rotated.add(keyJobs.poll());
+				if(keyJobs.isEmpty()) {
+					it.remove();
+				}
+			}
+		}
+		return rotated;
+	}
+	
+	private Runnable dispatch() {
+		PriorityClass next = nextClass(classes);
+		currentPass = next.pass;
+		count--;
+		return next.poll();
+	}
+	
+	private static PriorityClass nextClass(EnumMap<JobPriority, PriorityClass> classes) {
+		PriorityClass next = null;
+		for(PriorityClass pc : classes.values()) {
+			if(!pc.isEmpty() && (next == null || pc.pass < next.pass)) {
+				next = pc;
+			}
+		}
+		return next;
+	}
+	
+	private static JobPriority priorityOf(Runnable task) {
+		if(task instanceof AssessmentJobTask) {
+			return ((AssessmentJobTask) task).getJob().getPriority();
+		}
+		return JobPriority.SUBMISSION;
+	}
+	
+	private static String shareKeyOf(Runnable task) {
+		if(!(task instanceof AssessmentJobTask)) {
+			return "";
+		}
+		return shareKeyOf(((AssessmentJobTask) task).getJob());
+	}
+	
+	private static String shareKeyOf(AssessmentJob job) {
+		if(job.getPriority() == JobPriority.BULK_RERUN) {
+			return "assessment:" + job.getAssessmentId();
+		}
+		return "user:" + job.getUser().getUsername();
+	}
+	
+	private static class PriorityClass {
+		private JobPriority priority;
+		private long stride;
+		private long pass;
+		private int size;
+		// Keys with waiting tasks, in the order they will next be served
+		private LinkedHashMap<String, ArrayDeque<Runnable>> byShareKey;
+		
+		private PriorityClass(JobPriority priority) {
+			this.priority = priority;
+			this.stride = STRIDE_BASE / priority.getWeight();
+			this.pass = 0;
+			this.size = 0;
+			this.byShareKey = new LinkedHashMap<>();
+		}
+		
+		private PriorityClass(PriorityClass other) {
+			this.priority = other.priority;
+			this.stride = other.stride;
+			this.pass = other.pass;
+			this.size = other.size;
+			this.byShareKey = new LinkedHashMap<>();
+			for(Map.Entry<String, ArrayDeque<Runnable>> entry : other.byShareKey.entrySet()) {
+				this.byShareKey.put(entry.getKey(), new ArrayDeque<>(entry.getValue()));
+			}
+		}
+		
+		private boolean isEmpty() {
+			return size == 0;
+		}
+		
+		private void add(String key, Runnable task) {
+			ArrayDeque<Runnable> tasks = byShareKey.get(key);
+			if(tasks == null) {
+				tasks = new ArrayDeque<>();
+				byShareKey.put(key, tasks);
+			}
+			tasks.add(task);
+			size++;
+		}
+		
+		private Runnable peek() {
+			return byShareKey.values().iterator().next().peek();
+		}
+		
+		private Runnable poll() {
+			Iterator<Map.Entry<String, ArrayDeque<Runnable>>> it = byShareKey.entrySet().iterator();
+			Map.Entry<String, ArrayDeque<Runnable>> first = it.next();
+			Runnable task = first.getValue().poll();
+			it.remove();
+			if(!first.getValue().isEmpty()) {
+				// Move this key to the back of the rotation
+				byShareKey.put(first.getKey(), first.getValue());
+			}
+			size--;
+			pass += stride;
+			return task;
+		}
+		
+		private boolean remove(String key, Runnable task) {
+			ArrayDeque<Runnable> tasks = byShareKey.get(key);
+			if(tasks == null || !tasks.remove(task)) {
+				return false;
+			}
+			if(tasks.isEmpty()) {
+				byShareKey.remove(key);
+			}
+			size--;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.scheduler;
+
+/**
+ * The priority class of an {@link AssessmentJob}, which decides how much of
+ * the executor's capacity its jobs get when several classes are waiting.
+ * <p>
+ * Classes are not strictly ordered: each gets a share of dispatches in
+ * proportion to its weight, so a large bulk re-run still makes progress
+ * while live submissions keep arriving, but never holds them up for long.
+ * 
+ * @see FairShareJobQueue
+ */
+public enum JobPriority {
+	/** A new submission from a student (or on behalf of one) */
+	SUBMISSION("Submission", 16),
+	/** A single submission re-run by a tutor */
+	RERUN("Re-run", 4),
+	/** One of many submissions re-run for a whole assessment */
+	BULK_RERUN("Bulk re-run", 1);
+	
+	private String description;
+	private int weight;
+	
+	private JobPriority(String description, int weight) {
+		this.description = description;
+		this.weight = weight;
+	}
+	
+	public String getDescription() {
+		return description;
+	}
+	
+	/**
+	 * @return the relative share of dispatches given to jobs of this class
+	 */
+	public int getWeight() {
+		return weight;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.scheduler;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import pasta.domain.user.PASTAUser;
+
+/**
+ * A snapshot of the job queue in dispatch order, with the estimated time
+ * until each job completes.
+ * <p>
+ * Estimates are added up once when the snapshot is made, and each user's
+ * positions are indexed, so looking up where a user's jobs are does not
+ * depend on the length of the queue.
+ */
+public class JobQueueEstimate {
+
+	private List<AssessmentJob> jobs;
+	private long[] estimatedCompletion;
+	private Map<String, List<Integer>> positions;
+	
+	public JobQueueEstimate(List<AssessmentJob> jobs) {
+		this.jobs = jobs;
+		this.estimatedCompletion = new long[jobs.size()];
+		this.positions = new HashMap<>();
+		
+		long totalTime = 0;
+		int i = 0;
+		for(AssessmentJob job : jobs) {
+			totalTime += ExecutionEstimator.estimateTime(job);
+			estimatedCompletion[i] = totalTime;
+			String key = key(job.getAssessmentId(), job.getUser());
+			List<Integer> userPositions = positions.get(key);
+			if(userPositions == null) {
+				userPositions = new LinkedList<>();
+				positions.put(key, userPositions);
+			}
+			userPositions.add(i);
+			i++;
+		}
+	}
+	
+	public boolean isEmpty() {
+		return jobs.isEmpty();
+	}
+	
+	public int size() {
+		return jobs.size();
+	}
+	
+	/**
+	 * @param index the index of the job in the queue, where 0 is the next job
+	 *            to run (or one already running)
+	 * @return the job at that index
+	 */
+	public AssessmentJob getJob(int index) {
+		return jobs.get(index);
+	}
+	
+	/**
+	 * @param index the index of the job in the queue
+	 * @return the estimated time in milliseconds until the job at that index
+	 *         completes, including all jobs ahead of it
+	 */
+	public long getEstimatedCompletion(int index) {
+		return estimatedCompletion[index];
+	}
+	
+	/**
+	 * @param assessmentId the assessment
+	 * @param user the user or group
+	 * @return the indexes of the queued jobs for that user and assessment, in
+	 *         queue order
+	 */
+	public List<Integer> getPositions(long assessmentId, PASTAUser user) {
+		List<Integer> userPositions = positions.get(key(assessmentId, user));
+		return userPositions == null ? Collections.<Integer>emptyList() : userPositions;
+	}
+	
+	private static String key(long assessmentId, PASTAUser user) {
+		return assessmentId + "|" + user.getUsername();
+	}
+}
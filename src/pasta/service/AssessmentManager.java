@@ -50,7 +50,9 @@ import pasta.domain.template.WeightedUnitTest;
 import pasta.domain.user.PASTAUser;
 import pasta.repository.AssessmentDAO;
 import pasta.repository.HandMarkingDAO;
+import pasta.repository.TestCaseHistoryStore;
 import pasta.repository.UnitTestDAO;
+import pasta.scheduler.ExecutionEstimator;
 import pasta.util.ProjectProperties;
 
 /**
@@ -71,6 +73,7 @@ import pasta.util.ProjectProperties;
 public class AssessmentManager {
 	
 	@Autowired private AssessmentDAO assDao;
+	@Autowired private TestCaseHistoryStore testCaseHistoryStore;
 	
 	@Autowired
 	private ResultManager resultManager;
@@ -82,6 +85,8 @@ public class AssessmentManager {
 	private UserManager userManager;
 	@Autowired
 	private ReleaseManager releaseManager;
+	@Autowired
+	private GradeMatrix gradeMatrix;
 	
 	@Autowired
 	private UnitTestDAO unitTestDAO;
@@ -134,6 +139,8 @@ public class AssessmentManager {
 	 */
 	public boolean removeAssessment(long assessmentId) {
 		assDao.removeAssessment(assessmentId);
+		gradeMatrix.removeAssessment(assessmentId);
+		testCaseHistoryStore.delete(assessmentId);
 		return true;
 	}
 	
@@ -276,6 +283,7 @@ public class AssessmentManager {
 		}
 		
 		assDao.merge(assessment);
+		ExecutionEstimator.invalidate(assessment);
 	}
 
 	public boolean hasGroupWork(Assessment assessment) {
@@ -27,6 +27,7 @@ package pasta.service;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -40,6 +41,8 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 import org.springframework.stereotype.Service;
 
+import pasta.docker.ContainerSession;
+import pasta.docker.DockerManager;
 import pasta.docker.ExecutionContainer;
 import pasta.docker.LanguageManager;
 import pasta.domain.result.AssessmentResult;
@@ -50,12 +53,16 @@ import pasta.domain.template.UnitTest;
 import pasta.domain.template.WeightedUnitTest;
 import pasta.domain.user.PASTAUser;
 import pasta.repository.AssessmentDAO;
+import pasta.repository.TemplateCacheDAO;
 import pasta.scheduler.AssessmentJob;
 import pasta.scheduler.AssessmentJobExecutor;
 import pasta.scheduler.ExecutionScheduler;
-import pasta.testing.task.DirectoryCopyTask;
+import pasta.scheduler.JobQueueEstimate;
+import pasta.testing.BuildCache;
+import pasta.testing.task.DirectoryLinkTask;
 import pasta.util.PASTAUtil;
 import pasta.util.ProjectProperties;
+import pasta.util.TimingStatistics;
 
 /**
  * Execution Manager
@@ -75,6 +82,7 @@ import pasta.util.ProjectProperties;
 public class ExecutionManager {
 
 	@Autowired private AssessmentDAO assDao;
+	@Autowired private TemplateCacheDAO templateCacheDAO;
 	
 	@Autowired private UnitTestManager unitTestManager;
 	@Autowired private ResultManager resultManager;
@@ -83,10 +91,17 @@ public class ExecutionManager {
 	@Autowired private ExecutionScheduler scheduler;
 	@Autowired private AssessmentJobExecutor executor;
 	
+	private final Object queueEstimateLock = new Object();
+	private List<AssessmentJob> estimatedQueue;
+	private JobQueueEstimate queueEstimate;
+	
 	public static final Logger logger = Logger
 			.getLogger(ExecutionManager.class);
 
 	public void executeNormalJob(AssessmentJob job) {
+		// Pick up template edits made through other nodes before loading them
+		templateCacheDAO.checkTemplateVersion();
+		
 		PASTAUser user = job.getUser();
 		boolean userIsGroup = user.isGroup();
 		
@@ -122,76 +137,91 @@ public class ExecutionManager {
 			validTestIds.add(weightedTest.getTest().getId());
 		}
 		
-		for(WeightedUnitTest weightedTest : assessment.getAllUnitTests()) {
-			if(weightedTest.isGroupWork() != userIsGroup) {
-				continue;
-			}
-			
-			UnitTest test = weightedTest.getTest();
-			File sandboxTop = new File(sandboxRoot, test.getFileAppropriateName());
-			File sandboxSrc = new File(sandboxTop, "src/");
-			File sandboxOut = new File(sandboxTop, "out/");
-			sandboxSrc.mkdirs();
-			sandboxOut.mkdirs();
-			
-			String executionLabel = submissionLabel + "_" + test.getFileAppropriateName();
-			ExecutionContainer container = new ExecutionContainer(executionLabel, sandboxSrc, sandboxOut);
-			
-			// Check if test has been run before, and remove previous results if so
-			List<UnitTestResult> staleResults = new LinkedList<>();
-			for(UnitTestResult existingResult : job.getResults().getUnitTests()) {
-				if(existingResult == null) {
+		// Run every unit test in the same container(s) rather than starting
+		// new ones for each test; tests still get their own src and out 
+		// directories and a freshly reset container
+		ContainerSession session = null;
+		if(Boolean.parseBoolean(PASTAOptions.instance().get("execution.single-container-session"))) {
+			session = DockerManager.instance().openSession(submissionLabel);
+		}
+		
+		try {
+			for(WeightedUnitTest weightedTest : assessment.getAllUnitTests()) {
+				if(weightedTest.isGroupWork() != userIsGroup) {
 					continue;
 				}
-				if(existingResult.getTest() == null || 
-						existingResult.getTest().getId() == test.getId() ||
-						!validTestIds.contains(existingResult.getTest().getId())) {
-					staleResults.add(existingResult);
+				
+				UnitTest test = weightedTest.getTest();
+				File sandboxTop = new File(sandboxRoot, test.getFileAppropriateName());
+				File sandboxSrc = new File(sandboxTop, "src/");
+				File sandboxOut = new File(sandboxTop, "out/");
+				sandboxSrc.mkdirs();
+				sandboxOut.mkdirs();
+				
+				String executionLabel = submissionLabel + "_" + test.getFileAppropriateName();
+				ExecutionContainer container = new ExecutionContainer(executionLabel, sandboxSrc, sandboxOut);
+				container.setSession(session);
+				
+				// Check if test has been run before, and remove previous results if so
+				List<UnitTestResult> staleResults = new LinkedList<>();
+				for(UnitTestResult existingResult : job.getResults().getUnitTests()) {
+					if(existingResult == null) {
+						continue;
+					}
+					if(existingResult.getTest() == null || 
+							existingResult.getTest().getId() == test.getId() ||
+							!validTestIds.contains(existingResult.getTest().getId())) {
+						staleResults.add(existingResult);
+					}
 				}
-			}
-			for(UnitTestResult staleResult : staleResults) {
-				staleResult.clearValidationErrors();
-				staleResult.removeAllTestCases();
-				job.getResults().removeUnitTest(staleResult);
-			}
-			
-			// Create the new results object that will be used
-			UnitTestResult utResults = new UnitTestResult();
-			utResults.setWeightedUnitTest(weightedTest);
-			job.getResults().addUnitTest(utResults);
-			
-			// Code we are interested in testing
-			File importantCode = test.getSubmissionCodeLocation(submissionLoc);
-			logger.debug("Copying " + importantCode + " to " + sandboxSrc);
-			new DirectoryCopyTask(importantCode, sandboxSrc).go();
-			
-			List<String> context = null;
-			if(assessment.isAllowed(LanguageManager.getInstance().getLanguage("java"))) {
-				// Get a list of files submitted for tracking later
-				context = new LinkedList<String>();
-				if(assessment.getShortSolutionName() != null && !assessment.getShortSolutionName().isEmpty()) {
-					// Add solutionName.java just in case this is a Java 
-					// submission, as that will be the most important file
-					String shortName = assessment.getShortSolutionName();
-					context.add(shortName + "." + LanguageManager.getInstance().getLanguage("java").getExtensions().get(0));
+				for(UnitTestResult staleResult : staleResults) {
+					staleResult.clearValidationErrors();
+					staleResult.removeAllTestCases();
+					job.getResults().removeUnitTest(staleResult);
 				}
-				context.addAll(Arrays.asList(PASTAUtil.listDirectoryContents(importantCode, true)));
-			}
-			
-			// Run any black box tests
-			if(test.hasBlackBoxTests()) {
-				String solutionName = assessment.getSolutionName();
-				if(solutionName == null || solutionName.isEmpty()) {
-					utResults.addValidationError("Assessment setup error: contact administrator.");
-					logger.error("No solution name set for " + assessment.getName());
-					continue;
+				
+				// Create the new results object that will be used
+				UnitTestResult utResults = new UnitTestResult();
+				utResults.setWeightedUnitTest(weightedTest);
+				job.getResults().addUnitTest(utResults);
+				
+				// Code we are interested in testing
+				File importantCode = test.getSubmissionCodeLocation(submissionLoc);
+				logger.debug("Linking " + importantCode + " into " + sandboxSrc);
+				new DirectoryLinkTask(importantCode, sandboxSrc).go();
+				
+				List<String> context = null;
+				if(assessment.isAllowed(LanguageManager.getInstance().getLanguage("java"))) {
+					// Get a list of files submitted for tracking later
+					context = new LinkedList<String>();
+					if(assessment.getShortSolutionName() != null && !assessment.getShortSolutionName().isEmpty()) {
+						// Add solutionName.java just in case this is a Java 
+						// submission, as that will be the most important file
+						String shortName = assessment.getShortSolutionName();
+						context.add(shortName + "." + LanguageManager.getInstance().getLanguage("java").getExtensions().get(0));
+					}
+					context.addAll(Arrays.asList(PASTAUtil.listDirectoryContents(importantCode, true)));
+				}
+				
+				// Run any black box tests
+				if(test.hasBlackBoxTests()) {
+					String solutionName = assessment.getSolutionName();
+					if(solutionName == null || solutionName.isEmpty()) {
+						utResults.addValidationError("Assessment setup error: contact administrator.");
+						logger.error("No solution name set for " + assessment.getName());
+						continue;
+					}
+					unitTestManager.runBlackBoxTests(test, solutionName, utResults, importantCode, context, container);
+				}
+				
+				String mainClass = test.getMainClassName();
+				if(test.hasCode() && mainClass != null && !mainClass.isEmpty()) {
+					unitTestManager.runJUnitTests(test, utResults, mainClass, context, container);
 				}
-				unitTestManager.runBlackBoxTests(test, solutionName, utResults, importantCode, context, container);
 			}
-			
-			String mainClass = test.getMainClassName();
-			if(test.hasCode() && mainClass != null && !mainClass.isEmpty()) {
-				unitTestManager.runJUnitTests(test, utResults, mainClass, context, container);
+		} finally {
+			if(session != null) {
+				session.close();
 			}
 		}
 		
@@ -226,22 +256,44 @@ public class ExecutionManager {
 	 * Get outstanding assessment jobs
 	 * <p>
 	 * This method runs on a fixed delay (currently 10 sec). The system waits
-	 * x ms between the end of the method and calling it again.
+	 * x ms between the end of the method and calling it again. It is also
+	 * called whenever a job finishes.
 	 * 
-	 * This queries the database for outstanding jobs, get the list, process them
-	 * all, then check the database again. When a check to the database is empty,
-	 * the system goes back to waiting.
+	 * New jobs are normally handed to the executor as soon as they are
+	 * scheduled (see {@link pasta.scheduler.AssessmentJobDispatcher}), but
+	 * only on the node that received the submission and only if it has room.
+	 * This sweep is how other execution nodes sharing the database pick up
+	 * work, and how jobs are recovered when the node holding them stops. Only
+	 * as many jobs as this node has capacity for are claimed (see
+	 * {@link AssessmentJobExecutor#getClaimCapacity()}).
 	 */
-	@Scheduled(fixedDelay = 5000)
+	@Scheduled(fixedDelay = 10000)
 	public void executeRemainingAssessmentJobs() {
 		synchronized (scheduler) {
-			List<AssessmentJob> outstandingJobs = scheduler.getOutstandingAssessmentJobs();
-			for(AssessmentJob job : outstandingJobs) {
+			int capacity = executor.getClaimCapacity();
+			if(capacity <= 0) {
+				return;
+			}
+			List<AssessmentJob> claimableJobs = scheduler.getClaimableAssessmentJobs(capacity);
+			for(AssessmentJob job : claimableJobs) {
 				executor.offer(job);
 			}
 		}
 	}
 	
+	/**
+	 * Keep this node's claims on the jobs it holds from expiring.
+	 */
+	@Scheduled(fixedDelay = 30000)
+	public void renewJobLeases() {
+		executor.renewLeases();
+	}
+	
+	@Scheduled(fixedDelay = 600000)
+	public void evictBuildCache() {
+		BuildCache.instance().evict();
+	}
+	
 	@Scheduled(fixedDelay = 3600000)
 	public void fixWaitingJobs() {
 		synchronized (scheduler) {
@@ -267,10 +319,34 @@ public class ExecutionManager {
 		}
 	}
 	
+	public Collection<TimingStatistics> getStartLatencyStatistics() {
+		return executor.getStartLatencyStatistics().values();
+	}
+	
+	/**
+	 * Get the outstanding assessment jobs in the order they will actually
+	 * run, with estimated completion times. This is rebuilt only when the
+	 * cached queue from {@link ExecutionScheduler#getAssessmentQueue()} is
+	 * refreshed, so it can be polled often.
+	 * 
+	 * @return the outstanding jobs in dispatch order
+	 * @see AssessmentJobExecutor#sortByDispatchOrder(List)
+	 */
+	public JobQueueEstimate getJobQueueEstimate() {
+		List<AssessmentJob> queue = scheduler.getAssessmentQueue();
+		synchronized (queueEstimateLock) {
+			if(queueEstimate == null || queue != estimatedQueue) {
+				queueEstimate = new JobQueueEstimate(executor.sortByDispatchOrder(queue));
+				estimatedQueue = queue;
+			}
+			return queueEstimate;
+		}
+	}
+	
 	public List<String> getExecutingTaskDetails() {
 		List<String> results = new LinkedList<String>();
 		int pos = 1;
-		for(AssessmentJob job : scheduler.getOutstandingAssessmentJobs()) {
+		for(AssessmentJob job : executor.sortByDispatchOrder(scheduler.getOutstandingAssessmentJobs())) {
 			String details = pos++ + ": " + job.toString();
 			results.add(details);
 		}
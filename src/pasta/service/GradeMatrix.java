@@ -0,0 +1,460 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import pasta.domain.result.AssessmentResultSummary;
+import pasta.domain.user.PASTAUser;
+import pasta.repository.ResultDAO;
+
+/**
+ * An in-memory copy of every {@link AssessmentResultSummary}, so that the grade
+ * centre, the marks API and the marks spreadsheet can be served without going
+ * to the database.
+ * <p>
+ * The matrix is indexed by user id and assessment id, and holds the latest
+ * percentage for each pair (or nothing if there is no summary). Marks are not
+ * stored; they are the percentage multiplied by the assessment's current
+ * marks.
+ * <p>
+ * The matrix is loaded once at startup and updated in place whenever a summary
+ * is saved through {@link ResultManager#saveOrUpdate(AssessmentResultSummary)}.
+ * Summaries written by other nodes sharing the database are picked up by
+ * {@link #sync()}, and {@link #rebuild()} reloads everything and reports how
+ * many cells were out of date.
+ */
+@Service("gradeMatrix")
+public class GradeMatrix {
+	private static final Logger logger = Logger.getLogger(GradeMatrix.class);
+
+	@Autowired
+	private ResultDAO resultDAO;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final String instanceId = Long.toHexString(System.currentTimeMillis());
+
+	private Cells cells = new Cells();
+	private long version;
+
+	// The summary version token and the latest summary change version last
+	// seen in the database
+	private String syncedVersion;
+	private Long syncedUpTo;
+
+	@PostConstruct
+	private void afterInit() {
+		rebuild();
+	}
+
+	/**
+	 * Get the percentage a user has for an assessment.
+	 * 
+	 * @param userId the id of the user
+	 * @param assessmentId the id of the assessment
+	 * @return the percentage [0.0, 1.0], or null if there is no result
+	 */
+	public Double getPercentage(long userId, long assessmentId) {
+		lock.readLock().lock();
+		try {
+			double value = cells.get(userId, assessmentId);
+			return Double.isNaN(value) ? null : value;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the percentages for a collection of users.
+	 * 
+	 * @param users the users being queried
+	 * @return a map from each user to a map of assessment id to percentage. Every
+	 *         user has an entry, which is empty if they have no results.
+	 */
+	public Map<PASTAUser, Map<Long, Double>> getPercentages(Collection<PASTAUser> users) {
+		Map<PASTAUser, Map<Long, Double>> results = new TreeMap<>();
+		lock.readLock().lock();
+		try {
+			for (PASTAUser user : users) {
+				results.put(user, cells.getRow(user.getId()));
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return results;
+	}
+
+	/**
+	 * @return a value that changes whenever anything in the matrix changes,
+	 *         including across restarts
+	 */
+	public String getVersion() {
+		lock.readLock().lock();
+		try {
+			return instanceId + "-" + version;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Record a summary that has been saved. If there is a transaction in
+	 * progress, the matrix is updated once it commits.
+	 * 
+	 * @param summary the saved summary
+	 */
+	public void update(AssessmentResultSummary summary) {
+		final long userId = summary.getUser().getId();
+		final long assessmentId = summary.getAssessment().getId();
+		final double percentage = summary.getPercentage();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					set(userId, assessmentId, percentage);
+				}
+			});
+		} else {
+			set(userId, assessmentId, percentage);
+		}
+	}
+
+	private void set(long userId, long assessmentId, double percentage) {
+		lock.writeLock().lock();
+		try {
+			if (cells.set(userId, assessmentId, percentage)) {
+				version++;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Forget all results for an assessment, e.g. because it has been deleted.
+	 * 
+	 * @param assessmentId the id of the assessment
+	 */
+	public void removeAssessment(long assessmentId) {
+		lock.writeLock().lock();
+		try {
+			if (cells.clearColumn(assessmentId)) {
+				version++;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Pick up summaries that were changed in the database without going through
+	 * this node, e.g. by another node sharing the database. Only the summaries
+	 * saved with a later change version than any seen so far are loaded (see
+	 * {@link pasta.domain.result.AssessmentResultSummaryVersion}); if any have
+	 * been deleted, the whole matrix is rebuilt.
+	 */
+	@Scheduled(fixedDelay = 30000)
+	public void sync() {
+		String dbVersion = resultDAO.getResultsSummaryVersion();
+		if (dbVersion.equals(syncedVersion)) {
+			return;
+		}
+		if (syncedUpTo == null) {
+			rebuild();
+			return;
+		}
+		List<Object[]> changed = resultDAO.getResultSummaryValues(syncedUpTo);
+		long count = resultDAO.getResultSummaryCount();
+		lock.writeLock().lock();
+		try {
+			for (Object[] row : changed) {
+				if (cells.set((Long) row[0], (Long) row[1], (Double) row[2])) {
+					version++;
+				}
+				syncedUpTo = latest(syncedUpTo, (Long) row[3]);
+			}
+			if (cells.size() == count) {
+				syncedVersion = dbVersion;
+				return;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		rebuild();
+	}
+
+	/**
+	 * Reload the whole matrix from the database, replacing what is in memory.
+	 * 
+	 * @return the number of cells that were different in memory to the database
+	 */
+	public int rebuild() {
+		String dbVersion = resultDAO.getResultsSummaryVersion();
+		List<Object[]> all = resultDAO.getResultSummaryValues(null);
+
+		Cells loaded = new Cells();
+		Long upTo = null;
+		for (Object[] row : all) {
+			loaded.set((Long) row[0], (Long) row[1], (Double) row[2]);
+			upTo = latest(upTo, (Long) row[3]);
+		}
+
+		int differences;
+		lock.writeLock().lock();
+		try {
+			differences = cells.countDifferences(loaded);
+			cells = loaded;
+			if (differences > 0) {
+				version++;
+			}
+			syncedVersion = dbVersion;
+			syncedUpTo = upTo == null ? 0L : upTo;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		if (differences > 0) {
+			logger.warn("Grade matrix rebuilt with " + differences + " out-of-date cells ("
+					+ loaded.size() + " results)");
+		} else {
+			logger.info("Grade matrix loaded with " + loaded.size() + " results");
+		}
+		return differences;
+	}
+
+	private static Long latest(Long v1, Long v2) {
+		if (v1 == null) {
+			return v2;
+		}
+		return v2 == null || v1 > v2 ? v1 : v2;
+	}
+
+	/**
+	 * The percentages, held as one row of doubles per user with one column per
+	 * assessment. NaN marks a missing result. Not thread-safe.
+	 */
+	private static class Cells {
+		private final IdIndex rowIndex = new IdIndex();
+		private final IdIndex columnIndex = new IdIndex();
+		private double[][] rows = new double[16][];
+		private long[] columnIds = new long[16];
+		private int size;
+
+		public int size() {
+			return size;
+		}
+
+		public double get(long userId, long assessmentId) {
+			int row = rowIndex.get(userId);
+			int column = columnIndex.get(assessmentId);
+			if (row < 0 || column < 0 || column >= rows[row].length) {
+				return Double.NaN;
+			}
+			return rows[row][column];
+		}
+
+		public Map<Long, Double> getRow(long userId) {
+			Map<Long, Double> results = new TreeMap<>();
+			int row = rowIndex.get(userId);
+			if (row >= 0) {
+				double[] values = rows[row];
+				for (int column = 0; column < values.length; column++) {
+					if (!Double.isNaN(values[column])) {
+						results.put(columnIds[column], values[column]);
+					}
+				}
+			}
+			return results;
+		}
+
+		/**
+		 * @return true if the value changed
+		 */
+		public boolean set(long userId, long assessmentId, double percentage) {
+			int column = columnIndex.get(assessmentId);
+			if (column < 0) {
+				column = columnIndex.add(assessmentId);
+				if (column >= columnIds.length) {
+					columnIds = Arrays.copyOf(columnIds, columnIds.length * 2);
+				}
+				columnIds[column] = assessmentId;
+			}
+			int row = rowIndex.get(userId);
+			if (row < 0) {
+				row = rowIndex.add(userId);
+				if (row >= rows.length) {
+					rows = Arrays.copyOf(rows, rows.length * 2);
+				}
+				rows[row] = new double[0];
+			}
+			double[] values = rows[row];
+			if (column >= values.length) {
+				int oldLength = values.length;
+				values = Arrays.copyOf(values, columnIndex.size());
+				Arrays.fill(values, oldLength, values.length, Double.NaN);
+				rows[row] = values;
+			}
+			double old = values[column];
+			values[column] = percentage;
+			if (Double.isNaN(old)) {
+				size++;
+				return true;
+			}
+			return Double.compare(old, percentage) != 0;
+		}
+
+		/**
+		 * @return true if any value was removed
+		 */
+		public boolean clearColumn(long assessmentId) {
+			int column = columnIndex.get(assessmentId);
+			if (column < 0) {
+				return false;
+			}
+			int removed = 0;
+			for (int row = 0; row < rowIndex.size(); row++) {
+				if (column < rows[row].length && !Double.isNaN(rows[row][column])) {
+					rows[row][column] = Double.NaN;
+					removed++;
+				}
+			}
+			size -= removed;
+			return removed > 0;
+		}
+
+		/**
+		 * @return the number of (user, assessment) pairs whose value is not the
+		 *         same in both
+		 */
+		public int countDifferences(Cells other) {
+			int differences = 0;
+			for (int row = 0; row < rowIndex.size(); row++) {
+				long userId = rowIndex.keyAt(row);
+				for (int column = 0; column < rows[row].length; column++) {
+					double value = rows[row][column];
+					if (!Double.isNaN(value)
+							&& Double.compare(value, other.get(userId, columnIds[column])) != 0) {
+						differences++;
+					}
+				}
+			}
+			// values only in the other matrix
+			for (int row = 0; row < other.rowIndex.size(); row++) {
+				long userId = other.rowIndex.keyAt(row);
+				for (int column = 0; column < other.rows[row].length; column++) {
+					if (!Double.isNaN(other.rows[row][column])
+							&& Double.isNaN(get(userId, other.columnIds[column]))) {
+						differences++;
+					}
+				}
+			}
+			return differences;
+		}
+	}
+
+	/**
+	 * An open-addressing map from ids to dense indexes (0, 1, 2, ...) in the
+	 * order the ids were added, so that lookups do not need boxed keys.
+	 */
+	private static class IdIndex {
+		private long[] keys = new long[32];
+		// index + 1, so that 0 is an empty slot
+		private int[] slots = new int[32];
+		private long[] keysByIndex = new long[16];
+		private int size;
+
+		public int size() {
+			return size;
+		}
+
+		public long keyAt(int index) {
+			return keysByIndex[index];
+		}
+
+		public int get(long key) {
+			int mask = slots.length - 1;
+			for (int i = hash(key) & mask; slots[i] != 0; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					return slots[i] - 1;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Add a key that is not already present.
+		 * 
+		 * @return the index of the new key
+		 */
+		public int add(long key) {
+			if ((size + 1) * 2 > slots.length) {
+				resize();
+			}
+			insert(key, size);
+			if (size >= keysByIndex.length) {
+				keysByIndex = Arrays.copyOf(keysByIndex, keysByIndex.length * 2);
+			}
+			keysByIndex[size] = key;
+			return size++;
+		}
+
+		private void insert(long key, int index) {
+			int mask = slots.length - 1;
+			int i = hash(key) & mask;
+			while (slots[i] != 0) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			slots[i] = index + 1;
+		}
+
+		private void resize() {
+			keys = new long[keys.length * 2];
+			slots = new int[slots.length * 2];
+			for (int index = 0; index < size; index++) {
+				insert(keysByIndex[index], index);
+			}
+		}
+
+		private static int hash(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+}
@@ -58,6 +58,9 @@ public class GroupManager {
 	@Autowired
 	private UserDAO userDAO;
 	
+	@Autowired
+	private HomePageManager homePageManager;
+	
 	public PASTAGroup getGroup(long id) {
 		return userDAO.getGroup(id);
 	}
@@ -153,6 +156,7 @@ public class GroupManager {
 		}
 		if(myGroup.removeMember(user)) {
 			userDAO.update(myGroup);
+			homePageManager.invalidate(user);
 			return true;
 		}
 		return false;
@@ -166,6 +170,7 @@ public class GroupManager {
 			if(leaveCurrentGroup(user, assessment)) {
 				if(group.addMember(user)) {
 					userDAO.update(group);
+					homePageManager.invalidate(user);
 					return true;
 				}
 			}
@@ -252,6 +257,7 @@ public class GroupManager {
 		for(PASTAGroup group : toUpdate) {
 			userDAO.update(group);
 		}
+		homePageManager.invalidateAll();
 	}
 
 	public List<PASTAGroup> getGroups(Collection<PASTAUser> users, long assessmentId) {
@@ -281,5 +287,6 @@ public class GroupManager {
 			logger.info("Deleting group " + group.getName());
 			userDAO.delete(group);
 		}
+		homePageManager.invalidateAll();
 	}
 }
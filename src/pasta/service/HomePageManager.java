@@ -0,0 +1,285 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import pasta.domain.result.AssessmentResult;
+import pasta.domain.result.AssessmentResultSummary;
+import pasta.domain.result.CombinedAssessmentResult;
+import pasta.domain.template.Assessment;
+import pasta.domain.user.PASTAGroup;
+import pasta.domain.user.PASTAUser;
+import pasta.repository.ResultDAO;
+import pasta.repository.UserDAO;
+import pasta.util.PASTAUtil;
+
+/**
+ * Builds everything shown on a student's home page.
+ * <p>
+ * The data about the user is loaded in a fixed number of queries, rather
+ * than a few queries per assessment. It covers which results are the latest
+ * individual and group ones, submission counts, extensions and groups. It
+ * is kept per user until one of those inputs changes on this node. Only the
+ * ids of the latest results are kept; the results themselves are loaded
+ * again for each request, as building the page attaches them to a new
+ * {@link CombinedAssessmentResult}. Changes made on
+ * another node sharing the database are picked up when the entry expires
+ * (<code>home.cache.seconds</code>). Users with a submission waiting to run
+ * are never cached, so they see their results as soon as they are ready.
+ * <p>
+ * Anything that depends on the current time or on the assessments
+ * themselves (release, due dates, weights) is worked out again for every
+ * request.
+ */
+@Service("homePageManager")
+public class HomePageManager {
+
+	@Autowired
+	private ResultDAO resultDAO;
+	@Autowired
+	private UserDAO userDAO;
+	@Autowired
+	private AssessmentManager assessmentManager;
+	
+	private final Map<Long, UserData> cache = new LinkedHashMap<Long, UserData>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, UserData> eldest) {
+			return size() > PASTAOptions.instance().getInt("home.cache.size", 2000);
+		}
+	};
+	
+	// Guarded by cache. Every invalidation takes the next generation; loads
+	// that started before a user's last invalidation are not cached.
+	private long generation;
+	private long allInvalidatedAt;
+	private final Map<Long, Long> invalidatedAt = new HashMap<>();
+	
+	/**
+	 * Get the attributes needed to render a home page.
+	 * 
+	 * @param user the user whose home page is shown
+	 * @param tutorView whether to include tutor-only assessment categories
+	 * @return the model attributes: <code>results</code>,
+	 *         <code>assessments</code>, <code>dueDates</code>,
+	 *         <code>hasExtension</code>, <code>released</code>,
+	 *         <code>closed</code>, <code>hasGroupWork</code> and
+	 *         <code>allGroupWork</code>
+	 */
+	public Map<String, Object> getHomePageAttributes(PASTAUser user, boolean tutorView) {
+		UserData data = getUserData(user);
+		Map<Long, List<AssessmentResult>> latestResults = new HashMap<>();
+		for(AssessmentResult result : resultDAO.getAssessmentResults(data.latestResultIds)) {
+			long assessmentId = result.getAssessment().getId();
+			List<AssessmentResult> latest = latestResults.get(assessmentId);
+			if(latest == null) {
+				latest = new ArrayList<>(2);
+				latestResults.put(assessmentId, latest);
+			}
+			latest.add(result);
+		}
+		
+		Map<String, Set<Assessment>> allAssessments = assessmentManager.getAllAssessmentsByCategory(tutorView);
+		Iterator<String> itCategories = allAssessments.keySet().iterator();
+		while(itCategories.hasNext()) {
+			String category = itCategories.next();
+			Iterator<Assessment> itAssessments = allAssessments.get(category).iterator();
+			while(itAssessments.hasNext()) {
+				Assessment a = itAssessments.next();
+				if(!a.isReleasedTo(user)) {
+					itAssessments.remove();
+				}
+			}
+			if(allAssessments.get(category).isEmpty()) {
+				itCategories.remove();
+			}
+		}
+		
+		Map<Long, CombinedAssessmentResult> results = new HashMap<>();
+		Map<Long, String> dueDates = new HashMap<Long, String>();
+		Map<Long, Boolean> hasExtension = new HashMap<>();
+		Map<Long, Boolean> released = new HashMap<>();
+		Map<Long, Boolean> closed = new HashMap<>();
+		Map<Long, Boolean> hasGroupWork = new HashMap<>();
+		Map<Long, Boolean> allGroupWork = new HashMap<>();
+		for(Assessment assessment : assessmentManager.getAssessmentList()) {
+			long id = assessment.getId();
+			
+			List<AssessmentResult> latest = latestResults.get(id);
+			if(latest != null) {
+				// combine against the current assessment so that weights are up to date
+				CombinedAssessmentResult result = new CombinedAssessmentResult(user);
+				result.setAssessment(assessment);
+				for(AssessmentResult r : latest) {
+					result.addResult(r);
+				}
+				int[] counts = data.submissionCounts.get(id);
+				if(counts != null) {
+					result.setSubmissionCounts(counts[0], 
+							assessment.isCountUncompilable() ? counts[0] : counts[0] - counts[1]);
+				}
+				results.put(id, result);
+			}
+			
+			Date extension = data.extensions.get(id);
+			Date due = assessment.getDueDate();
+			if(extension != null && extension.after(due)) {
+				due = extension;
+			}
+			dueDates.put(id, PASTAUtil.formatDateReadable(due));
+			hasExtension.put(id, extension != null);
+			released.put(id, assessment.isReleasedTo(user));
+			closed.put(id, assessment.isClosedFor(user, extension));
+			boolean assessmentHasGroupWork = data.groupAssessmentIds.contains(id) && assessmentManager.hasGroupWork(assessment);
+			hasGroupWork.put(id, assessmentHasGroupWork);
+			allGroupWork.put(id, assessmentHasGroupWork && assessmentManager.isAllGroupWork(assessment));
+		}
+		
+		Map<String, Object> attributes = new HashMap<>();
+		attributes.put("results", results);
+		attributes.put("assessments", allAssessments);
+		attributes.put("dueDates", dueDates);
+		attributes.put("hasExtension", hasExtension);
+		attributes.put("released", released);
+		attributes.put("closed", closed);
+		attributes.put("hasGroupWork", hasGroupWork);
+		attributes.put("allGroupWork", allGroupWork);
+		return attributes;
+	}
+	
+	/**
+	 * Forget what is known about a user, for example when they submit, are
+	 * marked or are given an extension. If the user is a group, all of its
+	 * members are forgotten.
+	 * 
+	 * @param user the user or group
+	 */
+	public void invalidate(PASTAUser user) {
+		if(user == null) {
+			return;
+		}
+		synchronized(cache) {
+			long current = ++generation;
+			cache.remove(user.getId());
+			invalidatedAt.put(user.getId(), current);
+			if(user instanceof PASTAGroup && ((PASTAGroup) user).getMembers() != null) {
+				for(PASTAUser member : ((PASTAGroup) user).getMembers()) {
+					cache.remove(member.getId());
+					invalidatedAt.put(member.getId(), current);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Forget what is known about the user a summary is for.
+	 * 
+	 * @param summary the summary that has changed
+	 */
+	public void invalidate(AssessmentResultSummary summary) {
+		if(summary != null) {
+			invalidate(summary.getUser());
+		}
+	}
+	
+	/**
+	 * Forget everything, for example when groups change.
+	 */
+	public void invalidateAll() {
+		synchronized(cache) {
+			cache.clear();
+			allInvalidatedAt = ++generation;
+			invalidatedAt.clear();
+		}
+	}
+	
+	private UserData getUserData(PASTAUser user) {
+		long now = System.currentTimeMillis();
+		long loadStarted;
+		synchronized(cache) {
+			UserData data = cache.get(user.getId());
+			if(data != null && now - data.loaded < PASTAOptions.instance().getInt("home.cache.seconds", 60) * 1000L) {
+				return data;
+			}
+			loadStarted = generation;
+		}
+		
+		UserData data = loadUserData(user);
+		if(!data.waitingToRun) {
+			synchronized(cache) {
+				// Don't cache data that may predate an invalidation made while loading
+				Long userInvalidatedAt = invalidatedAt.get(user.getId());
+				if(allInvalidatedAt <= loadStarted 
+						&& (userInvalidatedAt == null || userInvalidatedAt <= loadStarted)) {
+					cache.put(user.getId(), data);
+				}
+			}
+		}
+		return data;
+	}
+	
+	private UserData loadUserData(PASTAUser user) {
+		UserData data = new UserData();
+		
+		Map<Long, Long> groupIds = userDAO.getGroupIdsByAssessment(user);
+		data.groupAssessmentIds = groupIds.keySet();
+		
+		List<Long> userIds = new ArrayList<>(groupIds.values());
+		userIds.add(user.getId());
+		for(Object[] row : resultDAO.getLatestResultIdsForAllAssessments(userIds)) {
+			data.latestResultIds.add((Long) row[0]);
+			data.waitingToRun |= (Boolean) row[1];
+		}
+		
+		data.submissionCounts = resultDAO.getSubmissionCounts(userIds);
+		data.extensions = userDAO.getExtensions(user);
+		return data;
+	}
+	
+	/**
+	 * What is known about one user, as loaded from the database.
+	 */
+	private static class UserData {
+		final long loaded = System.currentTimeMillis();
+		List<Long> latestResultIds = new ArrayList<>();
+		Map<Long, int[]> submissionCounts = Collections.emptyMap();
+		Map<Long, Date> extensions = Collections.emptyMap();
+		Collection<Long> groupAssessmentIds = Collections.emptySet();
+		boolean waitingToRun;
+	}
+}
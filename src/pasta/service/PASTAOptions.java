@@ -127,6 +127,30 @@ public class PASTAOptions {
 		return properties.getProperty(key);
 	}
 	
+	/**
+	 * @return the option as an integer, or <code>defaultValue</code> if it is
+	 *         not set or is not a valid integer
+	 */
+	public int getInt(String key, int defaultValue) {
+		String value = get(key);
+		if(value != null) {
+			try { return Integer.parseInt(value.trim()); } catch (NumberFormatException e) {}
+		}
+		return defaultValue;
+	}
+	
+	/**
+	 * @return the option as a long, or <code>defaultValue</code> if it is not
+	 *         set or is not a valid long
+	 */
+	public long getLong(String key, long defaultValue) {
+		String value = get(key);
+		if(value != null) {
+			try { return Long.parseLong(value.trim()); } catch (NumberFormatException e) {}
+		}
+		return defaultValue;
+	}
+	
 	public List<Option> getAllOptions() {
 		return optionsDao.getAllOptions();
 	}
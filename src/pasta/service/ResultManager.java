@@ -32,9 +32,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -48,6 +46,7 @@ import pasta.domain.result.CombinedAssessmentResult;
 import pasta.domain.user.PASTAGroup;
 import pasta.domain.user.PASTAUser;
 import pasta.repository.ResultDAO;
+import pasta.repository.TestCaseHistoryStore;
 import pasta.util.PASTAUtil;
 
 /**
@@ -64,11 +63,17 @@ public class ResultManager {
 	private ApplicationContext context;
 	@Autowired
 	private ResultDAO resultDAO;
+	@Autowired
+	private TestCaseHistoryStore testCaseHistoryStore;
 	
 	@Autowired
 	private GroupManager groupManager;
 	@Autowired
 	private AssessmentManager assessmentManager;
+	@Autowired
+	private GradeMatrix gradeMatrix;
+	@Autowired
+	private HomePageManager homePageManager;
 	
 	public Collection<AssessmentResult> getAllResultsForUserAssessment(PASTAUser user, long assessmentId) {
 		return resultDAO.getAllResults(user, assessmentId, true, false);
@@ -150,27 +155,15 @@ public class ResultManager {
 	}
 	
 	/**
-	 * Get the latest result for the collection of users, including their marks from the group.
+	 * Get the latest percentage for the collection of users, including their marks from the group.
+	 * <p>
+	 * This is served from the in-memory {@link GradeMatrix} and does not touch the database.
 	 * 
 	 * @param allUsers the collection of {@link pasta.domain.user.PASTAUser} that are being queried
-	 * @return the map (Long userId , Long assessmentId, {@link pasta.domain.result.CombinedAssessmentResult} assessmentResults) 
+	 * @return the map (PASTAUser user, Long assessmentId, Double percentage); every user has an entry
 	 */
 	public Map<PASTAUser, Map<Long, Double>> getLatestResultsIncludingGroupEvenQuicker(Collection<PASTAUser> allUsers){
-		Map<PASTAUser, Map<Long, Double>> results = new TreeMap<>();
-		
-		Set<PASTAUser> users = new TreeSet<>(allUsers);
-		List<AssessmentResultSummary> userResults = resultDAO.getResultsSummaryForMultiUser(users);
-		
-		for(AssessmentResultSummary userResult : userResults) {
-			Map<Long, Double> thisUserResults = results.get(userResult.getUser());
-			if(thisUserResults == null) {
-				thisUserResults = new TreeMap<>();
-				results.put(userResult.getUser(), thisUserResults);
-			}
-			thisUserResults.put(userResult.getAssessment().getId(), userResult.getPercentage());
-		}
-		return results;
-		
+		return gradeMatrix.getPercentages(allUsers);
 	}
 	
 	/**
@@ -330,6 +323,7 @@ public class ResultManager {
 
 	public void updateAssessmentResults(AssessmentResult result) {
 		resultDAO.update(result);
+		homePageManager.invalidate(result.getUser());
 	}
 
 	public void updateComment(long resultId, String newComment) {
@@ -340,14 +334,36 @@ public class ResultManager {
 
 	public void save(AssessmentResult result) {
 		resultDAO.save(result);
+		homePageManager.invalidate(result.getUser());
 	}
 
 	public void saveOrUpdate(AssessmentResultSummary summary) {
 		resultDAO.saveOrUpdate(summary);
+		gradeMatrix.update(summary);
+		homePageManager.invalidate(summary);
+	}
+
+	/**
+	 * @return a token that changes whenever any assessment summary changes
+	 * @see GradeMatrix#getVersion()
+	 */
+	public String getResultsSummaryVersion() {
+		return gradeMatrix.getVersion();
+	}
+
+	/**
+	 * Reload the in-memory grade matrix from the database.
+	 * 
+	 * @return the number of results that were out of date in memory
+	 * @see GradeMatrix#rebuild()
+	 */
+	public int rebuildGradeMatrix() {
+		return gradeMatrix.rebuild();
 	}
 
 	public void update(AssessmentResult result) {
 		resultDAO.update(result);
+		homePageManager.invalidate(result.getUser());
 	}
 
 	public List<AssessmentResult> getWaitingResults() {
@@ -361,6 +377,8 @@ public class ResultManager {
 			for(AssessmentResult result : results) {
 				resultDAO.delete(result);
 			}
+			testCaseHistoryStore.delete(assessmentId);
+			homePageManager.invalidateAll();
 		}
 	}
 }
@@ -42,6 +42,7 @@ import pasta.domain.template.Assessment;
 import pasta.domain.user.PASTAUser;
 import pasta.repository.AssessmentDAO;
 import pasta.scheduler.ExecutionScheduler;
+import pasta.scheduler.JobPriority;
 import pasta.util.PASTAUtil;
 import pasta.util.ProjectProperties;
 
@@ -170,8 +171,21 @@ public class SubmissionManager {
 	 * @param result the assessment result object to store results in
 	 */
 	public void runAssessment(PASTAUser user, long assessmentId, String assessmentDate, AssessmentResult result){
+		runAssessment(user, assessmentId, assessmentDate, result, JobPriority.SUBMISSION);
+	}
+	
+	/**
+	 * Schedule an assessment attempt for a given user for execution
+	 * 
+	 * @param user the user
+	 * @param assessmentId the id of the assessment
+	 * @param assessmentDate the date of the assessment (format yyyy-MM-dd'T'HH-mm-ss)
+	 * @param result the assessment result object to store results in
+	 * @param priority the priority class to queue the attempt in
+	 */
+	public void runAssessment(PASTAUser user, long assessmentId, String assessmentDate, AssessmentResult result, JobPriority priority){
 		try {
-			scheduler.scheduleJob(user, assessmentId, result, PASTAUtil.parseDate(assessmentDate));
+			scheduler.scheduleJob(user, assessmentId, result, PASTAUtil.parseDate(assessmentDate), priority);
 		} catch (ParseException e) {
 			logger.error("Unable to re-run assessment "
 					+ assessmentId + " for " + user.getUsername()
@@ -181,7 +195,9 @@ public class SubmissionManager {
 	
 	/**
 	 * Schedule the latest attempt of an assessment for a collection of users that have
-	 * submitted for execution.
+	 * submitted for execution. These are queued as bulk re-runs, so they
+	 * share the executor fairly with live submissions rather than blocking
+	 * them.
 	 * 
 	 * @param assessment the assessment for which the latest attempts must be re-run
 	 * @param allUsers the collection of users for which the latest attempt will be executed
@@ -192,7 +208,7 @@ public class SubmissionManager {
 			AssessmentResult currResult = resultManager.getLatestResults(user).get(assessment.getId());
 			if(currResult != null){
 				// add them to the queue
-				scheduler.scheduleJob(user, assessment.getId(), currResult, currResult.getSubmissionDate());
+				scheduler.scheduleJob(user, assessment.getId(), currResult, currResult.getSubmissionDate(), JobPriority.BULK_RERUN);
 			}
 		}
 	}
@@ -34,7 +34,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.Stack;
 import java.util.regex.Matcher;
 
@@ -50,6 +49,8 @@ import pasta.docker.DockerManager;
 import pasta.docker.ExecutionContainer;
 import pasta.docker.Language;
 import pasta.docker.LanguageManager;
+import pasta.docker.ResourceLimits;
+import pasta.docker.ResourceUsage;
 import pasta.domain.FileTreeNode;
 import pasta.domain.form.NewUnitTestForm;
 import pasta.domain.form.TestUnitTestForm;
@@ -61,15 +62,17 @@ import pasta.domain.template.UnitTest;
 import pasta.repository.AssessmentDAO;
 import pasta.repository.ResultDAO;
 import pasta.repository.UnitTestDAO;
+import pasta.scheduler.ExecutionEstimator;
 import pasta.testing.AntJob;
 import pasta.testing.AntResults;
+import pasta.testing.BlackBoxOutputComparator;
 import pasta.testing.BlackBoxTestRunner;
 import pasta.testing.CBlackBoxTestRunner;
 import pasta.testing.CPPBlackBoxTestRunner;
 import pasta.testing.JUnitTestRunner;
 import pasta.testing.Runner;
 import pasta.testing.task.CleanupSpecificFilesTask;
-import pasta.testing.task.DirectoryCopyTask;
+import pasta.testing.task.DirectoryLinkTask;
 import pasta.testing.task.UnzipTask;
 import pasta.util.PASTAUtil;
 import pasta.util.ProjectProperties;
@@ -94,9 +97,8 @@ public class UnitTestManager {
 	@Autowired private AssessmentDAO assDao;
 	@Autowired private ResultDAO resultDAO;
 	
-	final static String BB_TEST_TEMPLATE = "PASTABlackBoxTest.template";
-	final static String BB_TEST_METHOD_TEMPLATE = "PASTABlackBoxTestMethod.template";
-	final static String BB_TEST_VARIABLES_TEMPLATE = "PASTABlackBoxTestVariables.template";
+	// Generated by older versions to compare black box output with JUnit
+	final static String LEGACY_BB_TEST_FILENAME = "PASTABlackBoxTest.java";
 	
 	@Autowired
 	private UnitTestDAO unitTestDAO;
@@ -129,6 +131,7 @@ public class UnitTestManager {
 	 * @param thisTest the unit test to save
 	 */
 	public void updateUnitTest(UnitTest thisTest) {
+		ExecutionEstimator.invalidate(thisTest);
 		// Save unit test to database
 		try {
 			unitTestDAO.update(thisTest);
@@ -159,7 +162,9 @@ public class UnitTestManager {
 		try {
 			assDao.unlinkUnitTest(id);
 			resultDAO.unlinkUnitTest(id);
-			unitTestDAO.delete(unitTestDAO.getUnitTest(id));
+			UnitTest test = unitTestDAO.getUnitTest(id);
+			ExecutionEstimator.invalidate(test);
+			unitTestDAO.delete(test);
 		} catch (Exception e) {
 			logger.error("Could not delete unit test " + id, e);
 		}
@@ -236,8 +241,8 @@ public class UnitTestManager {
 		}
 		// Code we are interested in testing
 		File importantCode = test.getSubmissionCodeLocation(unzipTo);
-		logger.debug("Copying " + importantCode + " to " + sandboxLoc);
-		new DirectoryCopyTask(importantCode, sandboxLoc).go();
+		logger.debug("Linking " + importantCode + " into " + sandboxLoc);
+		new DirectoryLinkTask(importantCode, sandboxLoc).go();
 		
 		
 		// Get a list of files submitted for tracking later
@@ -288,8 +293,6 @@ public class UnitTestManager {
 			UnitTestResult utResults,
 			File submissionCode, List<String> context,
 			ExecutionContainer container) {
-		String mainClass = BB_TEST_TEMPLATE.substring(0, BB_TEST_TEMPLATE.lastIndexOf('.'));
-		
 		String base = test.getSubmissionCodeRoot();
 		
 		Language subLanguage = LanguageManager.getInstance().guessLanguage(solutionName, base, container.getSrcLoc());
@@ -309,9 +312,8 @@ public class UnitTestManager {
 			return;
 		}
 		
-		runner.setMainTestClassname(mainClass);
 		runner.setFilterStackTraces(false);
-		runner.setTestData(test.getTestCases(), subLanguage);
+		runner.setTestData(test, subLanguage, getResourceLimits(test, subLanguage));
 		runner.setSolutionName(solutionName);
 		runner.setTimeout(test.getBlackBoxTimeout() + (test.getTestCases().size() * subLanguage.getTestCaseExecutionOverhead()));
 		
@@ -319,14 +321,19 @@ public class UnitTestManager {
 			((CBlackBoxTestRunner) runner).setGCCArguments(test.getBlackBoxOptions().getGccCommandLineArgs());
 		}
 		
-		String[] targets = null;
+		// Output is compared here once the run is done, so there is no JUnit
+		// test to build or run in the container
+		String[] targets = new String[] {"build", "run", "clean"};
+		File testLoc = test.getGeneratedCodeLocation();
+		FileUtils.deleteQuietly(new File(testLoc, LEGACY_BB_TEST_FILENAME));
+		BlackBoxOutputComparator comparator = null;
 		if(test.hasBlackBoxTestsWithOutputCheck()) {
-			targets = new String[] {"build", "run", "test", "clean"};
-		} else {
-			targets = new String[] {"build", "run", "clean"};
+			comparator = new BlackBoxOutputComparator(
+					new File(testLoc, UnitTest.BB_EXPECTED_OUTPUT_FILENAME), 
+					new File(container.getOutLoc(), runner.getOption("carryDir")), 
+					test.getBlackBoxOptions().isDetailedErrors());
 		}
-		File testLoc = test.getGeneratedCodeLocation();
-		doTest(runner, targets, test, testLoc, utResults, context, container);
+		doTest(runner, targets, test, testLoc, utResults, context, container, comparator);
 	}
 	
 	public void runJUnitTests(UnitTest test, 
@@ -347,7 +354,7 @@ public class UnitTestManager {
 		runner.setMaxRunTime(test.getAdvancedTimeout());
 		String[] targets = new String[] {"build", "test", "clean"};
 		File testLoc = test.getCodeLocation();
-		doTest(runner, targets, test, testLoc, utResults, context, container);
+		doTest(runner, targets, test, testLoc, utResults, context, container, null);
 	}
 	
 	private void populateWritableAccessoryFiles(File accessory, String accessoryPath, Runner runner) {
@@ -361,17 +368,24 @@ public class UnitTestManager {
 		}
 	}
 	
+	private static ResourceLimits getResourceLimits(UnitTest test, Language language) {
+		return ResourceLimits.forLanguage(language)
+				.withOverrides(test.getMemoryLimit(), test.getCpuLimit(), test.getPidsLimit());
+	}
+	
 	private void doTest(Runner runner, String[] targets, UnitTest test, File testCode, 
-			UnitTestResult utResults, List<String> context, ExecutionContainer container) {
+			UnitTestResult utResults, List<String> context, ExecutionContainer container,
+			BlackBoxOutputComparator comparator) {
 		AntJob antJob = new AntJob(runner, container, targets);
 		antJob.addDependency("test", "build");
 		antJob.addDependency("run", "build");
+		antJob.setCachedTarget("build");
 		
-		antJob.addSetupTask(new DirectoryCopyTask(testCode, container.getSrcLoc()));
+		antJob.addSetupTask(new DirectoryLinkTask(testCode, container.getSrcLoc()));
 		
 		File accessoryFiles = test.hasAccessoryFiles() ? test.getAccessoryLocation() : null;
 		if(accessoryFiles != null) {
-			antJob.addSetupTask(new DirectoryCopyTask(accessoryFiles, container.getSrcLoc(), true));
+			antJob.addSetupTask(new DirectoryLinkTask(accessoryFiles, container.getSrcLoc(), true));
 			if(test.isAllowAccessoryFileWrite()) {
 				populateWritableAccessoryFiles(accessoryFiles, accessoryFiles.getAbsolutePath(), runner);
 			}
@@ -379,6 +393,8 @@ public class UnitTestManager {
 		
 		antJob.addCleanupTask(new CleanupSpecificFilesTask(testCode, container.getSrcLoc(), false));
 		
+		container.setResourceLimits(getResourceLimits(test, container.getLanguage()));
+		
 		logger.debug("Starting run of ant job");
 		antJob.run();
 		logger.debug("Ant job completed");
@@ -394,9 +410,17 @@ public class UnitTestManager {
 			logger.debug("Extracting test descriptions");
 			Map<String, String> testDescriptions = test.getTestDescriptions();
 			
-			logger.debug("Reading results from disk");
-			// Get results from ant output
-			thisResult = resultDAO.getUnitTestResultFromDisk(container.getOutLoc().getAbsolutePath(), context, testDescriptions);
+			if(comparator != null) {
+				logger.debug("Comparing black box output");
+				thisResult = new UnitTestResult();
+				if(results.isSuccess("build")) {
+					thisResult.setTestCases(comparator.compareAll(test.getTestCases(), testDescriptions));
+				}
+			} else {
+				logger.debug("Reading results from disk");
+				// Get results from ant output
+				thisResult = resultDAO.getUnitTestResultFromDisk(container.getOutLoc().getAbsolutePath(), context, testDescriptions);
+			}
 			if(thisResult == null) {
 				thisResult = new UnitTestResult();
 				thisResult.setRuntimeErrors("Could not read unit test results from disk.");
@@ -438,6 +462,11 @@ public class UnitTestManager {
 		}
 		
 		thisResult.setFullOutput(results.getFullOutput());
+		ResourceUsage usage = antJob.getResourceUsage();
+		if(usage != null) {
+			thisResult.setCpuTime(usage.getCpuTime());
+			thisResult.setPeakMemory(usage.getPeakMemory());
+		}
 		utResults.combine(thisResult);
 	}
 	
@@ -448,6 +477,9 @@ public class UnitTestManager {
 		test.setAllowAccessoryFileWrite(updateForm.isAllowAccessoryWrite());
 		test.setAdvancedTimeout(updateForm.getAdvancedTimeout());
 		test.setBlackBoxTimeout(updateForm.getBlackBoxTimeout());
+		test.setMemoryLimit(updateForm.getMemoryLimit());
+		test.setCpuLimit(updateForm.getCpuLimit());
+		test.setPidsLimit(updateForm.getPidsLimit());
 		
 		List<BlackBoxTestCase> newCases = updateForm.getPlainTestCases();
 		ListIterator<BlackBoxTestCase> newIt = newCases.listIterator();
@@ -482,109 +514,14 @@ public class UnitTestManager {
 	}
 
 	private void updateBlackBoxCode(UnitTest test) {
-		logger.info("Creating black box code for " + test.getName());
+		logger.info("Clearing generated black box files for " + test.getName());
 		
+		// Output is compared by BlackBoxOutputComparator, so only the input
+		// and expected output files are generated
 		FileUtils.deleteQuietly(test.getGeneratedCodeLocation());
-		if(!test.hasBlackBoxTests()) {
-			return;
-		}
-		
-		File bbTemplateFile = null;
-		try {
-			bbTemplateFile = PASTAUtil.getTemplateResource("build_templates/" + BB_TEST_TEMPLATE);
-		} catch (FileNotFoundException e) {
-			logger.error("Could not create black box code.", e);
-			return;
-		}
-		
-		StringBuilder testContent = new StringBuilder();
-		try {
-			Scanner testScn = new Scanner(bbTemplateFile);
-			while(testScn.hasNextLine()) {
-				String line = testScn.nextLine();
-				if(line.contains("${tests}")) {
-					testContent.append(getTestsContent(test)).append(System.lineSeparator());
-				} else if (line.contains("${variables}")) {
-					testContent.append(getVariablesContent(test)).append(System.lineSeparator());
-				} else {
-					testContent.append(line).append(System.lineSeparator());
-				}
-			}
-			testScn.close();
-		} catch (FileNotFoundException e) {
-			logger.error("Could not read black box template at " + bbTemplateFile);
-		}
-		
-		String filename = bbTemplateFile.getName().replace(".template", ".java");
-		File testFile = new File(test.getGeneratedCodeLocation(), filename);
-		if(!testFile.exists()) {
-			testFile.getParentFile().mkdirs();
-		}
-		try {
-			PrintWriter writer = new PrintWriter(testFile);
-			writer.println(testContent.toString());
-			writer.close();
-		} catch (FileNotFoundException e) {
-			logger.error("Unable to write to " + testFile, e);
-		}
-		
 		test.setTested(false);
 	}
 	
-	private String getTestsContent(UnitTest test) {
-		StringBuilder methodTemplate = new StringBuilder();
-		File bbMethodTemplateFile = null;
-		try {
-			bbMethodTemplateFile = PASTAUtil.getTemplateResource("build_templates/" + BB_TEST_METHOD_TEMPLATE);
-			Scanner methodScn = new Scanner(bbMethodTemplateFile);
-			while(methodScn.hasNextLine()) {
-				methodTemplate.append(methodScn.nextLine()).append(System.lineSeparator());
-			}
-			methodScn.close();
-		} catch (FileNotFoundException e) {
-			logger.error("Could not read black box method template at " + bbMethodTemplateFile);
-		} 
-		
-		StringBuilder allTests = new StringBuilder();
-		for(BlackBoxTestCase testCase : test.getTestCases()) {
-			if(testCase.hasValidName() && testCase.isToBeCompared()) {
-				String content = new String(methodTemplate.toString());
-				content = content.replaceAll("\\$\\{timeout\\}", String.valueOf(testCase.getTimeout()));
-				content = content.replaceAll("\\$\\{testName\\}", testCase.getTestName());
-				content = content.replaceAll("\\$\\{actualDir\\}", UnitTest.BB_OUTPUT_FILENAME);
-				content = content.replaceAll("\\$\\{expectedDir\\}", UnitTest.BB_EXPECTED_OUTPUT_FILENAME);
-				content = content.replaceAll("\\$\\{timeoutDir\\}", UnitTest.BB_META_FILENAME);
-				allTests.append(content);
-			}
-		}
-		
-		return allTests.toString();
-	}
-	
-	private String getVariablesContent(UnitTest test) {
-		StringBuilder variablesContent = new StringBuilder();
-		File bbVariablesTemplateFile = null;
-		try {
-			bbVariablesTemplateFile = PASTAUtil.getTemplateResource("build_templates/" + BB_TEST_VARIABLES_TEMPLATE);
-			Scanner variablesScn = new Scanner(bbVariablesTemplateFile);
-			while(variablesScn.hasNextLine()) {
-				variablesContent.append(variablesScn.nextLine()).append(System.lineSeparator());
-			}
-			variablesScn.close();
-		} catch (FileNotFoundException e) {
-			logger.error("Could not read black box variables template at " + bbVariablesTemplateFile);
-		} 
-		
-		String content = new String(variablesContent.toString());
-		BlackBoxOptions options = test.getBlackBoxOptions();
-		if(options == null) {
-			options = new BlackBoxOptions();
-		}
-		content = content.replaceAll("\\$\\{detailedErrors\\}", String.valueOf(options.isDetailedErrors()));
-		
-		return content;
-	}
-	
 	private void createExpectedOutputFiles(UnitTest test) {
 		File parentDir = new File(test.getGeneratedCodeLocation(), UnitTest.BB_EXPECTED_OUTPUT_FILENAME + File.separatorChar);
 		parentDir.mkdirs();
@@ -718,6 +655,7 @@ public class UnitTestManager {
 	}
 
 	public void deleteUserCode(UnitTest test) {
+		ExecutionEstimator.invalidate(test);
 		try {
 			FileUtils.deleteDirectory(test.getCodeLocation());
 		} catch (IOException e) {
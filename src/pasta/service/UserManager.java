@@ -69,6 +69,8 @@ public class UserManager {
 	private UserDAO userDao;
 	@Autowired
 	private LoginDAO loginDao;
+	@Autowired
+	private HomePageManager homePageManager;
 	
 	@Autowired
 	private ApplicationContext context;
@@ -111,6 +113,24 @@ public class UserManager {
 		return userDao.getUserList(false);
 	}
 	
+	/**
+	 * @see pasta.repository.UserDAO#getActiveUserIds()
+	 * @return the ids of all active users (not including groups)
+	 */
+	public List<Long> getActiveUserIds() {
+		return userDao.getActiveUserIds();
+	}
+	
+	/**
+	 * @see pasta.repository.UserDAO#getGroupMemberships(long, Collection)
+	 * @param assessmentId the id of the assessment
+	 * @param userIds the ids of the users
+	 * @return a list of (Long user id, Long group id) rows
+	 */
+	public List<Object[]> getGroupMemberships(long assessmentId, Collection<Long> userIds) {
+		return userDao.getGroupMemberships(assessmentId, userIds);
+	}
+	
 	public Collection<PASTAUser> getUserListIncludingGroups() {
 		return userDao.getUserList(true);
 	}
@@ -229,6 +249,7 @@ public class UserManager {
 	 */
 	public void giveExtension(PASTAUser user, Assessment assessment, Date extension) {
 		userDao.giveExtension(user, assessment, extension);
+		homePageManager.invalidate(user);
 	}
 
 	public Date getExtension(PASTAUser user, Assessment assessment) {
@@ -31,6 +31,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -47,6 +48,7 @@ import pasta.domain.template.Assessment;
 import pasta.domain.user.PASTAUser;
 import pasta.repository.AssessmentDAO;
 import pasta.repository.ResultDAO;
+import pasta.repository.TestCaseHistoryStore;
 import pasta.service.RatingManager;
 import pasta.service.ResultManager;
 import pasta.service.UserManager;
@@ -66,6 +68,9 @@ public class AssessmentReportingManager {
 	@Autowired
 	private ResultDAO resultDAO;
 	
+	@Autowired
+	private TestCaseHistoryStore testCaseHistoryStore;
+	
 	@Autowired
 	private UserManager userManager;
 	@Autowired
@@ -190,39 +195,25 @@ public class AssessmentReportingManager {
 		Collection<PASTAUser> students = userManager.getStudentList();
 		root.put("studentCount", students.size());
 		
-		Set<Date> allSubmissions = new TreeSet<>();
-		Set<PASTAUser> noSubmissions = new TreeSet<>();
-		
+		// distinct submission times per day, for students and their groups
 		HashMap<Date, Integer> submissionCounts = new HashMap<>();
-		HashMap<Date, Integer> startedCount = new HashMap<>();
+		Calendar day = Calendar.getInstance();
+		for(Object[] row : resultDAO.getSubmissionCountsByDay(assessment.getId())) {
+			day.clear();
+			day.set(((Number) row[0]).intValue(), ((Number) row[1]).intValue() - 1, ((Number) row[2]).intValue());
+			submissionCounts.put(day.getTime(), ((Number) row[3]).intValue());
+		}
 		
+		// the day each student first submitted
+		Map<Long, Date> firstSubmissions = resultDAO.getFirstSubmissionDates(assessment.getId());
+		HashMap<Date, Integer> startedCount = new HashMap<>();
+		Set<PASTAUser> noSubmissions = new TreeSet<>();
 		for(PASTAUser user : students) {
-			List<Date> submissionHistory = resultManager.getSubmissionDates(user, assessment.getId());
-			
-			boolean first = true;
-			for(Date date : submissionHistory) {
-				Date roundDate = getDay(date);
-				if(!allSubmissions.contains(date)) {
-					Integer count = submissionCounts.get(roundDate);
-					if(count == null) {
-						count = 0;
-					}
-					submissionCounts.put(roundDate, count+1);
-				}
-				if(first) {
-					Integer count = startedCount.get(roundDate);
-					if(count == null) {
-						count = 0;
-					}
-					startedCount.put(roundDate, count+1);
-				}
-				first = false;
-			}
-			
-			if(submissionHistory.isEmpty()) {
+			Date first = firstSubmissions.get(user.getId());
+			if(first == null) {
 				noSubmissions.add(user);
 			} else {
-				allSubmissions.addAll(submissionHistory);
+				startedCount.merge(getDay(first), 1, Integer::sum);
 			}
 		}
 		
@@ -281,6 +272,14 @@ public class AssessmentReportingManager {
 		
 		return root;
 	}
+	private Set<Long> getIds(Collection<PASTAUser> users) {
+		Set<Long> ids = new HashSet<>();
+		for(PASTAUser user : users) {
+			ids.add(user.getId());
+		}
+		return ids;
+	}
+	
 	private Date getDay(Date date) {
 		Calendar cal = Calendar.getInstance();
 		cal.setTime(date);
@@ -302,18 +301,15 @@ public class AssessmentReportingManager {
 			tutoredStudents.addAll(userManager.getTutoredStudents(user));
 		}
 		
+		Map<Long, Long> latestPassCounts = testCaseHistoryStore.getHistory(assessment)
+				.getLatestPassCounts(getIds(students));
+		
 		Long yourPassCount = null;
 		ArrayNode passCountsNode = mapper.createArrayNode();
 		ArrayNode classPassCountsNode = mapper.createArrayNode();
 		for(PASTAUser student : students) {
-			AssessmentResult result = resultDAO.getLatestIndividualResult(student, assessment.getId());
-			long passCount = -1;
-			if(result != null) {
-				passCount = result.getUnitTests().stream()
-						.flatMap(utr -> utr.getTestCases().stream())
-						.filter(UnitTestCaseResult::isPass)
-						.count();
-			}
+			Long latestPassCount = latestPassCounts.get(student.getId());
+			long passCount = latestPassCount == null ? -1 : latestPassCount;
 			if(student.equals(user)) {
 				yourPassCount = passCount;
 			}
@@ -345,20 +341,20 @@ public class AssessmentReportingManager {
 			tutoredStudents.addAll(userManager.getTutoredStudents(user));
 		}
 		
-		for(PASTAUser student : students) {
-			AssessmentResult result = resultDAO.getLatestIndividualResult(student, assessment.getId());
-			if(result == null) {
+		Set<Long> tutoredIds = new HashSet<>();
+		for(PASTAUser student : tutoredStudents) {
+			tutoredIds.add(student.getId());
+		}
+		
+		for(Object[] row : testCaseHistoryStore.getHistory(assessment).getLatestTestCaseResultCounts(getIds(students))) {
+			Map<String, int[]> counts = tutoredIds.contains(row[0]) ? classCounts : otherCounts;
+			int[] c = counts.get(row[1]);
+			if(c == null) {
 				continue;
 			}
-			
-			Map<String, int[]> counts = tutoredStudents.contains(student) ? classCounts : otherCounts;
-			result.getUnitTests().stream()
-			.flatMap(utr -> utr.getTestCases().stream())
-			.forEach(utcr -> {
-				int[] c = counts.get(utcr.getTestName());
-				if(c == null) return;
-				c[utcr.isPass() ? 0 : (utcr.isFailure() ? 1 : 2)]++;
-			});
+			String testResult = (String) row[2];
+			c[UnitTestCaseResult.PASS.equals(testResult) ? 0 : (UnitTestCaseResult.FAILURE.equals(testResult) ? 1 : 2)] 
+					+= ((Number) row[3]).intValue();
 		}
 		
 		Collections.sort(testNames, (a, b) -> {
@@ -0,0 +1,249 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.service.reporting;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.log4j.Logger;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import pasta.domain.result.AssessmentResult;
+import pasta.domain.template.Assessment;
+import pasta.domain.user.PASTAUser;
+import pasta.service.AssessmentManager;
+import pasta.service.PASTAOptions;
+import pasta.service.ResultManager;
+
+/**
+ * Builds the marks spreadsheets downloaded from the grade centre.
+ * <p>
+ * Spreadsheets are written as XLSX with POI's streaming (SXSSF) writer, so
+ * only a small window of rows is held in memory and there is no 65,536 row
+ * limit. Results are looked up for {@value #BATCH_SIZE} students at a time
+ * rather than for the whole cohort at once.
+ * <p>
+ * Each generated file is kept on disk, keyed by a hash of everything that
+ * goes into it: the results summary version, the assessments and the
+ * students. Another download of the same spreadsheet is served from that
+ * file until the data changes or the file is older than
+ * <code>marks.spreadsheet.cache.seconds</code>.
+ */
+@Service("marksSpreadsheetManager")
+public class MarksSpreadsheetManager {
+	private static final Logger logger = Logger.getLogger(MarksSpreadsheetManager.class);
+	
+	public static final String CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+	
+	private static final int BATCH_SIZE = 500;
+	private static final int ROW_WINDOW = 100;
+	
+	@Autowired
+	private ResultManager resultManager;
+	
+	@Autowired
+	private AssessmentManager assessmentManager;
+	
+	private final File cacheDir = new File(System.getProperty("java.io.tmpdir"), "pasta-marks");
+	private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<>();
+	
+	/**
+	 * Get a spreadsheet of marks for the given users, generating it if there
+	 * is no up-to-date copy on disk. Tutors in the list are left out.
+	 * 
+	 * @param users the users to include
+	 * @param autoMarksOnly true to include only automatic marks (unit tests),
+	 *          false for the full marks
+	 * @return the XLSX file; it may be shared with other requests and must not
+	 *         be modified or deleted by the caller
+	 * @throws IOException if the spreadsheet cannot be written
+	 */
+	public File getMarksSpreadsheet(Collection<PASTAUser> users, boolean autoMarksOnly) throws IOException {
+		List<PASTAUser> students = new ArrayList<>();
+		for(PASTAUser user : users) {
+			if(!user.isTutor()) {
+				students.add(user);
+			}
+		}
+		List<Assessment> assessments = new ArrayList<>(assessmentManager.getAssessmentList());
+		
+		String key = (autoMarksOnly ? "auto-" : "marks-") + getKey(students, assessments);
+		File file = new File(cacheDir, key + ".xlsx");
+		long maxAge = PASTAOptions.instance().getInt("marks.spreadsheet.cache.seconds", 300) * 1000L;
+		
+		Object lock = locks.computeIfAbsent(key, k -> new Object());
+		try {
+			synchronized(lock) {
+				if(file.isFile() && System.currentTimeMillis() - file.lastModified() < maxAge) {
+					return file;
+				}
+				cacheDir.mkdirs();
+				deleteExpired(2 * maxAge);
+				
+				long start = System.currentTimeMillis();
+				File temp = File.createTempFile(key, ".tmp", cacheDir);
+				try {
+					try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp.toPath()))) {
+						writeMarks(students, assessments, autoMarksOnly, out);
+					}
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				} finally {
+					temp.delete();
+				}
+				logger.info("Generated " + file.getName() + " for " + students.size() + " students in "
+						+ (System.currentTimeMillis() - start) + "ms");
+				return file;
+			}
+		} finally {
+			locks.remove(key, lock);
+		}
+	}
+	
+	private void writeMarks(List<PASTAUser> students, List<Assessment> assessments, boolean autoMarksOnly,
+			OutputStream out) throws IOException {
+		SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+		workbook.setCompressTempFiles(true);
+		try {
+			Sheet sheet = workbook.createSheet("Marks");
+			Row header = sheet.createRow(0);
+			header.createCell(0).setCellValue("Username");
+			header.createCell(1).setCellValue("Stream");
+			header.createCell(2).setCellValue("Class");
+			for(int i = 0; i < assessments.size(); i++) {
+				header.createCell(i + 3).setCellValue(assessments.get(i).getName());
+			}
+			header.createCell(assessments.size() + 3).setCellValue("Total");
+			
+			int rowNum = 1;
+			for(int from = 0; from < students.size(); from += BATCH_SIZE) {
+				List<PASTAUser> batch = students.subList(from, Math.min(students.size(), from + BATCH_SIZE));
+				Map<PASTAUser, Map<Long, Double>> marks = autoMarksOnly ?
+						getAutoMarks(batch) : getMarks(batch, assessments);
+				for(PASTAUser student : batch) {
+					Row row = sheet.createRow(rowNum++);
+					row.createCell(0).setCellValue(student.getUsername());
+					row.createCell(1).setCellValue(student.getStream());
+					row.createCell(2).setCellValue(student.getTutorial());
+					Map<Long, Double> studentMarks = marks.get(student);
+					double total = 0;
+					for(int i = 0; i < assessments.size(); i++) {
+						Double mark = studentMarks == null ? null : studentMarks.get(assessments.get(i).getId());
+						if(mark == null) {
+							row.createCell(i + 3).setCellValue("N/A");
+						} else {
+							row.createCell(i + 3).setCellValue(mark);
+							total += mark;
+						}
+					}
+					row.createCell(assessments.size() + 3).setCellValue(total);
+				}
+			}
+			workbook.write(out);
+		} finally {
+			workbook.dispose();
+		}
+	}
+	
+	private Map<PASTAUser, Map<Long, Double>> getMarks(List<PASTAUser> batch, List<Assessment> assessments) {
+		Map<PASTAUser, Map<Long, Double>> percentages = resultManager.getLatestResultsIncludingGroupEvenQuicker(batch);
+		for(Map<Long, Double> userPercentages : percentages.values()) {
+			for(Assessment assessment : assessments) {
+				Double percentage = userPercentages.get(assessment.getId());
+				if(percentage != null) {
+					userPercentages.put(assessment.getId(), percentage * assessment.getMarks());
+				}
+			}
+		}
+		return percentages;
+	}
+	
+	private Map<PASTAUser, Map<Long, Double>> getAutoMarks(List<PASTAUser> batch) {
+		Map<PASTAUser, Map<Long, AssessmentResult>> results = resultManager.getLatestResultsIncludingGroupQuick(batch);
+		Map<PASTAUser, Map<Long, Double>> marks = new TreeMap<>();
+		for(Map.Entry<PASTAUser, Map<Long, AssessmentResult>> userResults : results.entrySet()) {
+			Map<Long, Double> userMarks = new TreeMap<>();
+			for(Map.Entry<Long, AssessmentResult> result : userResults.getValue().entrySet()) {
+				userMarks.put(result.getKey(), result.getValue().getAutoMarks());
+			}
+			marks.put(userResults.getKey(), userMarks);
+		}
+		return marks;
+	}
+	
+	/**
+	 * Hash everything that determines the contents of a spreadsheet: the
+	 * results summary version, the assessments with their marks and versions,
+	 * and the students in order with their streams and tutorials.
+	 */
+	private String getKey(List<PASTAUser> students, List<Assessment> assessments) {
+		MessageDigest digest = DigestUtils.getSha1Digest();
+		DigestUtils.updateDigest(digest, resultManager.getResultsSummaryVersion());
+		for(Assessment assessment : assessments) {
+			DigestUtils.updateDigest(digest, "\na" + assessment.getId() + ":" + assessment.getVersion() + ":"
+					+ assessment.getMarks() + ":" + assessment.getName());
+		}
+		for(PASTAUser student : students) {
+			DigestUtils.updateDigest(digest, "\nu" + student.getUsername() + ":" + student.getStream() + ":"
+					+ student.getTutorial());
+		}
+		return Hex.encodeHexString(digest.digest());
+	}
+	
+	/**
+	 * Remove old spreadsheets. Files are only deleted well after they stop
+	 * being handed out, so a download that has just been given one can still
+	 * read it.
+	 */
+	private void deleteExpired(long maxAge) {
+		File[] files = cacheDir.listFiles();
+		if(files == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		for(File file : files) {
+			if(file.getName().endsWith(".xlsx") && now - file.lastModified() >= maxAge) {
+				file.delete();
+			}
+		}
+	}
+}
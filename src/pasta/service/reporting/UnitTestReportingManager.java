@@ -24,25 +24,30 @@ SOFTWARE.
 
 package pasta.service.reporting;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import org.springframework.stereotype.Service;
 
-import pasta.domain.result.AssessmentResult;
-import pasta.domain.result.UnitTestCaseResult;
-import pasta.domain.result.UnitTestResult;
 import pasta.domain.template.Assessment;
 import pasta.domain.template.WeightedUnitTest;
 import pasta.domain.user.PASTAUser;
+import pasta.repository.AssessmentDAO;
 import pasta.repository.ResultDAO;
+import pasta.repository.TestCaseHistoryStore;
 import pasta.service.UserManager;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -61,6 +66,12 @@ public class UnitTestReportingManager {
 	@Autowired
 	private ResultDAO resultDAO;
 	
+	@Autowired
+	private AssessmentDAO assessmentDAO;
+	
+	@Autowired
+	private TestCaseHistoryStore testCaseHistoryStore;
+	
 	@Autowired
 	private UserManager userManager;
 	
@@ -73,11 +84,12 @@ public class UnitTestReportingManager {
 		}
 		
 		Collection<PASTAUser> students = userManager.getStudentList();
-		Map<PASTAUser, List<AssessmentResult>> allResults = new LinkedHashMap<>();
+		Map<Long, List<Date>> allSubmissionDates = resultDAO.getSubmissionDatesByStudent(assessment.getId());
+		Set<Long> studentIds = new HashSet<>();
 		for(PASTAUser student : students) {
-			List<AssessmentResult> studentResults = resultDAO.getAllResults(student, assessment.getId(), false, false);
-			allResults.put(student, studentResults);
+			studentIds.add(student.getId());
 		}
+		Map<Long, Map<String, Date>> allFirstPasses = testCaseHistoryStore.getHistory(assessment).getFirstPassDates(studentIds);
 		
 		List<String> testNames = assessment.getAllTestNames();
 		
@@ -97,9 +109,9 @@ public class UnitTestReportingManager {
 		Map<String, AttemptCountSummary> allSummaries = new HashMap<>();
 		
 		ArrayNode studentResultsNode = mapper.createArrayNode();
-		for(Map.Entry<PASTAUser, List<AssessmentResult>> studentEntry : allResults.entrySet()) {
+		for(PASTAUser student : students) {
 			ObjectNode studentNode = mapper.createObjectNode();
-			PASTAUser student = studentEntry.getKey();
+			List<Date> submissionDates = allSubmissionDates.get(student.getId());
 			
 			String stream = Optional.ofNullable(student.getStream()).orElse("");
 			String tutorial = Optional.ofNullable(student.getTutorial()).orElse("");
@@ -125,9 +137,9 @@ public class UnitTestReportingManager {
 			studentNode.put("username", student.getUsername());
 			studentNode.put("stream", stream);
 			studentNode.put("class", tutorial);
-			int[] attempts = getAttemptsUntilCorrect(studentEntry.getValue(), testNames);
+			int[] attempts = getAttemptsUntilCorrect(submissionDates, allFirstPasses.get(student.getId()), testNames);
 			
-			int subCount = studentEntry.getValue().size();
+			int subCount = submissionDates == null ? 0 : submissionDates.size();
 			mainSummary.registerAttempts(attempts, subCount);
 			if(streamSummary != null) streamSummary.registerAttempts(attempts, subCount);
 			if(tutorialSummary != null) tutorialSummary.registerAttempts(attempts, subCount);
@@ -169,8 +181,11 @@ public class UnitTestReportingManager {
 	 * Finds how many attempts it has taken for a student to pass each unit test
 	 * case.
 	 * 
-	 * @param results
-	 *            the set of results to look through
+	 * @param submissionDates
+	 *            the student's submission times, earliest first
+	 * @param firstPasses
+	 *            the time each test case was first passed, or null for test
+	 *            cases that were run but never passed
 	 * @param testNames
 	 *            the list of valid test names
 	 * @return an array of attempts for each test case before passing. 0 means
@@ -178,39 +193,26 @@ public class UnitTestReportingManager {
 	 *         attempts are assumed to be stored in order of test name order to
 	 *         reduce resulting response size.
 	 */
-	private int[] getAttemptsUntilCorrect(List<AssessmentResult> results, List<String> testNames) {
-		int done = 0;
+	private int[] getAttemptsUntilCorrect(List<Date> submissionDates, Map<String, Date> firstPasses, List<String> testNames) {
 		LinkedHashMap<String, Integer> attempts = new LinkedHashMap<>();
 		for(String testName : testNames) {
 			attempts.put(testName, -1);
 		}
-		if(results != null) {
-			for(int i = 0; i < results.size(); i++) {
-				// already seen every test passed
-				if(done == testNames.size()) {
-					break;
+		if(submissionDates != null && firstPasses != null) {
+			for(Map.Entry<String, Date> firstPass : firstPasses.entrySet()) {
+				if(!attempts.containsKey(firstPass.getKey())) {
+					continue;
 				}
-				
-				int attempt = i+1;
-				AssessmentResult result = results.get(i);
-				for(UnitTestResult utResult : result.getUnitTests()) {
-					List<UnitTestCaseResult> tcResults = utResult.getTestCases();
-					if(tcResults != null) {
-						for(UnitTestCaseResult tcResult : tcResults) {
-							String testName = tcResult.getTestName();
-							Integer current = attempts.get(testName);
-							if(current == null || current > 0) {
-								continue;
-							}
-							if(tcResult.isPass()) {
-								attempts.put(testName, new Integer(attempt));
-								done++;
-							} else if(current != 0) {
-								attempts.put(testName, new Integer(0));
-							}
-						}
-					}
+				Date passDate = firstPass.getValue();
+				if(passDate == null) {
+					attempts.put(firstPass.getKey(), 0);
+					continue;
 				}
+				int attempt = Collections.binarySearch(submissionDates, passDate);
+				if(attempt < 0) {
+					attempt = -(attempt + 1);
+				}
+				attempts.put(firstPass.getKey(), attempt + 1);
 			}
 		}
 		
@@ -309,21 +311,42 @@ public class UnitTestReportingManager {
 		}
 	}
 
-	public CSVReport getAllUnitTestAttemptsReport(int pageSize) {
-		List<Object[]> attempts = resultDAO.getAllTestCaseDetails();
+	/**
+	 * Write every unit test case result ever run as zipped CSV pages, one
+	 * assessment at a time.
+	 * 
+	 * @param out the stream to write the zip file to
+	 * @param pageSize the maximum number of rows in each CSV file, or 0 for a
+	 *            single file
+	 * @throws IOException if writing fails
+	 */
+	public void writeAllUnitTestAttemptsReport(OutputStream out, int pageSize) throws IOException {
 		String[] header = {
 				"submission_id", "test_case", "result", "test_case_weight", 
 		};
-		return new CSVReport(header, attempts, pageSize);
+		try(ZippedCSVWriter writer = new ZippedCSVWriter(out, header, pageSize)) {
+			for(Assessment assessment : assessmentDAO.getAllAssessments()) {
+				testCaseHistoryStore.getHistory(assessment).scrollTestCaseDetails(writer);
+			}
+		}
 	}
 	
-	public CSVReport getAllSubmissionsReport(int pageSize) {
-		List<Object[]> attempts = resultDAO.getAllSubmissionDetails();
+	/**
+	 * Write every submission ever made as zipped CSV pages.
+	 * 
+	 * @param out the stream to write the zip file to
+	 * @param pageSize the maximum number of rows in each CSV file, or 0 for a
+	 *            single file
+	 * @throws IOException if writing fails
+	 */
+	public void writeAllSubmissionsReport(OutputStream out, int pageSize) throws IOException {
 		String[] header = {
 				"submission_id", "assessment_id", "assessment_name", "assessment_release_date",
 				"assessment_due_date", "auto_mark_weighted_percentage", "submission_date",
 				"user", "permission_level", "submitted_by", "group_members"
 		};
-		return new CSVReport(header, attempts, pageSize);
+		try(ZippedCSVWriter writer = new ZippedCSVWriter(out, header, pageSize)) {
+			resultDAO.scrollAllSubmissionDetails(writer);
+		}
 	}
 }
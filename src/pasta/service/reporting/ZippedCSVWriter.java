@@ -0,0 +1,125 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.service.reporting;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import pasta.repository.ResultDAO.RowHandler;
+
+/**
+ * Writes rows as CSV straight into a zip file, starting a new CSV entry
+ * every <code>pageLength</code> rows.
+ * <p>
+ * Rows are written as they are received, so memory use does not depend on
+ * the number of rows. As the number of pages is not known up front, entries
+ * are named <code>results.csv</code> when there is no page length, and
+ * <code>results0001.csv</code>, <code>results0002.csv</code>, ... otherwise.
+ * <p>
+ * Closing the writer finishes the zip file but leaves the underlying stream
+ * open.
+ */
+public class ZippedCSVWriter implements RowHandler, Closeable {
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+	
+	private final String[] header;
+	private final int pageLength;
+	private final ZipOutputStream zip;
+	private final Writer writer;
+	
+	private int pageNum = 0;
+	private int lineNum = 0;
+	
+	public ZippedCSVWriter(OutputStream out, String[] header, int pageLength) {
+		this.header = header;
+		this.pageLength = pageLength;
+		this.zip = new ZipOutputStream(out);
+		this.writer = new BufferedWriter(new OutputStreamWriter(zip));
+	}
+	
+	@Override
+	public void handleRow(Object[] row) throws IOException {
+		if(pageNum == 0 || (pageLength > 0 && lineNum >= pageLength)) {
+			nextPage();
+		}
+		for(int i = 0; i < row.length; i++) {
+			if(i > 0) {
+				writer.write(',');
+			}
+			if(row[i] instanceof Number) {
+				writer.write(row[i].toString());
+			} else {
+				writer.write('"');
+				if(row[i] != null) {
+					writer.write(row[i].toString().replace("\"", "\\\""));
+				}
+				writer.write('"');
+			}
+		}
+		writer.write(LINE_SEPARATOR);
+		lineNum++;
+	}
+	
+	private void nextPage() throws IOException {
+		if(pageNum > 0) {
+			writer.flush();
+			zip.closeEntry();
+		}
+		pageNum++;
+		lineNum = 0;
+		
+		String entryName = "results";
+		if(pageLength > 0) {
+			entryName += String.format("%04d", pageNum);
+		}
+		zip.putNextEntry(new ZipEntry(entryName + ".csv"));
+		
+		for(int i = 0; i < header.length; i++) {
+			if(i > 0) {
+				writer.write(',');
+			}
+			writer.write(header[i]);
+		}
+		writer.write(LINE_SEPARATOR);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		// always produce at least one (header-only) page
+		if(pageNum == 0) {
+			nextPage();
+		}
+		writer.flush();
+		zip.closeEntry();
+		zip.finish();
+	}
+}
@@ -35,6 +35,7 @@ import org.apache.log4j.Logger;
 import pasta.docker.CombinedCommandResult;
 import pasta.docker.DockerManager;
 import pasta.docker.ExecutionContainer;
+import pasta.docker.ResourceUsage;
 import pasta.testing.task.Task;
 
 public class AntJob {
@@ -45,6 +46,10 @@ public class AntJob {
 	private ExecutionContainer container;
 	private String[] targets;
 	private Map<String, List<String>> dependencies;
+	private ResourceUsage resourceUsage;
+	
+	private String cachedTarget;
+	private String buildCacheKey;
 	
 	private List<Task> setupTasks;
 	private List<Task> cleanupTasks;
@@ -84,12 +89,28 @@ public class AntJob {
 		this.cleanupTasks.add(task);
 	}
 	
+	/**
+	 * Allow the results of the given target to come from the
+	 * {@link BuildCache} rather than running it, when everything it depends
+	 * on is the same as a previous run. The target must only compile the
+	 * code in the container's source directory into <code>bin</code>.
+	 * 
+	 * @param target the name of the build target
+	 */
+	public void setCachedTarget(String target) {
+		this.cachedTarget = target;
+	}
+	
 	public final void run() {
 		setup();
 		
 		File buildFile = runner.createBuildFile(new File(container.getSrcLoc(), "build.xml"));
 		logger.debug("Created build file " + buildFile);
 		
+		if(cachedTarget != null && BuildCache.instance().isEnabled()) {
+			buildCacheKey = BuildCache.instance().computeKey(container);
+		}
+		
 		DockerManager.instance().runContainer(container);
 		if(container.getId() == null) {
 			results.setSuccess("docker", false);
@@ -101,6 +122,7 @@ public class AntJob {
 				doTarget(target);
 			}
 			logger.debug("Finished executing targets");
+			resourceUsage = DockerManager.instance().getResourceUsage(container);
 		}
 		
 		logger.debug("Cleaning up...");
@@ -120,7 +142,35 @@ public class AntJob {
 			}
 		}
 		
-		CombinedCommandResult rs = DockerManager.instance().runAntTarget(container, target);
+		Map<String, String> outputBefore = null;
+		if(target.equals(cachedTarget) && buildCacheKey != null) {
+			String cachedOutput = BuildCache.instance().restore(buildCacheKey, container);
+			if(cachedOutput != null) {
+				logger.debug("Using cached build for target \"" + target + "\"");
+				results.append(target, cachedOutput);
+				results.setSuccess(target, true);
+				return;
+			}
+			outputBefore = BuildCache.instance().snapshotOutput(container);
+		}
+		
+		long start = System.currentTimeMillis();
+		CombinedCommandResult rs = null;
+		boolean fellBack = false;
+		String[] command = runner.getTargetCommand(target, container);
+		if(command != null) {
+			rs = DockerManager.instance().runTargetCommand(container, target, command);
+			if(rs == null || rs.getExitCode() == null || rs.getExitCode() == Runner.TARGET_COMMAND_UNAVAILABLE) {
+				logger.debug("Running target \"" + target + "\" with Ant instead" + 
+						(rs == null ? "" : ": " + rs.getCombined().trim()));
+				rs = null;
+				fellBack = true;
+			}
+		}
+		if(rs == null) {
+			rs = DockerManager.instance().runAntTarget(container, target);
+		}
+		runner.targetFinished(target, command != null && !fellBack, fellBack, System.currentTimeMillis() - start);
 		boolean success = rs.getError().isEmpty();
 		
 		if(!success) {
@@ -131,6 +181,10 @@ public class AntJob {
 		logger.trace("Target output:\n" + rs.getOutput());
 		results.append(target, rs.getCombined());
 		results.setSuccess(target, success);
+		
+		if(success && outputBefore != null) {
+			BuildCache.instance().store(buildCacheKey, container, outputBefore, rs.getCombined());
+		}
 	}
 	
 	private void setup() {
@@ -138,8 +192,10 @@ public class AntJob {
 	}
 
 	private void cleanup() {
+		// Release first: a pooled container only returns the source and 
+		// output directories to their original location once released
+		DockerManager.instance().releaseContainer(container);
 		performTasks(cleanupTasks);
-		DockerManager.instance().removeContainer(container.getId());
 	}
 	
 	private void performTasks(List<Task> tasks) {
@@ -153,4 +209,12 @@ public class AntJob {
 	public AntResults getResults() {
 		return results;
 	}
+	
+	/**
+	 * @return the CPU time and memory used by the container while running
+	 *         the targets, or null if it could not be read
+	 */
+	public ResourceUsage getResourceUsage() {
+		return resourceUsage;
+	}
 }
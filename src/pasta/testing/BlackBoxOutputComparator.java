@@ -0,0 +1,378 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.testing;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import pasta.domain.result.UnitTestCaseResult;
+import pasta.domain.template.BlackBoxTestCase;
+import pasta.domain.template.UnitTest;
+
+/**
+ * Compares the output of black-box test cases with their expected output,
+ * on the server rather than with a generated JUnit test in the container.
+ * <p>
+ * Both files are streamed a line at a time, so memory use does not depend on
+ * the size of the output. The results are the same as the JUnit test used to
+ * give: lines are split as by {@link java.util.Scanner#nextLine()} and must
+ * match exactly, and the messages (including JUnit's
+ * <code>expected:&lt;...&gt; but was:&lt;...&gt;</code> form) are unchanged.
+ * 
+ * @see pasta.domain.template.BlackBoxOptions#isDetailedErrors()
+ */
+public class BlackBoxOutputComparator {
+	private static final Logger logger = Logger.getLogger(BlackBoxOutputComparator.class);
+	
+	private static final String ASSERTION_ERROR = "java.lang.AssertionError";
+	private static final String COMPARISON_FAILURE = "org.junit.ComparisonFailure";
+	private static final String RUNTIME_EXCEPTION = "java.lang.RuntimeException";
+	
+	// The same amount of context JUnit shows around a difference
+	private static final int MAX_CONTEXT_LENGTH = 20;
+	// How much of the differing part of a line is kept for the message
+	private static final int MAX_DIFFERENCE_LENGTH = 1000;
+	
+	private final File expectedDir;
+	private final File actualDir;
+	private final File metaDir;
+	private final boolean detailedErrors;
+	
+	/**
+	 * @param expectedDir the directory of expected output files
+	 * @param carryDir the directory the run target copied the test output and
+	 *            meta files to
+	 * @param detailedErrors whether to say how the output was wrong, rather
+	 *            than just that it was
+	 */
+	public BlackBoxOutputComparator(File expectedDir, File carryDir, boolean detailedErrors) {
+		this.expectedDir = expectedDir;
+		this.actualDir = new File(carryDir, UnitTest.BB_OUTPUT_FILENAME);
+		this.metaDir = new File(carryDir, UnitTest.BB_META_FILENAME);
+		this.detailedErrors = detailedErrors;
+	}
+	
+	/**
+	 * Compare the output of every test case that has a valid name and is to
+	 * be compared.
+	 * 
+	 * @param testCases the test cases that were run
+	 * @param testDescriptions the description of each test case, by name (may
+	 *            be null)
+	 * @return a result for each compared test case
+	 */
+	public List<UnitTestCaseResult> compareAll(Collection<BlackBoxTestCase> testCases, Map<String, String> testDescriptions) {
+		List<UnitTestCaseResult> results = new ArrayList<>();
+		for(BlackBoxTestCase testCase : testCases) {
+			if(testCase.hasValidName() && testCase.isToBeCompared()) {
+				UnitTestCaseResult result = compare(testCase);
+				if(testDescriptions != null) {
+					result.setTestDescription(testDescriptions.get(testCase.getTestName()));
+				}
+				results.add(result);
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * Compare the output of one test case.
+	 * 
+	 * @param testCase the test case
+	 * @return the result of the test case
+	 */
+	public UnitTestCaseResult compare(BlackBoxTestCase testCase) {
+		String testName = testCase.getTestName();
+		UnitTestCaseResult result = new UnitTestCaseResult();
+		result.setTestName(testName);
+		result.setTime(readRunTime(testName));
+		
+		if(!new File(metaDir, testName + ".executed").exists()) {
+			return fail(result, ASSERTION_ERROR, "Test case did not execute; unit test suite timed out.");
+		}
+		if(new File(metaDir, testName + ".timedout").exists()) {
+			return fail(result, ASSERTION_ERROR, "Test case timed out after " + testCase.getTimeout() + " ms");
+		}
+		if(new File(metaDir, testName + ".segfault").exists()) {
+			return fail(result, ASSERTION_ERROR, "Test resulted in a segmentation fault (the monitored command dumped core)");
+		}
+		
+		File expectedFile = new File(expectedDir, testName);
+		File actualFile = new File(actualDir, testName);
+		if(!expectedFile.exists()) {
+			result.setTestResult(UnitTestCaseResult.ERROR);
+			result.setType(RUNTIME_EXCEPTION);
+			result.setTestMessage("java.io.FileNotFoundException: Expected file for test " + testName + " not found.");
+			return result;
+		}
+		try {
+			String[] failure = compareOutput(expectedFile, actualFile);
+			if(failure != null) {
+				return fail(result, failure[0], failure[1]);
+			}
+		} catch(IOException e) {
+			logger.error("Could not compare output for test case " + testName, e);
+			result.setTestResult(UnitTestCaseResult.ERROR);
+			result.setType(e.getClass().getName());
+			result.setTestMessage(e.getMessage());
+			return result;
+		}
+		result.setTestResult(UnitTestCaseResult.PASS);
+		return result;
+	}
+	
+	private static UnitTestCaseResult fail(UnitTestCaseResult result, String type, String message) {
+		result.setTestResult(UnitTestCaseResult.FAILURE);
+		result.setType(type);
+		result.setTestMessage(message);
+		return result;
+	}
+	
+	/**
+	 * @return null if the output matches, or the failure type and message
+	 */
+	private String[] compareOutput(File expectedFile, File actualFile) throws IOException {
+		int e = countLines(expectedFile);
+		if(!actualFile.exists()) {
+			return e == 0 ? null : new String[] {ASSERTION_ERROR, "No output produced"};
+		}
+		int a = countLines(actualFile);
+		if(e != a) {
+			if(!detailedErrors) {
+				return new String[] {ASSERTION_ERROR, "Incorrect output produced"};
+			}
+			boolean plural = Math.abs(a - e) > 1;
+			if(e > a) {
+				return new String[] {ASSERTION_ERROR, "Missing " + (e - a) + " line" + (plural ? "s" : "") + " of output."};
+			}
+			return new String[] {ASSERTION_ERROR, "You produced " + (a - e) + " line" + (plural ? "s" : "") + " of extra output."};
+		}
+		
+		try(LineReader expected = new LineReader(expectedFile); LineReader actual = new LineReader(actualFile)) {
+			for(int line = 1; line <= e; line++) {
+				String difference = compareLine(expected, actual);
+				if(difference != null) {
+					if(!detailedErrors) {
+						return new String[] {ASSERTION_ERROR, "Incorrect output produced"};
+					}
+					return new String[] {COMPARISON_FAILURE, "Line " + line + " incorrect; " + difference};
+				}
+			}
+		}
+		return null;
+	}
+	
+	private static int countLines(File file) throws IOException {
+		int count = 0;
+		try(LineReader reader = new LineReader(file)) {
+			while(!reader.atEnd()) {
+				reader.skipLine();
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Compare the next line of each reader, consuming both lines.
+	 * 
+	 * @return null if the lines match, or a JUnit-style description of the
+	 *         difference
+	 */
+	private static String compareLine(LineReader expected, LineReader actual) throws IOException {
+		StringBuilder prefix = new StringBuilder();
+		boolean prefixTrimmed = false;
+		while(true) {
+			int e = expected.read();
+			int a = actual.read();
+			if(e != a) {
+				StringBuilder expectedRest = new StringBuilder();
+				StringBuilder actualRest = new StringBuilder();
+				boolean expectedTrimmed = readRest(expected, e, expectedRest);
+				boolean actualTrimmed = readRest(actual, a, actualRest);
+				return describeDifference(prefix.toString(), prefixTrimmed, 
+						expectedRest.toString(), expectedTrimmed, actualRest.toString(), actualTrimmed);
+			}
+			if(e == -1) {
+				return null;
+			}
+			prefix.append((char) e);
+			if(prefix.length() > MAX_CONTEXT_LENGTH * 2) {
+				prefix.delete(0, MAX_CONTEXT_LENGTH);
+				prefixTrimmed = true;
+			}
+		}
+	}
+	
+	/**
+	 * Read the rest of a line (after <code>first</code>) into
+	 * <code>rest</code>, keeping at most {@link #MAX_DIFFERENCE_LENGTH}
+	 * characters.
+	 * 
+	 * @return whether any of the line was left out
+	 */
+	private static boolean readRest(LineReader reader, int first, StringBuilder rest) throws IOException {
+		boolean trimmed = false;
+		for(int c = first; c != -1; c = reader.read()) {
+			if(rest.length() < MAX_DIFFERENCE_LENGTH) {
+				rest.append((char) c);
+			} else {
+				trimmed = true;
+			}
+		}
+		return trimmed;
+	}
+	
+	/**
+	 * Describe a difference the way JUnit's <code>ComparisonCompactor</code>
+	 * does: the differing part in brackets, with up to
+	 * {@link #MAX_CONTEXT_LENGTH} characters of the matching text on either
+	 * side.
+	 */
+	private static String describeDifference(String prefix, boolean prefixTrimmed, 
+			String expected, boolean expectedTrimmed, String actual, boolean actualTrimmed) {
+		int suffixLength = 0;
+		if(!expectedTrimmed && !actualTrimmed) {
+			while(suffixLength < expected.length() && suffixLength < actual.length() 
+					&& expected.charAt(expected.length() - 1 - suffixLength) == actual.charAt(actual.length() - 1 - suffixLength)) {
+				suffixLength++;
+			}
+		}
+		
+		String context = prefix;
+		if(prefixTrimmed || prefix.length() > MAX_CONTEXT_LENGTH) {
+			context = "..." + prefix.substring(Math.max(0, prefix.length() - MAX_CONTEXT_LENGTH));
+		}
+		String suffix = expected.substring(expected.length() - suffixLength);
+		if(suffix.length() > MAX_CONTEXT_LENGTH) {
+			suffix = suffix.substring(0, MAX_CONTEXT_LENGTH) + "...";
+		}
+		
+		return "expected:<" + context + "[" + expected.substring(0, expected.length() - suffixLength) 
+				+ "]" + (expectedTrimmed ? "..." : "") + suffix + "> but was:<" 
+				+ context + "[" + actual.substring(0, actual.length() - suffixLength) + "]" 
+				+ (actualTrimmed ? "..." : "") + suffix + ">";
+	}
+	
+	/**
+	 * @return the elapsed time recorded by <code>time</code> for the test
+	 *         case, in seconds, or 0 if it is not known
+	 */
+	private double readRunTime(String testName) {
+		File meta = new File(metaDir, testName);
+		if(!meta.exists()) {
+			return 0;
+		}
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(meta), StandardCharsets.UTF_8))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				if(line.startsWith("real ")) {
+					return Double.parseDouble(line.substring(5).trim());
+				}
+			}
+		} catch(IOException | NumberFormatException e) {
+			logger.warn("Could not read run time for test case " + testName, e);
+		}
+		return 0;
+	}
+	
+	/**
+	 * Reads a file a character at a time, one line after another. Lines end
+	 * where {@link java.util.Scanner#nextLine()} would end them.
+	 */
+	private static class LineReader implements Closeable {
+		private final Reader in;
+		private int peeked = -2;
+		
+		public LineReader(File file) throws IOException {
+			CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.in = new BufferedReader(new InputStreamReader(new FileInputStream(file), decoder));
+		}
+		
+		/**
+		 * @return the next character of the current line, or -1 at the end of
+		 *         the line (the line separator is consumed)
+		 */
+		public int read() throws IOException {
+			int c = next();
+			switch(c) {
+			case '\r':
+				if(peek() == '\n') {
+					next();
+				}
+				return -1;
+			case '\n':
+			case '\u2028':
+			case '\u2029':
+			case '\u0085':
+				return -1;
+			default:
+				return c;
+			}
+		}
+		
+		public void skipLine() throws IOException {
+			while(read() != -1);
+		}
+		
+		public boolean atEnd() throws IOException {
+			return peek() == -1;
+		}
+		
+		private int peek() throws IOException {
+			if(peeked == -2) {
+				peeked = in.read();
+			}
+			return peeked;
+		}
+		
+		private int next() throws IOException {
+			int c = peek();
+			peeked = -2;
+			return c;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -31,6 +31,7 @@ import java.util.Optional;
 import org.apache.commons.lang.StringEscapeUtils;
 
 import pasta.docker.Language;
+import pasta.docker.ResourceLimits;
 import pasta.domain.template.BlackBoxTestCase;
 import pasta.domain.template.UnitTest;
 import pasta.util.WhichProgram;
@@ -56,9 +57,23 @@ public abstract class BlackBoxTestRunner extends JUnitTestRunner {
 		addOption("carryDir", "pbbt_carry");
 	}
 
-	public void setTestData(List<BlackBoxTestCase> testCases, Language language) {
+	/**
+	 * Set the test cases to run. If the unit test asks for it and the
+	 * language supports it, the test cases are run concurrently by
+	 * <code>PastaBlackBoxRunner</code> in the container's bin directory, on as
+	 * many threads as the container has whole CPUs (at least one); otherwise
+	 * they are run one at a time by the template's <code>doTest</code> target.
+	 * 
+	 * @param test the unit test being run
+	 * @param language the language of the submission
+	 * @param limits the limits the container runs the tests with, including
+	 *        any set by the unit test itself
+	 */
+	public void setTestData(UnitTest test, Language language, ResourceLimits limits) {
+		List<BlackBoxTestCase> testCases = test.getTestCases();
 		StringBuilder indices = new StringBuilder();
 		StringBuilder properties = new StringBuilder();
+		StringBuilder arguments = new StringBuilder();
 		for(int i = 0; i < testCases.size(); i++) {
 			if(i > 0) {
 				indices.append(",");
@@ -74,9 +89,29 @@ public abstract class BlackBoxTestRunner extends JUnitTestRunner {
 			String commandLine = StringEscapeUtils.escapeXml(Optional.ofNullable(testCase.getCommandLine()).orElse(""));
 			properties.append("<property name='bbTestCommandLine").append(i).append("' value='")
 				.append(commandLine).append("'/>\n");
+			arguments.append("<arg value='").append(testCase.getTestName()).append("'/>")
+				.append("<arg value='").append(String.valueOf((testCase.getTimeout() + language.getTestCaseExecutionOverhead()) / 1000.0)).append("'/>")
+				.append("<arg value='").append(commandLine).append("'/>\n");
 		}
 		addOption("bbTestCaseProperties", properties.toString());
 		addOption("bbTestIndices", indices.toString());
+		addOption("bbTestCaseArgs", arguments.toString());
+		
+		boolean parallel = supportsParallelTestCases() && test.getBlackBoxOptions().isParallelTestCases();
+		addOption("bbSerialTests", parallel ? "" : "yes");
+		addOption("bbParallelTests", parallel ? "yes" : "");
+		Double cpus = limits == null ? null : limits.getCpuLimit();
+		// 0 lets the runner use every processor it can see. Rounding down
+		// keeps the threads within the CPU time the container is given.
+		addOption("bbTestThreads", String.valueOf(cpus == null ? 0 : Math.max(1, (int) Math.floor(cpus))));
+	}
+	
+	/**
+	 * @return whether this language's build template can run test cases with
+	 *         <code>PastaBlackBoxRunner</code>
+	 */
+	public boolean supportsParallelTestCases() {
+		return true;
 	}
 	
 	public void setSolutionName(String solutionName) {
@@ -0,0 +1,378 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.testing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import pasta.docker.CombinedCommandResult;
+import pasta.docker.DockerManager;
+import pasta.docker.ExecutionContainer;
+import pasta.service.PASTAOptions;
+import pasta.util.ProjectProperties;
+
+/**
+ * A cache of compiled code, so that running the same test on the same
+ * submission again (e.g. when an assessment is re-run) does not compile it
+ * again.
+ * <p>
+ * Entries are keyed by a hash of everything the build can see: the
+ * language and its Docker image, and the contents of the sandbox source
+ * directory (the submission, the test code, any accessory files and the
+ * generated build file, which holds the compiler options) and output
+ * directory. An entry holds the <code>bin</code> directory from the
+ * container's working directory, the changes the build made to the output
+ * directory (e.g. <code>compile.errors</code>), and the build's output.
+ * <p>
+ * Only successful builds are cached, so that a build that failed for a
+ * reason outside the submission is tried again. Entries are evicted by age
+ * and by the total size of the cache (see {@link #evict()}).
+ */
+public class BuildCache {
+	private static final Logger logger = Logger.getLogger(BuildCache.class);
+	
+	private static final String BIN_DIR = "bin";
+	private static final String ARCHIVE_NAME = "pasta-build-cache.tar";
+	private static final String ENTRY_ARCHIVE = "bin.tar";
+	private static final String ENTRY_OUT = "out";
+	private static final String ENTRY_OUTPUT = "build.output";
+	private static final String ENTRY_PROPERTIES = "build.properties";
+	
+	private static BuildCache instance;
+	
+	public static synchronized BuildCache instance() {
+		if(instance == null) {
+			File root = new File(ProjectProperties.getInstance().getProjectLocation(), "cache" + File.separator + "build");
+			instance = new BuildCache(root);
+		}
+		return instance;
+	}
+	
+	private final File root;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	
+	private BuildCache(File root) {
+		this.root = root;
+		root.mkdirs();
+	}
+	
+	/**
+	 * @return true unless disabled with the option
+	 *         <code>execution.build-cache.enabled</code>
+	 */
+	public boolean isEnabled() {
+		PASTAOptions options = PASTAOptions.instance();
+		return options == null || !"false".equalsIgnoreCase(options.get("execution.build-cache.enabled"));
+	}
+	
+	/**
+	 * Work out the cache key for a build in the given container. This must be
+	 * called once everything the build needs has been put in the container's
+	 * source directory, and before the container is started.
+	 * 
+	 * @param container the execution container
+	 * @return the key, or null if the inputs could not be read
+	 */
+	public String computeKey(ExecutionContainer container) {
+		MessageDigest digest = DigestUtils.getSha256Digest();
+		update(digest, "language:" + container.getLanguage().getId());
+		update(digest, "image:" + container.getLanguage().getDockerBuildFile().getId());
+		try {
+			update(digest, "src");
+			hashTree(digest, container.getSrcLoc(), "");
+			update(digest, "out");
+			hashTree(digest, container.getOutLoc(), "");
+		} catch(IOException e) {
+			logger.warn("Could not hash build inputs for " + container.getLabel(), e);
+			return null;
+		}
+		return Hex.encodeHexString(digest.digest());
+	}
+	
+	private void hashTree(MessageDigest digest, File dir, String path) throws IOException {
+		File[] children = dir.listFiles();
+		if(children == null) {
+			return;
+		}
+		Arrays.sort(children, Comparator.comparing(File::getName));
+		for(File child : children) {
+			String childPath = path + "/" + child.getName();
+			if(child.isDirectory()) {
+				update(digest, "d:" + childPath);
+				hashTree(digest, child, childPath);
+			} else if(!isIgnored(child.getName())) {
+				update(digest, "f:" + childPath + ":" + child.length());
+				try(InputStream in = new FileInputStream(child)) {
+					DigestUtils.updateDigest(digest, in);
+				}
+			}
+		}
+	}
+	
+	private static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+	
+	// Logs of earlier targets and the cache's own archive are not build inputs
+	private static boolean isIgnored(String filename) {
+		return filename.equals(ARCHIVE_NAME) || (filename.startsWith("ant-") && filename.endsWith(".log"));
+	}
+	
+	/**
+	 * Put the cached build for the given key into the running container, in
+	 * place of running the build target.
+	 * 
+	 * @param key the cache key
+	 * @param container the running execution container
+	 * @return the output of the cached build, or null if there is no entry for
+	 *         the key or it could not be restored
+	 */
+	public String restore(String key, ExecutionContainer container) {
+		File entry = getEntryDirectory(key);
+		File properties = new File(entry, ENTRY_PROPERTIES);
+		if(!properties.exists()) {
+			misses.incrementAndGet();
+			return null;
+		}
+		try {
+			Properties props = new Properties();
+			try(InputStream in = new FileInputStream(properties)) {
+				props.load(in);
+			}
+			File hostOut = DockerManager.instance().getHostOutputDirectory(container);
+			FileUtils.copyFile(new File(entry, ENTRY_ARCHIVE), new File(hostOut, ARCHIVE_NAME));
+			CombinedCommandResult extract = DockerManager.instance().runCommand(container, "sh", "-c", 
+					"tar -xpf " + DockerManager.PASTA_OUT + "/" + ARCHIVE_NAME + "; E=$?; rm -f " + DockerManager.PASTA_OUT + "/" + ARCHIVE_NAME + "; exit $E");
+			if(extract == null || extract.getExitCode() == null || extract.getExitCode() != 0) {
+				logger.warn("Could not restore cached build " + key + " for " + container.getLabel() + 
+						(extract == null ? "" : ": " + extract.getCombined()));
+				DockerManager.instance().runCommand(container, "rm", "-rf", BIN_DIR);
+				misses.incrementAndGet();
+				return null;
+			}
+			
+			for(String removed : props.getProperty("removed", "").split("\n")) {
+				if(!removed.isEmpty()) {
+					FileUtils.deleteQuietly(new File(hostOut, removed));
+				}
+			}
+			File cachedOut = new File(entry, ENTRY_OUT);
+			if(cachedOut.isDirectory()) {
+				FileUtils.copyDirectory(cachedOut, hostOut);
+			}
+			String output = FileUtils.readFileToString(new File(entry, ENTRY_OUTPUT), StandardCharsets.UTF_8);
+			
+			// Used entries are kept longest when evicting
+			entry.setLastModified(System.currentTimeMillis());
+			hits.incrementAndGet();
+			logger.debug("Restored cached build " + key + " for " + container.getLabel());
+			return output;
+		} catch(IOException e) {
+			logger.warn("Could not restore cached build " + key + " for " + container.getLabel(), e);
+			misses.incrementAndGet();
+			return null;
+		}
+	}
+	
+	/**
+	 * Take a snapshot of the files in the output directory, to compare with
+	 * after the build in {@link #store(String, ExecutionContainer, Map, String)}.
+	 */
+	public Map<String, String> snapshotOutput(ExecutionContainer container) {
+		Map<String, String> files = new HashMap<>();
+		listFiles(DockerManager.instance().getHostOutputDirectory(container), "", files);
+		return files;
+	}
+	
+	private void listFiles(File dir, String path, Map<String, String> files) {
+		File[] children = dir.listFiles();
+		if(children == null) {
+			return;
+		}
+		for(File child : children) {
+			String childPath = path.isEmpty() ? child.getName() : path + "/" + child.getName();
+			if(child.isDirectory()) {
+				listFiles(child, childPath, files);
+			} else if(!isIgnored(child.getName())) {
+				files.put(childPath, child.length() + ":" + child.lastModified());
+			}
+		}
+	}
+	
+	/**
+	 * Store the result of a successful build in the cache.
+	 * 
+	 * @param key the cache key
+	 * @param container the running execution container the build ran in
+	 * @param outputBefore the output directory from
+	 *            {@link #snapshotOutput(ExecutionContainer)} before the build
+	 * @param output the output of the build target
+	 */
+	public void store(String key, ExecutionContainer container, Map<String, String> outputBefore, String output) {
+		File entry = getEntryDirectory(key);
+		if(entry.exists()) {
+			return;
+		}
+		File hostOut = DockerManager.instance().getHostOutputDirectory(container);
+		File archive = new File(hostOut, ARCHIVE_NAME);
+		File tmp = new File(root, "tmp" + File.separator + UUID.randomUUID().toString());
+		try {
+			CombinedCommandResult pack = DockerManager.instance().runCommand(container, "tar", "-cpf", 
+					DockerManager.PASTA_OUT + "/" + ARCHIVE_NAME, BIN_DIR);
+			if(pack == null || pack.getExitCode() == null || pack.getExitCode() != 0 || !archive.exists()) {
+				logger.debug("Not caching build for " + container.getLabel() + ": could not archive " + BIN_DIR + 
+						(pack == null ? "" : ": " + pack.getCombined()));
+				return;
+			}
+			
+			tmp.mkdirs();
+			FileUtils.moveFile(archive, new File(tmp, ENTRY_ARCHIVE));
+			
+			Map<String, String> outputAfter = snapshotOutput(container);
+			for(Map.Entry<String, String> file : outputAfter.entrySet()) {
+				if(!file.getValue().equals(outputBefore.get(file.getKey()))) {
+					FileUtils.copyFile(new File(hostOut, file.getKey()), new File(tmp, ENTRY_OUT + File.separator + file.getKey()));
+				}
+			}
+			List<String> removed = new LinkedList<>();
+			for(String path : outputBefore.keySet()) {
+				if(!outputAfter.containsKey(path)) {
+					removed.add(path);
+				}
+			}
+			
+			FileUtils.writeStringToFile(new File(tmp, ENTRY_OUTPUT), output == null ? "" : output, StandardCharsets.UTF_8);
+			Properties props = new Properties();
+			props.setProperty("label", container.getLabel());
+			props.setProperty("removed", String.join("\n", removed));
+			// Written last: an entry without it is incomplete
+			try(OutputStream out = new FileOutputStream(new File(tmp, ENTRY_PROPERTIES))) {
+				props.store(out, "PASTA build cache entry");
+			}
+			
+			entry.getParentFile().mkdirs();
+			if(!tmp.renameTo(entry)) {
+				// Most likely another thread stored the same build first
+				logger.debug("Could not move build cache entry into place: " + entry);
+			}
+		} catch(IOException e) {
+			logger.warn("Could not cache build for " + container.getLabel(), e);
+		} finally {
+			FileUtils.deleteQuietly(archive);
+			FileUtils.deleteQuietly(tmp);
+		}
+	}
+	
+	private File getEntryDirectory(String key) {
+		return new File(root, key.substring(0, 2) + File.separator + key);
+	}
+	
+	/**
+	 * Delete entries that have not been used for longer than
+	 * <code>execution.build-cache.max-age</code> days, then the least recently
+	 * used entries until the cache is smaller than
+	 * <code>execution.build-cache.max-size</code> MiB.
+	 */
+	public void evict() {
+		long maxAge = PASTAOptions.instance().getLong("execution.build-cache.max-age", 14) * 24 * 60 * 60 * 1000;
+		long maxSize = PASTAOptions.instance().getLong("execution.build-cache.max-size", 2048) * 1024 * 1024;
+		long now = System.currentTimeMillis();
+		
+		List<File> entries = new ArrayList<>();
+		File[] buckets = root.listFiles();
+		if(buckets == null) {
+			return;
+		}
+		for(File bucket : buckets) {
+			File[] bucketEntries = bucket.listFiles();
+			if(bucketEntries == null) {
+				continue;
+			}
+			if(bucket.getName().equals("tmp")) {
+				// Left over from a crash while storing
+				for(File tmp : bucketEntries) {
+					if(now - tmp.lastModified() > 60 * 60 * 1000) {
+						FileUtils.deleteQuietly(tmp);
+					}
+				}
+				continue;
+			}
+			entries.addAll(Arrays.asList(bucketEntries));
+		}
+		
+		entries.sort(Comparator.comparing(File::lastModified));
+		Map<File, Long> sizes = new HashMap<>();
+		long totalSize = 0;
+		for(File entry : entries) {
+			long size = FileUtils.sizeOfDirectory(entry);
+			sizes.put(entry, size);
+			totalSize += size;
+		}
+		
+		int evicted = 0;
+		for(File entry : entries) {
+			if(now - entry.lastModified() <= maxAge && totalSize <= maxSize) {
+				break;
+			}
+			FileUtils.deleteQuietly(entry);
+			totalSize -= sizes.get(entry);
+			evicted++;
+		}
+		if(evicted > 0) {
+			logger.info(String.format("Evicted %d build cache entries; %d remain using %d MiB", 
+					evicted, entries.size() - evicted, totalSize / (1024 * 1024)));
+		}
+	}
+	
+	public long getHits() {
+		return hits.get();
+	}
+	public long getMisses() {
+		return misses.get();
+	}
+}
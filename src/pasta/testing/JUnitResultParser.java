@@ -0,0 +1,216 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.testing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import pasta.domain.result.UnitTestCaseResult;
+import pasta.domain.result.UnitTestResult;
+import pasta.util.io.CDataLimitingInputStream;
+
+/**
+ * Reads the results of a JUnit test class from a file in the format of
+ * Ant's XML JUnit formatter, as written by the <code>test</code> target of
+ * {@link JUnitTestRunner}.
+ * <p>
+ * The file is streamed rather than loaded whole, as tests that print a lot
+ * can make it hundreds of megabytes. Only the start of each CDATA section
+ * (the test's standard output and error, which are not kept) is read, and
+ * the stack trace of a test case is cut short with a marker once it is
+ * longer than the database can hold anyway.
+ */
+public class JUnitResultParser {
+	
+	private static final Pattern ERROR_LINE = Pattern.compile("(\\(.+?\\.java:[0-9]+\\))");
+	
+	// Below UnitTestCaseResult's own limit, so that the marker is kept
+	private static final int MAX_TRACE_LENGTH = 64 * 1024;
+	private static final int MAX_OUTPUT_BYTES = 64 * 1024;
+	
+	private static final XMLInputFactory factory = createFactory();
+	
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		// The file is written in the sandbox, so it is not trusted
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+	
+	/**
+	 * @param file the result file
+	 * @param errorContext if not null, the names of files for which to
+	 *            include the line number in the type of an error, if the
+	 *            error occurred in one of them
+	 * @param testDescriptions if not null, the descriptions of the test
+	 *            cases, by name
+	 * @return the results of the test cases in the file
+	 * @throws IOException if the file cannot be read
+	 * @throws XMLStreamException if the file is not well-formed
+	 */
+	public static UnitTestResult parse(File file, Collection<String> errorContext, 
+			Map<String, String> testDescriptions) throws IOException, XMLStreamException {
+		List<UnitTestCaseResult> testCases = new ArrayList<UnitTestCaseResult>();
+		try(InputStream in = new CDataLimitingInputStream(new FileInputStream(file), MAX_OUTPUT_BYTES)) {
+			XMLStreamReader reader = factory.createXMLStreamReader(in);
+			try {
+				while(reader.hasNext()) {
+					if(reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("testcase")) {
+						testCases.add(readTestCase(reader, errorContext, testDescriptions));
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		UnitTestResult result = new UnitTestResult();
+		result.setTestCases(testCases);
+		return result;
+	}
+	
+	private static UnitTestCaseResult readTestCase(XMLStreamReader reader, Collection<String> errorContext, 
+			Map<String, String> testDescriptions) throws XMLStreamException {
+		UnitTestCaseResult caseResult = new UnitTestCaseResult();
+		caseResult.setTestName(attribute(reader, "name"));
+		caseResult.setTime(Double.parseDouble(reader.getAttributeValue(null, "time")));
+		// assume it is a pass
+		caseResult.setTestResult(UnitTestCaseResult.PASS);
+		if(testDescriptions != null) {
+			caseResult.setTestDescription(testDescriptions.get(caseResult.getTestName()));
+		}
+		
+		// The first element in the test case, if any, says how it did not pass
+		boolean readOutcome = false;
+		int depth = 0;
+		while(true) {
+			int event = reader.next();
+			if(event == XMLStreamConstants.END_ELEMENT) {
+				if(depth == 0) {
+					return caseResult;
+				}
+				depth--;
+			} else if(event == XMLStreamConstants.START_ELEMENT) {
+				if(depth == 0 && !readOutcome) {
+					readOutcome(reader, caseResult, errorContext);
+					readOutcome = true;
+				} else {
+					depth++;
+				}
+			}
+		}
+	}
+	
+	private static void readOutcome(XMLStreamReader reader, UnitTestCaseResult caseResult, 
+			Collection<String> errorContext) throws XMLStreamException {
+		caseResult.setTestResult(reader.getLocalName());
+		String message = reader.getAttributeValue(null, "message");
+		if(message != null) {
+			caseResult.setTestMessage(message);
+		}
+		String type = reader.getAttributeValue(null, "type");
+		if(type != null) {
+			caseResult.setType(type);
+		}
+		
+		String trace = readText(reader);
+		if(trace == null) {
+			return;
+		}
+		caseResult.setExtendedMessage(trace);
+		
+		// Include error line number for Java submissions
+		if(errorContext != null && caseResult.getType() != null && caseResult.isError()) {
+			Matcher m = ERROR_LINE.matcher(trace);
+			while(m.find()) {
+				String line = m.group();
+				for(String file : errorContext) {
+					if(line.contains(file)) {
+						caseResult.setType(caseResult.getType() + " at " + line);
+						return;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Read to the end of the current element.
+	 * 
+	 * @return the text directly in the element, up to
+	 *         {@link #MAX_TRACE_LENGTH} characters, or null if it has none
+	 */
+	private static String readText(XMLStreamReader reader) throws XMLStreamException {
+		StringBuilder text = null;
+		long omitted = 0;
+		int depth = 0;
+		while(true) {
+			int event = reader.next();
+			if(event == XMLStreamConstants.END_ELEMENT) {
+				if(depth == 0) {
+					break;
+				}
+				depth--;
+			} else if(event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if(depth == 0 && (event == XMLStreamConstants.CHARACTERS || 
+					event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE)) {
+				if(text == null) {
+					text = new StringBuilder();
+				}
+				int length = reader.getTextLength();
+				int kept = Math.min(length, MAX_TRACE_LENGTH - text.length());
+				text.append(reader.getTextCharacters(), reader.getTextStart(), kept);
+				omitted += length - kept;
+			}
+		}
+		if(text == null) {
+			return null;
+		}
+		if(omitted > 0) {
+			text.append(System.lineSeparator())
+				.append("... [").append(omitted).append(" characters omitted] ...");
+		}
+		return text.toString();
+	}
+	
+	private static String attribute(XMLStreamReader reader, String name) {
+		String value = reader.getAttributeValue(null, name);
+		return value == null ? "" : value;
+	}
+}
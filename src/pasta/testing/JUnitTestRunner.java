@@ -26,14 +26,46 @@ package pasta.testing;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicLong;
 
+import pasta.docker.DockerManager;
+import pasta.docker.ExecutionContainer;
+import pasta.docker.Language;
 import pasta.util.PASTAUtil;
+import pasta.util.TimingStatistics;
 import pasta.util.WhichProgram;
 
+/**
+ * Runs a JUnit test class with the JUnit build template.
+ * <p>
+ * The <code>test</code> target normally forks a new JVM for the tests. In a
+ * pooled container of a language with a resident JUnit runner (see
+ * {@link Language#isResidentJUnitRunner()}) it is instead run by the
+ * <code>pastajunit</code> script, which hands the tests to a JVM that stays
+ * running in the container between jobs, and falls back to the template's
+ * target if that JVM cannot be used. There the advanced timeout applies to
+ * each test in turn, rather than to the whole run.
+ * <p>
+ * Likewise, the <code>build</code> target in such a container is run by Ant
+ * with <code>PastaCompilerAdapter</code> as the compiler if the language
+ * has a resident compiler (see {@link Language#isResidentCompiler()}), so
+ * that the code is compiled by the same JVM rather than by forking
+ * <code>javac</code>. The build's output and compile errors are the same
+ * either way.
+ */
 public class JUnitTestRunner extends Runner {
 
 	private static String TEMPLATE_FILENAME = "junit_template.xml";
+	private static final String BUILD_TARGET = "build";
+	private static final String TEST_TARGET = "test";
+	
+	private static final TimingStatistics residentTimes = new TimingStatistics("Resident JVM");
+	private static final TimingStatistics forkedTimes = new TimingStatistics("Forked JVM");
+	private static final TimingStatistics fallbackTimes = new TimingStatistics("Forked JVM (resident unavailable)");
+	private static final AtomicLong residentCandidates = new AtomicLong();
 	
 	public JUnitTestRunner() throws FileNotFoundException {
 		super(PASTAUtil.getTemplateResource("build_templates/" + TEMPLATE_FILENAME));
@@ -78,6 +110,59 @@ public class JUnitTestRunner extends Runner {
 		addOption("testName", name);
 	}
 
+	@Override
+	public String[] getTargetCommand(String target, ExecutionContainer container) {
+		// Only worth starting a JVM that stays running in a container that is 
+		// kept for more jobs
+		Language language = container.getLanguage();
+		if(!container.isPooled() || language == null) {
+			return null;
+		}
+		if(target.equals(BUILD_TARGET) && language.isResidentCompiler()) {
+			return new String[] {
+					"ant", "-v", "-f", "build.xml",
+					"-Dbuild.compiler=PastaCompilerAdapter",
+					"-DjavacFork=no",
+					"-Dpasta.libDirectory=" + getOption("libDirectory"),
+					"-Dpasta.outDirectory=" + getOption("outDirectory"),
+					BUILD_TARGET
+			};
+		}
+		if(!target.equals(TEST_TARGET) || !language.isResidentJUnitRunner()) {
+			return null;
+		}
+		Integer forkSample = language.getJUnitForkSample();
+		if(forkSample != null && residentCandidates.incrementAndGet() % forkSample == 0) {
+			return null;
+		}
+		return new String[] {
+				getOption("binDirectory") + "/pastajunit",
+				"test",
+				DockerManager.WORK_DIR + "/bin",
+				getOption("libDirectory"),
+				getOption("outDirectory") + "/" + getOption("testOutputFile") + ".xml",
+				getOption("testName"),
+				getOption("advancedTimeout"),
+				getOption("filterStackTraces")
+		};
+	}
+	
+	@Override
+	public void targetFinished(String target, boolean byCommand, boolean fellBack, long millis) {
+		if(target.equals(TEST_TARGET)) {
+			(byCommand ? residentTimes : fellBack ? fallbackTimes : forkedTimes).record(millis);
+		}
+	}
+	
+	/**
+	 * @return how long the <code>test</code> target has taken in each way of
+	 *         running it since startup, to compare the resident JVM with
+	 *         forking one
+	 */
+	public static List<TimingStatistics> getTestTimingStatistics() {
+		return Arrays.asList(residentTimes, forkedTimes, fallbackTimes);
+	}
+
 	@Override
 	public String extractCompileErrors(File compileErrorFile, AntResults results) {
 		String buildError = extractAntBuildError(results);
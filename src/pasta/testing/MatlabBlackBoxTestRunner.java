@@ -47,6 +47,12 @@ public class MatlabBlackBoxTestRunner extends BlackBoxTestRunner {
 		addOption("matlabInstall", convertToExecPath(WhichProgram.getInstance().path("matlab.install")));
 	}
 	
+	@Override
+	public boolean supportsParallelTestCases() {
+		// MATLAB runtimes are too heavy to start several at once
+		return false;
+	}
+	
 	private String convertToExecPath(String file) {
 		String matlab = WhichProgram.getInstance().path("matlab.install");
 		String important = file.substring(matlab.length());
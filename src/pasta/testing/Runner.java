@@ -39,8 +39,17 @@ import java.util.regex.Pattern;
 import org.apache.log4j.Logger;
 
 import pasta.docker.DockerManager;
+import pasta.docker.ExecutionContainer;
 
 public abstract class Runner {
+	
+	/**
+	 * The exit code of a target command meaning that it could not run the
+	 * target, and the target should be run by Ant instead.
+	 * 
+	 * @see #getTargetCommand(String, ExecutionContainer)
+	 */
+	public static final int TARGET_COMMAND_UNAVAILABLE = 75;
 
 	private File templateFile;
 	private Map<String, String> options;
@@ -204,6 +213,32 @@ public abstract class Runner {
 		addOption("libDirectory", fixPath(directory));
 	}
 	
+	/**
+	 * Get a command to run in the container in place of an Ant target, for a
+	 * target that can be run more cheaply some other way. If the command exits
+	 * with {@link #TARGET_COMMAND_UNAVAILABLE}, the target is run by Ant
+	 * after all.
+	 * 
+	 * @param target the name of the target
+	 * @param container the container the target is about to run in
+	 * @return the command, or null to run the target with Ant
+	 */
+	public String[] getTargetCommand(String target, ExecutionContainer container) {
+		return null;
+	}
+	
+	/**
+	 * Called when a target has finished running.
+	 * 
+	 * @param target the name of the target
+	 * @param byCommand true if it was run by its target command rather than Ant
+	 * @param fellBack true if its target command was unavailable, so it was 
+	 *            run by Ant instead
+	 * @param millis how long it took, including any unavailable target command
+	 */
+	public void targetFinished(String target, boolean byCommand, boolean fellBack, long millis) {
+	}
+	
 	public abstract String extractCompileErrors(File compileErrorFile, AntResults results);
 	public abstract String extractFilesCompiled(AntResults results);
 	
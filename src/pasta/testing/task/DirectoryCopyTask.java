@@ -32,7 +32,7 @@ import org.apache.log4j.Logger;
 
 public class DirectoryCopyTask extends FileCopyTask {
 
-	private boolean contentsOnly;
+	protected boolean contentsOnly;
 	
 	public DirectoryCopyTask(File from, File to) {
 		this(from, to, false);
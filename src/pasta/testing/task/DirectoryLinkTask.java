@@ -0,0 +1,106 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.testing.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.apache.log4j.Logger;
+
+import pasta.service.PASTAOptions;
+
+/**
+ * Puts the contents of one directory into another using hard links rather
+ * than copies, so setting up a sandbox does not write every submission and
+ * test file to disk again. Files are copied instead where they cannot be
+ * linked (e.g. the directories are on different file systems), or if the
+ * option <code>execution.sandbox.hard-links</code> is false.
+ * <p>
+ * Existing files in the destination are unlinked before being replaced,
+ * never written to, as writing to a linked file would change the original.
+ * Anything else that writes to the sandbox source directory must do the
+ * same.
+ */
+public class DirectoryLinkTask extends DirectoryCopyTask {
+	
+	private static final Logger logger = Logger.getLogger(DirectoryLinkTask.class);
+	
+	public DirectoryLinkTask(File from, File to) {
+		this(from, to, false);
+	}
+	
+	public DirectoryLinkTask(File from, File to, boolean contentsOnly) {
+		super(from, to, contentsOnly);
+	}
+	
+	@Override
+	public boolean go() {
+		if(!isEnabled()) {
+			return super.go();
+		}
+		if(!from.isDirectory() || (contentsOnly && !to.isDirectory())) {
+			return false;
+		}
+		logger.debug("Linking contents of directory " + from + " into " + to);
+		Path source = from.toPath();
+		Path target = to.toPath();
+		try {
+			Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+					Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+					return FileVisitResult.CONTINUE;
+				}
+				
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					Path dest = target.resolve(source.relativize(file).toString());
+					Files.deleteIfExists(dest);
+					try {
+						Files.createLink(dest, file);
+					} catch(IOException | UnsupportedOperationException e) {
+						Files.copy(file, dest, StandardCopyOption.COPY_ATTRIBUTES);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			logger.warn("Could not link " + from + " into " + to, e);
+			return false;
+		}
+		return true;
+	}
+	
+	private static boolean isEnabled() {
+		PASTAOptions options = PASTAOptions.instance();
+		return options == null || !"false".equalsIgnoreCase(options.get("execution.sandbox.hard-links"));
+	}
+}
@@ -28,9 +28,11 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.SocketAddress;
+import java.net.UnknownHostException;
 import java.nio.file.Files;
 import java.util.LinkedList;
 import java.util.Properties;
@@ -104,6 +106,10 @@ public class ProjectProperties {
 	
 	private Long instanceID;
 	
+	// name of this node when several share the database, and whether it runs jobs
+	private String executionNodeId;
+	private boolean executionEnabled;
+	
 	@Autowired
 	private LoginDAO loginDAO;
 	@Autowired
@@ -183,9 +189,41 @@ public class ProjectProperties {
 			}
 		}
 		
+		executionNodeId = settings.getProperty("executionNodeId");
+		if(executionNodeId == null || executionNodeId.isEmpty()) {
+			// Must stay the same across restarts, so that this node can take
+			// back its own job leases and pooled containers
+			executionNodeId = getDefaultExecutionNodeId();
+		}
+		// Also used in Docker container names
+		executionNodeId = executionNodeId.replaceAll("[^a-zA-Z0-9_.-]", "-");
+		executionEnabled = !"false".equalsIgnoreCase(settings.getProperty("executionEnabled"));
+		logger.info("Execution node " + executionNodeId + (executionEnabled ? " will" : " will not") + " run assessment jobs");
+		
 		ProjectProperties.properties = this;
 	}
 	
+	/**
+	 * @return the host name followed by a hash of the servlet container's
+	 *         instance directory (<code>catalina.base</code>, or the working
+	 *         directory outside Tomcat). This differs between containers on
+	 *         the same host, which share the project location, and stays the
+	 *         same when a container is restarted.
+	 */
+	private String getDefaultExecutionNodeId() {
+		String host = "node";
+		try {
+			host = InetAddress.getLocalHost().getHostName();
+		} catch(UnknownHostException e) {
+			logger.warn("Could not look up host name for execution node ID", e);
+		}
+		String instanceDir = System.getProperty("catalina.base", System.getProperty("user.dir"));
+		try {
+			instanceDir = new File(instanceDir).getCanonicalPath();
+		} catch(IOException e) {}
+		return host + "-" + Integer.toHexString(instanceDir.hashCode());
+	}
+	
 	@PostConstruct
 	private void afterInit() {
 		// Copy the lib folder to content
@@ -390,4 +428,23 @@ public class ProjectProperties {
 	public long getInstanceId() {
 		return instanceID;
 	}
+	
+	/**
+	 * @return the name of this node, unique among all nodes sharing the
+	 *         database; set with <code>project.executionNodeId</code>, or
+	 *         worked out from the host name and servlet container by default
+	 *         (so two PASTA web apps in one container must set it)
+	 */
+	public String getExecutionNodeId() {
+		return executionNodeId;
+	}
+	
+	/**
+	 * @return false if this node only serves the web interface and leaves
+	 *         running jobs to other nodes; set with
+	 *         <code>project.executionEnabled</code>
+	 */
+	public boolean isExecutionEnabled() {
+		return executionEnabled;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.util;
+
+/**
+ * Running summary of a series of timings (in milliseconds).
+ * <p>
+ * Only the count, total, minimum and maximum are kept, so recording is
+ * constant time and memory no matter how many samples are taken.
+ */
+public class TimingStatistics {
+
+	private String name;
+	private long count;
+	private long total;
+	private long min;
+	private long max;
+	
+	public TimingStatistics(String name) {
+		this.name = name;
+		reset();
+	}
+	
+	public synchronized void record(long millis) {
+		count++;
+		total += millis;
+		min = Math.min(min, millis);
+		max = Math.max(max, millis);
+	}
+	
+	public synchronized void reset() {
+		count = 0;
+		total = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	public synchronized long getCount() {
+		return count;
+	}
+	public synchronized long getTotal() {
+		return total;
+	}
+	public synchronized long getMin() {
+		return count == 0 ? 0 : min;
+	}
+	public synchronized long getMax() {
+		return max;
+	}
+	public synchronized long getMean() {
+		return count == 0 ? 0 : total / count;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return String.format("%s: %d samples, mean %d ms, min %d ms, max %d ms", 
+				name, count, getMean(), getMin(), getMax());
+	}
+}
@@ -0,0 +1,231 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.util.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An output stream that only keeps the start and end of what is written to
+ * it in memory, so that a program printing without end cannot fill the heap.
+ * <p>
+ * The first <code>headLimit</code> bytes are kept as they are, and the last
+ * <code>tailLimit</code> bytes after that are kept in a ring buffer. Anything
+ * in between is counted and dropped, and replaced by a marker when the
+ * contents are read back. What is written can also be copied to a file, up
+ * to a limit, with {@link #spillTo(File, long)}.
+ * <p>
+ * If a parent is given, everything written is also written to the parent;
+ * this is used to collect standard output and error into a combined stream.
+ */
+public class BoundedOutputStream extends OutputStream {
+
+	private final byte[] head;
+	private int headCount;
+	
+	private final byte[] tail;
+	private int tailEnd;
+	private int tailCount;
+	
+	private long total;
+	
+	private BoundedOutputStream parent;
+	private OutputStream spill;
+	private File spillFile;
+	private long spillLimit;
+	private long spillCount;
+	private long spillDropped;
+	
+	public BoundedOutputStream(int headLimit, int tailLimit) {
+		this(headLimit, tailLimit, null);
+	}
+	
+	public BoundedOutputStream(int headLimit, int tailLimit, BoundedOutputStream parent) {
+		this.head = new byte[Math.max(0, headLimit)];
+		this.tail = new byte[Math.max(0, tailLimit)];
+		this.parent = parent;
+	}
+	
+	/**
+	 * Copy everything written from now on to the given file, until
+	 * <code>limit</code> bytes have been written to it. Anything after that
+	 * is dropped, and a marker saying how much was dropped is added to the
+	 * end of the file when the stream is closed.
+	 * 
+	 * @param file the file to write to; it will be replaced if it exists
+	 * @param limit the most bytes of output to write to the file
+	 * @throws IOException if the file cannot be opened
+	 */
+	public synchronized void spillTo(File file, long limit) throws IOException {
+		closeSpill();
+		this.spill = new BufferedOutputStream(new FileOutputStream(file));
+		this.spillFile = file;
+		this.spillLimit = Math.max(0, limit);
+		this.spillCount = 0;
+		this.spillDropped = 0;
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] {(byte) b}, 0, 1);
+	}
+	
+	@Override
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		if(spill != null) {
+			int toSpill = (int) Math.min(len, spillLimit - spillCount);
+			if(toSpill > 0) {
+				spill.write(b, off, toSpill);
+				spillCount += toSpill;
+			}
+			spillDropped += len - toSpill;
+		}
+		total += len;
+		
+		int pos = off;
+		int remaining = len;
+		int toHead = Math.min(remaining, head.length - headCount);
+		if(toHead > 0) {
+			System.arraycopy(b, pos, head, headCount, toHead);
+			headCount += toHead;
+			pos += toHead;
+			remaining -= toHead;
+		}
+		
+		if(remaining > 0 && tail.length > 0) {
+			if(remaining >= tail.length) {
+				System.arraycopy(b, pos + remaining - tail.length, tail, 0, tail.length);
+				tailEnd = 0;
+				tailCount = tail.length;
+			} else {
+				int first = Math.min(remaining, tail.length - tailEnd);
+				System.arraycopy(b, pos, tail, tailEnd, first);
+				System.arraycopy(b, pos + first, tail, 0, remaining - first);
+				tailEnd = (tailEnd + remaining) % tail.length;
+				tailCount = Math.min(tail.length, tailCount + remaining);
+			}
+		}
+		
+		if(parent != null) {
+			parent.write(b, off, len);
+		}
+	}
+	
+	@Override
+	public synchronized void flush() throws IOException {
+		if(spill != null) {
+			spill.flush();
+		}
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		closeSpill();
+	}
+	
+	private void closeSpill() throws IOException {
+		if(spill != null) {
+			if(spillDropped > 0) {
+				spill.write(getOmittedMarker(spillDropped, null).getBytes(StandardCharsets.UTF_8));
+			}
+			spill.close();
+			spill = null;
+		}
+	}
+	
+	private static String getOmittedMarker(long dropped, String where) {
+		return System.lineSeparator() + "... [" + dropped + " bytes of output omitted" 
+				+ (where == null ? "" : "; " + where) + "] ..." + System.lineSeparator();
+	}
+	
+	/**
+	 * @return the total number of bytes written, including those dropped
+	 */
+	public synchronized long getTotalCount() {
+		return total;
+	}
+	
+	/**
+	 * @return the number of bytes written that were not kept in memory
+	 */
+	public synchronized long getDroppedCount() {
+		return total - headCount - tailCount;
+	}
+	
+	public boolean isTruncated() {
+		return getDroppedCount() > 0;
+	}
+	
+	public File getSpillFile() {
+		return spillFile;
+	}
+	
+	/**
+	 * @return true if nothing has been written to this stream
+	 */
+	public synchronized boolean isEmpty() {
+		return total == 0;
+	}
+	
+	/**
+	 * Decode the kept contents of the stream. If any output was dropped, a
+	 * marker saying how much (and how much of the output is in the spill
+	 * file, if there is one) is put between the start and end.
+	 * 
+	 * @param charset the charset to decode with
+	 * @return the kept contents
+	 */
+	public synchronized String toString(Charset charset) {
+		StringBuilder sb = new StringBuilder(headCount + tailCount + 128);
+		sb.append(new String(head, 0, headCount, charset));
+		long dropped = getDroppedCount();
+		if(dropped > 0) {
+			String where = null;
+			if(spillFile != null) {
+				where = (spillDropped > 0 ? "first " + spillCount + " bytes in " : "full output in ") + spillFile.getName();
+			}
+			sb.append(getOmittedMarker(dropped, where));
+		}
+		if(tailCount > 0) {
+			byte[] ordered = new byte[tailCount];
+			int start = (tailEnd - tailCount + tail.length) % tail.length;
+			int first = Math.min(tailCount, tail.length - start);
+			System.arraycopy(tail, start, ordered, 0, first);
+			System.arraycopy(tail, 0, ordered, first, tailCount - first);
+			sb.append(new String(ordered, charset));
+		}
+		return sb.toString();
+	}
+	
+	@Override
+	public String toString() {
+		return toString(Charset.defaultCharset());
+	}
+}
@@ -0,0 +1,172 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package pasta.util.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An input stream over an XML document that only lets through the start of
+ * each CDATA section, so that an XML parser does not hold a huge section in
+ * memory. Everything after the first <code>limit</code> bytes of a section
+ * is dropped and replaced by a marker giving the number of bytes omitted.
+ * <p>
+ * This is meant for the output a program printed, which JUnit result files
+ * keep in CDATA sections. The document must be in UTF-8 or another encoding
+ * that is a superset of ASCII; a section is never cut in the middle of a
+ * UTF-8 character. Sections are found by their delimiters alone, so the
+ * document should not contain <code>&lt;![CDATA[</code> in a comment.
+ */
+public class CDataLimitingInputStream extends InputStream {
+	
+	private static final byte[] OPEN = "<![CDATA[".getBytes(StandardCharsets.US_ASCII);
+	
+	private final InputStream in;
+	private final long limit;
+	
+	private final byte[] raw = new byte[8192];
+	private int rawPos;
+	private int rawLen;
+	
+	private byte[] pending;
+	private int pendingPos;
+	
+	private boolean inSection;
+	private int matched;
+	private long passed;
+	private long dropped;
+	
+	/**
+	 * @param in the document
+	 * @param limit how many bytes of each CDATA section to keep
+	 */
+	public CDataLimitingInputStream(InputStream in, long limit) {
+		this.in = in;
+		this.limit = Math.max(0, limit);
+	}
+	
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+		int n = 0;
+		while(n < len) {
+			if(pending != null) {
+				int count = Math.min(len - n, pending.length - pendingPos);
+				System.arraycopy(pending, pendingPos, b, off + n, count);
+				n += count;
+				pendingPos += count;
+				if(pendingPos == pending.length) {
+					pending = null;
+				}
+				continue;
+			}
+			if(rawPos == rawLen) {
+				// Only block for more once there is nothing to return
+				if(n > 0) {
+					break;
+				}
+				rawLen = Math.max(0, in.read(raw));
+				rawPos = 0;
+				if(rawLen == 0) {
+					return -1;
+				}
+			}
+			int c = raw[rawPos++] & 0xFF;
+			if(inSection ? inSection(c) : outsideSection(c)) {
+				b[off + n++] = (byte) c;
+			}
+		}
+		return n;
+	}
+	
+	/**
+	 * @return true to pass the byte on
+	 */
+	private boolean outsideSection(int c) {
+		if(c == OPEN[matched]) {
+			matched++;
+		} else {
+			matched = c == OPEN[0] ? 1 : 0;
+		}
+		if(matched == OPEN.length) {
+			inSection = true;
+			matched = 0;
+			passed = 0;
+			dropped = 0;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return true to pass the byte on
+	 */
+	private boolean inSection(int c) {
+		if(c == '>' && matched == 2) {
+			inSection = false;
+			matched = 0;
+			if(dropped == 0) {
+				return true;
+			}
+			// Some or all of the "]]" may have been dropped already
+			int droppedBrackets = (int) Math.min(2, dropped);
+			long omitted = dropped - droppedBrackets;
+			String end = omitted > 0 ? 
+					System.lineSeparator() + "... [" + omitted + " bytes of output omitted] ..." + System.lineSeparator() + "]]>" :
+					"]]>".substring(2 - droppedBrackets);
+			pending = end.getBytes(StandardCharsets.US_ASCII);
+			pendingPos = 0;
+			return false;
+		}
+		matched = c == ']' ? Math.min(2, matched + 1) : 0;
+		
+		// Finish any UTF-8 character that was started before the limit
+		boolean continuation = (c & 0xC0) == 0x80;
+		if(dropped == 0 && (passed < limit || continuation)) {
+			passed++;
+			return true;
+		}
+		dropped++;
+		return false;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		return pending == null ? 0 : pending.length - pendingPos;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -48,7 +48,6 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import pasta.domain.form.LoginForm;
-import pasta.domain.result.CombinedAssessmentResult;
 import pasta.domain.template.Assessment;
 import pasta.domain.user.PASTAUser;
 import pasta.security.TokenUtils;
@@ -134,10 +133,10 @@ public class APIController {
 				out.println();
 
 				// username, assessment name, result
-				Map<PASTAUser, Map<Long, CombinedAssessmentResult>> latestResults = resultManager
-						.getLatestResultsIncludingGroup(userManager.getUserList());
+				Map<PASTAUser, Map<Long, Double>> latestResults = resultManager
+						.getLatestResultsIncludingGroupEvenQuicker(userManager.getUserList());
 
-				for (Entry<PASTAUser, Map<Long, CombinedAssessmentResult>> entry : latestResults
+				for (Entry<PASTAUser, Map<Long, Double>> entry : latestResults
 						.entrySet()) {
 					PASTAUser user = entry.getKey();
 					if (user != null) {
@@ -146,14 +145,11 @@ public class APIController {
 					}
 
 					for (Assessment assessment : assessments) {
-						if (entry.getValue() == null ||
-								entry.getValue().get(assessment.getId()) == null) {
+						Double percentage = entry.getValue().get(assessment.getId());
+						if (percentage == null) {
 							out.print(",-");
 						} else {
-							out.print(","
-									+ entry.getValue()
-											.get(assessment.getId())
-											.getMarks());
+							out.print("," + percentage * assessment.getMarks());
 						}
 					}
 					out.println();
@@ -24,15 +24,14 @@ SOFTWARE.
 
 package pasta.web.controller;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -42,9 +41,13 @@ import javax.sql.DataSource;
 import javax.validation.Valid;
 
 import org.apache.commons.dbcp2.BasicDataSource;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -56,6 +59,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import pasta.docker.CommandResult;
@@ -71,9 +75,8 @@ import pasta.login.DBAuthValidator;
 import pasta.service.ExecutionManager;
 import pasta.service.PASTAOptions;
 import pasta.service.UserManager;
-import pasta.service.reporting.CSVReport;
-import pasta.service.reporting.CSVReport.CSVPage;
 import pasta.service.reporting.UnitTestReportingManager;
+import pasta.testing.JUnitTestRunner;
 import pasta.util.ProjectProperties;
 import pasta.util.WhichProgram;
 import pasta.web.WebUtils;
@@ -175,6 +178,9 @@ public class AdminController {
 			model.addAttribute("people", userManager.getUserList());
 			model.addAttribute("addresses", ProjectProperties.getInstance().getAuthenticationSettings().getServerAddresses());
 			model.addAttribute("taskDetails", executionManager.getExecutingTaskDetails());
+			model.addAttribute("startLatency", executionManager.getStartLatencyStatistics());
+			model.addAttribute("containerPools", DockerManager.instance().getContainerPools());
+			model.addAttribute("junitTestTimes", JUnitTestRunner.getTestTimingStatistics());
 		}
 		return "admin/admin";
 	}
@@ -336,6 +342,55 @@ public class AdminController {
 		return "redirect:" + request.getHeader("Referer");
 	}
 	
+	@Autowired
+	private SessionFactory sessionFactory;
+	
+	/**
+	 * $PASTAUrl$/admin/cache/
+	 * <p>
+	 * Attributes:
+	 * <table>
+	 * 	<tr><td>statistics</td><td>the Hibernate statistics, including query cache hits and misses</td></tr>
+	 * 	<tr><td>statisticsStart</td><td>the date statistics have been collected since</td></tr>
+	 * 	<tr><td>regions</td><td>the second-level cache statistics for each cache region, by region name</td></tr>
+	 * </table>
+	 * JSP:
+	 * <ul>
+	 * 	<li>admin/cache</li>
+	 * </ul>
+	 * 
+	 * @param model the model
+	 * @return "admin/cache"
+	 */
+	@RequestMapping(value = "/cache/", method = RequestMethod.GET)
+	public String viewCache(ModelMap model) {
+		WebUtils.ensureAccess(UserPermissionLevel.INSTRUCTOR);
+		Statistics statistics = sessionFactory.getStatistics();
+		Map<String, SecondLevelCacheStatistics> regions = new TreeMap<>();
+		for(String region : statistics.getSecondLevelCacheRegionNames()) {
+			regions.put(region, statistics.getSecondLevelCacheStatistics(region));
+		}
+		model.addAttribute("statistics", statistics);
+		model.addAttribute("statisticsStart", new Date(statistics.getStartTime()));
+		model.addAttribute("regions", regions);
+		return "admin/cache";
+	}
+	
+	@RequestMapping(value = "/cache/clear/", method = RequestMethod.POST)
+	public String clearCache(HttpServletRequest request) {
+		WebUtils.ensureAccess(UserPermissionLevel.INSTRUCTOR);
+		sessionFactory.getCache().evictAllRegions();
+		logger.info("Second-level cache cleared by " + WebUtils.getUser().getUsername());
+		return "redirect:" + request.getHeader("Referer");
+	}
+	
+	@RequestMapping(value = "/cache/resetStatistics/", method = RequestMethod.POST)
+	public String resetCacheStatistics(HttpServletRequest request) {
+		WebUtils.ensureAccess(UserPermissionLevel.INSTRUCTOR);
+		sessionFactory.getStatistics().clear();
+		return "redirect:" + request.getHeader("Referer");
+	}
+	
 	@RequestMapping(value = "/downloads/", method = RequestMethod.GET)
 	public String viewDownloads() {
 		WebUtils.ensureAccess(UserPermissionLevel.INSTRUCTOR);
@@ -345,6 +400,11 @@ public class AdminController {
 	@Autowired
 	private DataSource dataSource;
 	
+	private final Object dumpLock = new Object();
+	private Date dumpStarted;
+	private CountingOutputStream dumpedBytes;
+	private CountingOutputStream zippedBytes;
+	
 	@RequestMapping(value = "/downloads/dbdump/", method = RequestMethod.POST, produces="application/zip")
 	public void downloadDatabaseDump(HttpServletRequest request, HttpServletResponse response) {
 		WebUtils.ensureAccess(UserPermissionLevel.INSTRUCTOR);
@@ -370,43 +430,67 @@ public class AdminController {
 		
 		command.add(info.databaseName);
 		
-		CommandResult result = null;
-		try {
-			result = DockerManager.instance().executeDatabaseDump(command);
-			if(!result.getError().isEmpty()) {
-				throw new IOException(result.getError());
+		synchronized(dumpLock) {
+			if(dumpStarted != null) {
+				response.setStatus(HttpServletResponse.SC_CONFLICT);
+				return;
 			}
-		} catch (IOException e) {
-			logger.error("Error generating SQL dump:", e);
+			dumpStarted = new Date();
 		}
 		
 		String filename = "pasta_" + new SimpleDateFormat("YYYY-MM-dd").format(new Date());
-	    response.setHeader("Content-disposition", "attachment; filename=" + filename + ".zip");
-
-	    try {
-	    	// Zip the file
-	    	ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-	    	ZipOutputStream zip = new ZipOutputStream(outStream);
-	    	
-	    	ZipEntry ze = new ZipEntry(filename + ".sql");
-			zip.putNextEntry(ze);
-			
-			ByteArrayInputStream bais = new ByteArrayInputStream(result.getOutput().getBytes());
-			byte[] buffer = new byte[1024];
-			int len;
-			while ((len = bais.read(buffer)) > 0) {
-				zip.write(buffer, 0, len);
+		response.setHeader("Content-disposition", "attachment; filename=" + filename + ".zip");
+		
+		// mysqldump -> counter -> zip -> counter -> response, one buffer at a time
+		try (
+				CountingOutputStream zipped = new CountingOutputStream(new BufferedOutputStream(response.getOutputStream()));
+				ZipOutputStream zip = new ZipOutputStream(zipped);
+			) {
+			CountingOutputStream dumped = new CountingOutputStream(zip);
+			synchronized(dumpLock) {
+				dumpedBytes = dumped;
+				zippedBytes = zipped;
 			}
-			bais.close();
+			
+			zip.putNextEntry(new ZipEntry(filename + ".sql"));
+			CommandResult result = DockerManager.instance().executeDatabaseDump(command, dumped);
 			zip.closeEntry();
-			zip.close();
 			
-			// Send the file
-			OutputStream out = response.getOutputStream();
-			InputStream in = new ByteArrayInputStream(outStream.toByteArray());
-			IOUtils.copy(in,out);
+			if(result == null || result.getExitCode() == null || result.getExitCode() != 0) {
+				String error = result == null ? "The dump could not be run." : result.getError();
+				logger.error("Error generating SQL dump: " + error);
+				zip.putNextEntry(new ZipEntry("ERROR.txt"));
+				zip.write(error.getBytes());
+				zip.closeEntry();
+			}
+			logger.info(describeDatabaseDump());
 		} catch (IOException e) {
 			logger.error("Error sending SQL dump:", e);
+		} finally {
+			synchronized(dumpLock) {
+				dumpStarted = null;
+				dumpedBytes = null;
+				zippedBytes = null;
+			}
+		}
+	}
+	
+	@RequestMapping(value = "/downloads/dbdump/status/", method = RequestMethod.GET)
+	@ResponseBody
+	public String getDatabaseDumpStatus() {
+		WebUtils.ensureAccess(UserPermissionLevel.INSTRUCTOR);
+		return describeDatabaseDump();
+	}
+	
+	private String describeDatabaseDump() {
+		synchronized(dumpLock) {
+			if(dumpedBytes == null) {
+				return "";
+			}
+			long seconds = (System.currentTimeMillis() - dumpStarted.getTime()) / 1000;
+			return String.format("Dumped %s (%s zipped) in %ds", 
+					FileUtils.byteCountToDisplaySize(dumpedBytes.getByteCount()), 
+					FileUtils.byteCountToDisplaySize(zippedBytes.getByteCount()), seconds);
 		}
 	}
 	
@@ -444,50 +528,27 @@ public class AdminController {
 	public void downloadUnitTestCaseHistory(HttpServletRequest request, HttpServletResponse response, 
 			@RequestParam(value="maxRowCount", required=false) int maxRowCount) {
 		WebUtils.ensureAccess(UserPermissionLevel.INSTRUCTOR);
-		CSVReport report = unitTestReportingManager.getAllUnitTestAttemptsReport(maxRowCount);
-		downloadCSVReport(report, response, "pasta_unit_test_results");
+		response.setHeader("Content-disposition", "attachment; filename=" + getCSVReportFilename("pasta_unit_test_results"));
+		try {
+			unitTestReportingManager.writeAllUnitTestAttemptsReport(response.getOutputStream(), maxRowCount);
+		} catch (IOException e) {
+			logger.error("Error sending CSV report:", e);
+		}
 	}
 	
 	@RequestMapping(value = "/downloads/submissionhistory/", method = RequestMethod.POST, produces="application/zip")
 	public void downloadSubmissionHistory(HttpServletRequest request, HttpServletResponse response, 
 			@RequestParam(value="maxRowCount", required=false) int maxRowCount) {
 		WebUtils.ensureAccess(UserPermissionLevel.INSTRUCTOR);
-		CSVReport report = unitTestReportingManager.getAllSubmissionsReport(maxRowCount);
-		downloadCSVReport(report, response, "pasta_submissions");
-	}
-	
-	private void downloadCSVReport(CSVReport report, HttpServletResponse response, String filePrefix) {
-		CSVPage[] pages = report.getPages();
-		
-		String filename = filePrefix + "_" + new SimpleDateFormat("YYYY-MM-dd").format(new Date());
-	    response.setHeader("Content-disposition", "attachment; filename=" + filename + ".zip");
-
-	    try {
-	    	// Zip the file
-	    	ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-	    	ZipOutputStream zip = new ZipOutputStream(outStream);
-	    	
-	    	for(int i = 0; i < pages.length; i++) {
-	    		String entryName = "results";
-	    		if(pages.length > 1) {
-	    			int numDigits = (int) Math.ceil(Math.log10(pages.length + 1));
-	    			entryName += String.format("%0" + numDigits + "d", i + 1);
-	    		}
-	    		entryName += ".csv";
-	    		ZipEntry ze = new ZipEntry(entryName);
-				zip.putNextEntry(ze);
-				pages[i].output(zip);
-				zip.closeEntry();
-	    	}
-	    	
-			zip.close();
-			
-			// Send the file
-			OutputStream out = response.getOutputStream();
-			InputStream in = new ByteArrayInputStream(outStream.toByteArray());
-			IOUtils.copy(in,out);
+		response.setHeader("Content-disposition", "attachment; filename=" + getCSVReportFilename("pasta_submissions"));
+		try {
+			unitTestReportingManager.writeAllSubmissionsReport(response.getOutputStream(), maxRowCount);
 		} catch (IOException e) {
 			logger.error("Error sending CSV report:", e);
 		}
 	}
+	
+	private String getCSVReportFilename(String filePrefix) {
+		return filePrefix + "_" + new SimpleDateFormat("YYYY-MM-dd").format(new Date()) + ".zip";
+	}
 }
@@ -36,6 +36,7 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.SessionAttributes;
 import org.springframework.web.bind.support.SessionStatus;
@@ -43,6 +44,7 @@ import org.springframework.web.bind.support.SessionStatus;
 import pasta.domain.UserPermissionLevel;
 import pasta.domain.result.AssessmentResultSummaryCalculator;
 import pasta.domain.user.PASTAUser;
+import pasta.service.AssessmentManager;
 import pasta.service.ResultManager;
 import pasta.service.UserManager;
 import pasta.web.WebUtils;
@@ -60,6 +62,8 @@ public class GradeCacheController {
 	@Autowired
 	private UserManager userManager;
 	@Autowired
+	private AssessmentManager assessmentManager;
+	@Autowired
 	private ResultManager resultManager;
 	
 	@ModelAttribute("gradeCache")
@@ -79,6 +83,8 @@ public class GradeCacheController {
 		WebUtils.ensureAccess(UserPermissionLevel.INSTRUCTOR);
 		if(gradeCache.isStarted()) {
 			model.addAttribute("started", true);
+		} else if(AssessmentResultSummaryCalculator.hasUnfinishedRun()) {
+			model.addAttribute("canResume", true);
 		}
 		return "user/gradeCache";
 	}
@@ -86,7 +92,8 @@ public class GradeCacheController {
 	@RequestMapping(value="recalculate/", method=RequestMethod.POST)
 	@ResponseBody
 	public String startConvert(
-			@ModelAttribute("gradeCache") final AssessmentResultSummaryCalculator gradeCache) {
+			@ModelAttribute("gradeCache") final AssessmentResultSummaryCalculator gradeCache,
+			@RequestParam(value="resume", required=false, defaultValue="false") final boolean resume) {
 		WebUtils.ensureAccess(UserPermissionLevel.INSTRUCTOR);
 		if(gradeCache.isStarted()) {
 			return "ALREADY STARTED";
@@ -95,7 +102,7 @@ public class GradeCacheController {
 		executor.execute(new Runnable() {
 			@Override
 			public void run() {
-				gradeCache.recacheResultSummaries(userManager, resultManager);
+				gradeCache.recacheResultSummaries(userManager, assessmentManager, resultManager, resume);
 			}
 		});
 		return "";
@@ -118,4 +125,16 @@ public class GradeCacheController {
 		}
 		return sb.toString();
 	}
+	
+	/**
+	 * Reload the in-memory grade matrix from the stored summaries (without
+	 * recalculating them), reporting how many results were out of date.
+	 */
+	@RequestMapping(value="matrix/rebuild/", method=RequestMethod.POST)
+	@ResponseBody
+	public String rebuildGradeMatrix() {
+		WebUtils.ensureAccess(UserPermissionLevel.INSTRUCTOR);
+		int differences = resultManager.rebuildGradeMatrix();
+		return differences + " results were out of date.";
+	}
 }
@@ -24,16 +24,24 @@ SOFTWARE.
 
 package pasta.web.controller;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -43,8 +51,11 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.ResponseBody;
-import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import pasta.domain.UserPermissionLevel;
 import pasta.domain.template.Assessment;
@@ -52,8 +63,7 @@ import pasta.domain.user.PASTAUser;
 import pasta.service.AssessmentManager;
 import pasta.service.ResultManager;
 import pasta.service.UserManager;
-import pasta.view.ExcelAutoMarkView;
-import pasta.view.ExcelMarkView;
+import pasta.service.reporting.MarksSpreadsheetManager;
 import pasta.web.WebUtils;
 
 /**
@@ -75,12 +85,16 @@ public class GradeCentreController {
 
 	protected final Log logger = LogFactory.getLog(getClass());
 
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
 	@Autowired
 	private UserManager userManager;
 	@Autowired
 	private AssessmentManager assessmentManager;
 	@Autowired
 	private ResultManager resultManager;
+	@Autowired
+	private MarksSpreadsheetManager marksSpreadsheetManager;
 	
 	@ModelAttribute("user")
 	public PASTAUser loadUser(HttpServletRequest request) {
@@ -95,78 +109,70 @@ public class GradeCentreController {
 	/**
 	 * $PASTAUrl$/downloadMarks/
 	 * <p>
-	 * Download the marks as an excel sheet. If the user has not authenticated:
-	 * redirect to login. If the user is not a tutor: redirect to home.
+	 * Download the marks as an excel (XLSX) sheet. If the user has not
+	 * authenticated: redirect to login. If the user is not a tutor: redirect to
+	 * home.
 	 * 
-	 * @param request the http request that is kinda not used.
-	 * @param response also not really used
-	 * @return the model and view (which is actually a
-	 *         {@link pasta.view.ExcelMarkView})
+	 * @param user the currently logged in user
+	 * @param response the response the spreadsheet is written to
+	 * @param useMyClasses only include students in the user's classes
+	 * @param tutorial only include students in this tutorial
+	 * @param stream only include students in this stream
+	 * @throws IOException if the spreadsheet cannot be written
+	 * @see MarksSpreadsheetManager
 	 */
 	@RequestMapping(value = "downloadMarks/")
-	public ModelAndView viewExcel(@ModelAttribute("user") PASTAUser user, HttpServletResponse response,
+	public void viewExcel(@ModelAttribute("user") PASTAUser user, HttpServletResponse response,
 			@RequestParam(value = "myClasses", required = false) Boolean useMyClasses,
 			@RequestParam(value = "tutorial", required = false) String tutorial,
-			@RequestParam(value = "stream", required = false) String stream) {
+			@RequestParam(value = "stream", required = false) String stream) throws IOException {
 		WebUtils.ensureAccess(UserPermissionLevel.TUTOR);
-
-		Map<String, Object> data = new TreeMap<String, Object>();
-
-		data.put("assessmentList", assessmentManager.getAssessmentList());
-
-		Collection<PASTAUser> userList;
-		if (useMyClasses != null) {
-			userList = userManager.getTutoredStudents(user);
-		} else if (stream != null) {
-			userList = userManager.getUserListByStream(stream);
-		} else if (tutorial != null) {
-			userList = userManager.getUserListByTutorial(tutorial);
-		} else {
-			userList = userManager.getUserList();
-		}
-		data.put("userList", userList);
-		data.put("latestResults", resultManager.getLatestResultsIncludingGroupQuick(userList));
-
-		return new ModelAndView(new ExcelMarkView(), data);
+		Collection<PASTAUser> userList = getDownloadUserList(user, useMyClasses, tutorial, stream);
+		writeSpreadsheet(marksSpreadsheetManager.getMarksSpreadsheet(userList, false), "pasta-marks.xlsx", response);
 	}
 
 	/**
 	 * $PASTAUrl$/downloadAutoMarks/
 	 * <p>
 	 * Download the only the automated marks (all but hand marking) as an excel
-	 * sheet. If the user has not authenticated: redirect to login. If the user is
-	 * not a tutor: redirect to home.
+	 * (XLSX) sheet. If the user has not authenticated: redirect to login. If the
+	 * user is not a tutor: redirect to home.
 	 * 
-	 * @param request the http request that is kinda not used.
-	 * @param response also not really used
-	 * @return the model and view (which is actually a
-	 *         {@link pasta.view.ExcelMarkView})
+	 * @param user the currently logged in user
+	 * @param response the response the spreadsheet is written to
+	 * @param useMyClasses only include students in the user's classes
+	 * @param tutorial only include students in this tutorial
+	 * @param stream only include students in this stream
+	 * @throws IOException if the spreadsheet cannot be written
+	 * @see MarksSpreadsheetManager
 	 */
 	@RequestMapping(value = "downloadAutoMarks/")
-	public ModelAndView viewAutoExcel(@ModelAttribute("user") PASTAUser user, HttpServletResponse response,
+	public void viewAutoExcel(@ModelAttribute("user") PASTAUser user, HttpServletResponse response,
 			@RequestParam(value = "myClasses", required = false) Boolean useMyClasses,
 			@RequestParam(value = "tutorial", required = false) String tutorial,
-			@RequestParam(value = "stream", required = false) String stream) {
+			@RequestParam(value = "stream", required = false) String stream) throws IOException {
 		WebUtils.ensureAccess(UserPermissionLevel.TUTOR);
+		Collection<PASTAUser> userList = getDownloadUserList(user, useMyClasses, tutorial, stream);
+		writeSpreadsheet(marksSpreadsheetManager.getMarksSpreadsheet(userList, true), "pasta-auto-marks.xlsx", response);
+	}
 
-		Map<String, Object> data = new TreeMap<String, Object>();
-
-		data.put("assessmentList", assessmentManager.getAssessmentList());
-
-		Collection<PASTAUser> userList;
+	private Collection<PASTAUser> getDownloadUserList(PASTAUser user, Boolean useMyClasses, String tutorial, String stream) {
 		if (useMyClasses != null) {
-			userList = userManager.getTutoredStudents(user);
+			return userManager.getTutoredStudents(user);
 		} else if (stream != null) {
-			userList = userManager.getUserListByStream(stream);
+			return userManager.getUserListByStream(stream);
 		} else if (tutorial != null) {
-			userList = userManager.getUserListByTutorial(tutorial);
+			return userManager.getUserListByTutorial(tutorial);
 		} else {
-			userList = userManager.getUserList();
+			return userManager.getUserList();
 		}
-		data.put("userList", userList);
-		data.put("latestResults", resultManager.getLatestResultsIncludingGroupQuick(userList));
+	}
 
-		return new ModelAndView(new ExcelAutoMarkView(), data);
+	private void writeSpreadsheet(File spreadsheet, String filename, HttpServletResponse response) throws IOException {
+		response.setContentType(MarksSpreadsheetManager.CONTENT_TYPE);
+		response.setHeader("Content-Disposition", "attachment; filename=\"" + filename + "\"");
+		response.setHeader("Content-Length", String.valueOf(spreadsheet.length()));
+		Files.copy(spreadsheet.toPath(), response.getOutputStream());
 	}
 
 	// ///////////////////////////////////////////////////////////////////////////
@@ -178,14 +184,13 @@ public class GradeCentreController {
 	 * <p>
 	 * Serves up the JSON data container for the grade center. If the user has not
 	 * authenticated or is not a tutor: return nothing. Otherwise use
-	 * {@link GradeCentreController#generateJSON(PASTAUser[])} for all users.
-	 * 
-	 * @return the appropriate json file
+	 * {@link #writeGradeCentreData(Collection, HttpServletRequest, HttpServletResponse)}
+	 * for all users.
 	 */
 	@RequestMapping(value = "DATA/")
-	public @ResponseBody String viewGradeCentreData() {
+	public void viewGradeCentreData(HttpServletRequest request, HttpServletResponse response) throws IOException {
 		WebUtils.ensureAccess(UserPermissionLevel.TUTOR);
-		return generateJSON(userManager.getStudentList());
+		writeGradeCentreData(userManager.getStudentList(), request, response);
 	}
 
 	/**
@@ -193,18 +198,15 @@ public class GradeCentreController {
 	 * <p>
 	 * Serves up the JSON data container for the grade center for a stream. If the
 	 * user has not authenticated or is not a tutor: return nothing. Otherwise use
-	 * {@link GradeCentreController#generateJSON(PASTAUser[])} for all users in
-	 * the given stream. Return nothing if the stream doesn't exist.
-	 * 
-	 * @return the appropriate json file
+	 * {@link #writeGradeCentreData(Collection, HttpServletRequest, HttpServletResponse)}
+	 * for all users in the given stream. Return no rows if the stream doesn't
+	 * exist.
 	 */
 	@RequestMapping(value = "stream/{streamName}/DATA/")
-	public @ResponseBody String viewStreamData(@PathVariable("streamName") String streamName) {
+	public void viewStreamData(@PathVariable("streamName") String streamName,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
 		WebUtils.ensureAccess(UserPermissionLevel.TUTOR);
-		if (userManager.getUserListByStream(streamName) == null) {
-			return "";
-		}
-		return generateJSON(userManager.getUserListByStream(streamName));
+		writeGradeCentreData(userManager.getUserListByStream(streamName), request, response);
 	}
 
 	/**
@@ -212,21 +214,16 @@ public class GradeCentreController {
 	 * <p>
 	 * Serves up the JSON data container for the grade center for a tutorial
 	 * class. If the user has not authenticated or is not a tutor: return nothing.
-	 * Otherwise use {@link GradeCentreController#generateJSON(PASTAUser[])} for
-	 * all users in the given tutorial class. Return nothing if the tutorial class
-	 * doesn't exist.
-	 * 
-	 * @return the appropriate json file
+	 * Otherwise use
+	 * {@link #writeGradeCentreData(Collection, HttpServletRequest, HttpServletResponse)}
+	 * for all users in the given tutorial class. Return no rows if the tutorial
+	 * class doesn't exist.
 	 */
 	@RequestMapping(value = "tutorial/{className}/DATA/")
-	public @ResponseBody String viewTutorialData(@PathVariable("className") String className) {
+	public void viewTutorialData(@PathVariable("className") String className,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
 		WebUtils.ensureAccess(UserPermissionLevel.TUTOR);
-
-		if (userManager.getUserListByTutorial(className) == null) {
-			return "";
-		}
-
-		return generateJSON(userManager.getUserListByTutorial(className));
+		writeGradeCentreData(userManager.getUserListByTutorial(className), request, response);
 	}
 
 	/**
@@ -235,26 +232,25 @@ public class GradeCentreController {
 	 * Serves up the JSON data container for the grade center for the user's
 	 * tutorial class. If the user has not authenticated or is not a tutor: return
 	 * nothing. Otherwise use
-	 * {@link GradeCentreController#generateJSON(PASTAUser[])} for all users in
-	 * the user's tutorial class.
-	 * 
-	 * @return the appropriate json file
+	 * {@link #writeGradeCentreData(Collection, HttpServletRequest, HttpServletResponse)}
+	 * for all users in the user's tutorial class.
 	 */
 	@RequestMapping(value = "myTutorials/DATA/")
-	public @ResponseBody String viewMyTutorialData(@ModelAttribute("user") PASTAUser user) {
+	public void viewMyTutorialData(@ModelAttribute("user") PASTAUser user,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
 		WebUtils.ensureAccess(UserPermissionLevel.TUTOR);
-
-		Collection<PASTAUser> myUsers = userManager.getTutoredStudents(user);
-		return generateJSON(myUsers);
+		writeGradeCentreData(userManager.getTutoredStudents(user), request, response);
 	}
 
 	/**
-	 * Generate the JSON
+	 * Write the grade centre JSON straight to the response.
 	 * <p>
 	 * format:
 	 * 
 	 * <pre>
 	 * {@code {
+	 * 	"recordsTotal": 1234,
+	 * 	"recordsFiltered": 56,
 	 * 	"data": 
 	 * 	[
 	 * 		{
@@ -264,107 +260,236 @@ public class GradeCentreController {
 	 * 			"$assessmentId$": {
 	 * 				"mark": "######.###",
 	 * 				"percentage": "double",
+	 * 				"max": "double",
 	 * 				"assessmentid": "$assessmentId$"
 	 * 			},
 	 * 			...
-	 * 			"$assessmentId$": {
-	 * 				"mark": "######.###",
-	 * 				"percentage": "double",
-	 * 				"assessmentid": "$assessmentId$"
-	 * 			}
 	 * 		},
 	 * 		...
-	 * 		{
-	 * 			"name": "$username$",
-	 * 			"stream": "$stream$",
-	 * 			"class": "$class$",
-	 * 			"$assessmentId$": {
-	 * 				"mark": "######.###",
-	 * 				"percentage": "double",
-	 * 				"assessmentid": "$assessmentId$"
-	 * 			},
-	 * 			...
-	 * 			"$assessmentId$": {
-	 * 				"mark": "######.###",
-	 * 				"percentage": "double",
-	 * 				"assessmentid": "$assessmentId$"
-	 * 			}
-	 * 		}
 	 * 	]
 	 * }}
 	 * </pre>
 	 * 
 	 * If there is no submission, mark and percentage will be "". Percentage is
 	 * [1.0,0.0]. Mark is displayed to 3 decimal places.
+	 * <p>
+	 * The rows can be narrowed down and paged with these optional request
+	 * parameters:
+	 * <ul>
+	 * <li>stream: only users in this stream</li>
+	 * <li>tutorial: only users in this tutorial (either "class" or
+	 * "stream.class")</li>
+	 * <li>search: only users whose username, stream or class contains this
+	 * text (case insensitive)</li>
+	 * <li>order: the column to sort by; 0 is username, 1 stream, 2 class, and
+	 * 3 onwards the percentage for each assessment in the order of
+	 * {@link AssessmentManager#getAssessmentList()}</li>
+	 * <li>dir: "asc" (default) or "desc"</li>
+	 * <li>start, length: the page of rows to return; all rows are returned if
+	 * length is missing or negative</li>
+	 * </ul>
+	 * The response carries an ETag built from the results summary version, the
+	 * assessments, the users and the request parameters, so a client that sends
+	 * it back in If-None-Match gets a 304 while nothing has changed.
 	 * 
-	 * @param allUsers the users for which to generate the JSON
-	 * @return the JSON string
+	 * @param allUsers the users for which to generate the JSON; may be null
+	 * @param request the request holding the paging, sorting and filtering
+	 *          parameters
+	 * @param response the response the JSON is written to
+	 * @throws IOException if the response cannot be written
 	 */
-	private String generateJSON(Collection<PASTAUser> allUsers) {
-		if (allUsers.isEmpty()) {
-			return "{\"data\": []}";
+	private void writeGradeCentreData(Collection<PASTAUser> allUsers, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		List<PASTAUser> users = allUsers == null ? new ArrayList<PASTAUser>() : new ArrayList<>(allUsers);
+		List<Assessment> assessments = new ArrayList<>(assessmentManager.getAssessmentList());
+
+		String etag = generateETag(users, assessments, request);
+		if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+			return;
 		}
+		response.setHeader("Cache-Control", "private, no-cache");
 
-		List<PASTAUser> usersList = new ArrayList<>(allUsers);
+		List<PASTAUser> filtered = filterUsers(users, request.getParameter("stream"),
+				request.getParameter("tutorial"), request.getParameter("search"));
+
+		int orderColumn = getIntParameter(request, "order", 0);
+		if (orderColumn < 0 || orderColumn >= 3 + assessments.size()) {
+			orderColumn = 0;
+		}
+		boolean descending = "desc".equalsIgnoreCase(request.getParameter("dir"));
+
+		// Only sorting by an assessment needs the results of every filtered user;
+		// otherwise they are only fetched for the rows on the requested page.
+		Map<PASTAUser, Map<Long, Double>> results = null;
+		Comparator<PASTAUser> order;
+		if (orderColumn >= 3) {
+			results = resultManager.getLatestResultsIncludingGroupEvenQuicker(filtered);
+			order = new PercentageComparator(results, assessments.get(orderColumn - 3).getId());
+		} else {
+			order = new UserFieldComparator(orderColumn);
+		}
+		if (descending) {
+			order = Collections.reverseOrder(order);
+		}
+		Collections.sort(filtered, order);
+
+		int start = Math.max(0, getIntParameter(request, "start", 0));
+		int length = getIntParameter(request, "length", -1);
+		int end = length < 0 ? filtered.size() : (int) Math.min(filtered.size(), (long) start + length);
+		List<PASTAUser> page = start >= end ? new ArrayList<PASTAUser>() : filtered.subList(start, end);
+		if (results == null) {
+			results = resultManager.getLatestResultsIncludingGroupEvenQuicker(page);
+		}
 
 		DecimalFormat df = new DecimalFormat("#.###");
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		try (JsonGenerator json = JSON_FACTORY.createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+			json.writeStartObject();
+			json.writeNumberField("recordsTotal", users.size());
+			json.writeNumberField("recordsFiltered", filtered.size());
+			json.writeArrayFieldStart("data");
+			for (PASTAUser user : page) {
+				json.writeStartObject();
+				json.writeStringField("name", user.getUsername());
+				json.writeStringField("stream", String.valueOf(user.getStream()));
+				json.writeStringField("class", user.getFullTutorial());
+
+				Map<Long, Double> userResults = results.get(user);
+				for (Assessment assessment : assessments) {
+					String mark = "";
+					String percentage = "";
+					Double latestResult = userResults == null ? null : userResults.get(assessment.getId());
+					if (latestResult != null) {
+						percentage = String.valueOf(latestResult);
+						mark = df.format(latestResult * assessment.getMarks());
+					}
+					json.writeObjectFieldStart(String.valueOf(assessment.getId()));
+					json.writeStringField("mark", mark);
+					json.writeStringField("percentage", percentage);
+					json.writeStringField("max", String.valueOf(assessment.getMarks()));
+					json.writeStringField("assessmentid", String.valueOf(assessment.getId()));
+					json.writeEndObject();
+				}
+				json.writeEndObject();
+			}
+			json.writeEndArray();
+			json.writeEndObject();
+		}
+	}
 
-		StringBuilder data = new StringBuilder("{\r\n  \"data\": [\r\n");
+	/**
+	 * Hash everything that determines the grade centre JSON into an ETag: the
+	 * results summary version, the assessments and their marks, the users with
+	 * their streams and tutorials, and the request parameters.
+	 */
+	private String generateETag(List<PASTAUser> users, List<Assessment> assessments, HttpServletRequest request) {
+		MessageDigest digest = DigestUtils.getMd5Digest();
+		DigestUtils.updateDigest(digest, resultManager.getResultsSummaryVersion());
+		for (Assessment assessment : assessments) {
+			DigestUtils.updateDigest(digest, "\na" + assessment.getId() + ":" + assessment.getMarks());
+		}
+		for (PASTAUser user : users) {
+			DigestUtils.updateDigest(digest, "\nu" + user.getUsername() + ":" + user.getStream() + ":" + user.getTutorial());
+		}
+		for (String name : new TreeSet<>(request.getParameterMap().keySet())) {
+			DigestUtils.updateDigest(digest, "\np" + name + "=" + request.getParameter(name));
+		}
+		return "\"" + Hex.encodeHexString(digest.digest()) + "\"";
+	}
+
+	private List<PASTAUser> filterUsers(List<PASTAUser> users, String stream, String tutorial, String search) {
+		if (search != null) {
+			search = search.trim().toLowerCase();
+		}
+		List<PASTAUser> filtered = new ArrayList<>();
+		for (PASTAUser user : users) {
+			if (stream != null && !stream.isEmpty() && !stream.equals(user.getStream())) {
+				continue;
+			}
+			if (tutorial != null && !tutorial.isEmpty() && !tutorial.equals(user.getTutorial())
+					&& !tutorial.equals(user.getFullTutorial())) {
+				continue;
+			}
+			if (search != null && !search.isEmpty() && !containsIgnoreCase(user.getUsername(), search)
+					&& !containsIgnoreCase(user.getStream(), search)
+					&& !containsIgnoreCase(user.getFullTutorial(), search)) {
+				continue;
+			}
+			filtered.add(user);
+		}
+		return filtered;
+	}
 
-		Map<PASTAUser, Map<Long, Double>> allResults = resultManager
-				.getLatestResultsIncludingGroupEvenQuicker(usersList);
+	private static boolean containsIgnoreCase(String value, String lowerCaseSearch) {
+		return value != null && value.toLowerCase().contains(lowerCaseSearch);
+	}
 
-		Assessment[] allAssessments = assessmentManager.getAssessmentList().toArray(new Assessment[0]);
-		for (int i = 0; i < usersList.size(); ++i) {
-			PASTAUser user = usersList.get(i);
+	private static int getIntParameter(HttpServletRequest request, String name, int defaultValue) {
+		String value = request.getParameter(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
 
-			data.append("    {\r\n");
+	/**
+	 * Orders users by username (column 0), stream (1) or full tutorial name
+	 * (2), then by username.
+	 */
+	private static class UserFieldComparator implements Comparator<PASTAUser> {
+		private final int column;
 
-			// name
-			data.append("      \"name\": \"" + user.getUsername() + "\",\r\n");
-			// stream
-			data.append("      \"stream\": \"" + user.getStream() + "\",\r\n");
-			// class
-			data.append("      \"class\": \"" + user.getFullTutorial() + "\"");
+		public UserFieldComparator(int column) {
+			this.column = column;
+		}
 
-			if (allAssessments.length > 0) {
-				data.append(",");
-			}
-			data.append("\r\n");
-
-			Map<Long, Double> userResults = allResults.get(user);
-			// marks
-			for (int j = 0; j < allAssessments.length; j++) {
-				// assessment mark
-				Assessment currAssessment = allAssessments[j];
-				data.append("      \"" + currAssessment.getId() + "\": {");
-				String mark = "";
-				String percentage = "";
-
-				Double latestResult = userResults == null ? null : userResults.get(currAssessment.getId());
-				if (latestResult != null) {
-					percentage = String.valueOf(latestResult);
-					mark = df.format(latestResult * currAssessment.getMarks());
-				}
-				data.append("\"mark\": \"" + mark + "\",");
-				data.append("\"percentage\": \"" + percentage + "\",");
-				data.append("\"max\": \"" + currAssessment.getMarks() + "\",");
-				data.append("\"assessmentid\": \"" + currAssessment.getId() + "\"");
-				data.append("}");
-
-				if (j < allAssessments.length - 1) {
-					data.append(",");
-				}
+		@Override
+		public int compare(PASTAUser u1, PASTAUser u2) {
+			int diff = 0;
+			if (column == 1) {
+				diff = compareNullable(u1.getStream(), u2.getStream());
+			} else if (column == 2) {
+				diff = compareNullable(u1.getFullTutorial(), u2.getFullTutorial());
 			}
+			return diff != 0 ? diff : compareNullable(u1.getUsername(), u2.getUsername());
+		}
+	}
 
-			data.append("}");
-			if (i < usersList.size() - 1) {
-				data.append(",");
-			}
-			data.append("\r\n");
+	/**
+	 * Orders users by their percentage for one assessment, with users that have
+	 * no result first, then by username.
+	 */
+	private static class PercentageComparator implements Comparator<PASTAUser> {
+		private final Map<PASTAUser, Map<Long, Double>> results;
+		private final long assessmentId;
+
+		public PercentageComparator(Map<PASTAUser, Map<Long, Double>> results, long assessmentId) {
+			this.results = results;
+			this.assessmentId = assessmentId;
+		}
+
+		@Override
+		public int compare(PASTAUser u1, PASTAUser u2) {
+			int diff = compareNullable(getPercentage(u1), getPercentage(u2));
+			return diff != 0 ? diff : compareNullable(u1.getUsername(), u2.getUsername());
+		}
+
+		private Double getPercentage(PASTAUser user) {
+			Map<Long, Double> userResults = results.get(user);
+			return userResults == null ? null : userResults.get(assessmentId);
+		}
+	}
+
+	private static <T extends Comparable<T>> int compareNullable(T o1, T o2) {
+		if (o1 == null) {
+			return o2 == null ? 0 : -1;
 		}
-		data.append("  ]\r\n}");
-		return data.toString();
+		return o2 == null ? 1 : o1.compareTo(o2);
 	}
 
 	/**
@@ -31,10 +31,7 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 import java.util.zip.ZipOutputStream;
 
 import javax.servlet.http.HttpServletRequest;
@@ -56,8 +53,10 @@ import pasta.domain.form.Submission;
 import pasta.domain.result.AssessmentResult;
 import pasta.domain.template.Assessment;
 import pasta.domain.user.PASTAUser;
+import pasta.scheduler.JobPriority;
 import pasta.service.AssessmentManager;
 import pasta.service.GroupManager;
+import pasta.service.HomePageManager;
 import pasta.service.PASTAOptions;
 import pasta.service.ResultManager;
 import pasta.service.SubmissionManager;
@@ -94,6 +93,8 @@ public class StudentController {
 	private ResultManager resultManager;
 	@Autowired
 	private GroupManager groupManager;
+	@Autowired
+	private HomePageManager homePageManager;
 
 	// ///////////////////////////////////////////////////////////////////////////
 	// Models //
@@ -167,50 +168,7 @@ public class StudentController {
 		}
 		
 		model.addAttribute("viewedUser", viewedUser);
-		model.addAttribute("results", resultManager.getLatestResultsIncludingGroups(viewedUser));
-		
-		Map<String, Set<Assessment>> allAssessments = assessmentManager.getAllAssessmentsByCategory(user.isTutor());
-		Iterator<String> itCategories = allAssessments.keySet().iterator();
-		while(itCategories.hasNext()) {
-			String category = itCategories.next();
-			Iterator<Assessment> itAssessments = allAssessments.get(category).iterator();
-			while(itAssessments.hasNext()) {
-				Assessment a = itAssessments.next();
-				if(!a.isReleasedTo(viewedUser)) {
-					itAssessments.remove();
-				}
-			}
-			if(allAssessments.get(category).isEmpty()) {
-				itCategories.remove();
-			}
-		}
-		model.addAttribute("assessments", allAssessments);
-		
-		Map<Long, String> dueDates = new HashMap<Long, String>();
-		Map<Long, Boolean> hasExtension = new HashMap<>();
-		Map<Long, Boolean> released = new HashMap<>();
-		Map<Long, Boolean> closed = new HashMap<>();
-		Map<Long, Boolean> hasGroupWork = new HashMap<>();
-		Map<Long, Boolean> allGroupWork = new HashMap<>();
-		for(Assessment assessment : assessmentManager.getAssessmentList()) {
-			Date due = userManager.getDueDate(viewedUser, assessment);
-			String formatted = PASTAUtil.formatDateReadable(due);
-			dueDates.put(assessment.getId(), formatted);
-			released.put(assessment.getId(), assessment.isReleasedTo(viewedUser));
-			Date extension = userManager.getExtension(viewedUser, assessment);
-			hasExtension.put(assessment.getId(), extension != null);
-			closed.put(assessment.getId(), assessment.isClosedFor(viewedUser, extension));
-			boolean userHasGroup = groupManager.getGroup(viewedUser, assessment) != null;
-			boolean assessmentHasGroupWork = userHasGroup && assessmentManager.hasGroupWork(assessment);
-			hasGroupWork.put(assessment.getId(), assessmentHasGroupWork);
-			allGroupWork.put(assessment.getId(), assessmentHasGroupWork && assessmentManager.isAllGroupWork(assessment));
-		}
-		model.addAttribute("dueDates", dueDates);
-		model.addAttribute("hasExtension", hasExtension);
-		model.addAttribute("released", released);
-		model.addAttribute("closed", closed);
-		model.addAttribute("hasGroupWork", hasGroupWork);
-		model.addAttribute("allGroupWork", allGroupWork);
+		model.addAllAttributes(homePageManager.getHomePageAttributes(viewedUser, user.isTutor()));
 		
 		model.addAttribute("individualDeclaration", PASTAOptions.instance().get("submission.individual.text"));
 		model.addAttribute("groupDeclaration", PASTAOptions.instance().get("submission.group.text"));
@@ -381,7 +339,7 @@ public class StudentController {
 
 		AssessmentResult result = resultManager.loadAssessmentResult(viewedUser, assessmentId,
 				assessmentDate);
-		manager.runAssessment(result.getUser(), assessmentId, assessmentDate, result);
+		manager.runAssessment(result.getUser(), assessmentId, assessmentDate, result, JobPriority.RERUN);
 		return "redirect:" + request.getHeader("Referer");
 	}
 
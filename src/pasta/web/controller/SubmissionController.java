@@ -24,13 +24,13 @@ SOFTWARE.
 
 package pasta.web.controller;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
@@ -65,12 +65,11 @@ import pasta.domain.template.Assessment;
 import pasta.domain.user.PASTAGroup;
 import pasta.domain.user.PASTAUser;
 import pasta.repository.AssessmentDAO;
-import pasta.scheduler.AssessmentJob;
-import pasta.scheduler.ExecutionEstimator;
-import pasta.scheduler.ExecutionScheduler;
+import pasta.scheduler.JobQueueEstimate;
 import pasta.service.AssessmentManager;
 import pasta.service.ExecutionManager;
 import pasta.service.GroupManager;
+import pasta.service.HomePageManager;
 import pasta.service.PASTAOptions;
 import pasta.service.RatingManager;
 import pasta.service.ResultManager;
@@ -119,7 +118,7 @@ public class SubmissionController {
 	@Autowired
 	private GroupManager groupManager;
 	@Autowired
-	private ExecutionScheduler scheduler;
+	private HomePageManager homePageManager;
 	@Autowired
 	private ValidationManager validationManager;
 	
@@ -227,48 +226,7 @@ public class SubmissionController {
 	public String home(@ModelAttribute("user")PASTAUser user, Model model, HttpServletRequest request, HttpSession session) {
 		WebUtils.ensureLoggedIn(request);
 
-		model.addAttribute("results", resultManager.getLatestResultsIncludingGroups(user));
-		
-		Map<String, Set<Assessment>> allAssessments = assessmentManager.getAllAssessmentsByCategory(user.isTutor());
-		Iterator<String> itCategories = allAssessments.keySet().iterator();
-		while(itCategories.hasNext()) {
-			String category = itCategories.next();
-			Iterator<Assessment> itAssessments = allAssessments.get(category).iterator();
-			while(itAssessments.hasNext()) {
-				Assessment a = itAssessments.next();
-				if(!a.isReleasedTo(user)) {
-					itAssessments.remove();
-				}
-			}
-			if(allAssessments.get(category).isEmpty()) {
-				itCategories.remove();
-			}
-		}
-		model.addAttribute("assessments", allAssessments);
-		
-		
-		Map<Long, String> dueDates = new HashMap<Long, String>();
-		Map<Long, Boolean> hasExtension = new HashMap<>();
-		Map<Long, Boolean> closed = new HashMap<>();
-		Map<Long, Boolean> hasGroupWork = new HashMap<>();
-		Map<Long, Boolean> allGroupWork = new HashMap<>();
-		for(Assessment assessment : assessmentManager.getAssessmentList()) {
-			Date due = userManager.getDueDate(user, assessment);
-			String formatted = PASTAUtil.formatDateReadable(due);
-			dueDates.put(assessment.getId(), formatted);
-			Date extension = userManager.getExtension(user, assessment);
-			hasExtension.put(assessment.getId(), extension != null);
-			closed.put(assessment.getId(), assessment.isClosedFor(user, extension));
-			boolean userHasGroup = groupManager.getGroup(user, assessment) != null;
-			boolean assessmentHasGroupWork = userHasGroup && assessmentManager.hasGroupWork(assessment);
-			hasGroupWork.put(assessment.getId(), assessmentHasGroupWork);
-			allGroupWork.put(assessment.getId(), assessmentHasGroupWork && assessmentManager.isAllGroupWork(assessment));
-		}
-		model.addAttribute("dueDates", dueDates);
-		model.addAttribute("hasExtension", hasExtension);
-		model.addAttribute("closed", closed);
-		model.addAttribute("hasGroupWork", hasGroupWork);
-		model.addAttribute("allGroupWork", allGroupWork);
+		model.addAllAttributes(homePageManager.getHomePageAttributes(user, user.isTutor()));
 		
 		model.addAttribute("individualDeclaration", PASTAOptions.instance().get("submission.individual.text"));
 		model.addAttribute("groupDeclaration", PASTAOptions.instance().get("submission.group.text"));
@@ -417,32 +375,29 @@ public class SubmissionController {
 	}
 
 	private String doCheckJobQueue(PASTAUser forUser, long assessmentId) {
-		List<AssessmentJob> jobs = scheduler.getAssessmentQueue();
-		if(jobs == null || jobs.isEmpty()) {
+		JobQueueEstimate queue = execManager.getJobQueueEstimate();
+		if(queue.isEmpty()) {
 			return "";
 		}
 		PASTAGroup userGroup = groupManager.getGroup(forUser, assessmentId);
 		
 		ObjectMapper mapper = new ObjectMapper();
 		ObjectNode result = mapper.createObjectNode();
+		result.put("current", queue.getJob(0).getId());
+		
+		List<Integer> indexes = new ArrayList<>(queue.getPositions(assessmentId, forUser));
+		if(userGroup != null) {
+			indexes.addAll(queue.getPositions(assessmentId, userGroup));
+			Collections.sort(indexes);
+		}
 		
-		long totalTime = 0;
 		ArrayNode positions = mapper.createArrayNode();
-		for(int i = 0; i < jobs.size(); i++) {
-			AssessmentJob job = jobs.get(i);
-			if(i == 0) {
-				result.put("current", job.getId());
-			}
-			totalTime += ExecutionEstimator.estimateTime(job);
-			if(job.getAssessmentId() == assessmentId
-					&& (job.getUser().equals(forUser) ||
-							(userGroup != null && job.getUser().equals(userGroup)))) {
-				ObjectNode positionNode = mapper.createObjectNode();
-				positionNode.put("position", i+1);
-				positionNode.put("estimatedComplete", totalTime);
-				positionNode.put("running", job.isRunning());
-				positions.add(positionNode);
-			}
+		for(int i : indexes) {
+			ObjectNode positionNode = mapper.createObjectNode();
+			positionNode.put("position", i+1);
+			positionNode.put("estimatedComplete", queue.getEstimatedCompletion(i));
+			positionNode.put("running", queue.getJob(i).isRunning());
+			positions.add(positionNode);
 		}
 		
 		result.set("positions", positions);
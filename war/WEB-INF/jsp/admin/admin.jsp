@@ -183,6 +183,51 @@ SOFTWARE.
 			</c:if>
 		</div>
 	</div>
+	
+	<div class='section'>
+		<h2 class='section-title'>Submission Start Latency</h2>
+		<div class='part'>
+			<table>
+				<tr><th>Dispatch</th><th>Jobs</th><th>Mean (ms)</th><th>Min (ms)</th><th>Max (ms)</th></tr>
+				<c:forEach items="${startLatency}" var="stats">
+					<tr><td>${stats.name}</td><td>${stats.count}</td><td>${stats.mean}</td><td>${stats.min}</td><td>${stats.max}</td></tr>
+				</c:forEach>
+			</table>
+		</div>
+	</div>
+	
+	<div class='section'>
+		<h2 class='section-title'>Container Pools</h2>
+		<div class='part'>
+			<c:if test="${empty containerPools}">
+				None
+			</c:if>
+			<c:if test="${not empty containerPools}">
+				<table>
+					<tr><th>Language</th><th>Size</th><th>Live</th><th>Idle</th><th>Hits</th><th>Misses</th><th>Replaced</th><th>Mean checkout (ms)</th><th>Max checkout (ms)</th></tr>
+					<c:forEach items="${containerPools}" var="pool">
+						<tr>
+							<td>${pool.language.name}</td><td>${pool.size}</td><td>${pool.liveCount}</td><td>${pool.idleCount}</td>
+							<td>${pool.hits}</td><td>${pool.misses}</td><td>${pool.discarded}</td>
+							<td>${pool.checkoutLatency.mean}</td><td>${pool.checkoutLatency.max}</td>
+						</tr>
+					</c:forEach>
+				</table>
+			</c:if>
+		</div>
+	</div>
+	
+	<div class='section'>
+		<h2 class='section-title'>JUnit Test Runs</h2>
+		<div class='part'>
+			<table>
+				<tr><th>Runner</th><th>Runs</th><th>Mean (ms)</th><th>Min (ms)</th><th>Max (ms)</th></tr>
+				<c:forEach items="${junitTestTimes}" var="stats">
+					<tr><td>${stats.name}</td><td>${stats.count}</td><td>${stats.mean}</td><td>${stats.min}</td><td>${stats.max}</td></tr>
+				</c:forEach>
+			</table>
+		</div>
+	</div>
 		
 	<script>
 		function popup(tutor, replace){
@@ -299,6 +344,13 @@ SOFTWARE.
 			Click <a href='downloads/'>here</a> to go to the downloads page, where you can download data dumps from PASTA's database.
 		</div>
 	</div>
+	
+	<div class='section'>
+		<h2 class='section-title'>Cache</h2>
+		<div class='part'>
+			Click <a href='cache/'>here</a> to view cache statistics or clear the cache.
+		</div>
+	</div>
 </c:if>
 
 
@@ -0,0 +1,83 @@
+<%--
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+--%>
+
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core"%>
+<%@ taglib prefix="fmt" uri="http://java.sun.com/jsp/jstl/fmt"%>
+
+<h1>Cache</h1>
+
+<div class='section'>
+	<h2 class='section-title'>Second-Level Cache</h2>
+	<div class='part no-line'>
+		Assessments, unit tests, hand marking templates, release rules and reports are cached in memory on this server. 
+		Statistics have been collected since <fmt:formatDate value="${statisticsStart}" type="both" />.
+	</div>
+	<div class='part'>
+		<table class='dataTable hover row-border'>
+			<thead>
+				<tr><th>Region</th><th>Hits</th><th>Misses</th><th>Puts</th><th>Hit Ratio</th><th>Entries</th></tr>
+			</thead>
+			<tbody>
+				<c:forEach var="region" items="${regions}">
+					<c:set var="lookups" value="${region.value.hitCount + region.value.missCount}" />
+					<tr>
+						<td>${region.key}</td>
+						<td>${region.value.hitCount}</td>
+						<td>${region.value.missCount}</td>
+						<td>${region.value.putCount}</td>
+						<td><c:choose><c:when test="${lookups > 0}"><fmt:formatNumber type="percent" maxFractionDigits="1" value="${region.value.hitCount / lookups}" /></c:when><c:otherwise>-</c:otherwise></c:choose></td>
+						<td>${region.value.elementCountInMemory}</td>
+					</tr>
+				</c:forEach>
+			</tbody>
+		</table>
+	</div>
+</div>
+
+<div class='section'>
+	<h2 class='section-title'>Query Cache</h2>
+	<div class='part'>
+		<table>
+			<tr><td>Hits:</td><td>${statistics.queryCacheHitCount}</td></tr>
+			<tr><td>Misses:</td><td>${statistics.queryCacheMissCount}</td></tr>
+			<tr><td>Puts:</td><td>${statistics.queryCachePutCount}</td></tr>
+			<tr><td>Queries executed:</td><td>${statistics.queryExecutionCount}</td></tr>
+		</table>
+	</div>
+</div>
+
+<div class='section'>
+	<h2 class='section-title'>Actions</h2>
+	<div class='part no-line'>
+		Changes made through PASTA are applied to the cache automatically. Clear the cache if the database has been edited directly.
+	</div>
+	<div class='button-panel'>
+		<form action="clear/" method="post" style="display:inline">
+			<button type='submit'>Clear Cache</button>
+		</form>
+		<form action="resetStatistics/" method="post" style="display:inline">
+			<button type='submit'>Reset Statistics</button>
+		</form>
+	</div>
+</div>
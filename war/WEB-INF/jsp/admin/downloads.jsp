@@ -95,14 +95,30 @@ SOFTWARE.
 		Download an SQL dump of the contents of the PASTA database for analysis.
 	</div>
 	<div class='button-panel'>
-		<form action="dbdump/" method="post">
+		<form id="dbdump-form" action="dbdump/" method="post">
 			<button type='submit'>Download</button>
 		</form>
 	</div>
+	<div id="dbdump-status" class='part no-line'></div>
 </div>
 
 <script>
 	function setRows(num) {
 		$(this).closest(".pasta-form").find(".maxRowCount").val(num);
 	}
+	
+	$("#dbdump-form").on("submit", function() {
+		var started = false;
+		var waiting = 0;
+		var poll = setInterval(function() {
+			$.get("dbdump/status/", function(status) {
+				$("#dbdump-status").text(status);
+				if(status) {
+					started = true;
+				} else if(started || ++waiting > 15) {
+					clearInterval(poll);
+				}
+			});
+		}, 2000);
+	});
 </script>
\ No newline at end of file
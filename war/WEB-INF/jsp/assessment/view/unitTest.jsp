@@ -224,6 +224,12 @@ SOFTWARE.
 						<span class='help'>With this option, users will see messages displaying the difference between their output and the expected output. Otherwise they will just see whether they were correct or not.</span>
 					</div>
 				</div>
+				<div class='pf-section'>
+					<div class='pf-item'>
+						<form:checkbox path="blackBoxOptions.parallelTestCases" label="Run test cases in parallel"/>
+						<span class='help'>With this option, test cases are run at the same time (up to the number of CPUs available to the test) instead of one after another. Only use this if test cases do not write to shared files. Not available for MATLAB submissions.</span>
+					</div>
+				</div>
 				<div class='pf-section'>
 					<div class='pf-item one-col'>
 						<div class='pf-label'>GCC Command Line Arguments (C submissions only)</div>
@@ -340,6 +346,47 @@ SOFTWARE.
 			</div>
 		</c:if>
 	</div>
+	
+	<div class='section'>
+		<h2 class='section-title'>Resource Limits</h2>
+		<div class='part no-line'>
+			Limits on the resources a submission may use while this test runs. Leave a field empty to use the default for the submission's language. Tests with limits of their own cannot use pre-started containers, so will start more slowly.
+		</div>
+		<div class='part no-line'>
+			<div class='pasta-form'>
+				<div class='pf-section'>
+					<div class='pf-horizontal three-col'>
+						<div class='pf-item'>
+							<div class='pf-label'>Memory (MiB)</div>
+							<div class='pf-input'>
+								<form:input path="memoryLimit" />
+								<form:errors path="memoryLimit" />
+							</div>
+						</div>
+						<div class='pf-item'>
+							<div class='pf-label'>CPUs <span class='help'>The number of CPUs the submission may use at once, e.g. 0.5 or 2.</span></div>
+							<div class='pf-input'>
+								<form:input path="cpuLimit" />
+								<form:errors path="cpuLimit" />
+							</div>
+						</div>
+						<div class='pf-item'>
+							<div class='pf-label'>Processes <span class='help'>The maximum number of processes and threads the submission may run at once.</span></div>
+							<div class='pf-input'>
+								<form:input path="pidsLimit" />
+								<form:errors path="pidsLimit" />
+							</div>
+						</div>
+					</div>
+				</div>
+			</div>
+		</div>
+		<c:if test="${user.instructor}">
+			<div class='button-panel'>
+				<button type='submit'>Save Changes</button>
+			</div>
+		</c:if>
+	</div>
 </form:form>
 
 <c:if test="${not empty latestResult.testCases and not unitTest.tested}">
@@ -32,8 +32,15 @@ SOFTWARE.
 		
 		<p>This requires instructor level access.
 		
+		<c:if test="${canResume}">
+			<p>The last re-calculation did not finish. You can resume it to skip the assessments it had already done, or start again from scratch.
+		</c:if>
+		
 		<div class='button-pannel'>
 			<button class='button' id='go-button'>Re-calculate</button>
+			<c:if test="${canResume}">
+				<button class='button' id='resume-button'>Resume</button>
+			</c:if>
 		</div>
 	</div>
 </div>
@@ -54,15 +61,19 @@ SOFTWARE.
 	    	checkStatus();
     	</c:if>
     	$('#go-button').on("click", function() {
-    		startConvert();
+    		startConvert(false);
+    	});
+    	$('#resume-button').on("click", function() {
+    		startConvert(true);
     	});
     });
     
-    function startConvert() {
+    function startConvert(resume) {
     	$("#button-div").hide();
     	$("#output-div").show();
     	$.ajax({
 			type : "POST",
+			data : {resume : resume},
 			statusCode : {
 				500 : function(jqXHR, textStatus, errorThrown) {
 					alert("Failed to start converting.");
@@ -88,8 +88,23 @@ SOFTWARE.
 			var oTable = $('#gradeCentreTable').dataTable({
 				"scrollX": true,
 				"iDisplayLength": 25,
-				"ajax": "DATA/",
-				"deferRender": true,
+				"serverSide": true,
+				"searchDelay": 400,
+				"ajax": {
+					"url": "DATA/",
+					"cache": true,
+					"data": function(d) {
+						// only send what the server uses, and leave out the draw counter
+						// so that unchanged pages keep the same URL and can be revalidated
+						return {
+							"start": d.start,
+							"length": d.length,
+							"search": d.search.value,
+							"order": d.order.length ? d.order[0].column : 0,
+							"dir": d.order.length ? d.order[0].dir : "asc"
+						};
+					}
+				},
 		        "columns": [
 					{ "data": "name" },
 					{ "data": "stream" },
@@ -0,0 +1,273 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs black-box test cases concurrently inside an execution container.
+ * <p>
+ * Each test case is run the same way as by the serial <code>doTest</code>
+ * target of the black-box build templates, and leaves the same files behind:
+ * the test's output in the user output directory, its <code>time</code>
+ * statistics in the meta directory, and <code>.executed</code>,
+ * <code>.timedout</code> and <code>.segfault</code> marker files beside
+ * them. Standard error from every test is appended to the run errors file.
+ * <p>
+ * This class is compiled into the container's bin directory when the image
+ * is built, so it may only use the JDK.
+ * 
+ * <pre>
+ * java PastaBlackBoxRunner [--threads n] [--deadline ms] [--segfaults]
+ *     --input dir --output dir --meta dir --errors file
+ *     --time path --timeout path --pastarun path
+ *     --command "program args"
+ *     --tests name timeoutSeconds "args" [name timeoutSeconds "args" ...]
+ * </pre>
+ */
+public class PastaBlackBoxRunner {
+	// Passed to time as is; time expands the \n itself
+	private static final String TIME_FORMAT = "real %e\\nuser %U\\nsys %S\\nmemory %M\\nexit %x";
+	// The user pastarun switches to before running a test case
+	private static final String SANDBOX_USER = "pastasandbox";
+	
+	private int threads;
+	private long deadline;
+	private boolean segfaults;
+	private File inputDir;
+	private File outputDir;
+	private File metaDir;
+	private File errorsFile;
+	private String timePath;
+	private String timeoutPath;
+	private String pastarunPath;
+	private List<String> command = new ArrayList<>();
+	private List<TestCase> tests = new ArrayList<>();
+	
+	public static void main(String[] args) throws InterruptedException {
+		PastaBlackBoxRunner runner = new PastaBlackBoxRunner();
+		try {
+			runner.parse(args);
+		} catch(IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+		}
+		System.exit(runner.run() ? 0 : 1);
+	}
+	
+	private void parse(String[] args) {
+		for(int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if(arg.equals("--segfaults")) {
+				segfaults = true;
+				continue;
+			}
+			if(arg.equals("--tests")) {
+				if((args.length - i - 1) % 3 != 0) {
+					throw new IllegalArgumentException("Test cases must be given as name, timeout and arguments");
+				}
+				for(i++; i < args.length; i += 3) {
+					tests.add(new TestCase(args[i], args[i + 1], splitLine(args[i + 2])));
+				}
+				break;
+			}
+			if(i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + arg);
+			}
+			String value = args[++i];
+			switch(arg) {
+			case "--threads": threads = Integer.parseInt(value); break;
+			case "--deadline": deadline = Long.parseLong(value); break;
+			case "--input": inputDir = new File(value); break;
+			case "--output": outputDir = new File(value); break;
+			case "--meta": metaDir = new File(value); break;
+			case "--errors": errorsFile = new File(value); break;
+			case "--time": timePath = value; break;
+			case "--timeout": timeoutPath = value; break;
+			case "--pastarun": pastarunPath = value; break;
+			case "--command": command = splitLine(value); break;
+			default: throw new IllegalArgumentException("Unknown option " + arg);
+			}
+		}
+		if(command.isEmpty() || inputDir == null || outputDir == null || metaDir == null || errorsFile == null
+				|| timePath == null || timeoutPath == null || pastarunPath == null) {
+			throw new IllegalArgumentException("Usage: java PastaBlackBoxRunner [--threads n] [--deadline ms] [--segfaults] "
+					+ "--input dir --output dir --meta dir --errors file --time path --timeout path --pastarun path "
+					+ "--command line --tests name timeout args ...");
+		}
+		if(threads <= 0) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+	}
+	
+	/**
+	 * @return true if every test case was run before the deadline
+	 */
+	private boolean run() throws InterruptedException {
+		System.out.println("Running " + tests.size() + " test cases on " + threads + " threads");
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tests.size())));
+		for(TestCase test : tests) {
+			executor.execute(() -> runTest(test));
+		}
+		executor.shutdown();
+		boolean finished = executor.awaitTermination(deadline > 0 ? deadline : Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		if(!finished) {
+			System.err.println("Test cases did not finish within " + deadline + "ms; stopping");
+			executor.shutdownNow();
+			killSandboxProcesses();
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		}
+		return finished;
+	}
+	
+	/**
+	 * Stop everything started through pastarun. Stopping the
+	 * <code>time</code> processes alone would leave the programs under them
+	 * running, and in a pooled container they could then write into the
+	 * next job's files.
+	 */
+	private static void killSandboxProcesses() throws InterruptedException {
+		try {
+			new ProcessBuilder("pkill", "-9", "-u", SANDBOX_USER).inheritIO().start().waitFor();
+		} catch(IOException e) {
+			System.err.println("Could not stop test case processes: " + e.getMessage());
+		}
+	}
+	
+	private void runTest(TestCase test) {
+		System.out.println("Running test case " + test.name);
+		List<String> commandLine = new ArrayList<>(Arrays.asList(
+				timePath, "-o", new File(metaDir, test.name).getPath(), "-f", TIME_FORMAT,
+				pastarunPath, timeoutPath, test.timeout));
+		commandLine.addAll(command);
+		commandLine.addAll(test.arguments);
+		
+		File input = new File(inputDir, test.name);
+		File errors = null;
+		Process process = null;
+		try {
+			errors = File.createTempFile("pbbt", ".errors");
+			process = new ProcessBuilder(commandLine)
+					.redirectInput(input.exists() ? input : new File("/dev/null"))
+					.redirectOutput(new File(outputDir, test.name))
+					.redirectError(errors)
+					.start();
+			int exitCode = process.waitFor();
+			appendErrors(errors);
+			
+			// 124 = timeout, 143 = SIGTERM
+			if(exitCode == 124 || exitCode == 143) {
+				touch(test.name + ".timedout");
+			}
+			// 139 = SIGSEGV (11 + 128)
+			if(segfaults && (exitCode == 11 || exitCode == 139)) {
+				touch(test.name + ".segfault");
+			}
+			touch(test.name + ".executed");
+		} catch(InterruptedException e) {
+			process.destroyForcibly();
+			Thread.currentThread().interrupt();
+		} catch(IOException e) {
+			System.err.println("Could not run test case " + test.name + ": " + e.getMessage());
+		} finally {
+			if(errors != null) {
+				errors.delete();
+			}
+		}
+	}
+	
+	private synchronized void appendErrors(File errors) throws IOException {
+		if(errors.length() == 0) {
+			return;
+		}
+		try(OutputStream out = new FileOutputStream(errorsFile, true)) {
+			Files.copy(errors.toPath(), out);
+		}
+	}
+	
+	private void touch(String name) throws IOException {
+		new FileOutputStream(new File(metaDir, name), true).close();
+	}
+	
+	/**
+	 * Split a command line into arguments the way Ant's
+	 * <code>&lt;arg line="..."/&gt;</code> does: on whitespace, except inside
+	 * single or double quotes.
+	 */
+	private static List<String> splitLine(String line) {
+		List<String> parts = new ArrayList<>();
+		StringBuilder current = new StringBuilder();
+		boolean inPart = false;
+		char quote = 0;
+		for(char c : line.toCharArray()) {
+			if(quote != 0) {
+				if(c == quote) {
+					quote = 0;
+				} else {
+					current.append(c);
+				}
+			} else if(c == '\'' || c == '"') {
+				quote = c;
+				inPart = true;
+			} else if(Character.isWhitespace(c)) {
+				if(inPart) {
+					parts.add(current.toString());
+					current.setLength(0);
+					inPart = false;
+				}
+			} else {
+				current.append(c);
+				inPart = true;
+			}
+		}
+		if(quote != 0) {
+			throw new IllegalArgumentException("Unbalanced quotes in " + line);
+		}
+		if(inPart) {
+			parts.add(current.toString());
+		}
+		return parts;
+	}
+	
+	private static class TestCase {
+		private final String name;
+		private final String timeout;
+		private final List<String> arguments;
+		
+		public TestCase(String name, String timeout, List<String> arguments) {
+			this.name = name;
+			this.timeout = timeout;
+			this.arguments = arguments;
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.taskdefs.Execute;
+import org.apache.tools.ant.taskdefs.PumpStreamHandler;
+import org.apache.tools.ant.taskdefs.compilers.DefaultCompilerAdapter;
+import org.apache.tools.ant.types.Commandline;
+import org.apache.tools.ant.util.JavaEnvUtils;
+
+/**
+ * An Ant compiler adapter that has the <code>pastajunit</code> script
+ * compile the sources in the JVM that stays running in a pooled Java
+ * execution container (see {@link PastaJUnitDaemon}), rather than forking
+ * <code>javac</code> for every build.
+ * <p>
+ * The arguments are the ones Ant would give a forked <code>javac</code>,
+ * and the compiler's output is logged the same way, so a build's output
+ * and <code>compile.errors</code> look the same whichever way the code was
+ * compiled. If the resident JVM cannot be used, the sources are compiled
+ * by forking <code>javac</code> after all.
+ * <p>
+ * It is used by running the build with the <code>javac</code> task's
+ * <code>fork</code> attribute off, and the properties:
+ * 
+ * <pre>
+ * build.compiler=PastaCompilerAdapter
+ * pasta.libDirectory=[the lib directory]
+ * pasta.outDirectory=[the output directory]
+ * </pre>
+ * 
+ * This class is compiled against Ant when the container's image is built.
+ */
+public class PastaCompilerAdapter extends DefaultCompilerAdapter {
+	private static final int UNAVAILABLE = 75;
+	
+	@Override
+	public boolean execute() throws BuildException {
+		attributes.log("Using the resident JVM's compiler", Project.MSG_VERBOSE);
+		Commandline cmd = new Commandline();
+		String executable = getJavac().getExecutable();
+		cmd.setExecutable(executable == null ? JavaEnvUtils.getJdkExecutable("javac") : executable);
+		setupModernJavacCommandlineSwitches(cmd);
+		int firstFileName = cmd.size();
+		logAndAddFilesToCompile(cmd);
+		
+		Integer exitCode = compileResident(cmd.getArguments());
+		if(exitCode != null) {
+			return exitCode == 0;
+		}
+		return executeExternalCompile(cmd.getCommandline(), firstFileName, true) == 0;
+	}
+	
+	/**
+	 * @return the compiler's exit code, or null if the resident JVM could
+	 *         not be used
+	 */
+	private Integer compileResident(String[] args) {
+		String libDirectory = project.getProperty("pasta.libDirectory");
+		String outDirectory = project.getProperty("pasta.outDirectory");
+		if(libDirectory == null || outDirectory == null || destDir == null) {
+			attributes.log("Resident JVM unavailable: lib and output directories not set", Project.MSG_DEBUG);
+			return null;
+		}
+		
+		File argFile = null;
+		try {
+			File script = new File(getBinDirectory(), "pastajunit");
+			argFile = File.createTempFile("pastajavac", ".args");
+			try(PrintWriter out = new PrintWriter(argFile, "UTF-8")) {
+				for(String arg : args) {
+					out.println(arg);
+				}
+			}
+			
+			ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+			ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+			Execute exe = new Execute(new PumpStreamHandler(stdout, stderr));
+			exe.setAntRun(project);
+			exe.setWorkingDirectory(project.getBaseDir());
+			exe.setCommandline(new String[] {
+					script.getPath(), "compile", destDir.getAbsolutePath(), 
+					libDirectory, outDirectory, argFile.getAbsolutePath()
+			});
+			int exitCode = exe.execute();
+			if(exitCode == UNAVAILABLE) {
+				log(stdout, Project.MSG_DEBUG);
+				log(stderr, Project.MSG_DEBUG);
+				return null;
+			}
+			// As Execute's LogStreamHandler would for a forked javac
+			log(stdout, Project.MSG_INFO);
+			log(stderr, Project.MSG_WARN);
+			return exitCode;
+		} catch(IOException | URISyntaxException e) {
+			attributes.log("Resident JVM unavailable: " + e, Project.MSG_DEBUG);
+			return null;
+		} finally {
+			if(argFile != null) {
+				argFile.delete();
+			}
+		}
+	}
+	
+	private File getBinDirectory() throws URISyntaxException {
+		return new File(PastaCompilerAdapter.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+	}
+	
+	private void log(ByteArrayOutputStream output, int level) {
+		if(output.size() == 0) {
+			return;
+		}
+		for(String line : new String(output.toByteArray(), StandardCharsets.UTF_8).split("\r?\n")) {
+			attributes.log(line, level);
+		}
+	}
+}
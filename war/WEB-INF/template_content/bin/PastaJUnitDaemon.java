@@ -0,0 +1,780 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarFile;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import pasta.PASTASecurityManager;
+
+/**
+ * A JVM that stays running in a pooled Java execution container and
+ * compiles the code and runs JUnit tests for each job that uses the
+ * container, so that a build or a test run does not have to start a JVM
+ * and load the compiler or JUnit every time.
+ * <p>
+ * It takes one request per connection on a loopback port, sent by the
+ * <code>pastajunit</code> script as a single line of tab-separated fields:
+ * 
+ * <pre>
+ * token test testName workDir libDir outputFile timeoutMillis filterTrace
+ * token compile workDir argFile
+ * </pre>
+ * 
+ * Each test request gets a new class loader over the jars in the lib directory,
+ * then the compiled code in the work directory, so nothing loaded for one
+ * job is seen by the next. The test class is run by {@link PastaJUnitRun}
+ * in that loader, and the results are written to the output file in the
+ * same format as Ant's XML JUnit formatter. The reply is one line: "OK"
+ * followed by a summary, "ERROR" followed by a message, or "UNAVAILABLE"
+ * when the request should be run in a forked JVM instead.
+ * <p>
+ * A compile request gives the arguments Ant would pass to a forked
+ * <code>javac</code>, one per line of the argument file. They are compiled
+ * with the JDK's compiler, which keeps one file manager from build to build
+ * so that the jars on the classpath are only opened and indexed again when
+ * they change. Class files are kept in memory and written to the work
+ * directory only if the compile succeeds. The reply is "OK" or "FAILED",
+ * followed on the lines after it by the compiler's output, which is
+ * formatted as it would be by <code>javac</code>; or "UNAVAILABLE" with a
+ * message if the code should be compiled by a forked <code>javac</code>
+ * instead, which is always the case if it could run annotation processors.
+ * <p>
+ * Tests run under a {@link PASTASecurityManager}, as they would in a forked
+ * JVM. The one thing this JVM's manager allows beyond that is for
+ * <code>PASTAJUnitTest</code> to install a manager of its own, which is
+ * swapped back out as soon as a test starts. Doing that, and anything else
+ * the daemon needs that {@link PASTASecurityManager} does not allow itself,
+ * relies on the policy file granting this code base all permissions.
+ * <p>
+ * The work directory must be this JVM's working directory, as that is what
+ * relative paths in the tests resolve against. If a run leaves behind
+ * anything that cannot be cleaned up, such as a thread that will not stop,
+ * the JVM exits after replying and the script starts a new one next time.
+ * <p>
+ * This class is compiled by the <code>pastajunit</code> script the first
+ * time it is needed, against the jars in the lib directory.
+ * 
+ * <pre>
+ * java PastaJUnitDaemon tokenFile readyFile outputRoot
+ * </pre>
+ */
+public class PastaJUnitDaemon {
+	private static final long STOP_WAIT_MILLIS = 1000;
+	private static final int MAX_CAPTURED_OUTPUT = 1024 * 1024;
+	
+	private static final String[] TRACE_FILTERS = new String[] {
+			"junit.framework.TestCase", "junit.framework.TestResult", "junit.framework.TestSuite",
+			"junit.framework.Assert.", "junit.swingui.TestRunner", "junit.awtui.TestRunner",
+			"junit.textui.TestRunner", "java.lang.reflect.Method.invoke(", "sun.reflect.",
+			"org.apache.tools.ant.", "org.junit.", "junit.framework.JUnit4TestAdapter", " more",
+			"PastaJUnitRun", "PastaJUnitDaemon"
+	};
+	
+	private String token;
+	private File workDir;
+	private String outputRoot;
+	private URL classesUrl;
+	private ThreadGroup mainGroup;
+	private Guard guard;
+	private long runs;
+	
+	private JavaCompiler compiler;
+	private StandardJavaFileManager fileManager;
+	private String fileManagerKey;
+	private boolean processorsOnClasspath;
+	
+	public static void main(String[] args) throws Exception {
+		if(args.length != 3) {
+			System.err.println("Usage: PastaJUnitDaemon tokenFile readyFile outputRoot");
+			System.exit(2);
+		}
+		PastaJUnitDaemon daemon = new PastaJUnitDaemon();
+		daemon.token = new String(Files.readAllBytes(new File(args[0]).toPath()), StandardCharsets.UTF_8).trim();
+		daemon.workDir = new File(System.getProperty("user.dir")).getCanonicalFile();
+		daemon.outputRoot = new File(args[2]).getAbsolutePath() + File.separator;
+		daemon.classesUrl = PastaJUnitDaemon.class.getProtectionDomain().getCodeSource().getLocation();
+		daemon.mainGroup = Thread.currentThread().getThreadGroup();
+		
+		ServerSocket server = new ServerSocket(0, 5, InetAddress.getLoopbackAddress());
+		// Written whole, as the script waits for this file to appear
+		File ready = new File(args[1]);
+		File partial = new File(args[1] + ".tmp");
+		Files.write(partial.toPath(), String.valueOf(server.getLocalPort()).getBytes(StandardCharsets.UTF_8));
+		Files.move(partial.toPath(), ready.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		
+		daemon.guard = new Guard();
+		System.setSecurityManager(daemon.guard);
+		daemon.serve(server);
+	}
+	
+	private void serve(ServerSocket server) {
+		while(true) {
+			boolean exit = false;
+			try(Socket socket = server.accept()) {
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+				String request = in.readLine();
+				if(request == null) {
+					continue;
+				}
+				String[] fields = request.split("\t", -1);
+				if(fields.length < 2 || !fields[0].equals(token)) {
+					out.write("ERROR Invalid request\n");
+				} else if(fields[1].equals("test") && fields.length == 8) {
+					Run run = new Run(fields);
+					String reply = run.execute();
+					exit = !run.isClean();
+					out.write(reply + "\n");
+				} else if(fields[1].equals("compile") && fields.length == 4) {
+					out.write(new Compile(fields).execute());
+				} else {
+					out.write("ERROR Invalid request\n");
+				}
+				out.flush();
+			} catch(IOException e) {
+				e.printStackTrace();
+			}
+			if(exit) {
+				System.err.println("Exiting after a run that could not be cleaned up");
+				privileged(new PrivilegedAction<Void>() {
+					@Override
+					public Void run() {
+						System.exit(1);
+						return null;
+					}
+				});
+			}
+		}
+	}
+	
+	private static <T> T privileged(PrivilegedAction<T> action) {
+		return AccessController.doPrivileged(action);
+	}
+	
+	private void secure() {
+		if(System.getSecurityManager() != guard) {
+			privileged(new PrivilegedAction<Void>() {
+				@Override
+				public Void run() {
+					System.setSecurityManager(guard);
+					return null;
+				}
+			});
+		}
+	}
+	
+	private class Run {
+		private String testName;
+		private File runDir;
+		private File libDir;
+		private File outputFile;
+		private long timeout;
+		private boolean filterTrace;
+		
+		private ThreadGroup group;
+		private boolean clean = true;
+		
+		Run(String[] fields) {
+			this.testName = fields[2];
+			this.runDir = new File(fields[3]);
+			this.libDir = new File(fields[4]);
+			this.outputFile = new File(fields[5]);
+			this.timeout = Long.parseLong(fields[6]);
+			this.filterTrace = fields[7].equals("yes") || fields[7].equals("true") || fields[7].equals("on");
+		}
+		
+		boolean isClean() {
+			return clean;
+		}
+		
+		String execute() throws IOException {
+			if(!runDir.getCanonicalFile().equals(workDir)) {
+				return "UNAVAILABLE Working directory is " + workDir;
+			}
+			String output = outputFile.getAbsolutePath();
+			if(!output.startsWith(outputRoot) || output.contains(File.separator + "..")) {
+				return "ERROR Output file must be in " + outputRoot;
+			}
+			
+			final PrintStream savedOut = System.out;
+			final PrintStream savedErr = System.err;
+			final InputStream savedIn = System.in;
+			final Properties savedProperties = (Properties) System.getProperties().clone();
+			CappedOutputStream capturedOut = new CappedOutputStream();
+			CappedOutputStream capturedErr = new CappedOutputStream();
+			System.setOut(new PrintStream(capturedOut, true));
+			System.setErr(new PrintStream(capturedErr, true));
+			System.setProperty("user.dir", workDir.getPath());
+			
+			group = new ThreadGroup(mainGroup, "pasta-test-" + (++runs));
+			List<String[]> rows;
+			long start = System.currentTimeMillis();
+			URLClassLoader loader = new URLClassLoader(getClasspath(), ClassLoader.getSystemClassLoader().getParent());
+			guard.runLoader = loader;
+			try {
+				@SuppressWarnings("unchecked")
+				Callable<List<String[]>> runner = (Callable<List<String[]>>) loader.loadClass("PastaJUnitRun")
+						.getConstructor(String.class, long.class, ThreadGroup.class, Runnable.class)
+						.newInstance(testName, timeout, group, new Runnable() {
+							@Override
+							public void run() {
+								secure();
+							}
+						});
+				rows = runner.call();
+			} catch(Exception e) {
+				rows = new ArrayList<>();
+				StringBuilder trace = new StringBuilder(e.toString());
+				for(StackTraceElement element : e.getStackTrace()) {
+					trace.append(System.lineSeparator()).append("\tat ").append(element);
+				}
+				rows.add(new String[] {null, "0", "error", e.getMessage(), e.getClass().getName(), trace.toString()});
+			} finally {
+				secure();
+				privileged(new PrivilegedAction<Void>() {
+					@Override
+					public Void run() {
+						stopThreads();
+						System.setOut(savedOut);
+						System.setErr(savedErr);
+						System.setIn(savedIn);
+						System.setProperties(savedProperties);
+						return null;
+					}
+				});
+				guard.runLoader = null;
+				loader.close();
+			}
+			double time = (System.currentTimeMillis() - start) / 1000.0;
+			
+			int[] counts = writeResults(rows, time, capturedOut, capturedErr);
+			return String.format("OK Tests run: %d, Failures: %d, Errors: %d, Skipped: %d, Time elapsed: %s sec", 
+					counts[0], counts[1], counts[2], counts[3], time);
+		}
+		
+		private URL[] getClasspath() throws MalformedURLException {
+			// The libraries come first so that the tests cannot replace
+			// any of them, PASTAJUnitTest in particular
+			List<URL> urls = new ArrayList<>();
+			addJars(libDir, urls);
+			urls.add(classesUrl);
+			urls.add(workDir.toURI().toURL());
+			return urls.toArray(new URL[urls.size()]);
+		}
+		
+		private void addJars(File dir, List<URL> urls) throws MalformedURLException {
+			File[] files = dir.listFiles();
+			if(files == null) {
+				return;
+			}
+			Arrays.sort(files);
+			for(File file : files) {
+				if(file.isDirectory()) {
+					addJars(file, urls);
+				} else if(file.getName().endsWith(".jar")) {
+					urls.add(file.toURI().toURL());
+				}
+			}
+		}
+		
+		/**
+		 * Stop every thread left in the main thread group, which has the
+		 * tests' own group in it, and any group a test could have reached
+		 * from there.
+		 */
+		@SuppressWarnings("deprecation")
+		private void stopThreads() {
+			long deadline = System.currentTimeMillis() + STOP_WAIT_MILLIS;
+			Thread[] threads = new Thread[mainGroup.activeCount() + 16];
+			int count = mainGroup.enumerate(threads, true);
+			for(int i = 0; i < count; i++) {
+				if(threads[i] != Thread.currentThread()) {
+					threads[i].stop();
+				}
+			}
+			for(int i = 0; i < count; i++) {
+				if(threads[i] == Thread.currentThread()) {
+					continue;
+				}
+				try {
+					threads[i].join(Math.max(1, deadline - System.currentTimeMillis()));
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if(threads[i].isAlive()) {
+					clean = false;
+				}
+			}
+			try {
+				group.destroy();
+			} catch(IllegalThreadStateException e) {
+				clean = false;
+			}
+			// Tasks left running in the common pool cannot be stopped
+			if(ForkJoinPool.commonPool().getActiveThreadCount() > 0) {
+				clean = false;
+			}
+		}
+		
+		private int[] writeResults(List<String[]> rows, double time, 
+				CappedOutputStream capturedOut, CappedOutputStream capturedErr) throws IOException {
+			int failures = 0, errors = 0, skipped = 0, tests = 0;
+			StringBuilder body = new StringBuilder();
+			for(String[] row : rows) {
+				String kind = row[2];
+				if("failure".equals(kind)) {
+					failures++;
+				} else if("error".equals(kind)) {
+					errors++;
+				} else if("skipped".equals(kind)) {
+					skipped++;
+				}
+				String indent = "  ";
+				if(row[0] != null) {
+					tests++;
+					body.append("  <testcase classname=\"").append(attribute(testName))
+						.append("\" name=\"").append(attribute(row[0]))
+						.append("\" time=\"").append(row[1] == null ? "0.0" : row[1]).append('"');
+					if(kind == null) {
+						body.append(" />\n");
+						continue;
+					}
+					body.append(">\n");
+					indent = "    ";
+				}
+				body.append(indent).append('<').append(kind);
+				if(row[3] != null && !row[3].isEmpty()) {
+					body.append(" message=\"").append(attribute(row[3])).append('"');
+				}
+				if(row[4] != null) {
+					body.append(" type=\"").append(attribute(row[4])).append('"');
+				}
+				if(row[5] == null) {
+					body.append(" />\n");
+				} else {
+					body.append('>').append(text(filterTrace ? filter(row[5]) : row[5]))
+						.append("</").append(kind).append(">\n");
+				}
+				if(row[0] != null) {
+					body.append("  </testcase>\n");
+				}
+			}
+			
+			String hostname;
+			try {
+				hostname = InetAddress.getLocalHost().getHostName();
+			} catch(IOException e) {
+				hostname = "localhost";
+			}
+			SimpleDateFormat timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+			
+			try(Writer out = new BufferedWriter(new OutputStreamWriter(
+					Files.newOutputStream(outputFile.toPath()), StandardCharsets.UTF_8))) {
+				out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+				out.write("<testsuite errors=\"" + errors + "\" failures=\"" + failures + 
+						"\" hostname=\"" + attribute(hostname) + "\" name=\"" + attribute(testName) + 
+						"\" skipped=\"" + skipped + "\" tests=\"" + tests + "\" time=\"" + time + 
+						"\" timestamp=\"" + timestamp.format(new Date()) + "\">\n");
+				out.write("  <properties />\n");
+				out.write(body.toString());
+				out.write("  <system-out>" + cdata(capturedOut.toString()) + "</system-out>\n");
+				out.write("  <system-err>" + cdata(capturedErr.toString()) + "</system-err>\n");
+				out.write("</testsuite>\n");
+			}
+			return new int[] {tests, failures, errors, skipped};
+		}
+	}
+	
+	private class Compile {
+		private File runDir;
+		private File argFile;
+		
+		Compile(String[] fields) {
+			this.runDir = new File(fields[2]);
+			this.argFile = new File(fields[3]);
+		}
+		
+		String execute() throws IOException {
+			if(!runDir.getCanonicalFile().equals(workDir)) {
+				return "UNAVAILABLE Working directory is " + workDir + "\n";
+			}
+			List<String> args = Files.readAllLines(argFile.toPath(), StandardCharsets.UTF_8);
+			
+			// Ant puts the source files last
+			int firstSource = args.size();
+			while(firstSource > 0 && args.get(firstSource - 1).endsWith(".java")) {
+				firstSource--;
+			}
+			List<String> sources = args.subList(firstSource, args.size());
+			List<String> options = new ArrayList<>();
+			File destDir = null;
+			List<File> classpath = new ArrayList<>();
+			List<File> sourcepath = null;
+			for(int i = 0; i < firstSource; i++) {
+				String arg = args.get(i);
+				boolean hasValue = i + 1 < firstSource;
+				if(arg.equals("-d") && hasValue) {
+					destDir = new File(args.get(++i));
+				} else if((arg.equals("-classpath") || arg.equals("-cp")) && hasValue) {
+					classpath = toFiles(args.get(++i));
+				} else if(arg.equals("-sourcepath") && hasValue) {
+					sourcepath = toFiles(args.get(++i));
+				} else if(arg.startsWith("-J") || arg.startsWith("-proc:") || arg.startsWith("-processor") || 
+						arg.startsWith("-Xplugin") || arg.startsWith("@")) {
+					return "UNAVAILABLE Unsupported option " + arg + "\n";
+				} else {
+					options.add(arg);
+				}
+			}
+			if(sources.isEmpty()) {
+				return "UNAVAILABLE No source files\n";
+			}
+			if(destDir == null || !destDir.getCanonicalFile().equals(workDir)) {
+				return "UNAVAILABLE Classes must be compiled into " + workDir + "\n";
+			}
+			
+			// Annotation processors would run in this JVM rather than in
+			// javac's, so leave them to javac
+			prepareFileManager(options, classpath);
+			if(processorsOnClasspath || hasProcessors(classpath, false)) {
+				return "UNAVAILABLE Annotation processors on the classpath\n";
+			}
+			options.add("-proc:none");
+			
+			StringWriter output = new StringWriter();
+			InMemoryClasses classes = new InMemoryClasses(fileManager);
+			boolean success;
+			try {
+				fileManager.setLocation(StandardLocation.CLASS_PATH, classpath);
+				fileManager.setLocation(StandardLocation.SOURCE_PATH, sourcepath);
+				fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(destDir));
+				success = compiler.getTask(output, classes, null, options, null, 
+						fileManager.getJavaFileObjectsFromStrings(sources)).call();
+			} catch(RuntimeException e) {
+				e.printStackTrace();
+				closeFileManager();
+				return "UNAVAILABLE Compiler failed: " + e + "\n";
+			}
+			if(success) {
+				classes.write(destDir);
+			}
+			return (success ? "OK" : "FAILED") + "\n" + output;
+		}
+		
+		/**
+		 * Reuse the file manager from the last compile if it was made for
+		 * the same options and the same versions of the jars on the classpath.
+		 */
+		private void prepareFileManager(List<String> options, List<File> classpath) throws IOException {
+			StringBuilder key = new StringBuilder(options.toString());
+			for(File entry : classpath) {
+				if(entry.isFile()) {
+					key.append('\n').append(entry.getAbsolutePath()).append(' ')
+						.append(entry.length()).append(' ').append(entry.lastModified());
+				}
+			}
+			if(fileManager != null && key.toString().equals(fileManagerKey)) {
+				return;
+			}
+			closeFileManager();
+			if(compiler == null) {
+				compiler = ToolProvider.getSystemJavaCompiler();
+				if(compiler == null) {
+					throw new IOException("No system Java compiler");
+				}
+			}
+			fileManager = compiler.getStandardFileManager(null, null, null);
+			fileManagerKey = key.toString();
+			processorsOnClasspath = hasProcessors(classpath, true);
+		}
+		
+		private List<File> toFiles(String path) {
+			List<File> files = new ArrayList<>();
+			for(String entry : path.split(File.pathSeparator)) {
+				if(!entry.isEmpty()) {
+					files.add(new File(entry));
+				}
+			}
+			return files;
+		}
+		
+		/**
+		 * @param jars true to check the jars on the classpath, false to
+		 *            check the directories
+		 */
+		private boolean hasProcessors(List<File> classpath, boolean jars) throws IOException {
+			String service = "META-INF/services/javax.annotation.processing.Processor";
+			for(File entry : classpath) {
+				if(!jars && entry.isDirectory() && new File(entry, service).exists()) {
+					return true;
+				}
+				if(jars && entry.isFile()) {
+					try(JarFile jar = new JarFile(entry)) {
+						if(jar.getEntry(service) != null) {
+							return true;
+						}
+					}
+				}
+			}
+			return false;
+		}
+	}
+	
+	private void closeFileManager() {
+		if(fileManager != null) {
+			try {
+				fileManager.close();
+			} catch(IOException e) {
+				e.printStackTrace();
+			}
+			fileManager = null;
+			fileManagerKey = null;
+		}
+	}
+	
+	/**
+	 * Keeps the class files written by a compile in memory, and leaves the
+	 * file manager it wraps open after the compile so it can be used again.
+	 */
+	private static class InMemoryClasses extends ForwardingJavaFileManager<StandardJavaFileManager> {
+		private Map<String, ByteArrayOutputStream> classes = new LinkedHashMap<>();
+		
+		InMemoryClasses(StandardJavaFileManager fileManager) {
+			super(fileManager);
+		}
+		
+		@Override
+		public JavaFileObject getJavaFileForOutput(Location location, final String className, 
+				Kind kind, FileObject sibling) throws IOException {
+			if(location != StandardLocation.CLASS_OUTPUT || kind != Kind.CLASS) {
+				return super.getJavaFileForOutput(location, className, kind, sibling);
+			}
+			return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+				@Override
+				public OutputStream openOutputStream() {
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					classes.put(className, bytes);
+					return bytes;
+				}
+			};
+		}
+		
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+		
+		void write(File destDir) throws IOException {
+			for(Map.Entry<String, ByteArrayOutputStream> entry : classes.entrySet()) {
+				File file = new File(destDir, entry.getKey().replace('.', File.separatorChar) + Kind.CLASS.extension);
+				file.getParentFile().mkdirs();
+				Files.write(file.toPath(), entry.getValue().toByteArray());
+			}
+		}
+	}
+	
+	private static String filter(String trace) {
+		StringBuilder filtered = new StringBuilder();
+		for(String line : trace.split("\r?\n")) {
+			boolean keep = true;
+			for(String filter : TRACE_FILTERS) {
+				if(line.contains(filter)) {
+					keep = false;
+					break;
+				}
+			}
+			if(keep) {
+				filtered.append(line).append(System.lineSeparator());
+			}
+		}
+		return filtered.toString();
+	}
+	
+	private static String attribute(String value) {
+		StringBuilder sb = new StringBuilder(value.length());
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch(c) {
+			case '<': sb.append("&lt;"); break;
+			case '>': sb.append("&gt;"); break;
+			case '&': sb.append("&amp;"); break;
+			case '"': sb.append("&quot;"); break;
+			case '\'': sb.append("&apos;"); break;
+			case '\n': sb.append("&#10;"); break;
+			case '\r': sb.append("&#13;"); break;
+			case '\t': sb.append("&#9;"); break;
+			default: sb.append(legal(c));
+			}
+		}
+		return sb.toString();
+	}
+	
+	private static String text(String value) {
+		StringBuilder sb = new StringBuilder(value.length());
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch(c) {
+			case '<': sb.append("&lt;"); break;
+			case '>': sb.append("&gt;"); break;
+			case '&': sb.append("&amp;"); break;
+			default: sb.append(legal(c));
+			}
+		}
+		return sb.toString();
+	}
+	
+	private static String cdata(String value) {
+		StringBuilder sb = new StringBuilder(value.length());
+		for(int i = 0; i < value.length(); i++) {
+			sb.append(legal(value.charAt(i)));
+		}
+		return "<![CDATA[" + sb.toString().replace("]]>", "]]]]><![CDATA[>") + "]]>";
+	}
+	
+	private static char legal(char c) {
+		if(c == 0x9 || c == 0xA || c == 0xD || (c >= 0x20 && c <= 0xD7FF) || (c >= 0xE000 && c <= 0xFFFD)
+				|| Character.isSurrogate(c)) {
+			return c;
+		}
+		return '\uFFFD';
+	}
+	
+	/**
+	 * Keeps the first {@link PastaJUnitDaemon#MAX_CAPTURED_OUTPUT} bytes
+	 * written to it.
+	 */
+	private static class CappedOutputStream extends OutputStream {
+		private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		@Override
+		public synchronized void write(int b) {
+			if(bytes.size() < MAX_CAPTURED_OUTPUT) {
+				bytes.write(b);
+			}
+		}
+		
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			bytes.write(b, off, Math.max(0, Math.min(len, MAX_CAPTURED_OUTPUT - bytes.size())));
+		}
+		
+		@Override
+		public synchronized String toString() {
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+	
+	/**
+	 * The same rules as {@link PASTASecurityManager}, except that
+	 * <code>PASTAJUnitTest</code> may install a manager of its own, and the
+	 * JVM may not be stopped by the tests.
+	 */
+	private static class Guard extends PASTASecurityManager {
+		private static final RuntimePermission CREATE_SECURITY_MANAGER = new RuntimePermission("createSecurityManager");
+		private static final RuntimePermission SET_SECURITY_MANAGER = new RuntimePermission("setSecurityManager");
+		
+		private volatile ClassLoader runLoader;
+		
+		@Override
+		public void checkPermission(java.security.Permission perm) {
+			if((SET_SECURITY_MANAGER.equals(perm) || CREATE_SECURITY_MANAGER.equals(perm)) 
+					&& isCalledByPASTAJUnitTest()) {
+				return;
+			}
+			super.checkPermission(perm);
+		}
+		
+		@Override
+		public void checkExit(int status) {
+			checkPermission(new RuntimePermission("exitVM." + status));
+		}
+		
+		private boolean isCalledByPASTAJUnitTest() {
+			final ClassLoader loader = runLoader;
+			if(loader == null) {
+				return false;
+			}
+			final Class<?>[] callers = getClassContext();
+			return privileged(new PrivilegedAction<Boolean>() {
+				@Override
+				public Boolean run() {
+					// The run's loader only ever loads the pasta classes
+					// from the lib directory; see getClasspath()
+					for(Class<?> caller : callers) {
+						if(caller == Guard.class || caller == System.class || caller == SecurityManager.class ||
+								(caller.getName().equals("pasta.PASTASecurityManager") && caller.getClassLoader() == loader)) {
+							continue;
+						}
+						return caller.getName().equals("pasta.PASTAJUnitTest") && caller.getClassLoader() == loader;
+					}
+					return false;
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/*
+MIT License
+
+Copyright (c) 2012-2017 PASTA Contributors (see CONTRIBUTORS.txt)
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runners.model.TestTimedOutException;
+
+import junit.framework.AssertionFailedError;
+
+/**
+ * Runs one JUnit test class for {@link PastaJUnitDaemon}.
+ * <p>
+ * A new copy of this class is loaded for every request, by the same class
+ * loader as the test and the JUnit jars it uses, so it hands its results
+ * back to the daemon in JDK types only. Each result is a row of
+ * <code>{name, time, kind, message, type, trace}</code>, where the kind is
+ * null for a pass, or one of "failure", "error" or "skipped", and a null
+ * name means an error that belongs to no test case. Failures and errors
+ * are told apart the way Ant's JUnit task does it: any
+ * {@link AssertionError} is a failure, reported as an
+ * {@link AssertionFailedError}.
+ * <p>
+ * The tests run in a thread of the given group, and no test may run for
+ * longer than the timeout: a test that does is stopped and reported as an
+ * error. The same limit applies to the time spent outside of tests, such
+ * as in <code>@BeforeClass</code> methods.
+ */
+public class PastaJUnitRun implements Callable<List<String[]>> {
+	private static final long POLL_MILLIS = 20;
+	private static final int MAX_STOP_ATTEMPTS = 3;
+	
+	private String testName;
+	private long timeout;
+	private ThreadGroup group;
+	private Runnable onTestStarted;
+	
+	private Map<Description, String[]> rows = new LinkedHashMap<>();
+	private Map<Description, Long> starts = new LinkedHashMap<>();
+	private volatile Description current;
+	private volatile long lastEvent;
+	private boolean stopping;
+	
+	/**
+	 * @param testName the name of the test class
+	 * @param timeout the longest any one test may run for, in milliseconds
+	 * @param group the thread group to run the tests in
+	 * @param onTestStarted called in the test thread before each test
+	 */
+	public PastaJUnitRun(String testName, long timeout, ThreadGroup group, Runnable onTestStarted) {
+		this.testName = testName;
+		this.timeout = timeout;
+		this.group = group;
+		this.onTestStarted = onTestStarted;
+	}
+	
+	@Override
+	public List<String[]> call() throws InterruptedException {
+		final Class<?> testClass;
+		try {
+			testClass = Class.forName(testName, false, getClass().getClassLoader());
+		} catch(ClassNotFoundException | LinkageError e) {
+			List<String[]> result = new ArrayList<>();
+			result.add(row(null, 0, e));
+			return result;
+		}
+		
+		final JUnitCore core = new JUnitCore();
+		core.addListener(new Listener());
+		Thread worker = new Thread(group, new Runnable() {
+			@Override
+			public void run() {
+				core.run(Request.aClass(testClass));
+			}
+		}, "main");
+		worker.setContextClassLoader(getClass().getClassLoader());
+		
+		lastEvent = System.nanoTime();
+		worker.start();
+		int attempts = 0;
+		while(worker.isAlive()) {
+			worker.join(POLL_MILLIS);
+			long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastEvent);
+			if(worker.isAlive() && idle > timeout) {
+				if(attempts++ == MAX_STOP_ATTEMPTS) {
+					// Leave it to the daemon to find the thread still running
+					synchronized(this) {
+						if(current != null) {
+							recordTimeout(current);
+						}
+					}
+					break;
+				}
+				synchronized(this) {
+					stopping = true;
+				}
+				lastEvent = System.nanoTime();
+				stop(worker);
+			}
+		}
+		
+		synchronized(this) {
+			return new ArrayList<>(rows.values());
+		}
+	}
+	
+	@SuppressWarnings("deprecation")
+	private static void stop(Thread thread) {
+		thread.stop();
+	}
+	
+	private void recordTimeout(Description description) {
+		Exception e = new TestTimedOutException(timeout, TimeUnit.MILLISECONDS);
+		e.setStackTrace(new StackTraceElement[0]);
+		rows.put(description, row(description, elapsed(description), e));
+	}
+	
+	private double elapsed(Description description) {
+		Long start = starts.get(description);
+		return start == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) / 1000.0;
+	}
+	
+	private static String getName(Description description) {
+		String name = description.getMethodName();
+		return name == null ? description.getDisplayName() : name;
+	}
+	
+	private static String[] row(Description description, double time, Throwable t) {
+		String kind = "error";
+		if(t instanceof AssertionFailedError) {
+			kind = "failure";
+		} else if(t instanceof AssertionError) {
+			kind = "failure";
+			AssertionFailedError failure = t.getMessage() == null ? 
+					new AssertionFailedError() : new AssertionFailedError(t.getMessage());
+			failure.setStackTrace(t.getStackTrace());
+			t = failure;
+		}
+		StringWriter trace = new StringWriter();
+		PrintWriter writer = new PrintWriter(trace);
+		t.printStackTrace(writer);
+		writer.flush();
+		return new String[] {
+				description == null ? null : getName(description),
+				String.valueOf(time), kind, t.getMessage(), t.getClass().getName(), trace.toString()
+		};
+	}
+	
+	private class Listener extends RunListener {
+		@Override
+		public void testStarted(Description description) {
+			onTestStarted.run();
+			synchronized(PastaJUnitRun.this) {
+				starts.put(description, System.nanoTime());
+				current = description;
+			}
+			lastEvent = System.nanoTime();
+		}
+		
+		@Override
+		public void testFinished(Description description) {
+			synchronized(PastaJUnitRun.this) {
+				String[] row = rows.get(description);
+				if(row == null) {
+					row = new String[] {getName(description), null, null, null, null, null};
+					rows.put(description, row);
+				}
+				row[1] = String.valueOf(elapsed(description));
+				current = null;
+			}
+			lastEvent = System.nanoTime();
+		}
+		
+		@Override
+		public void testFailure(Failure failure) {
+			Description description = failure.getDescription();
+			synchronized(PastaJUnitRun.this) {
+				if(stopping && failure.getException() instanceof ThreadDeath) {
+					stopping = false;
+					recordTimeout(description);
+				} else if(!rows.containsKey(description)) {
+					rows.put(description, row(description, elapsed(description), failure.getException()));
+				}
+			}
+		}
+		
+		@Override
+		public void testAssumptionFailure(Failure failure) {
+			skip(failure.getDescription(), failure.getMessage());
+		}
+		
+		@Override
+		public void testIgnored(Description description) {
+			org.junit.Ignore ignore = description.getAnnotation(org.junit.Ignore.class);
+			skip(description, ignore == null ? null : ignore.value());
+		}
+		
+		private void skip(Description description, String message) {
+			synchronized(PastaJUnitRun.this) {
+				rows.put(description, new String[] {getName(description), 
+						String.valueOf(elapsed(description)), "skipped", message, null, null});
+			}
+		}
+	}
+}